@@ -0,0 +1,52 @@
+package com.currency.rates;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+
+// the datasets shared by the benchmarks, either the bundled ecb history or a synthetic one
+final class BenchmarkData {
+
+    static final String BUNDLED = "bundled";
+    // 200 currencies over 50 years
+    static final String SYNTHETIC = "synthetic";
+
+    private BenchmarkData() {
+    }
+
+    static byte[] csv(String dataset) throws IOException {
+        if (SYNTHETIC.equals(dataset))
+            return SyntheticRates.csv(200, 50, 42);
+
+        try (InputStream inputStream = BenchmarkData.class.getClassLoader().getResourceAsStream("eurofxref-hist.csv")) {
+            ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+            byte[] buffer = new byte[64 * 1024];
+            int read;
+            while ((read = inputStream.read(buffer)) > 0)
+                outputStream.write(buffer, 0, read);
+            return outputStream.toByteArray();
+        }
+    }
+
+    static CsvParser parser(String dataset) throws IOException {
+        CsvParser csvParser = new CsvParser();
+        csvParser.parseCsv(new ByteArrayInputStream(csv(dataset)));
+        return csvParser;
+    }
+
+    // the single conversion prints every result, which would otherwise be what gets measured
+    static void silenceConsole() {
+        System.setOut(new PrintStream(new OutputStream() {
+            @Override
+            public void write(int b) {
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+            }
+        }));
+    }
+}
@@ -0,0 +1,42 @@
+package com.currency.rates;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+// cold load of a whole csv file from memory, so that disk access is not part of the measurement
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ParseBenchmark {
+
+    @Param({BenchmarkData.BUNDLED, BenchmarkData.SYNTHETIC})
+    public String dataset;
+
+    private byte[] csv;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        csv = BenchmarkData.csv(dataset);
+    }
+
+    @Benchmark
+    public RateTable parseCsv() throws IOException {
+        CsvParser csvParser = new CsvParser();
+        csvParser.parseCsv(new ByteArrayInputStream(csv));
+        return csvParser.getRateTable();
+    }
+
+    // the same file split into chunks that are parsed on the common fork join pool
+    @Benchmark
+    public RateTable parseCsvInParallel() throws IOException {
+        CsvParser csvParser = new CsvParser();
+        csvParser.parseCsvInParallel(new ByteArrayInputStream(csv));
+        return csvParser.getRateTable();
+    }
+}
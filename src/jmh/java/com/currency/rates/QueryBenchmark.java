@@ -0,0 +1,100 @@
+package com.currency.rates;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+
+// the query paths of the parser: rates by date, range statistics over a week and over 20 years, and conversions
+// run with both throughput and sampled latency, together with -prof gc for the allocation rate
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class QueryBenchmark {
+
+    @Param({BenchmarkData.BUNDLED, BenchmarkData.SYNTHETIC})
+    public String dataset;
+
+    private CsvParser csvParser;
+    private String currency;
+    private String targetCurrency;
+    private LocalDate lastDate;
+    private LocalDate weekStart;
+    private LocalDate twentyYearsStart;
+    private ConversionBatch batch;
+    private double[] results;
+    private ConversionError[] errors;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        BenchmarkData.silenceConsole();
+        csvParser = BenchmarkData.parser(dataset);
+        RateTable rateTable = csvParser.getRateTable();
+        currency = rateTable.getCurrency(0);
+        targetCurrency = rateTable.getCurrency(rateTable.currencyCount() - 1);
+        lastDate = rateTable.getLocalDate(rateTable.size() - 1);
+        weekStart = lastDate.minusDays(7);
+        twentyYearsStart = lastDate.minusYears(20);
+
+        // a year of business days converted between the first and the last currency
+        batch = new ConversionBatch();
+        for (int row = Math.max(0, rateTable.size() - 260); row < rateTable.size(); row++)
+            batch.add(rateTable.getDate(row), currency, targetCurrency, 100.0);
+        results = new double[batch.size()];
+        errors = new ConversionError[batch.size()];
+    }
+
+    @Benchmark
+    public String retrieveRatesForSpecificDate() {
+        return csvParser.retrieveRatesForSpecificDate(lastDate);
+    }
+
+    @Benchmark
+    public Double highestRateLastWeek() {
+        return csvParser.getStatsForSpecificDates(weekStart, lastDate, currency, true);
+    }
+
+    @Benchmark
+    public Double averageRateLastWeek() {
+        return csvParser.getStatsForSpecificDates(weekStart, lastDate, currency, false);
+    }
+
+    @Benchmark
+    public Double highestRateTwentyYears() {
+        return csvParser.getStatsForSpecificDates(twentyYearsStart, lastDate, currency, true);
+    }
+
+    @Benchmark
+    public Double averageRateTwentyYears() {
+        return csvParser.getStatsForSpecificDates(twentyYearsStart, lastDate, currency, false);
+    }
+
+    // the whole 30 day moving average, rolling extremes and volatility series of 20 years in one pass
+    @Benchmark
+    public TimeSeries timeSeriesTwentyYears() {
+        return csvParser.getTimeSeries(twentyYearsStart, lastDate, currency, 30);
+    }
+
+    @Benchmark
+    public Double convertCurrencies() {
+        return csvParser.convertCurrencies(lastDate, currency, targetCurrency, 100.0);
+    }
+
+    // the same conversion in integer arithmetic, without formatting the result
+    @Benchmark
+    public long convertFixedPoint() {
+        return csvParser.exchangeFixedPoint(lastDate, currency, targetCurrency, 100 * FixedPoint.AMOUNT_SCALE);
+    }
+
+    // one operation converts the whole batch
+    @Benchmark
+    public void convertBatch(Blackhole blackhole) {
+        blackhole.consume(csvParser.convertCurrencies(batch, results, errors));
+        blackhole.consume(results);
+    }
+}
@@ -0,0 +1,52 @@
+package com.currency.rates;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+
+// the stats matrix of every currency over the weeks of the last year and over each of the last 20 years
+// comparing parallel=false with parallel=true, and running with -Djava.util.concurrent.ForkJoinPool.common.parallelism=N
+// for different values of N, shows how the throughput scales with the number of cores
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StatsMatrixBenchmark {
+
+    @Param({BenchmarkData.BUNDLED, BenchmarkData.SYNTHETIC})
+    public String dataset;
+
+    @Param({"false", "true"})
+    public boolean parallel;
+
+    private RateTable rateTable;
+    private LocalDate[] starts;
+    private LocalDate[] ends;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        BenchmarkData.silenceConsole();
+        rateTable = BenchmarkData.parser(dataset).getRateTable();
+        LocalDate lastDate = rateTable.getLocalDate(rateTable.size() - 1);
+
+        starts = new LocalDate[72];
+        ends = new LocalDate[72];
+        for (int week = 0; week < 52; week++) {
+            ends[week] = lastDate.minusWeeks(week);
+            starts[week] = ends[week].minusDays(6);
+        }
+        for (int year = 0; year < 20; year++) {
+            ends[52 + year] = lastDate.minusYears(year);
+            starts[52 + year] = ends[52 + year].minusYears(1).plusDays(1);
+        }
+    }
+
+    @Benchmark
+    public StatsMatrix statsMatrix() {
+        return RangeAnalytics.compute(rateTable, starts, ends, parallel);
+    }
+}
@@ -0,0 +1,111 @@
+package com.currency.rates;
+
+import java.util.Arrays;
+
+// converts whole batches of amounts against a single table of rates
+// dates, currencies and cross rates are resolved once and then served from small direct mapped caches, so that the
+// per item cost is a couple of array reads and a multiplication, without any allocation, formatting or console output
+public final class BatchConverter {
+
+    // both caches are direct mapped, a colliding entry simply replaces the previous one
+    private static final int DATE_CACHE_SIZE = 64;
+    private static final int CROSS_RATE_CACHE_SIZE = 256;
+
+    private BatchConverter() {
+    }
+
+    // the results are written to results[i] and errors[i] is null when the i-th conversion succeeded, otherwise the
+    // result is NaN and errors[i] holds the reason; unlike the single conversion the results are not rounded
+    // returns the number of conversions that failed
+    public static int convert(RateTable rateTable, ConversionBatch batch, double[] results, ConversionError[] errors) {
+        return convert(rateTable, null, batch, results, errors);
+    }
+
+    // same as above, but with a graph of the table the currencies are its nodes and the rates the ones it resolves, so
+    // currencies without a rate of their own are converted through their links like a single conversion does
+    public static int convert(RateTable rateTable, CurrencyGraph graph, ConversionBatch batch, double[] results, ConversionError[] errors) {
+        int size = batch.size();
+        if (results.length < size || errors.length < size)
+            throw new RuntimeException("The results and errors arrays must hold an entry for every conversion of the batch");
+
+        int[] cachedDays = new int[DATE_CACHE_SIZE];
+        int[] cachedRows = new int[DATE_CACHE_SIZE];
+        Arrays.fill(cachedDays, Integer.MIN_VALUE);
+        long[] cachedKeys = new long[CROSS_RATE_CACHE_SIZE];
+        double[] cachedCrossRates = new double[CROSS_RATE_CACHE_SIZE];
+        Arrays.fill(cachedKeys, -1);
+
+        boolean empty = rateTable.size() == 0;
+        String lastSource = null;
+        String lastTarget = null;
+        int sourceColumn = -1;
+        int targetColumn = -1;
+        int failures = 0;
+
+        for (int i = 0; i < size; i++) {
+            double amount = batch.getAmount(i);
+
+            // consecutive lines usually share their currencies, so the hash lookups only happen when the code changes
+            String source = batch.getSourceCurrency(i);
+            if (source != lastSource) {
+                sourceColumn = graph == null ? rateTable.indexOfCurrency(source) : graph.indexOfCurrency(source);
+                lastSource = source;
+            }
+            String target = batch.getTargetCurrency(i);
+            if (target != lastTarget) {
+                targetColumn = graph == null ? rateTable.indexOfCurrency(target) : graph.indexOfCurrency(target);
+                lastTarget = target;
+            }
+
+            ConversionError error = null;
+            if (!(amount > 0))
+                error = ConversionError.INVALID_AMOUNT;
+            else if (sourceColumn < 0 || empty)
+                error = ConversionError.INVALID_SOURCE_CURRENCY;
+            else if (targetColumn < 0)
+                error = ConversionError.INVALID_TARGET_CURRENCY;
+
+            if (error == null) {
+                int epochDay = batch.getEpochDay(i);
+                int daySlot = epochDay & (DATE_CACHE_SIZE - 1);
+                if (cachedDays[daySlot] != epochDay) {
+                    cachedDays[daySlot] = epochDay;
+                    cachedRows[daySlot] = rateTable.indexOfDate(epochDay);
+                }
+                int row = cachedRows[daySlot];
+
+                if (row < 0) {
+                    error = ConversionError.SOURCE_RATE_NOT_APPLICABLE;
+                } else {
+                    long key = ((long) row << 32) | ((long) sourceColumn << 16) | targetColumn;
+                    int rateSlot = (int) ((key * 0x9E3779B97F4A7C15L) >>> 56) & (CROSS_RATE_CACHE_SIZE - 1);
+                    if (cachedKeys[rateSlot] == key) {
+                        results[i] = cachedCrossRates[rateSlot] * amount;
+                    } else {
+                        double sourceRate = graph == null ? rateTable.getRate(sourceColumn, row) : graph.getRate(sourceColumn, row);
+                        double targetRate = graph == null ? rateTable.getRate(targetColumn, row) : graph.getRate(targetColumn, row);
+                        if (Double.isNaN(sourceRate)) {
+                            error = ConversionError.SOURCE_RATE_NOT_APPLICABLE;
+                        } else if (Double.isNaN(targetRate)) {
+                            error = ConversionError.TARGET_RATE_NOT_APPLICABLE;
+                        } else {
+                            // same arithmetic as the single conversion: the inverse of the source rate times the target rate
+                            double crossRate = 1 / sourceRate * targetRate;
+                            cachedKeys[rateSlot] = key;
+                            cachedCrossRates[rateSlot] = crossRate;
+                            results[i] = crossRate * amount;
+                        }
+                    }
+                }
+            }
+
+            errors[i] = error;
+            if (error != null) {
+                results[i] = Double.NaN;
+                failures++;
+            }
+        }
+
+        return failures;
+    }
+}
@@ -0,0 +1,8 @@
+package com.currency.rates;
+
+// told by a table that drops columns again, see MergedRateTable, which column it has just dropped, so that the data
+// derived from the column, i.e its range index, can be dropped as well and the memory stays bounded
+public interface ColumnEvictionListener {
+
+    void columnEvicted(int column);
+}
@@ -0,0 +1,444 @@
+package com.currency.rates;
+
+import java.math.RoundingMode;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+// read only table of rates whose columns are kept compressed in memory
+// every column is cut into blocks of 128 rows and each block is encoded on its own:
+//   - which rates are applicable is stored as alternating run lengths, so long N/A runs cost a couple of bytes
+//   - blocks whose rates are exact decimals of up to 6 places store them as millionths, the first one followed by the
+//     zigzag varint encoded differences to its predecessor, which for slowly moving rates are one or two bytes each
+//   - any other block stores the bits of the doubles xor-ed with their predecessor, gorilla style, as the number of
+//     trailing zero bits and the remaining bits as a varint
+// next to the bytes every block keeps the count, sum, lowest and highest of its applicable rates, so a range statistic
+// is answered from the summaries of the blocks it covers completely and only the two blocks at its edges get decoded
+// the sum is also kept in millionths, which answers the fixed point average without scaling the whole column
+//
+// the most recently decoded block of every column is kept, so reading a column row by row decodes each block once
+public class CompressedRateStore implements RateTable {
+
+    static final int BLOCK_BITS = 7;
+    static final int BLOCK_SIZE = 1 << BLOCK_BITS;
+
+    private static final byte SCALED = 0;
+    private static final byte XOR = 1;
+    // larger rates are xor encoded, their millionths would no longer be exact doubles
+    private static final double MAX_SCALED_RATE = 1e9;
+
+    private static final class Column {
+        private final byte[] bytes;
+        private final int[] blockOffsets;
+        private final int[] blockCounts;
+        private final double[] blockSums;
+        private final long[] blockFixedSums;
+        private final double[] blockLowest;
+        private final double[] blockHighest;
+
+        private Column(byte[] bytes, int[] blockOffsets, int[] blockCounts, double[] blockSums, long[] blockFixedSums,
+                       double[] blockLowest, double[] blockHighest) {
+            this.bytes = bytes;
+            this.blockOffsets = blockOffsets;
+            this.blockCounts = blockCounts;
+            this.blockSums = blockSums;
+            this.blockFixedSums = blockFixedSums;
+            this.blockLowest = blockLowest;
+            this.blockHighest = blockHighest;
+        }
+    }
+
+    private static final class DecodedBlock {
+        private final int block;
+        private final double[] rates;
+
+        private DecodedBlock(int block, double[] rates) {
+            this.block = block;
+            this.rates = rates;
+        }
+    }
+
+    private final String[] currencies;
+    private final Map<String, Integer> currencyIndex;
+    private final int[] dates;
+    private final Column[] columns;
+    private final AtomicReferenceArray<DecodedBlock> decoded;
+
+    private CompressedRateStore(String[] currencies, int[] dates, Column[] columns) {
+        this.currencies = currencies;
+        this.dates = dates;
+        this.columns = columns;
+        this.decoded = new AtomicReferenceArray<>(columns.length);
+        this.currencyIndex = new HashMap<>();
+        for (int i = 0; i < currencies.length; i++)
+            currencyIndex.put(currencies[i], i);
+    }
+
+    public static CompressedRateStore copyOf(RateTable rateTable) {
+        int size = rateTable.size();
+        int[] dates = new int[size];
+        for (int row = 0; row < size; row++)
+            dates[row] = rateTable.getDate(row);
+
+        Column[] columns = new Column[rateTable.currencyCount()];
+        double[] rates = new double[size];
+        for (int c = 0; c < columns.length; c++) {
+            rateTable.copyRates(c, 0, size, rates);
+            columns[c] = encode(rates, size);
+        }
+
+        return new CompressedRateStore(rateTable.getCurrencies(), dates, columns);
+    }
+
+    private static Column encode(double[] rates, int size) {
+        int blocks = (size + BLOCK_SIZE - 1) >>> BLOCK_BITS;
+        ByteSink sink = new ByteSink();
+        int[] blockOffsets = new int[blocks + 1];
+        int[] blockCounts = new int[blocks];
+        double[] blockSums = new double[blocks];
+        long[] blockFixedSums = new long[blocks];
+        double[] blockLowest = new double[blocks];
+        double[] blockHighest = new double[blocks];
+
+        for (int block = 0; block < blocks; block++) {
+            int from = block << BLOCK_BITS;
+            int to = Math.min(from + BLOCK_SIZE, size);
+            blockOffsets[block] = sink.size;
+
+            int count = 0;
+            double sum = 0;
+            long fixedSum = 0;
+            double lowest = Double.POSITIVE_INFINITY;
+            double highest = Double.NEGATIVE_INFINITY;
+            boolean scaled = true;
+            for (int row = from; row < to; row++) {
+                double rate = rates[row];
+                if (Double.isNaN(rate))
+                    continue;
+                count++;
+                sum += rate;
+                fixedSum += FixedPoint.toFixed(rate, FixedPoint.RATE_SCALE);
+                lowest = Math.min(lowest, rate);
+                highest = Math.max(highest, rate);
+                scaled &= Math.abs(rate) < MAX_SCALED_RATE
+                        && Double.doubleToRawLongBits(FixedPoint.toDouble(FixedPoint.toFixed(rate, FixedPoint.RATE_SCALE), FixedPoint.RATE_SCALE)) == Double.doubleToRawLongBits(rate);
+            }
+            blockCounts[block] = count;
+            blockSums[block] = sum;
+            blockFixedSums[block] = fixedSum;
+            blockLowest[block] = count == 0 ? Double.NaN : lowest;
+            blockHighest[block] = count == 0 ? Double.NaN : highest;
+
+            // runs of applicable and not applicable rates in turns, starting with an applicable one
+            int runs = 0;
+            int[] runLengths = new int[to - from + 1];
+            boolean applicable = true;
+            int row = from;
+            while (row < to) {
+                int start = row;
+                while (row < to && Double.isNaN(rates[row]) != applicable)
+                    row++;
+                runLengths[runs++] = row - start;
+                applicable = !applicable;
+            }
+            sink.writeVarLong(runs);
+            for (int run = 0; run < runs; run++)
+                sink.writeVarLong(runLengths[run]);
+
+            sink.writeByte(scaled ? SCALED : XOR);
+            long previous = 0;
+            for (row = from; row < to; row++) {
+                double rate = rates[row];
+                if (Double.isNaN(rate))
+                    continue;
+                if (scaled) {
+                    long value = FixedPoint.toFixed(rate, FixedPoint.RATE_SCALE);
+                    sink.writeVarLong(zigzag(value - previous));
+                    previous = value;
+                } else {
+                    long bits = Double.doubleToRawLongBits(rate);
+                    long xor = bits ^ previous;
+                    int trailingZeros = xor == 0 ? 64 : Long.numberOfTrailingZeros(xor);
+                    sink.writeByte((byte) trailingZeros);
+                    if (xor != 0)
+                        sink.writeVarLong(xor >>> trailingZeros);
+                    previous = bits;
+                }
+            }
+        }
+        blockOffsets[blocks] = sink.size;
+
+        return new Column(Arrays.copyOf(sink.bytes, sink.size), blockOffsets, blockCounts, blockSums, blockFixedSums, blockLowest, blockHighest);
+    }
+
+    // the rates of a block, NaN where they are not applicable
+    private double[] decode(int c, int block) {
+        DecodedBlock cached = decoded.get(c);
+        if (cached != null && cached.block == block)
+            return cached.rates;
+
+        Column column = columns[c];
+        int from = block << BLOCK_BITS;
+        double[] rates = new double[Math.min(BLOCK_SIZE, dates.length - from)];
+        ByteSource source = new ByteSource(column.bytes, column.blockOffsets[block]);
+
+        int runs = (int) source.readVarLong();
+        int[] runLengths = new int[runs];
+        for (int run = 0; run < runs; run++)
+            runLengths[run] = (int) source.readVarLong();
+
+        boolean scaled = source.readByte() == SCALED;
+        long previous = 0;
+        int row = 0;
+        for (int run = 0; run < runs; run++) {
+            int end = row + runLengths[run];
+            if ((run & 1) == 1) {
+                Arrays.fill(rates, row, end, Double.NaN);
+                row = end;
+                continue;
+            }
+            for (; row < end; row++) {
+                if (scaled) {
+                    previous += unzigzag(source.readVarLong());
+                    rates[row] = FixedPoint.toDouble(previous, FixedPoint.RATE_SCALE);
+                } else {
+                    int trailingZeros = source.readByte();
+                    if (trailingZeros < 64)
+                        previous ^= source.readVarLong() << trailingZeros;
+                    rates[row] = Double.longBitsToDouble(previous);
+                }
+            }
+        }
+
+        decoded.set(c, new DecodedBlock(block, rates));
+        return rates;
+    }
+
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    @Override
+    public int size() {
+        return dates.length;
+    }
+
+    @Override
+    public int currencyCount() {
+        return currencies.length;
+    }
+
+    @Override
+    public String getCurrency(int column) {
+        return currencies[column];
+    }
+
+    @Override
+    public String[] getCurrencies() {
+        return currencies.clone();
+    }
+
+    @Override
+    public int indexOfCurrency(String currency) {
+        Integer column = currency == null ? null : currencyIndex.get(currency);
+        return column == null ? -1 : column;
+    }
+
+    @Override
+    public int lowerBound(int epochDay) {
+        int row = Arrays.binarySearch(dates, epochDay);
+        return row < 0 ? -row - 1 : row;
+    }
+
+    @Override
+    public int getDate(int row) {
+        return dates[row];
+    }
+
+    @Override
+    public double getRate(int column, int row) {
+        if (row < 0 || row >= dates.length)
+            throw new IndexOutOfBoundsException("Row " + row + " is outside of [0, " + dates.length + ")");
+        return decode(column, row >>> BLOCK_BITS)[row & (BLOCK_SIZE - 1)];
+    }
+
+    @Override
+    public void copyRates(int column, int fromRow, int toRow, double[] destination) {
+        for (int row = fromRow; row < toRow; ) {
+            int block = row >>> BLOCK_BITS;
+            int offset = row & (BLOCK_SIZE - 1);
+            int length = Math.min(BLOCK_SIZE - offset, toRow - row);
+            System.arraycopy(decode(column, block), offset, destination, row - fromRow, length);
+            row += length;
+        }
+    }
+
+    // number of applicable rates within the half open range of rows
+    public int count(int column, int fromRow, int toRow) {
+        Column c = columns[column];
+        int count = 0;
+        for (int row = fromRow; row < toRow; ) {
+            int block = row >>> BLOCK_BITS;
+            int blockEnd = Math.min((block + 1) << BLOCK_BITS, dates.length);
+            if (row == block << BLOCK_BITS && blockEnd <= toRow) {
+                count += c.blockCounts[block];
+            } else {
+                double[] rates = decode(column, block);
+                for (int r = row; r < Math.min(blockEnd, toRow); r++) {
+                    if (!Double.isNaN(rates[r & (BLOCK_SIZE - 1)]))
+                        count++;
+                }
+            }
+            row = blockEnd;
+        }
+        return count;
+    }
+
+    // the highest applicable rate of the range, NaN when there is none
+    public double max(int column, int fromRow, int toRow) {
+        return extreme(column, fromRow, toRow, true);
+    }
+
+    // the lowest applicable rate of the range, NaN when there is none
+    public double min(int column, int fromRow, int toRow) {
+        return extreme(column, fromRow, toRow, false);
+    }
+
+    private double extreme(int column, int fromRow, int toRow, boolean highest) {
+        Column c = columns[column];
+        double result = Double.NaN;
+        for (int row = fromRow; row < toRow; ) {
+            int block = row >>> BLOCK_BITS;
+            int blockEnd = Math.min((block + 1) << BLOCK_BITS, dates.length);
+            if (row == block << BLOCK_BITS && blockEnd <= toRow) {
+                result = better(result, highest ? c.blockHighest[block] : c.blockLowest[block], highest);
+            } else {
+                double[] rates = decode(column, block);
+                for (int r = row; r < Math.min(blockEnd, toRow); r++)
+                    result = better(result, rates[r & (BLOCK_SIZE - 1)], highest);
+            }
+            row = blockEnd;
+        }
+        return result;
+    }
+
+    private static double better(double current, double candidate, boolean highest) {
+        if (Double.isNaN(candidate))
+            return current;
+        if (Double.isNaN(current))
+            return candidate;
+        return highest ? Math.max(current, candidate) : Math.min(current, candidate);
+    }
+
+    // the average of the applicable rates of the range, NaN when there is none
+    public double average(int column, int fromRow, int toRow) {
+        Column c = columns[column];
+        double sum = 0;
+        int count = 0;
+        for (int row = fromRow; row < toRow; ) {
+            int block = row >>> BLOCK_BITS;
+            int blockEnd = Math.min((block + 1) << BLOCK_BITS, dates.length);
+            if (row == block << BLOCK_BITS && blockEnd <= toRow) {
+                sum += c.blockSums[block];
+                count += c.blockCounts[block];
+            } else {
+                double[] rates = decode(column, block);
+                for (int r = row; r < Math.min(blockEnd, toRow); r++) {
+                    double rate = rates[r & (BLOCK_SIZE - 1)];
+                    if (!Double.isNaN(rate)) {
+                        sum += rate;
+                        count++;
+                    }
+                }
+            }
+            row = blockEnd;
+        }
+        return count == 0 ? Double.NaN : sum / count;
+    }
+
+    // the same average as FixedPointRates.average, in ten thousandths, NOT_APPLICABLE when the range holds none
+    public long fixedPointAverage(int column, int fromRow, int toRow, RoundingMode roundingMode) {
+        Column c = columns[column];
+        long sum = 0;
+        int count = 0;
+        for (int row = fromRow; row < toRow; ) {
+            int block = row >>> BLOCK_BITS;
+            int blockEnd = Math.min((block + 1) << BLOCK_BITS, dates.length);
+            if (row == block << BLOCK_BITS && blockEnd <= toRow) {
+                sum += c.blockFixedSums[block];
+                count += c.blockCounts[block];
+            } else {
+                double[] rates = decode(column, block);
+                for (int r = row; r < Math.min(blockEnd, toRow); r++) {
+                    double rate = rates[r & (BLOCK_SIZE - 1)];
+                    if (!Double.isNaN(rate)) {
+                        sum += FixedPoint.toFixed(rate, FixedPoint.RATE_SCALE);
+                        count++;
+                    }
+                }
+            }
+            row = blockEnd;
+        }
+        if (count == 0)
+            return FixedPoint.NOT_APPLICABLE;
+        return FixedPoint.multiplyDivide(sum, FixedPoint.AMOUNT_SCALE, count * FixedPoint.RATE_SCALE, roundingMode);
+    }
+
+    // bytes held by the encoded columns and their block summaries, the dates and currency codes not included
+    public long getEncodedBytes() {
+        long bytes = 0;
+        for (Column column : columns)
+            bytes += column.bytes.length + 4L * column.blockOffsets.length + 36L * column.blockCounts.length;
+        return bytes;
+    }
+
+    private static final class ByteSink {
+        private byte[] bytes = new byte[1024];
+        private int size;
+
+        private void writeByte(byte value) {
+            if (size == bytes.length)
+                bytes = Arrays.copyOf(bytes, size * 2);
+            bytes[size++] = value;
+        }
+
+        private void writeVarLong(long value) {
+            while ((value & ~0x7FL) != 0) {
+                writeByte((byte) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            writeByte((byte) value);
+        }
+    }
+
+    private static final class ByteSource {
+        private final byte[] bytes;
+        private int position;
+
+        private ByteSource(byte[] bytes, int position) {
+            this.bytes = bytes;
+            this.position = position;
+        }
+
+        private byte readByte() {
+            return bytes[position++];
+        }
+
+        private long readVarLong() {
+            long value = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = bytes[position++];
+                value |= (long) (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            return value;
+        }
+    }
+}
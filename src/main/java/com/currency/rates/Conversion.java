@@ -0,0 +1,58 @@
+package com.currency.rates;
+
+import java.time.LocalDate;
+
+// outcome of a conversion looked up with a DatePolicy, telling the date whose rates were actually used
+public final class Conversion {
+
+    private final LocalDate requestedDate;
+    private final LocalDate date;
+    private final String sourceCurrency;
+    private final String targetCurrency;
+    private final double amount;
+    private final double result;
+
+    public Conversion(LocalDate requestedDate, LocalDate date, String sourceCurrency, String targetCurrency, double amount, double result) {
+        this.requestedDate = requestedDate;
+        this.date = date;
+        this.sourceCurrency = sourceCurrency;
+        this.targetCurrency = targetCurrency;
+        this.amount = amount;
+        this.result = result;
+    }
+
+    public LocalDate getRequestedDate() {
+        return requestedDate;
+    }
+
+    // the date whose rates were used, differs from the requested one when the policy had to fall back
+    public LocalDate getDate() {
+        return date;
+    }
+
+    public boolean isExactDate() {
+        return date.equals(requestedDate);
+    }
+
+    public String getSourceCurrency() {
+        return sourceCurrency;
+    }
+
+    public String getTargetCurrency() {
+        return targetCurrency;
+    }
+
+    public double getAmount() {
+        return amount;
+    }
+
+    public double getResult() {
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "Conversion{" + amount + " " + sourceCurrency + " = " + result + " " + targetCurrency + " on " + date
+                + (isExactDate() ? "" : " instead of " + requestedDate) + "}";
+    }
+}
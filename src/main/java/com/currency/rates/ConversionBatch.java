@@ -0,0 +1,89 @@
+package com.currency.rates;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+
+// column oriented batch of conversions, one entry per (date, source currency, target currency, amount)
+// a batch can be cleared and refilled, so a job converting millions of lines only allocates its columns once
+public class ConversionBatch {
+
+    private int[] epochDays;
+    private String[] sourceCurrencies;
+    private String[] targetCurrencies;
+    private double[] amounts;
+    private int size;
+
+    public ConversionBatch() {
+        this(1024);
+    }
+
+    public ConversionBatch(int capacity) {
+        capacity = Math.max(capacity, 1);
+        this.epochDays = new int[capacity];
+        this.sourceCurrencies = new String[capacity];
+        this.targetCurrencies = new String[capacity];
+        this.amounts = new double[capacity];
+    }
+
+    // all arrays must have the same length, the i-th entry of each one describes the i-th conversion
+    public static ConversionBatch of(LocalDate[] dates, String[] sourceCurrencies, String[] targetCurrencies, double[] amounts) {
+        int size = dates.length;
+        if (sourceCurrencies.length != size || targetCurrencies.length != size || amounts.length != size)
+            throw new InvalidQueryException("Every conversion requires a date, a source currency, a target currency and an amount");
+
+        ConversionBatch batch = new ConversionBatch(size);
+        for (int i = 0; i < size; i++)
+            batch.add(dates[i], sourceCurrencies[i], targetCurrencies[i], amounts[i]);
+
+        return batch;
+    }
+
+    public ConversionBatch add(LocalDate date, String sourceCurrency, String targetCurrency, double amount) {
+        return add((int) date.toEpochDay(), sourceCurrency, targetCurrency, amount);
+    }
+
+    public ConversionBatch add(int epochDay, String sourceCurrency, String targetCurrency, double amount) {
+        if (size == amounts.length) {
+            int capacity = amounts.length * 2;
+            epochDays = Arrays.copyOf(epochDays, capacity);
+            sourceCurrencies = Arrays.copyOf(sourceCurrencies, capacity);
+            targetCurrencies = Arrays.copyOf(targetCurrencies, capacity);
+            amounts = Arrays.copyOf(amounts, capacity);
+        }
+
+        epochDays[size] = epochDay;
+        sourceCurrencies[size] = sourceCurrency;
+        targetCurrencies[size] = targetCurrency;
+        amounts[size] = amount;
+        size++;
+
+        return this;
+    }
+
+    public void clear() {
+        // the references are dropped so that the currency strings of the previous batch can be collected
+        Arrays.fill(sourceCurrencies, 0, size, null);
+        Arrays.fill(targetCurrencies, 0, size, null);
+        size = 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int getEpochDay(int index) {
+        return epochDays[index];
+    }
+
+    public String getSourceCurrency(int index) {
+        return sourceCurrencies[index];
+    }
+
+    public String getTargetCurrency(int index) {
+        return targetCurrencies[index];
+    }
+
+    public double getAmount(int index) {
+        return amounts[index];
+    }
+}
@@ -0,0 +1,20 @@
+package com.currency.rates;
+
+// the reasons a conversion can fail, used by the batch conversion to report errors per item instead of throwing
+public enum ConversionError {
+    INVALID_AMOUNT("Invalid amount provided, aborting conversion"),
+    INVALID_SOURCE_CURRENCY("No rates found, invalid source currency provided"),
+    INVALID_TARGET_CURRENCY("No rates found, invalid target currency provided"),
+    SOURCE_RATE_NOT_APPLICABLE("The rate for the source currency is not applicable, aborting conversion"),
+    TARGET_RATE_NOT_APPLICABLE("The rate for the target currency is not applicable, aborting conversion");
+
+    private final String message;
+
+    ConversionError(String message) {
+        this.message = message;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+}
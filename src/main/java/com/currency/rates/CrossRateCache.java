@@ -0,0 +1,138 @@
+package com.currency.rates;
+
+import java.util.concurrent.atomic.LongAdder;
+
+// bounded cache of cross rate matrices, one matrix per date of a table of rates
+// matrix[source * currencies + target] holds the factor that converts one unit of the source currency into the target
+// currency on that date, NaN when either rate is not applicable, so a conversion on a cached date is a single array read
+//
+// the cache is 4-way set associative: a date can only live in one of the 4 slots of its set and the least recently
+// used slot of the set is replaced on a miss; entries remember the lineage of the table they were computed from, so a
+// matrix survives rows being appended to the table, while after a reload or a corrected row it is simply treated as a miss
+public class CrossRateCache {
+
+    private static final int WAYS = 4;
+
+    // entries are immutable apart from the recency hint, so they can be shared between threads without locking
+    private static final class Entry {
+        private final Object lineage;
+        private final int row;
+        private final double[] matrix;
+        private long lastAccess;
+
+        private Entry(Object lineage, int row, double[] matrix, long lastAccess) {
+            this.lineage = lineage;
+            this.row = row;
+            this.matrix = matrix;
+            this.lastAccess = lastAccess;
+        }
+    }
+
+    private final Entry[] entries;
+    private final int setMask;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    // recency hint, updated without synchronization, a lost update only makes the eviction order slightly less exact
+    private long clock;
+
+    // the capacity, rounded up to a multiple of 4, is the number of dates whose matrices are kept at most
+    public CrossRateCache(int maxDates) {
+        int sets = Integer.highestOneBit(Math.max(1, (maxDates + WAYS - 1) / WAYS));
+        if (sets * WAYS < maxDates)
+            sets <<= 1;
+        this.entries = new Entry[sets * WAYS];
+        this.setMask = sets - 1;
+    }
+
+    public int capacity() {
+        return entries.length;
+    }
+
+    // returns the cross rate matrix of the given row, computing it on a miss, the matrix must not be modified
+    public double[] matrix(RateTable rateTable, int row) {
+        // consecutive rows, i.e the last few business days, end up in different sets
+        int set = (row & setMask) * WAYS;
+        long now = ++clock;
+        Object lineage = rateTable.getLineage();
+
+        for (int way = set; way < set + WAYS; way++) {
+            Entry entry = entries[way];
+            if (entry != null && entry.row == row && entry.lineage == lineage) {
+                entry.lastAccess = now;
+                hits.increment();
+                return entry.matrix;
+            }
+        }
+
+        misses.increment();
+        double[] matrix = computeMatrix(rateTable, row);
+
+        // an empty slot or one holding a matrix of another lineage is used first, otherwise the least recently used one
+        int victim = set;
+        long oldest = Long.MAX_VALUE;
+        for (int way = set; way < set + WAYS; way++) {
+            Entry entry = entries[way];
+            if (entry == null || entry.lineage != lineage) {
+                victim = way;
+                break;
+            }
+            if (entry.lastAccess < oldest) {
+                oldest = entry.lastAccess;
+                victim = way;
+            }
+        }
+        Entry replaced = entries[victim];
+        if (replaced != null && replaced.lineage == lineage)
+            evictions.increment();
+        entries[victim] = new Entry(lineage, row, matrix, now);
+
+        return matrix;
+    }
+
+    // the same arithmetic as a single conversion: the inverse of the source rate times the target rate
+    static double[] computeMatrix(RateTable rateTable, int row) {
+        int currencies = rateTable.currencyCount();
+        double[] rates = new double[currencies];
+        rateTable.copyRow(row, rates);
+
+        double[] matrix = new double[currencies * currencies];
+        for (int source = 0; source < currencies; source++) {
+            double inverseSourceRate = 1 / rates[source];
+            for (int target = 0; target < currencies; target++)
+                matrix[source * currencies + target] = inverseSourceRate * rates[target];
+        }
+
+        return matrix;
+    }
+
+    // drops every matrix, i.e after a new file has been loaded, the statistics are kept
+    public void clear() {
+        for (int i = 0; i < entries.length; i++)
+            entries[i] = null;
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    public double getHitRate() {
+        long hitCount = hits.sum();
+        long total = hitCount + misses.sum();
+        return total == 0 ? 0 : (double) hitCount / total;
+    }
+
+    @Override
+    public String toString() {
+        return "CrossRateCache{capacity=" + capacity() + ", hits=" + getHitCount() + ", misses=" + getMissCount()
+                + ", evictions=" + getEvictionCount() + "}";
+    }
+}
@@ -1,39 +1,135 @@
 package com.currency.rates;
 
-import java.io.BufferedReader;
+import com.currency.rates.MetricsSink.Operation;
+
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.time.LocalDate;
-import java.time.temporal.ChronoUnit;
 import java.util.Arrays;
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.LongSupplier;
 
+// the parser can be shared between threads: every query works on the snapshot that was current when it started,
+// while loading or appending rates builds a new snapshot and publishes it with a single atomic swap
 public class CsvParser {
 
-    private Map<String, Map<LocalDate, String>> supportedCurrencies;
-    private String header;
-    private String[] headerTokens;
+    private static final int CROSS_RATE_CACHE_DATES = 64;
+    private static final int STATS_CACHE_ENTRIES = 1024;
+
+    private final AtomicReference<RateSnapshot> snapshot;
+    private final CrossRateCache crossRateCache;
+    private final StatsCache statsCache;
+    // queries and loads are only timed when the sink is enabled, see RateMetrics
+    private volatile MetricsSink metricsSink = MetricsSink.DISABLED;
+    // conversions and averages use doubles unless the fixed point mode is selected, see setNumericMode
+    private volatile NumericMode numericMode = NumericMode.DOUBLE;
+    private volatile RoundingMode roundingMode = RoundingMode.HALF_UP;
+    // without links conversions only use the rates of the file, see setCurrencyLinks
+    private volatile CurrencyLinks currencyLinks;
+    private volatile CurrencyGraph currencyGraph;
 
     public CsvParser() {
-        this.supportedCurrencies = new HashMap<>();
+        this.snapshot = new AtomicReference<>(RateSnapshot.empty());
+        this.crossRateCache = new CrossRateCache(CROSS_RATE_CACHE_DATES);
+        this.statsCache = new StatsCache(STATS_CACHE_ENTRIES);
+    }
+
+    // the snapshot queries are currently served from, callers that run several queries can hold on to it for a consistent view
+    public RateSnapshot getSnapshot() {
+        return snapshot.get();
+    }
+
+    public RateTable getRateTable() {
+        return snapshot.get().getRateTable();
+    }
+
+    // the cross rates of the most recently converted dates, mainly exposed for its hit and miss statistics
+    public CrossRateCache getCrossRateCache() {
+        return crossRateCache;
+    }
+
+    // the results of the most recent range statistics, mainly exposed for its hit and coalescing statistics
+    public StatsCache getStatsCache() {
+        return statsCache;
+    }
+
+    public MetricsSink getMetricsSink() {
+        return metricsSink;
+    }
+
+    public void setMetricsSink(MetricsSink metricsSink) {
+        this.metricsSink = metricsSink == null ? MetricsSink.DISABLED : metricsSink;
+    }
+
+    public NumericMode getNumericMode() {
+        return numericMode;
+    }
+
+    public RoundingMode getRoundingMode() {
+        return roundingMode;
+    }
+
+    // with FIXED_POINT conversions and averages are computed on rates scaled to millionths and rounded to 4 decimals
+    // with the given rounding mode, HALF_UP gives the same results as the double mode apart from its representation errors
+    public void setNumericMode(NumericMode numericMode, RoundingMode roundingMode) {
+        if (numericMode == null || roundingMode == null)
+            throw new IllegalArgumentException("Numeric mode and rounding mode are required");
+        this.roundingMode = roundingMode;
+        this.numericMode = numericMode;
+    }
+
+    public CurrencyLinks getCurrencyLinks() {
+        return currencyLinks;
+    }
+
+    // with links every conversion goes through a CurrencyGraph: EUR itself can be converted, and a currency without a
+    // rate on the date is still converted through its pegs or successors; CurrencyLinks.NONE only adds EUR, null turns
+    // the graph off again; graph conversions are computed in doubles and rounded to 4 decimals in either numeric mode
+    public void setCurrencyLinks(CurrencyLinks currencyLinks) {
+        this.currencyLinks = currencyLinks;
+        this.currencyGraph = null;
+    }
+
+    // the graph of the given snapshot, rebuilt whenever the rates or the links change, null without links
+    private CurrencyGraph currencyGraph(RateSnapshot current) {
+        CurrencyLinks links = currencyLinks;
+        if (links == null)
+            return null;
+
+        CurrencyGraph graph = currencyGraph;
+        // two threads might both build a graph for the same snapshot, either one is equally valid
+        if (graph == null || graph.getRateTable() != current.getRateTable() || graph.getCurrencyLinks() != links) {
+            graph = new CurrencyGraph(current.getRateTable(), links);
+            currencyGraph = graph;
+        }
+        return graph;
     }
 
     public Map<String, Map<LocalDate, String>> getSupportedCurrencies() {
-        return supportedCurrencies;
+        return snapshot.get().getSupportedCurrencies();
     }
 
+    // the given map gets converted into the columnar store, later changes to the map itself are not picked up
     public void setSupportedCurrencies(Map<String, Map<LocalDate, String>> supportedCurrencies) {
-        this.supportedCurrencies = supportedCurrencies;
+        RateSnapshot current = snapshot.get();
+        RateStore rateStore = RateStore.fromMap(supportedCurrencies, current.getHeaderTokens());
+        publish(new RateSnapshot(rateStore, current.getHeader(), supportedCurrencies));
     }
 
     public String getHeader() {
-        return header;
+        return snapshot.get().getHeader();
     }
 
     public String[] getHeaderTokens() {
-        return headerTokens;
+        return snapshot.get().getHeaderTokens();
     }
 
     // this method will load the contents of the csv file in memory
@@ -42,205 +138,756 @@ public class CsvParser {
         ClassLoader classLoader = CsvParser.class.getClassLoader();
 
         // try to load the csv file from maven's resources folder
-        try (InputStream inputStream = classLoader.getResourceAsStream(filename);
-             InputStreamReader streamReader = new InputStreamReader(inputStream);
-             BufferedReader reader = new BufferedReader(streamReader)) {
-
-            // since this is a comma separated values file every line of text will be split using that delimiter
-            header = reader.readLine();
-            if (header != null) {
-                headerTokens = header.split(",");
-
-                // every string token from the header, except the date tag, will be used to initialise a nested hash map
-                // the key set on the "outer" hash map will be the set of currency codes that were retrieved from the csv file's header
-                // the values will be the "inner" hash maps, which will be using a date as a key and the exchange rate for that day as a value
-                for (String token : headerTokens) {
-                    if (!token.equalsIgnoreCase("Date")) {
-                        supportedCurrencies.put(token.toUpperCase(), new HashMap<>());
-                    }
-                }
-            }
-
-            // once the currency codes are in place the rest of the file gets processed in order to populate the "inner" hash maps
-            String dailyRates;
-            while ((dailyRates = reader.readLine()) != null) {
-                String[] ratesTokens = dailyRates.split(",");
-                LocalDate date = LocalDate.parse(ratesTokens[0]);
-                for (int i = 1; i < ratesTokens.length; i++) {
-                    String rate = ratesTokens[i];
-                    HashMap<LocalDate, String> ratesMap = (HashMap<LocalDate, String>) supportedCurrencies.get(headerTokens[i]);
-                    ratesMap.put(date, rate);
-                    supportedCurrencies.put(headerTokens[i], ratesMap);
-                }
-            }
-
+        try (InputStream inputStream = classLoader.getResourceAsStream(filename)) {
+            if (inputStream == null)
+                throw new IOException("Resource not found: " + filename);
+            load(inputStream);
         } catch (IOException e) {
             e.printStackTrace();
         }
     }
 
-    // this is essentially the inverse of the process that took place when the "inner" hash maps
-    // by traversing the array of header's tokens every rate gets retrieved from its respective hash map
+    // loads a csv file from disk, plain or gzip compressed
+    public void parseCsv(Path path) throws IOException {
+        long bytes = metricsSink.isEnabled() ? Files.size(path) : 0;
+        measureLoad(Operation.LOAD_CSV, () -> {
+            RateStore.Builder builder = new RateStore.Builder();
+            RateCsvReader.read(path, builder);
+            return useRates(builder);
+        }, () -> bytes);
+    }
+
+    // loads a csv file from any stream, plain or gzip compressed, the stream is not closed
+    public void parseCsv(InputStream inputStream) throws IOException {
+        load(inputStream);
+    }
+
+    // same as parseCsv, but the file is split into chunks that are parsed on the common fork join pool, which pays off
+    // for files far larger than the ecb's history; the loaded rates are exactly the same, see ParallelCsvReader
+    public void parseCsvInParallel(Path path) throws IOException {
+        try (InputStream inputStream = Files.newInputStream(path)) {
+            parseCsvInParallel(inputStream);
+        }
+    }
+
+    // the stream is not closed
+    public void parseCsvInParallel(InputStream inputStream) throws IOException {
+        CountingInputStream countingInputStream = new CountingInputStream(inputStream);
+        measureLoad(Operation.LOAD_CSV, () -> {
+            RateStore.Builder builder = new RateStore.Builder();
+            ParallelCsvReader.read(countingInputStream, builder);
+            return useRates(builder);
+        }, () -> countingInputStream.count);
+    }
+
+    private void load(InputStream inputStream) throws IOException {
+        CountingInputStream countingInputStream = new CountingInputStream(inputStream);
+        measureLoad(Operation.LOAD_CSV, () -> {
+            RateStore.Builder builder = new RateStore.Builder();
+            RateCsvReader.read(countingInputStream, builder);
+            return useRates(builder);
+        }, () -> countingInputStream.count);
+    }
+
+    // every string token from the header, except the date tag, became a column of the rate store
+    // the values of each column are the exchange rates of that currency, one per date of the file
+    // returns the number of rows that were loaded
+    private int useRates(RateStore.Builder builder) {
+        // an empty file leaves the currently loaded rates untouched
+        if (builder.getHeader() == null)
+            return 0;
+
+        RateStore rateStore = builder.build();
+        useRates(rateStore, builder.getHeader());
+        return rateStore.size();
+    }
+
+    // serves the rates straight from a memory mapped snapshot instead of parsing a csv file
+    public void loadSnapshot(Path snapshot) throws IOException {
+        long bytes = metricsSink.isEnabled() ? Files.size(snapshot) : 0;
+        measureLoad(Operation.LOAD_SNAPSHOT, () -> {
+            MappedRateStore mappedRateStore = RateSnapshotFile.open(snapshot);
+            useRates(mappedRateStore, mappedRateStore.getHeader());
+            return mappedRateStore.size();
+        }, () -> bytes);
+    }
+
+    // same as above, but a snapshot that was not converted from the csv file with the given checksum or fingerprint is rejected
+    public void loadSnapshot(Path snapshot, long sourceChecksum) throws IOException {
+        long bytes = metricsSink.isEnabled() ? Files.size(snapshot) : 0;
+        measureLoad(Operation.LOAD_SNAPSHOT, () -> {
+            MappedRateStore mappedRateStore = RateSnapshotFile.open(snapshot, sourceChecksum);
+            useRates(mappedRateStore, mappedRateStore.getHeader());
+            return mappedRateStore.size();
+        }, () -> bytes);
+    }
+
+    // serves the union of several files, i.e a full history and a few newer or regional files, as one table
+    // a later source wins where the sources overlap, and only the columns that are queried are read from the files,
+    // keeping at most maxResidentColumns of them in memory, see MergedRateTable
+    public void useSources(int maxResidentColumns, RateSource... sources) {
+        MergedRateTable mergedRateTable = new MergedRateTable(Arrays.asList(sources), maxResidentColumns);
+        useRates(mergedRateTable, mergedRateTable.getHeader());
+    }
+
+    // keeps the loaded rates compressed in memory from now on, see CompressedRateStore; the rates stay the same, range
+    // statistics are answered from block summaries and appending rates unpacks the store onto the heap again
+    public void compressRates() {
+        RateSnapshot current = snapshot.get();
+        if (!(current.getRateTable() instanceof CompressedRateStore))
+            useRates(CompressedRateStore.copyOf(current.getRateTable()), current.getHeader());
+    }
+
+    public void writeSnapshot(Path snapshot, long sourceChecksum) throws IOException {
+        RateSnapshot current = this.snapshot.get();
+        RateSnapshotFile.write(current.getRateTable(), current.getHeader() == null ? "" : current.getHeader(), sourceChecksum, snapshot);
+    }
+
+    private void useRates(RateTable rateTable, String header) {
+        publish(new RateSnapshot(rateTable, header));
+    }
+
+    // cached cross rates and statistics of the previous table would never be served again, dropping them frees the memory right away
+    private void publish(RateSnapshot rateSnapshot) {
+        snapshot.set(rateSnapshot);
+        crossRateCache.clear();
+        statsCache.clear();
+    }
+
+    // adds the rates of a new business day, i.e the ecb's daily update, without reloading the whole file
+    // the rates follow the order of the header's currencies and N/A is passed as NaN
+    // threads that are in the middle of a query keep working on the snapshot they started with
+    // a date after the last one is appended in amortized O(currencies), the range index, the rendered lines and the
+    // cached cross rates of the earlier dates are all kept; an earlier date replaces or inserts a row by copying
+    public void appendRates(LocalDate date, double[] rates) {
+        RateSnapshot current;
+        RateSnapshot updated;
+        do {
+            current = snapshot.get();
+            updated = current.withRates(date, rates);
+        } while (!snapshot.compareAndSet(current, updated));
+    }
+
+    // merges a small csv file, i.e the ecb's daily eurofxref.csv, into the loaded rates, plain or gzip compressed
+    // the columns are matched by currency code, so the file may hold fewer, more or differently ordered currencies
+    // than the loaded ones, see RateSnapshot.withRows
+    public void appendCsv(Path path) throws IOException {
+        long bytes = metricsSink.isEnabled() ? Files.size(path) : 0;
+        measureLoad(Operation.APPEND, () -> {
+            RateStore.Builder builder = new RateStore.Builder();
+            RateCsvReader.read(path, builder);
+            return appendRows(builder);
+        }, () -> bytes);
+    }
+
+    // same as above for any stream, the stream is not closed
+    public void appendCsv(InputStream inputStream) throws IOException {
+        CountingInputStream countingInputStream = new CountingInputStream(inputStream);
+        measureLoad(Operation.APPEND, () -> {
+            RateStore.Builder builder = new RateStore.Builder();
+            RateCsvReader.read(countingInputStream, builder);
+            return appendRows(builder);
+        }, () -> countingInputStream.count);
+    }
+
+    private int appendRows(RateStore.Builder builder) {
+        if (builder.getHeader() == null)
+            return 0;
+
+        RateStore rows = builder.build();
+        RateSnapshot current;
+        RateSnapshot updated;
+        do {
+            current = snapshot.get();
+            updated = current.withRows(rows);
+        } while (!snapshot.compareAndSet(current, updated));
+        return rows.size();
+    }
+
+    // this is essentially the inverse of the process that took place when the columns were populated
+    // by traversing the columns of the store every rate of the given date gets formatted back to its csv text
     public String retrieveRatesForSpecificDate(LocalDate date) {
 
-        StringBuilder builder = new StringBuilder();
-        //builder.append(header + "\n");
-        builder.append(date + ",");
-        Arrays.stream(headerTokens).skip(1).forEach(currency -> builder.append(supportedCurrencies.get(currency).get(date) + ","));
-        String dailyRates = builder.toString();
-        if (validRates(dailyRates))
-            return dailyRates;
-        else throw new RuntimeException("There are no valid rates for the given date");
+        long started = startTimer();
+        try {
+            RateSnapshot current = snapshot.get();
+            return current.getRenderedRows().lineString(rowOf(current, date));
+        } catch (RuntimeException e) {
+            recordError(Operation.RATES_BY_DATE, e);
+            throw e;
+        } finally {
+            stopTimer(Operation.RATES_BY_DATE, started);
+        }
     }
 
-    // this is the case where exchange rates get retrieved on a day were there are actually no rates, i.e during a weekend
-    private boolean validRates(String dailyRates) {
-        String[] tokens = dailyRates.split(",");
-        for (String str : tokens) {
-            if (str == null || str.equalsIgnoreCase("null"))
-                return false;
+    // the csv line of the date as read only bytes, rendered once and then served from the snapshot's cache
+    public ByteBuffer retrieveRateLineForSpecificDate(LocalDate date) {
+
+        long started = startTimer();
+        try {
+            RateSnapshot current = snapshot.get();
+            return current.getRenderedRows().line(rowOf(current, date));
+        } catch (RuntimeException e) {
+            recordError(Operation.RATES_BY_DATE, e);
+            throw e;
+        } finally {
+            stopTimer(Operation.RATES_BY_DATE, started);
         }
+    }
 
+    // fills the reusable view with the rates of the date, returns false when there are no rates for it
+    // nothing gets formatted or allocated, which suits callers working with the numbers rather than the text
+    public boolean retrieveRatesForSpecificDate(LocalDate date, DailyRates dailyRates) {
+
+        RateTable rateTable = snapshot.get().getRateTable();
+        int row = rateTable.indexOfDate(date);
+        if (row < 0)
+            return false;
+
+        dailyRates.fill(rateTable, row);
         return true;
     }
 
-    // this method is acting as a protective barrier prior to the invocation of two recursive methods that will
-    // either retrieve the highest rate or the average rate for a specified period of time
+    // same as above, but when the date has no rates the policy picks another one, the view tells which date was used
+    public boolean retrieveRatesForSpecificDate(LocalDate date, DatePolicy policy, DailyRates dailyRates) {
+
+        RateTable rateTable = snapshot.get().getRateTable();
+        int row = policy.resolve(rateTable, (int) date.toEpochDay());
+        if (row < 0)
+            return false;
+
+        dailyRates.fill(rateTable, row);
+        return true;
+    }
+
+    // the csv line of the date the policy picks, the line starts with that date
+    public String retrieveRatesForSpecificDate(LocalDate date, DatePolicy policy) {
+
+        long started = startTimer();
+        try {
+            RateSnapshot current = snapshot.get();
+            int row = policy.resolve(current.getRateTable(), (int) date.toEpochDay());
+            if (row < 0)
+                throw new InvalidQueryException("There are no valid rates for the given date");
+            return current.getRenderedRows().lineString(row);
+        } catch (RuntimeException e) {
+            recordError(Operation.RATES_BY_DATE, e);
+            throw e;
+        } finally {
+            stopTimer(Operation.RATES_BY_DATE, started);
+        }
+    }
+
+    // the csv header and the line of the date the policy picks, each followed by a line break, as the body of a csv
+    // response; both come from the same snapshot, so a reload in between cannot pair a header with another file's line
+    public byte[] retrieveRatesWithHeader(LocalDate date, DatePolicy policy) {
+
+        long started = startTimer();
+        try {
+            RateSnapshot current = snapshot.get();
+            int row = policy.resolve(current.getRateTable(), (int) date.toEpochDay());
+            if (row < 0)
+                throw new InvalidQueryException("There are no valid rates for the given date");
+
+            byte[] header = current.getHeader().getBytes(StandardCharsets.UTF_8);
+            ByteBuffer line = current.getRenderedRows().line(row);
+            byte[] body = new byte[header.length + line.remaining() + 2];
+            System.arraycopy(header, 0, body, 0, header.length);
+            body[header.length] = '\n';
+            line.get(body, header.length + 1, line.remaining());
+            body[body.length - 1] = '\n';
+            return body;
+        } catch (RuntimeException e) {
+            recordError(Operation.RATES_BY_DATE, e);
+            throw e;
+        } finally {
+            stopTimer(Operation.RATES_BY_DATE, started);
+        }
+    }
+
+    private static int rowOf(RateSnapshot current, LocalDate date) {
+        int row = current.getRateTable().indexOfDate(date);
+        // this is the case where exchange rates get retrieved on a day were there are actually no rates, i.e during a weekend
+        if (row < 0)
+            throw new InvalidQueryException("There are no valid rates for the given date");
+        return row;
+    }
+
     public Double getStatsForSpecificDates(LocalDate start, LocalDate end, String currency, boolean retrieveHighestRate) {
+        return getStatsForSpecificDates(start, end, currency, retrieveHighestRate ? RangeStatistic.HIGHEST : RangeStatistic.AVERAGE);
+    }
+
+    // average, highest, lowest, standard deviation and count of every currency over every window, computed in parallel
+    // the window starts[i] to ends[i] includes both dates, see RangeAnalytics for the details; nothing is rounded
+    public StatsMatrix getStatsMatrix(LocalDate[] starts, LocalDate[] ends) {
+
+        return RangeAnalytics.compute(snapshot.get().getRateTable(), starts, ends);
+    }
+
+    // feeds the applicable rates of the currency from start to end, both included, to the accumulators in a single pass
+    // and returns the number of rows that were read, which is less than the range when every accumulator stopped early
+    public int scanRates(LocalDate start, LocalDate end, String currency, RateAccumulator... accumulators) {
 
-        Double result = 0.0;
-        Double total = 0.0;
-        int applicableDays = 0;
+        RateTable rateTable = snapshot.get().getRateTable();
+        int column = rateTable.indexOfCurrency(currency);
+        if (column < 0)
+            throw new InvalidQueryException("No rates found, invalid currency provided");
 
-        HashMap<LocalDate, String> rates = (HashMap<LocalDate, String>) supportedCurrencies.get(currency);
+        return RangeScan.scan(rateTable, column, start, end, accumulators);
+    }
+
+    // rates, log returns and the rolling statistics of a window of the given number of rates for every business day of the range
+    public TimeSeries getTimeSeries(LocalDate start, LocalDate end, String currency, int window) {
+
+        RateTable rateTable = snapshot.get().getRateTable();
+        int column = rateTable.indexOfCurrency(currency);
+        if (column < 0)
+            throw new InvalidQueryException("No rates found, invalid currency provided");
+        if (start.isAfter(end))
+            throw new InvalidQueryException("Invalid date range");
+        if (window < 1)
+            throw new InvalidQueryException("Invalid window size");
+
+        return TimeSeries.compute(rateTable, column, rateTable.lowerBound((int) start.toEpochDay()), rateTable.upperBound((int) end.toEpochDay()), window);
+    }
+
+    // the dates are turned into a range of rows of the store with two binary searches and the statistic is then answered
+    // by the range index, so the cost no longer depends on how many days the range covers; identical queries share their
+    // result through the stats cache, see StatsCache
+    public Double getStatsForSpecificDates(LocalDate start, LocalDate end, String currency, RangeStatistic statistic) {
+
+        Operation operation = statistic == RangeStatistic.HIGHEST ? Operation.RANGE_MAX : statistic == RangeStatistic.LOWEST ? Operation.RANGE_MIN : Operation.RANGE_AVERAGE;
+        long started = startTimer();
+        try {
+            return computeStatistic(start, end, currency, statistic);
+        } catch (RuntimeException e) {
+            recordError(operation, e);
+            throw e;
+        } finally {
+            stopTimer(operation, started);
+        }
+    }
+
+    private Double computeStatistic(LocalDate start, LocalDate end, String currency, RangeStatistic statistic) {
+
+        RateSnapshot current = snapshot.get();
+        RateTable rateTable = current.getRateTable();
+        int column = rateTable.indexOfCurrency(currency);
 
         // if the given currency is not part of the supported ones abort
-        if (rates == null || rates.isEmpty())
-            throw new RuntimeException("No rates found, invalid currency provided");
-
-        if (start.isBefore(end) || start.isEqual(end)) {
-            // the number of days within the given date range helps to identify cases where deep recursion will
-            // lead to stack overflow conditions
-            long numberOfDaysInRange = ChronoUnit.DAYS.between(start, end);
-
-            LocalDate tempStart = start;
-            LocalDate tempEnd = end;
-
-            int thousands = (int) (numberOfDaysInRange / 1000);
-            int remainingDays = (int) (numberOfDaysInRange % 1000);
-
-            // if it is necessary, the recursive methods will be invoked for 1000 iterations / 1000 days
-            // then the date range will shift to the next frame of 1000 days and so on
-            if (numberOfDaysInRange > 1000) {
-                for (int i = 0; i < thousands; i++) {
-                    if (i > 0)
-                        tempStart = tempStart.plusDays(1000);
-                    tempEnd = tempStart.plusDays(1000);
-                    if (retrieveHighestRate)
-                        result = getHighestRate(tempStart, tempEnd, rates, result);
-                    else
-                        result = getAverageRate(tempStart, tempEnd, rates, total, applicableDays);
+        if (column < 0 || rateTable.size() == 0)
+            throw new InvalidQueryException("No rates found, invalid currency provided");
+
+        if (start.isAfter(end))
+            throw new InvalidQueryException("Invalid date range");
+
+        int fromRow = rateTable.lowerBound((int) start.toEpochDay());
+        int toRow = rateTable.upperBound((int) end.toEpochDay());
+        NumericMode mode = numericMode;
+        RoundingMode rounding = roundingMode;
+
+        return statsCache.get(rateTable, column, fromRow, toRow, statistic, mode, rounding, isExpensive(current, column, statistic, mode),
+                () -> computeStatistic(current, column, fromRow, toRow, statistic, mode, rounding));
+    }
+
+    // whether identical queries should wait for each other: a compressed or lazily loaded table has to be decoded or
+    // read, and the first query of a currency builds its whole index; everything else is answered in O(log n)
+    private static boolean isExpensive(RateSnapshot current, int column, RangeStatistic statistic, NumericMode mode) {
+        RateTable rateTable = current.getRateTable();
+        if (rateTable instanceof CompressedRateStore || rateTable.loadsColumnsLazily())
+            return true;
+        if (statistic == RangeStatistic.AVERAGE && mode == NumericMode.FIXED_POINT)
+            return !current.getFixedPointRates().isBuilt(column);
+        return !current.getRangeIndex().isBuilt(column);
+    }
+
+    private static Double computeStatistic(RateSnapshot current, int column, int fromRow, int toRow, RangeStatistic statistic, NumericMode numericMode, RoundingMode roundingMode) {
+
+        RateTable rateTable = current.getRateTable();
+        RangeIndex rangeIndex = current.getRangeIndex();
+
+        // compressed stores answer from their block summaries, a range index would unpack every column it touches
+        CompressedRateStore compressed = rateTable instanceof CompressedRateStore ? (CompressedRateStore) rateTable : null;
+
+        double result;
+        switch (statistic) {
+            case HIGHEST:
+                result = compressed != null ? compressed.max(column, fromRow, toRow) : rangeIndex.max(column, fromRow, toRow);
+                break;
+            case LOWEST:
+                result = compressed != null ? compressed.min(column, fromRow, toRow) : rangeIndex.min(column, fromRow, toRow);
+                break;
+            default:
+                if (numericMode == NumericMode.FIXED_POINT) {
+                    long average = compressed != null ? compressed.fixedPointAverage(column, fromRow, toRow, roundingMode)
+                            : current.getFixedPointRates().average(column, fromRow, toRow, roundingMode);
+                    result = FixedPoint.toDouble(average, FixedPoint.AMOUNT_SCALE);
+                    break;
                 }
+                result = compressed != null ? compressed.average(column, fromRow, toRow) : rangeIndex.average(column, fromRow, toRow);
+                // the result gets rounded in order to maintain 4 decimal points and match the format of the values from the csv file
+                if (!Double.isNaN(result))
+                    result = round(result);
+        }
 
-                tempStart = tempEnd;
-                tempEnd = tempStart.plusDays(remainingDays);
-            }
+        // ranges without any applicable rate, i.e a weekend, report 0
+        return Double.isNaN(result) ? 0.0 : result;
+    }
+
+    public Double convertCurrencies(LocalDate date, String sourceCurrency, String targetCurrency, Double amount) {
 
-            if (retrieveHighestRate)
-                result = getHighestRate(tempStart, tempEnd, rates, result);
-            else
-                result = getAverageRate(tempStart, tempEnd, rates, total, applicableDays);
-        } else
-            throw new RuntimeException("Invalid date range");
+        Double result = exchange(date, sourceCurrency, targetCurrency, amount);
+        System.out.println("The amount of " + amount + " " + sourceCurrency + " on " + date + " is equal to " + result + " " + targetCurrency + "\n");
 
         return result;
     }
 
-    // recursive method that keeps track of the value of the highest exchange rate
-    private Double getHighestRate(LocalDate start, LocalDate end, HashMap<LocalDate, String> rates, Double highestRate) {
+    // the conversion itself, without the console output, for callers like the http service
+    public double exchange(LocalDate date, String sourceCurrency, String targetCurrency, double amount) {
+
+        long started = startTimer();
+        try {
+            return computeExchange(date, sourceCurrency, targetCurrency, amount);
+        } catch (RuntimeException e) {
+            recordError(Operation.CONVERT, e);
+            throw e;
+        } finally {
+            stopTimer(Operation.CONVERT, started);
+        }
+    }
 
-        if (start.isBefore(end) || start.isEqual(end)) {
-            String rate = getRate(start, rates);
-            // days with non-applicable rates are skipped
-            if (!rate.equals("") && !rate.equalsIgnoreCase("N/A")) {
-                Double currentRate = Double.parseDouble(rate);
-                if (currentRate > highestRate)
-                    highestRate = currentRate;
-            }
-            start = start.plusDays(1);
+    // same as exchange, but the amount and the result are held in ten thousandths and the conversion is always done in
+    // fixed point arithmetic with the parser's rounding mode, i.e 100000 GBP are 10.0000 GBP
+    public long exchangeFixedPoint(LocalDate date, String sourceCurrency, String targetCurrency, long amount) {
+
+        long started = startTimer();
+        try {
+            return computeFixedPointExchange(snapshot.get(), date, sourceCurrency, targetCurrency, amount);
+        } catch (RuntimeException e) {
+            recordError(Operation.CONVERT, e);
+            throw e;
+        } finally {
+            stopTimer(Operation.CONVERT, started);
         }
+    }
 
-        return (start.isAfter(end)) ? highestRate : getHighestRate(start, end, rates, highestRate);
+    private long computeFixedPointExchange(RateSnapshot current, LocalDate date, String sourceCurrency, String targetCurrency, long amount) {
+
+        if (amount <= 0)
+            throw new InvalidQueryException(ConversionError.INVALID_AMOUNT.getMessage());
+
+        RateTable rateTable = current.getRateTable();
+        CurrencyGraph graph = currencyGraph(current);
+        if (graph != null) {
+            int row = rateTable.indexOfDate(date);
+            if (row < 0)
+                throw new InvalidQueryException(ConversionError.SOURCE_RATE_NOT_APPLICABLE.getMessage());
+            int sourceNode = sourceNodeOf(graph, sourceCurrency);
+            int targetNode = targetNodeOf(graph, targetCurrency);
+            if (hasRates(rateTable, row, sourceNode, targetNode))
+                return convertFixedPoint(current, row, sourceNode, targetNode, amount);
+            return convertFixedPoint(graphRate(graph, row, sourceNode, true), graphRate(graph, row, targetNode, false), amount);
+        }
+
+        int sourceColumn = sourceColumnOf(rateTable, sourceCurrency);
+        int targetColumn = targetColumnOf(rateTable, targetCurrency);
+        int row = conversionRow(current, date, sourceColumn, targetColumn, DatePolicy.EXACT);
+
+        return convertFixedPoint(current, row, sourceColumn, targetColumn, amount);
     }
 
-    // recursive method that keeps track of the properties required to calculate the average exchange rate
-    private Double getAverageRate(LocalDate start, LocalDate end, HashMap<LocalDate, String> rates, Double total, int applicableDays) {
-        Double average = 0.0;
+    private long convertFixedPoint(RateSnapshot current, int row, int sourceColumn, int targetColumn, long amount) {
 
-        // when the date range has been exhausted
-        if (start.isAfter(end)) {
-            // make sure that division by 0 is avoided
-            if (applicableDays != 0) {
-                average = total / applicableDays;
-                // the result gets formatted in order to maintain 4 decimal points and match the format of the values from the csv file
-                String avg = String.format("%.4f", average);
-                average = Double.parseDouble(avg);
-            }
-        } else {
-            String rate = getRate(start, rates);
-            if (!rate.equals("") && !rate.equalsIgnoreCase("N/A")) {
-                total += Double.parseDouble(rate);
-                applicableDays++;
+        FixedPointRates fixedPointRates = current.getFixedPointRates();
+        if (fixedPointRates.getRate(sourceColumn, row) == FixedPoint.NOT_APPLICABLE)
+            throw new InvalidQueryException(ConversionError.SOURCE_RATE_NOT_APPLICABLE.getMessage());
+        if (fixedPointRates.getRate(targetColumn, row) == FixedPoint.NOT_APPLICABLE)
+            throw new InvalidQueryException(ConversionError.TARGET_RATE_NOT_APPLICABLE.getMessage());
+
+        return fixedPointRates.convert(sourceColumn, targetColumn, row, amount, roundingMode);
+    }
+
+    // same arithmetic as the fixed point columns for rates resolved through the links, scaled to millionths the same way
+    private long convertFixedPoint(double sourceRate, double targetRate, long amount) {
+        return FixedPoint.multiplyDivide(amount, FixedPoint.toFixed(targetRate, FixedPoint.RATE_SCALE),
+                FixedPoint.toFixed(sourceRate, FixedPoint.RATE_SCALE), roundingMode);
+    }
+
+    // same as exchange, but when the date has no rates for either currency, i.e a weekend, a holiday or a gap of one
+    // of the currencies, the policy picks another date where both have one; the result tells which date was used
+    public Conversion exchange(LocalDate date, String sourceCurrency, String targetCurrency, double amount, DatePolicy policy) {
+
+        long started = startTimer();
+        try {
+            RateSnapshot current = snapshot.get();
+            if (amount <= 0)
+                throw new InvalidQueryException(ConversionError.INVALID_AMOUNT.getMessage());
+
+            RateTable rateTable = current.getRateTable();
+            CurrencyGraph graph = currencyGraph(current);
+            if (graph != null) {
+                // the links already bridge the gaps of single currencies, so the policy only has to find a date
+                int row = policy.resolve(rateTable, (int) date.toEpochDay());
+                if (row < 0)
+                    throw new InvalidQueryException(ConversionError.SOURCE_RATE_NOT_APPLICABLE.getMessage());
+                double result = convertThroughGraph(current, graph, row, sourceCurrency, targetCurrency, amount);
+                return new Conversion(date, rateTable.getLocalDate(row), sourceCurrency, targetCurrency, amount, result);
             }
-            average = getAverageRate(start.plusDays(1), end, rates, total, applicableDays);
+
+            int sourceColumn = sourceColumnOf(rateTable, sourceCurrency);
+            int targetColumn = targetColumnOf(rateTable, targetCurrency);
+            int row = conversionRow(current, date, sourceColumn, targetColumn, policy);
+            double result = convertRow(current, row, sourceColumn, targetColumn, amount);
+
+            return new Conversion(date, rateTable.getLocalDate(row), sourceCurrency, targetCurrency, amount, result);
+        } catch (RuntimeException e) {
+            recordError(Operation.CONVERT, e);
+            throw e;
+        } finally {
+            stopTimer(Operation.CONVERT, started);
         }
+    }
+
+    private double computeExchange(LocalDate date, String sourceCurrency, String targetCurrency, double amount) {
 
-        return average;
+        if (amount <= 0)
+            throw new InvalidQueryException(ConversionError.INVALID_AMOUNT.getMessage());
+
+        RateSnapshot current = snapshot.get();
+        RateTable rateTable = current.getRateTable();
+        CurrencyGraph graph = currencyGraph(current);
+        if (graph != null) {
+            int row = rateTable.indexOfDate(date);
+            if (row < 0)
+                throw new InvalidQueryException(ConversionError.SOURCE_RATE_NOT_APPLICABLE.getMessage());
+            return convertThroughGraph(current, graph, row, sourceCurrency, targetCurrency, amount);
+        }
+
+        int sourceColumn = sourceColumnOf(rateTable, sourceCurrency);
+        int targetColumn = targetColumnOf(rateTable, targetCurrency);
+        // a single binary search serves both currencies
+        int row = conversionRow(current, date, sourceColumn, targetColumn, DatePolicy.EXACT);
+
+        return convertRow(current, row, sourceColumn, targetColumn, amount);
     }
 
-    // helper method to retrieve the exchange rate
-    private String getRate(LocalDate date, HashMap<LocalDate, String> rates) {
-        if (rates.containsKey(date))
-            return rates.get(date);
-        else
-            return "";
+    // a pair with rates of its own on the date is converted exactly like without links, through the cross rate cache or
+    // the fixed point columns, only a pair that needs a link uses the rates resolved by the graph, in the same numeric mode
+    private double convertThroughGraph(RateSnapshot current, CurrencyGraph graph, int row, String sourceCurrency, String targetCurrency, double amount) {
+
+        int sourceNode = sourceNodeOf(graph, sourceCurrency);
+        int targetNode = targetNodeOf(graph, targetCurrency);
+        if (hasRates(current.getRateTable(), row, sourceNode, targetNode))
+            return convertRow(current, row, sourceNode, targetNode, amount);
+
+        double sourceRate = graphRate(graph, row, sourceNode, true);
+        double targetRate = graphRate(graph, row, targetNode, false);
+        if (numericMode == NumericMode.FIXED_POINT)
+            return FixedPoint.toDouble(convertFixedPoint(sourceRate, targetRate, FixedPoint.toFixed(amount, FixedPoint.AMOUNT_SCALE)), FixedPoint.AMOUNT_SCALE);
+        return round(1 / sourceRate * targetRate * amount);
     }
 
-    public Double convertCurrencies(LocalDate date, String sourceCurrency, String targetCurrency, Double amount) {
+    private static int sourceNodeOf(CurrencyGraph graph, String sourceCurrency) {
+        int sourceNode = graph.indexOfCurrency(sourceCurrency);
+        if (sourceNode < 0 || graph.getRateTable().size() == 0)
+            throw new InvalidQueryException(ConversionError.INVALID_SOURCE_CURRENCY.getMessage());
+        return sourceNode;
+    }
 
+    private static int targetNodeOf(CurrencyGraph graph, String targetCurrency) {
+        int targetNode = graph.indexOfCurrency(targetCurrency);
+        if (targetNode < 0)
+            throw new InvalidQueryException(ConversionError.INVALID_TARGET_CURRENCY.getMessage());
+        return targetNode;
+    }
 
-        Double exchangedAmount = 0.0;
+    // true when both nodes are columns of the table with a rate on the row, the nodes of the table share their index
+    // with its columns
+    private static boolean hasRates(RateTable rateTable, int row, int sourceNode, int targetNode) {
+        int columns = rateTable.currencyCount();
+        return sourceNode < columns && targetNode < columns
+                && !Double.isNaN(rateTable.getRate(sourceNode, row)) && !Double.isNaN(rateTable.getRate(targetNode, row));
+    }
 
-        if (amount <= 0)
-            throw new RuntimeException("Invalid amount provided, aborting conversion");
+    private static double graphRate(CurrencyGraph graph, int row, int node, boolean source) {
+        double rate = graph.getRate(node, row);
+        if (Double.isNaN(rate))
+            throw new InvalidQueryException((source ? ConversionError.SOURCE_RATE_NOT_APPLICABLE : ConversionError.TARGET_RATE_NOT_APPLICABLE).getMessage());
+        return rate;
+    }
+
+    // half up to 4 decimals like the rates of the csv file, on the shortest decimal representation of the value the way
+    // String.format does it, but without depending on the default locale for the decimal separator
+    private static double round(double value) {
+        return new BigDecimal(Double.toString(value)).setScale(4, RoundingMode.HALF_UP).doubleValue();
+    }
+
+    private static int sourceColumnOf(RateTable rateTable, String sourceCurrency) {
+        int sourceColumn = rateTable.indexOfCurrency(sourceCurrency);
+        if (sourceColumn < 0 || rateTable.size() == 0)
+            throw new InvalidQueryException(ConversionError.INVALID_SOURCE_CURRENCY.getMessage());
+        return sourceColumn;
+    }
+
+    private static int targetColumnOf(RateTable rateTable, String targetCurrency) {
+        int targetColumn = rateTable.indexOfCurrency(targetCurrency);
+        if (targetColumn < 0 || rateTable.size() == 0)
+            throw new InvalidQueryException(ConversionError.INVALID_TARGET_CURRENCY.getMessage());
+        return targetColumn;
+    }
 
-        HashMap<LocalDate, String> sourceRates = (HashMap<LocalDate, String>) supportedCurrencies.get(sourceCurrency);
-        HashMap<LocalDate, String> targetRates = (HashMap<LocalDate, String>) supportedCurrencies.get(targetCurrency);
+    // the row whose rates a conversion uses, exact dates are binary searched while the other policies follow the skip
+    // arrays of both currencies, so they never land on a date where either rate is not applicable
+    private static int conversionRow(RateSnapshot current, LocalDate date, int sourceColumn, int targetColumn, DatePolicy policy) {
 
-        if (sourceRates == null || sourceRates.isEmpty())
-            throw new RuntimeException("No rates found, invalid source currency provided");
+        if (policy == DatePolicy.EXACT) {
+            int row = current.getRateTable().indexOfDate(date);
+            if (row < 0)
+                throw new InvalidQueryException(ConversionError.SOURCE_RATE_NOT_APPLICABLE.getMessage());
+            return row;
+        }
 
-        if (targetRates == null || targetRates.isEmpty())
-            throw new RuntimeException("No rates found, invalid target currency provided");
+        ValidRows validRows = current.getValidRows();
+        int epochDay = (int) date.toEpochDay();
+        int row = validRows.resolve(policy, epochDay, sourceColumn, targetColumn);
+        if (row < 0) {
+            // tells apart which of the two currencies has no rate in reach of the policy
+            if (validRows.resolve(policy, epochDay, sourceColumn, sourceColumn) < 0)
+                throw new InvalidQueryException(ConversionError.SOURCE_RATE_NOT_APPLICABLE.getMessage());
+            throw new InvalidQueryException(ConversionError.TARGET_RATE_NOT_APPLICABLE.getMessage());
+        }
+        return row;
+    }
 
-        String sourceRate = getRate(date, sourceRates);
-        String targetRate = getRate(date, targetRates);
+    private double convertRow(RateSnapshot current, int row, int sourceColumn, int targetColumn, double amount) {
 
-        if (sourceRate.equals("") || sourceRate.equalsIgnoreCase("N/A"))
-            throw new RuntimeException("The rate for the source currency is not applicable, aborting conversion");
+        // amounts with more than 4 decimals get rounded to 4 first, the result carries no more precision than that anyway
+        if (numericMode == NumericMode.FIXED_POINT)
+            return FixedPoint.toDouble(convertFixedPoint(current, row, sourceColumn, targetColumn,
+                    FixedPoint.toFixed(amount, FixedPoint.AMOUNT_SCALE)), FixedPoint.AMOUNT_SCALE);
 
-        if (targetRate.equals("") || targetRate.equalsIgnoreCase("N/A"))
-            throw new RuntimeException("The rate for the target currency is not applicable, aborting conversion");
+        RateTable rateTable = current.getRateTable();
+        double exchangedAmount;
 
         // the csv file contains the rates that represent what is the equivalent of 1 EUR to the rest of the currencies
-        // since we are not converting to euros, we have to invert the source currency's rate
-        Double inverseSourceRate = 1 / Double.parseDouble(sourceRate);
-        exchangedAmount = inverseSourceRate * Double.parseDouble(targetRate);
-        Double result = exchangedAmount * amount;
-        String resultString = String.format("%.4f", result);
-        result = Double.parseDouble(resultString);
-        System.out.println("The amount of " + amount + " " + sourceCurrency + " on " + date + " is equal to " + result + " " + targetCurrency + "\n");
+        // since we are not converting to euros, the cached matrix holds the inverse of the source rate times the target rate
+        // a matrix would read every column of the date, so tables loading their columns lazily are only asked for two
+        if (rateTable.loadsColumnsLazily()) {
+            exchangedAmount = 1 / rateTable.getRate(sourceColumn, row) * rateTable.getRate(targetColumn, row);
+        } else {
+            double[] crossRates = crossRateCache.matrix(rateTable, row);
+            exchangedAmount = crossRates[sourceColumn * rateTable.currencyCount() + targetColumn];
+        }
 
-        return result;
+        if (Double.isNaN(exchangedAmount)) {
+            if (Double.isNaN(rateTable.getRate(sourceColumn, row)))
+                throw new InvalidQueryException(ConversionError.SOURCE_RATE_NOT_APPLICABLE.getMessage());
+            throw new InvalidQueryException(ConversionError.TARGET_RATE_NOT_APPLICABLE.getMessage());
+        }
+
+        return round(exchangedAmount * amount);
+    }
+
+    // converts a whole batch against the current snapshot, see BatchConverter for the details
+    // nothing is printed and failed conversions are reported through the errors array instead of exceptions
+    public int convertCurrencies(ConversionBatch batch, double[] results, ConversionError[] errors) {
+        long started = startTimer();
+        try {
+            RateSnapshot current = snapshot.get();
+            int failures = BatchConverter.convert(current.getRateTable(), currencyGraph(current), batch, results, errors);
+            // failed items are counted by cause, the batch itself still succeeded
+            if (failures > 0 && started != 0) {
+                for (int i = 0; i < batch.size(); i++) {
+                    if (errors[i] != null)
+                        metricsSink.recordError(Operation.CONVERT_BATCH, errors[i].name());
+                }
+            }
+            return failures;
+        } catch (RuntimeException e) {
+            recordError(Operation.CONVERT_BATCH, e);
+            throw e;
+        } finally {
+            stopTimer(Operation.CONVERT_BATCH, started);
+        }
+    }
+
+    // 0 when the metrics are disabled, so that stopTimer knows there is nothing to record
+    private long startTimer() {
+        return metricsSink.isEnabled() ? System.nanoTime() : 0;
+    }
+
+    private void stopTimer(Operation operation, long started) {
+        if (started != 0)
+            metricsSink.recordLatency(operation, System.nanoTime() - started);
+    }
+
+    private void recordError(Operation operation, Exception e) {
+        MetricsSink sink = metricsSink;
+        if (sink.isEnabled())
+            sink.recordError(operation, causeOf(e));
+    }
+
+    // a fixed cause for the metrics, the message itself may carry anything a caller passed in
+    static String causeOf(Exception e) {
+        for (ConversionError error : ConversionError.values()) {
+            if (error.getMessage().equals(e.getMessage()))
+                return error.name();
+        }
+        return e.getClass().getSimpleName();
+    }
+
+    private interface Loader {
+        // returns the number of rows that were loaded
+        int load() throws IOException;
+    }
+
+    private void measureLoad(Operation operation, Loader loader, LongSupplier bytes) throws IOException {
+        long started = startTimer();
+        try {
+            int rows = loader.load();
+            if (started != 0)
+                metricsSink.recordIngest(rows, bytes.getAsLong());
+        } catch (IOException | RuntimeException e) {
+            recordError(operation, e);
+            throw e;
+        } finally {
+            stopTimer(operation, started);
+        }
+    }
+
+    private static final class CountingInputStream extends FilterInputStream {
+        private long count;
+
+        private CountingInputStream(InputStream inputStream) {
+            super(inputStream);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0)
+                count++;
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int read = super.read(buffer, offset, length);
+            if (read > 0)
+                count += read;
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            count += skipped;
+            return skipped;
+        }
+
+        // the stream belongs to the caller
+        @Override
+        public void close() {
+        }
     }
 }
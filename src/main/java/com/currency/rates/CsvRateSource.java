@@ -0,0 +1,149 @@
+package com.currency.rates;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+// csv file taking part in a MergedRateTable
+// the file is read once up front for its header and dates, and then once more every time a column gets loaded, keeping
+// only that column; between loads nothing but the dates stays in memory
+//
+// a single row is read by parsing the file only up to the line of its date, which for the newest first files of the ecb
+// is close to the top for the recent dates that get asked for the most
+public class CsvRateSource implements RateSource {
+
+    // ends the parsing of the file once the line that was asked for has been read
+    private static final class StopReading extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        private StopReading() {
+            super(null, null, false, false);
+        }
+    }
+
+    private static final StopReading STOP_READING = new StopReading();
+
+    public interface Opener {
+        InputStream open() throws IOException;
+    }
+
+    private final String name;
+    private final Opener opener;
+    private final String[] currencies;
+    private final int[] dates;
+    // position within dates of every line of the file, a date listed twice keeps the rates of its last line
+    private final int[] positions;
+    // the last line of the file holding every date, the one whose rates count
+    private final int[] lastLines;
+
+    public CsvRateSource(String name, Opener opener) throws IOException {
+        this.name = name;
+        this.opener = opener;
+
+        String[][] header = new String[1][];
+        int[][] fileDates = {new int[256]};
+        int[] lines = new int[1];
+        read(new RateRowVisitor() {
+            @Override
+            public void header(String line, String[] codes) {
+                header[0] = codes;
+            }
+
+            @Override
+            public void row(int epochDay, double[] rates) {
+                if (lines[0] == fileDates[0].length)
+                    fileDates[0] = Arrays.copyOf(fileDates[0], lines[0] * 2);
+                fileDates[0][lines[0]++] = epochDay;
+            }
+        });
+
+        this.currencies = header[0] == null ? new String[0] : header[0];
+        int[] sorted = Arrays.copyOf(fileDates[0], lines[0]);
+        Arrays.sort(sorted);
+        int unique = 0;
+        for (int i = 0; i < sorted.length; i++) {
+            if (unique == 0 || sorted[unique - 1] != sorted[i])
+                sorted[unique++] = sorted[i];
+        }
+        this.dates = Arrays.copyOf(sorted, unique);
+        this.positions = new int[lines[0]];
+        this.lastLines = new int[unique];
+        for (int line = 0; line < positions.length; line++) {
+            positions[line] = Arrays.binarySearch(dates, fileDates[0][line]);
+            lastLines[positions[line]] = line;
+        }
+    }
+
+    private void read(RateRowVisitor visitor) throws IOException {
+        try (InputStream inputStream = opener.open()) {
+            RateCsvReader.read(inputStream, visitor);
+        }
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public String[] getCurrencies() {
+        return currencies.clone();
+    }
+
+    @Override
+    public int[] getDates() {
+        return dates.clone();
+    }
+
+    @Override
+    public double[] loadColumn(int column) throws IOException {
+        double[] rates = new double[dates.length];
+        int[] line = new int[1];
+        read(new RateRowVisitor() {
+            @Override
+            public void header(String header, String[] codes) {
+                if (!Arrays.equals(codes, currencies))
+                    throw new RuntimeException("The header of " + name + " has changed since it was registered");
+            }
+
+            @Override
+            public void row(int epochDay, double[] rowRates) {
+                if (line[0] >= positions.length || dates[positions[line[0]]] != epochDay)
+                    throw new RuntimeException("The dates of " + name + " have changed since it was registered");
+                rates[positions[line[0]++]] = rowRates[column];
+            }
+        });
+        if (line[0] != positions.length)
+            throw new RuntimeException("The dates of " + name + " have changed since it was registered");
+
+        return rates;
+    }
+
+    @Override
+    public double[] loadRow(int row) throws IOException {
+        double[] rates = new double[currencies.length];
+        int[] line = new int[1];
+        try {
+            read(new RateRowVisitor() {
+                @Override
+                public void header(String header, String[] codes) {
+                    if (!Arrays.equals(codes, currencies))
+                        throw new RuntimeException("The header of " + name + " has changed since it was registered");
+                }
+
+                @Override
+                public void row(int epochDay, double[] rowRates) {
+                    if (line[0] >= positions.length || dates[positions[line[0]]] != epochDay)
+                        throw new RuntimeException("The dates of " + name + " have changed since it was registered");
+                    if (line[0]++ == lastLines[row]) {
+                        System.arraycopy(rowRates, 0, rates, 0, rates.length);
+                        throw STOP_READING;
+                    }
+                }
+            });
+        } catch (StopReading e) {
+            return rates;
+        }
+        throw new RuntimeException("The dates of " + name + " have changed since it was registered");
+    }
+}
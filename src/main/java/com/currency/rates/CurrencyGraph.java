@@ -0,0 +1,175 @@
+package com.currency.rates;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+// conversions between any two currencies that can be reached from each other on a date
+// the currencies are the nodes of a graph: the base currency of the file, EUR for the ecb, is connected to every
+// currency with a rate on that date and the configured CurrencyLinks add edges of their own, so a currency without a
+// rate, i.e CYP after 2008, is still converted through its peg or its successor
+//
+// the graph of a date is resolved once into the rate of every reachable currency against the base, following the path
+// with the fewest edges, a rate of the file always winning over a link; the resolved rates of the most recently used
+// dates are cached, so a conversion on a cached date is two array reads and two multiplications
+public class CurrencyGraph {
+
+    public static final String DEFAULT_BASE = "EUR";
+
+    private static final int CACHE_SIZE = 64;
+
+    private static final class Resolved {
+        private final int row;
+        // units of every currency worth one unit of the base, NaN for the ones that cannot be reached
+        private final double[] rates;
+
+        private Resolved(int row, double[] rates) {
+            this.row = row;
+            this.rates = rates;
+        }
+    }
+
+    private final RateTable rateTable;
+    private final CurrencyLinks currencyLinks;
+    // the currencies of the table come first, so a node and a column share their index, then the base and the
+    // currencies only known from the links
+    private final String[] currencies;
+    private final Map<String, Integer> nodes;
+    private final int baseNode;
+    private final int[] linkCurrencies;
+    private final int[] linkBases;
+    private final double[] linkFactors;
+    private final List<CurrencyLinks.Link> links;
+    // direct mapped by row, a colliding date simply replaces the previous one
+    private final AtomicReferenceArray<Resolved> cache = new AtomicReferenceArray<>(CACHE_SIZE);
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    public CurrencyGraph(RateTable rateTable, CurrencyLinks currencyLinks) {
+        this(rateTable, currencyLinks, DEFAULT_BASE);
+    }
+
+    public CurrencyGraph(RateTable rateTable, CurrencyLinks currencyLinks, String base) {
+        this.rateTable = rateTable;
+        this.currencyLinks = currencyLinks;
+        this.links = currencyLinks.getLinks();
+
+        Set<String> codes = new LinkedHashSet<>();
+        for (int column = 0; column < rateTable.currencyCount(); column++)
+            codes.add(rateTable.getCurrency(column));
+        codes.add(base.toUpperCase());
+        for (CurrencyLinks.Link link : links) {
+            codes.add(link.currency);
+            codes.add(link.base);
+        }
+
+        this.currencies = codes.toArray(new String[0]);
+        this.nodes = new HashMap<>();
+        for (int node = 0; node < currencies.length; node++)
+            nodes.put(currencies[node], node);
+        this.baseNode = nodes.get(base.toUpperCase());
+
+        this.linkCurrencies = new int[links.size()];
+        this.linkBases = new int[links.size()];
+        this.linkFactors = new double[links.size()];
+        for (int i = 0; i < links.size(); i++) {
+            linkCurrencies[i] = nodes.get(links.get(i).currency);
+            linkBases[i] = nodes.get(links.get(i).base);
+            linkFactors[i] = links.get(i).factor;
+        }
+    }
+
+    public RateTable getRateTable() {
+        return rateTable;
+    }
+
+    public CurrencyLinks getCurrencyLinks() {
+        return currencyLinks;
+    }
+
+    public int currencyCount() {
+        return currencies.length;
+    }
+
+    public String getCurrency(int node) {
+        return currencies[node];
+    }
+
+    // the node of the currency, -1 when it is neither part of the table, the base nor any link
+    public int indexOfCurrency(String currency) {
+        Integer node = currency == null ? null : nodes.get(currency);
+        return node == null ? -1 : node;
+    }
+
+    // units of the currency worth one unit of the base on the date of the row, NaN when it cannot be reached
+    public double getRate(int node, int row) {
+        return rates(row)[node];
+    }
+
+    // the factor converting one unit of the source currency into the target currency, NaN when either cannot be reached
+    public double crossRate(int sourceNode, int targetNode, int row) {
+        double[] rates = rates(row);
+        return 1 / rates[sourceNode] * rates[targetNode];
+    }
+
+    private double[] rates(int row) {
+        int slot = row & (CACHE_SIZE - 1);
+        Resolved resolved = cache.get(slot);
+        if (resolved != null && resolved.row == row) {
+            hits.increment();
+            return resolved.rates;
+        }
+
+        misses.increment();
+        double[] rates = resolve(row);
+        cache.set(slot, new Resolved(row, rates));
+        return rates;
+    }
+
+    // breadth first from the base: the rates of the file are one edge away, every pass over the links reaches the
+    // currencies one edge further, only starting from the ones that were reached in an earlier pass
+    private double[] resolve(int row) {
+        double[] rates = new double[currencies.length];
+        rateTable.copyRow(row, rates);
+        Arrays.fill(rates, rateTable.currencyCount(), rates.length, Double.NaN);
+        rates[baseNode] = 1;
+
+        int epochDay = rateTable.getDate(row);
+        boolean[] reached = new boolean[rates.length];
+        boolean progress = true;
+        while (progress) {
+            progress = false;
+            for (int node = 0; node < rates.length; node++)
+                reached[node] = !Double.isNaN(rates[node]);
+
+            for (int i = 0; i < linkFactors.length; i++) {
+                if (!links.get(i).isActive(epochDay))
+                    continue;
+                int currency = linkCurrencies[i];
+                int base = linkBases[i];
+                if (reached[base] && Double.isNaN(rates[currency])) {
+                    rates[currency] = linkFactors[i] * rates[base];
+                    progress = true;
+                } else if (reached[currency] && Double.isNaN(rates[base])) {
+                    rates[base] = rates[currency] / linkFactors[i];
+                    progress = true;
+                }
+            }
+        }
+
+        return rates;
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+}
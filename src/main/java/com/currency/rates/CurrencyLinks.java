@@ -0,0 +1,140 @@
+package com.currency.rates;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+// fixed relations between currencies that are not part of the rates file, i.e pegs or the conversion of a legacy
+// currency into its successor; they let CurrencyGraph convert currencies on dates the file has no rate for them
+//
+// every line of the configuration holds one link, empty lines and lines starting with # are ignored:
+//
+//   CYP = 0.585274 EUR                     1 EUR is worth 0.585274 CYP, the same orientation as the rates file
+//   TRL = 1000000 TRY since 2005-01-01     the link only applies from that date on
+//   XYZ = 2.5 USD until 2010-12-31         ... or up to and including that date, both can be combined
+public final class CurrencyLinks {
+
+    public static final CurrencyLinks NONE = new CurrencyLinks(Collections.emptyList());
+
+    static final class Link {
+        final String currency;
+        final double factor;
+        final String base;
+        final int since;
+        final int until;
+
+        private Link(String currency, double factor, String base, int since, int until) {
+            this.currency = currency;
+            this.factor = factor;
+            this.base = base;
+            this.since = since;
+            this.until = until;
+        }
+
+        boolean isActive(int epochDay) {
+            return epochDay >= since && epochDay <= until;
+        }
+    }
+
+    private final List<Link> links;
+
+    private CurrencyLinks(List<Link> links) {
+        this.links = Collections.unmodifiableList(links);
+    }
+
+    public static CurrencyLinks load(Path path) throws IOException {
+        try (Reader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            return parse(reader);
+        }
+    }
+
+    // a configuration from the classpath, like the bundled currency-links.txt
+    public static CurrencyLinks resource(String name) throws IOException {
+        InputStream inputStream = CurrencyLinks.class.getClassLoader().getResourceAsStream(name);
+        if (inputStream == null)
+            throw new IOException("Resource not found: " + name);
+        try (Reader reader = new InputStreamReader(inputStream, StandardCharsets.UTF_8)) {
+            return parse(reader);
+        }
+    }
+
+    public static CurrencyLinks parse(String configuration) {
+        try {
+            return parse(new StringReader(configuration));
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public static CurrencyLinks parse(Reader reader) throws IOException {
+        List<Link> links = new ArrayList<>();
+        BufferedReader lines = new BufferedReader(reader);
+        String line;
+        int number = 0;
+        while ((line = lines.readLine()) != null) {
+            number++;
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#"))
+                continue;
+            links.add(parseLine(line, number));
+        }
+        return new CurrencyLinks(links);
+    }
+
+    private static Link parseLine(String line, int number) {
+        String[] tokens = line.replace("=", " = ").trim().split("\\s+");
+        if (tokens.length < 4 || tokens.length % 2 != 0 || !tokens[1].equals("="))
+            throw new RuntimeException("Invalid currency link on line " + number + ": " + line);
+
+        double factor;
+        try {
+            factor = Double.parseDouble(tokens[2]);
+        } catch (NumberFormatException e) {
+            throw new RuntimeException("Invalid factor on line " + number + ": " + tokens[2]);
+        }
+        if (!(factor > 0) || Double.isInfinite(factor))
+            throw new RuntimeException("Invalid factor on line " + number + ": " + tokens[2]);
+
+        int since = Integer.MIN_VALUE;
+        int until = Integer.MAX_VALUE;
+        for (int i = 4; i < tokens.length; i += 2) {
+            int epochDay;
+            try {
+                epochDay = (int) LocalDate.parse(tokens[i + 1]).toEpochDay();
+            } catch (DateTimeParseException e) {
+                throw new RuntimeException("Invalid date on line " + number + ": " + tokens[i + 1]);
+            }
+            if (tokens[i].equalsIgnoreCase("since"))
+                since = epochDay;
+            else if (tokens[i].equalsIgnoreCase("until"))
+                until = epochDay;
+            else
+                throw new RuntimeException("Invalid currency link on line " + number + ": " + line);
+        }
+
+        String currency = tokens[0].toUpperCase();
+        String base = tokens[3].toUpperCase();
+        if (currency.equals(base))
+            throw new RuntimeException("A currency cannot be linked to itself on line " + number);
+        return new Link(currency, factor, base, since, until);
+    }
+
+    List<Link> getLinks() {
+        return links;
+    }
+
+    public int size() {
+        return links.size();
+    }
+}
@@ -0,0 +1,70 @@
+package com.currency.rates;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+
+// reusable view of the rates of a single date: a primitive array of rates plus a bitmap telling which ones are valid
+// the view is filled in place by CsvParser.retrieveRatesForSpecificDate, so a caller asking for many dates can keep
+// reusing one instance without allocating; it is not thread safe, every thread should use its own view
+public class DailyRates {
+
+    private int epochDay;
+    private int currencyCount;
+    private double[] rates = new double[0];
+    private long[] validity = new long[0];
+
+    // copies the rates of the given row of the table into this view, growing the arrays when needed
+    public void fill(RateTable rateTable, int row) {
+        int currencies = rateTable.currencyCount();
+        if (rates.length < currencies) {
+            rates = new double[currencies];
+            validity = new long[(currencies + 63) >>> 6];
+        } else {
+            Arrays.fill(validity, 0);
+        }
+
+        epochDay = rateTable.getDate(row);
+        currencyCount = currencies;
+        rateTable.copyRow(row, rates);
+        for (int column = 0; column < currencies; column++) {
+            if (!Double.isNaN(rates[column]))
+                validity[column >>> 6] |= 1L << column;
+        }
+    }
+
+    public int getEpochDay() {
+        return epochDay;
+    }
+
+    public LocalDate getDate() {
+        return LocalDate.ofEpochDay(epochDay);
+    }
+
+    // the columns follow the order of the currencies of the table the view was filled from
+    public int currencyCount() {
+        return currencyCount;
+    }
+
+    public boolean isValid(int column) {
+        checkColumn(column);
+        return (validity[column >>> 6] & (1L << column)) != 0;
+    }
+
+    // NaN for a rate that is not applicable on that date
+    public double getRate(int column) {
+        checkColumn(column);
+        return rates[column];
+    }
+
+    public int validCount() {
+        int count = 0;
+        for (long word : validity)
+            count += Long.bitCount(word);
+        return count;
+    }
+
+    private void checkColumn(int column) {
+        if (column < 0 || column >= currencyCount)
+            throw new IndexOutOfBoundsException("Column " + column + " out of " + currencyCount);
+    }
+}
@@ -0,0 +1,43 @@
+package com.currency.rates;
+
+// which date a lookup falls back to when the requested one has no rates, i.e a weekend or a holiday
+public enum DatePolicy {
+
+    // only the requested date, the lookup fails otherwise
+    EXACT,
+
+    // the closest date before the requested one, the rates that were in effect on that day
+    PREVIOUS,
+
+    // the closest date after the requested one
+    NEXT,
+
+    // whichever of the previous and the next date is closer, the previous one on a tie
+    NEAREST;
+
+    // the row of the table the policy picks for the given epoch day, -1 when there is none
+    // the dates are binary searched, so this costs O(log n) whatever the distance to the picked date
+    public int resolve(RateTable rateTable, int epochDay) {
+        int next = rateTable.lowerBound(epochDay);
+        if (next < rateTable.size() && rateTable.getDate(next) == epochDay)
+            return next;
+
+        switch (this) {
+            case PREVIOUS:
+                return next - 1;
+            case NEXT:
+                return next < rateTable.size() ? next : -1;
+            case NEAREST:
+                return closer(rateTable, epochDay, next - 1, next < rateTable.size() ? next : -1);
+            default:
+                return -1;
+        }
+    }
+
+    // the closer of two candidate rows, either of which might be -1
+    static int closer(RateTable rateTable, int epochDay, int previous, int next) {
+        if (previous < 0 || next < 0)
+            return previous < 0 ? next : previous;
+        return epochDay - rateTable.getDate(previous) <= rateTable.getDate(next) - epochDay ? previous : next;
+    }
+}
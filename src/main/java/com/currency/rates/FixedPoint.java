@@ -0,0 +1,121 @@
+package com.currency.rates;
+
+import java.math.RoundingMode;
+
+// integer arithmetic on scaled long values, i.e 1.1876 held as 1187600 millionths
+// products are kept in 128 bits before they are divided, so a * b / c only fails when the final quotient does not fit
+// a long, and the quotient is rounded exactly according to the given rounding mode; nothing is allocated or boxed
+public final class FixedPoint {
+
+    // rates are held in millionths, the ecb publishes at most 6 decimals
+    public static final long RATE_SCALE = 1_000_000L;
+    // amounts and conversion results are held in ten thousandths, the precision the double mode rounds to
+    public static final long AMOUNT_SCALE = 10_000L;
+    // marks a rate that is not applicable, like NaN for the doubles
+    public static final long NOT_APPLICABLE = Long.MIN_VALUE;
+
+    private static final long LOW_BITS = 0xFFFFFFFFL;
+
+    private FixedPoint() {
+    }
+
+    // the nearest scaled value, exact for any value with no more decimals than the scale, NaN becomes NOT_APPLICABLE
+    public static long toFixed(double value, long scale) {
+        if (Double.isNaN(value))
+            return NOT_APPLICABLE;
+        double scaled = value * scale;
+        if (Math.abs(scaled) >= 0x1p63)
+            throw new ArithmeticException("Value out of the fixed point range: " + value);
+        return Math.round(scaled);
+    }
+
+    // the double nearest to the scaled value, the same double Double.parseDouble returns for its decimal string
+    public static double toDouble(long value, long scale) {
+        return value == NOT_APPLICABLE ? Double.NaN : value / (double) scale;
+    }
+
+    public static long divide(long dividend, long divisor, RoundingMode roundingMode) {
+        return multiplyDivide(dividend, 1, divisor, roundingMode);
+    }
+
+    // a * b / c rounded according to the rounding mode
+    public static long multiplyDivide(long a, long b, long c, RoundingMode roundingMode) {
+        if (c == 0)
+            throw new ArithmeticException("Division by zero");
+        boolean negative = (a < 0) ^ (b < 0) ^ (c < 0);
+        // the magnitudes are treated as unsigned, which also covers Long.MIN_VALUE
+        long x = a < 0 ? -a : a;
+        long y = b < 0 ? -b : b;
+        long divisor = c < 0 ? -c : c;
+
+        long low = x * y;
+        long high = multiplyHigh(x, y);
+        if (Long.compareUnsigned(high, divisor) >= 0)
+            throw new ArithmeticException("Fixed point overflow");
+
+        long quotient;
+        long remainder;
+        if (high == 0) {
+            quotient = Long.divideUnsigned(low, divisor);
+            remainder = Long.remainderUnsigned(low, divisor);
+        } else {
+            // schoolbook division of the 128 bit product, one bit of the quotient per step
+            quotient = 0;
+            remainder = high;
+            for (int bit = 63; bit >= 0; bit--) {
+                boolean carry = remainder < 0;
+                remainder = (remainder << 1) | ((low >>> bit) & 1);
+                quotient <<= 1;
+                if (carry || Long.compareUnsigned(remainder, divisor) >= 0) {
+                    remainder -= divisor;
+                    quotient |= 1;
+                }
+            }
+        }
+
+        if (remainder != 0 && roundAwayFromZero(quotient, remainder, divisor, negative, roundingMode))
+            quotient++;
+        if (quotient < 0)
+            throw new ArithmeticException("Fixed point overflow");
+
+        return negative ? -quotient : quotient;
+    }
+
+    private static boolean roundAwayFromZero(long quotient, long remainder, long divisor, boolean negative, RoundingMode roundingMode) {
+        // the remainder is compared to what is left up to the divisor, which cannot overflow unlike twice the remainder
+        int half = Long.compareUnsigned(remainder, divisor - remainder);
+        switch (roundingMode) {
+            case UP:
+                return true;
+            case DOWN:
+                return false;
+            case CEILING:
+                return !negative;
+            case FLOOR:
+                return negative;
+            case HALF_UP:
+                return half >= 0;
+            case HALF_DOWN:
+                return half > 0;
+            case HALF_EVEN:
+                return half > 0 || (half == 0 && (quotient & 1) == 1);
+            default:
+                throw new ArithmeticException("Rounding necessary");
+        }
+    }
+
+    // the upper 64 bits of the unsigned 128 bit product
+    static long multiplyHigh(long x, long y) {
+        long xLow = x & LOW_BITS;
+        long xHigh = x >>> 32;
+        long yLow = y & LOW_BITS;
+        long yHigh = y >>> 32;
+
+        long lowLow = xLow * yLow;
+        long highLow = xHigh * yLow;
+        long lowHigh = xLow * yHigh;
+        long cross = (lowLow >>> 32) + (highLow & LOW_BITS) + (lowHigh & LOW_BITS);
+
+        return xHigh * yHigh + (highLow >>> 32) + (lowHigh >>> 32) + (cross >>> 32);
+    }
+}
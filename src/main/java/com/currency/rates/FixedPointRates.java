@@ -0,0 +1,156 @@
+package com.currency.rates;
+
+import java.math.RoundingMode;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+// the rates of a table as long values in millionths, see FixedPoint
+// conversions and averages are computed in integer arithmetic and rounded with an explicit rounding mode, so their
+// results are exact and reproducible on every jvm, unlike the rounding of a double through its decimal string
+//
+// like the range index, the scaled column and its prefix sums are only built the first time a currency is used, and
+// are allocated with spare capacity so rows appended to the table are scaled in place, see appendRows
+public class FixedPointRates {
+
+    private static final class Column {
+        private final long[] rates;
+        // sums of the applicable rates before every row, the largest rates of the file stay far below overflowing them
+        private final long[] prefixSums;
+        private final int[] prefixCounts;
+
+        private Column(long[] rates, long[] prefixSums, int[] prefixCounts) {
+            this.rates = rates;
+            this.prefixSums = prefixSums;
+            this.prefixCounts = prefixCounts;
+        }
+    }
+
+    private final RateTable rateTable;
+    private final int size;
+    private final int capacity;
+    private final AtomicReferenceArray<Column> columns;
+    // tables that drop columns again, see MergedRateTable, drop the scaled column of the column with them
+    private final ColumnEvictionListener evictionListener;
+    // number of rows scaled in the shared arrays, by this instance or by any instance appended to it
+    private final AtomicInteger extent;
+
+    public FixedPointRates(RateTable rateTable) {
+        this(rateTable, RangeIndex.capacityFor(rateTable.size()), new AtomicReferenceArray<>(rateTable.currencyCount()), new AtomicInteger(rateTable.size()));
+    }
+
+    private FixedPointRates(RateTable rateTable, int capacity, AtomicReferenceArray<Column> columns, AtomicInteger extent) {
+        this.rateTable = rateTable;
+        this.size = rateTable.size();
+        this.capacity = capacity;
+        this.columns = columns;
+        this.evictionListener = column -> columns.set(column, null);
+        rateTable.addColumnEvictionListener(evictionListener);
+        this.extent = extent;
+    }
+
+    public RateTable getRateTable() {
+        return rateTable;
+    }
+
+    private Column column(int c) {
+        Column column = columns.get(c);
+        if (column == null) {
+            // two threads might both build the same column, either result is equally valid
+            column = buildColumn(c);
+            if (!columns.compareAndSet(c, null, column))
+                column = columns.get(c);
+        }
+        return column;
+    }
+
+    // true once the scaled column of the currency has been built
+    public boolean isBuilt(int c) {
+        return columns.get(c) != null;
+    }
+
+    private Column buildColumn(int c) {
+        double[] values = new double[size];
+        rateTable.copyRates(c, 0, size, values);
+
+        Column column = new Column(new long[capacity], new long[capacity + 1], new int[capacity + 1]);
+        for (int row = 0; row < size; row++)
+            scale(column, row, values[row]);
+        return column;
+    }
+
+    private static void scale(Column column, int row, double value) {
+        long rate = FixedPoint.toFixed(value, FixedPoint.RATE_SCALE);
+        boolean applicable = rate != FixedPoint.NOT_APPLICABLE;
+        column.rates[row] = rate;
+        column.prefixSums[row + 1] = column.prefixSums[row] + (applicable ? rate : 0);
+        column.prefixCounts[row + 1] = column.prefixCounts[row] + (applicable ? 1 : 0);
+    }
+
+    // scaled rates of the given table, which must hold the rows and currencies of the table these were built for
+    // unchanged (the same lineage) plus rows appended after them; only the new rows of the built currencies are scaled,
+    // older instances never read past their own rows; otherwise the columns start from scratch
+    public FixedPointRates appendRows(RateTable rateTable) {
+        int newSize = rateTable.size();
+        int currencies = columns.length();
+        if (newSize < size || rateTable.currencyCount() != currencies || newSize > capacity
+                || !extent.compareAndSet(size, newSize))
+            return new FixedPointRates(rateTable);
+
+        AtomicReferenceArray<Column> newColumns = new AtomicReferenceArray<>(currencies);
+        for (int c = 0; c < currencies; c++) {
+            Column column = columns.get(c);
+            if (column == null)
+                continue;
+            for (int row = size; row < newSize; row++)
+                scale(column, row, rateTable.getRate(c, row));
+            newColumns.set(c, column);
+        }
+
+        return new FixedPointRates(rateTable, capacity, newColumns, extent);
+    }
+
+    // the rate in millionths, NOT_APPLICABLE when there is none
+    public long getRate(int column, int row) {
+        if (row < 0 || row >= size)
+            throw new IndexOutOfBoundsException("Row " + row + " is outside of [0, " + size + ")");
+        return column(column).rates[row];
+    }
+
+    // the amount, in ten thousandths, converted from the source into the target currency and rounded to ten thousandths
+    // NOT_APPLICABLE when either rate is not applicable on the date
+    public long convert(int sourceColumn, int targetColumn, int row, long amount, RoundingMode roundingMode) {
+        long sourceRate = getRate(sourceColumn, row);
+        long targetRate = getRate(targetColumn, row);
+        if (sourceRate == FixedPoint.NOT_APPLICABLE || targetRate == FixedPoint.NOT_APPLICABLE)
+            return FixedPoint.NOT_APPLICABLE;
+
+        // both rates have the same scale, so it cancels out and the amount keeps its own
+        return FixedPoint.multiplyDivide(amount, targetRate, sourceRate, roundingMode);
+    }
+
+    // number of applicable rates within the half open range of rows
+    public int count(int column, int fromRow, int toRow) {
+        checkRange(fromRow, toRow);
+        Column c = column(column);
+        return c.prefixCounts[toRow] - c.prefixCounts[fromRow];
+    }
+
+    // the average of the applicable rates of the range, rounded to ten thousandths like the double mode does
+    // NOT_APPLICABLE when the range holds none
+    public long average(int column, int fromRow, int toRow, RoundingMode roundingMode) {
+        checkRange(fromRow, toRow);
+        Column c = column(column);
+        int count = c.prefixCounts[toRow] - c.prefixCounts[fromRow];
+        if (count == 0)
+            return FixedPoint.NOT_APPLICABLE;
+
+        long sum = c.prefixSums[toRow] - c.prefixSums[fromRow];
+        return FixedPoint.multiplyDivide(sum, FixedPoint.AMOUNT_SCALE, count * FixedPoint.RATE_SCALE, roundingMode);
+    }
+
+    // the arrays may already hold rows appended after this instance, which it must not read
+    private void checkRange(int fromRow, int toRow) {
+        if (fromRow < 0 || toRow > size || fromRow > toRow)
+            throw new IndexOutOfBoundsException("Invalid row range [" + fromRow + ", " + toRow + ") for " + size + " rows");
+    }
+}
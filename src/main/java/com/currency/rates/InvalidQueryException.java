@@ -0,0 +1,12 @@
+package com.currency.rates;
+
+// a query that cannot be answered because of what was asked, i.e an unknown currency, a date without rates, an invalid
+// range or amount, or a rate that is N/A; anything else that goes wrong while answering is thrown as another exception
+public class InvalidQueryException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public InvalidQueryException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,267 @@
+package com.currency.rates;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.LongAdder;
+
+// replays a mix of queries against a parser from many threads and reports the throughput and the latency percentiles
+// of every kind of query, to see how the parser behaves with more data or more clients than it has today
+//
+// every thread draws its queries from its own random generator seeded from the given seed, so the same settings replay
+// the same queries: rates of a calendar date, weekends included, the highest, lowest or average rate of a currency over
+// up to maxRangeDays and conversions between two currencies; queries that fail, i.e on a weekend, count as errors
+//
+//   java -cp rates.jar com.currency.rates.LoadTest [--data <csv or snapshot file>] [--threads n] [--seconds n]
+//                                                  [--mix dates,stats,conversions] [generator options of SyntheticRates]
+public class LoadTest {
+
+    public enum Query {
+        RATES_BY_DATE,
+        RANGE_STATS,
+        CONVERT
+    }
+
+    public static final class Report {
+        private final int threads;
+        private final long elapsedNanos;
+        private final LatencyHistogram[] histograms;
+        private final long[] errors;
+
+        private Report(int threads, long elapsedNanos, LatencyHistogram[] histograms, long[] errors) {
+            this.threads = threads;
+            this.elapsedNanos = elapsedNanos;
+            this.histograms = histograms;
+            this.errors = errors;
+        }
+
+        public int getThreads() {
+            return threads;
+        }
+
+        public long getElapsedNanos() {
+            return elapsedNanos;
+        }
+
+        public LatencyHistogram getHistogram(Query query) {
+            return histograms[query.ordinal()];
+        }
+
+        public long getCount(Query query) {
+            return histograms[query.ordinal()].getCount();
+        }
+
+        public long getErrors(Query query) {
+            return errors[query.ordinal()];
+        }
+
+        public long getTotalCount() {
+            long total = 0;
+            for (LatencyHistogram histogram : histograms)
+                total += histogram.getCount();
+            return total;
+        }
+
+        // queries per second over all threads
+        public double getThroughput() {
+            return elapsedNanos == 0 ? 0 : getTotalCount() * 1e9 / elapsedNanos;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder builder = new StringBuilder();
+            builder.append(String.format("%-14s %10s %8s %12s %10s %10s %10s %12s%n", "query", "count", "errors", "per second", "p50 us", "p99 us", "p99.9 us", "max us"));
+            for (Query query : Query.values()) {
+                LatencyHistogram histogram = histograms[query.ordinal()];
+                if (histogram.getCount() == 0)
+                    continue;
+                builder.append(String.format("%-14s %10d %8d %12.0f %10.1f %10.1f %10.1f %12.1f%n", query, histogram.getCount(),
+                        errors[query.ordinal()], histogram.getCount() * 1e9 / Math.max(1, elapsedNanos), histogram.getPercentile(50) / 1000.0,
+                        histogram.getPercentile(99) / 1000.0, histogram.getPercentile(99.9) / 1000.0, histogram.getMax() / 1000.0));
+            }
+            builder.append(String.format("%d queries from %d threads in %.1f s, %.0f per second%n", getTotalCount(), threads,
+                    elapsedNanos / 1e9, getThroughput()));
+            return builder.toString();
+        }
+    }
+
+    private static final RangeStatistic[] STATISTICS = RangeStatistic.values();
+
+    private final CsvParser csvParser;
+    private final int threads;
+    private final int[] weights;
+    private final int totalWeight;
+    private final long seed;
+    private int maxRangeDays = 5 * 365;
+
+    // the weights give the share of each kind of query, i.e 1, 1, 1 for an equal mix
+    public LoadTest(CsvParser csvParser, int threads, int ratesByDateWeight, int rangeStatsWeight, int convertWeight, long seed) {
+        if (threads < 1)
+            throw new IllegalArgumentException("At least one thread is required");
+        if (ratesByDateWeight < 0 || rangeStatsWeight < 0 || convertWeight < 0 || ratesByDateWeight + rangeStatsWeight + convertWeight == 0)
+            throw new IllegalArgumentException("Invalid query mix");
+        this.csvParser = csvParser;
+        this.threads = threads;
+        this.weights = new int[]{ratesByDateWeight, rangeStatsWeight, convertWeight};
+        this.totalWeight = ratesByDateWeight + rangeStatsWeight + convertWeight;
+        this.seed = seed;
+    }
+
+    public int getMaxRangeDays() {
+        return maxRangeDays;
+    }
+
+    public void setMaxRangeDays(int maxRangeDays) {
+        if (maxRangeDays < 0)
+            throw new IllegalArgumentException("Invalid range length");
+        this.maxRangeDays = maxRangeDays;
+    }
+
+    // every thread runs the given number of queries
+    public Report run(long queriesPerThread) {
+        return run(queriesPerThread, -1);
+    }
+
+    // every thread runs queries until the time is up, the time only starts once every thread is ready
+    public Report runFor(long millis) {
+        if (millis < 0)
+            throw new IllegalArgumentException("Invalid duration");
+        return run(Long.MAX_VALUE, millis * 1_000_000);
+    }
+
+    // a negative duration runs without a time limit
+    private Report run(long queriesPerThread, long durationNanos) {
+        RateTable rateTable = csvParser.getRateTable();
+        if (rateTable.size() == 0)
+            throw new RuntimeException("There are no rates to query");
+
+        LatencyHistogram[] histograms = new LatencyHistogram[Query.values().length];
+        LongAdder[] errors = new LongAdder[histograms.length];
+        for (int i = 0; i < histograms.length; i++) {
+            histograms[i] = new LatencyHistogram();
+            errors[i] = new LongAdder();
+        }
+
+        CountDownLatch start = new CountDownLatch(1);
+        // set right before the start, the latch makes it visible to the workers
+        long[] deadline = new long[1];
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            Random random = new Random(seed + t);
+            Thread worker = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                for (long i = 0; i < queriesPerThread && (durationNanos < 0 || System.nanoTime() < deadline[0]); i++)
+                    query(rateTable, random, histograms, errors);
+            }, "load-test-" + t);
+            worker.setDaemon(true);
+            workers.add(worker);
+            worker.start();
+        }
+
+        long started = System.nanoTime();
+        deadline[0] = started + durationNanos;
+        start.countDown();
+        try {
+            for (Thread worker : workers)
+                worker.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("The load test was interrupted");
+        }
+        long elapsed = System.nanoTime() - started;
+
+        long[] errorCounts = new long[errors.length];
+        for (int i = 0; i < errors.length; i++)
+            errorCounts[i] = errors[i].sum();
+        return new Report(threads, elapsed, histograms, errorCounts);
+    }
+
+    private void query(RateTable rateTable, Random random, LatencyHistogram[] histograms, LongAdder[] errors) {
+        int firstDay = rateTable.getDate(0);
+        int days = rateTable.getDate(rateTable.size() - 1) - firstDay + 1;
+        int currencies = rateTable.currencyCount();
+
+        int pick = random.nextInt(totalWeight);
+        Query query = pick < weights[0] ? Query.RATES_BY_DATE : pick < weights[0] + weights[1] ? Query.RANGE_STATS : Query.CONVERT;
+        // the arguments are drawn before the clock starts
+        LocalDate date = LocalDate.ofEpochDay(firstDay + random.nextInt(days));
+        String currency = rateTable.getCurrency(random.nextInt(currencies));
+        String otherCurrency = rateTable.getCurrency(random.nextInt(currencies));
+        LocalDate end = date.plusDays(random.nextInt(maxRangeDays + 1));
+        RangeStatistic statistic = STATISTICS[random.nextInt(STATISTICS.length)];
+        double amount = 1 + random.nextInt(10000);
+
+        long started = System.nanoTime();
+        try {
+            switch (query) {
+                case RATES_BY_DATE:
+                    csvParser.retrieveRatesForSpecificDate(date);
+                    break;
+                case RANGE_STATS:
+                    csvParser.getStatsForSpecificDates(date, end, currency, statistic);
+                    break;
+                default:
+                    csvParser.exchange(date, currency, otherCurrency, amount);
+            }
+        } catch (RuntimeException e) {
+            errors[query.ordinal()].increment();
+        } finally {
+            histograms[query.ordinal()].record(System.nanoTime() - started);
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        CsvParser csvParser = new CsvParser();
+        int threads = Runtime.getRuntime().availableProcessors();
+        long seconds = 10;
+        int[] mix = {1, 1, 1};
+        Path data = null;
+        for (int i = 0; i < args.length - 1; i++) {
+            if (args[i].equals("--data"))
+                data = Paths.get(args[i + 1]);
+            if (args[i].equals("--threads"))
+                threads = Integer.parseInt(args[i + 1]);
+            if (args[i].equals("--seconds"))
+                seconds = Long.parseLong(args[i + 1]);
+            if (args[i].equals("--mix")) {
+                String[] weights = args[i + 1].split(",");
+                if (weights.length != 3)
+                    throw new IllegalArgumentException("The mix needs three weights: dates,stats,conversions");
+                for (int w = 0; w < 3; w++)
+                    mix[w] = Integer.parseInt(weights[w].trim());
+            }
+        }
+
+        long started = System.nanoTime();
+        SyntheticRates syntheticRates = SyntheticRates.fromArguments(args);
+        if (data != null) {
+            String name = data.getFileName().toString();
+            if (name.endsWith(".csv") || name.endsWith(".csv.gz"))
+                csvParser.parseCsv(data);
+            else
+                csvParser.loadSnapshot(data);
+        } else if (syntheticRates != null) {
+            csvParser.parseCsv(new ByteArrayInputStream(syntheticRates.csv()));
+        } else {
+            csvParser.parseCsv("eurofxref-hist.csv");
+        }
+        RateTable rateTable = csvParser.getRateTable();
+        System.out.printf("%d rows of %d currencies loaded in %d ms%n", rateTable.size(), rateTable.currencyCount(),
+                (System.nanoTime() - started) / 1_000_000);
+
+        Report report = new LoadTest(csvParser, threads, mix[0], mix[1], mix[2], 42).runFor(seconds * 1000);
+        System.out.print(report);
+        System.out.println(csvParser.getStatsCache());
+    }
+}
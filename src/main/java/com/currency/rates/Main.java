@@ -1,8 +1,15 @@
 package com.currency.rates;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.RoundingMode;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.time.LocalDate;
 import java.time.format.DateTimeParseException;
-import java.util.Map;
 import java.util.Scanner;
 
 public class Main {
@@ -11,24 +18,62 @@ public class Main {
 
         String fileName = "eurofxref-hist.csv";
 
-        Map<String, Map<LocalDate, String>> supportedCurrencies;
         String header;
         String[] headerTokens;
         CsvParser csvParser = new CsvParser();
         String userInput;
         Scanner scanner = new Scanner(System.in);
 
-        csvParser.parseCsv(fileName);
-        supportedCurrencies = csvParser.getSupportedCurrencies();
+        // with --snapshot <file> the rates get memory mapped from a binary snapshot of the csv file, which is created
+        // on the first start and recreated whenever the csv file changes
+        Path snapshot = null;
+        // with --serve <port> the rates are offered over http instead of the interactive menu, see RateServer
+        int port = -1;
+        // with --metrics queries and loads get measured, the figures are published through jmx and printed on quit
+        RateMetrics rateMetrics = null;
+        for (String arg : args) {
+            if (arg.equals("--metrics")) {
+                rateMetrics = RateMetrics.enable(csvParser);
+                rateMetrics.registerMBean();
+            }
+        }
+        // with --fixed-point <rounding mode> conversions and averages use integer arithmetic, i.e --fixed-point HALF_EVEN
+        // with --links <file> conversions also go through pegs and successors, currency-links.txt is the bundled one
+        for (int i = 0; i < args.length - 1; i++) {
+            if (args[i].equals("--links"))
+                useCurrencyLinks(csvParser, args[i + 1]);
+            if (args[i].equals("--fixed-point"))
+                csvParser.setNumericMode(NumericMode.FIXED_POINT, RoundingMode.valueOf(args[i + 1].toUpperCase()));
+            if (args[i].equals("--snapshot"))
+                snapshot = Paths.get(args[i + 1]);
+            if (args[i].equals("--serve"))
+                port = Integer.parseInt(args[i + 1]);
+        }
+
+        if (snapshot == null)
+            csvParser.parseCsv(fileName);
+        else
+            loadWithSnapshot(csvParser, fileName, snapshot);
+        // with --compressed the rates are kept compressed in memory, see CompressedRateStore
+        for (String arg : args) {
+            if (arg.equals("--compressed"))
+                csvParser.compressRates();
+        }
         header = csvParser.getHeader();
         headerTokens = csvParser.getHeaderTokens();
 
+        if (port >= 0) {
+            serve(csvParser, port);
+            return;
+        }
+
         do {
             System.out.println("Options");
             System.out.println("Type 1 to retrieve the rates of a specific date.");
             System.out.println("Type 2 to retrieve the highest rate of a currency within a specific region of dates.");
             System.out.println("Type 3 to retrieve the average rate of a currency within a specific region of dates.");
             System.out.println("Type 4 to convert an amount of money from a source currency to a target one using the exchange rates of a particular date.");
+            System.out.println("Type 5 to retrieve the lowest rate of a currency within a specific region of dates.");
             System.out.println("Type Q or q to quit");
 
             userInput = scanner.next();
@@ -49,6 +94,7 @@ public class Main {
                     break;
                 case "2":
                 case "3":
+                case "5":
                     System.out.println("\nPlease provide a start date with the format YYYY-MM-DD");
                     String startDate = scanner.next();
                     LocalDate startLocalDate = null;
@@ -84,6 +130,8 @@ public class Main {
                             System.out.println(csvParser.getStatsForSpecificDates(startLocalDate, endLocalDate, currency.toUpperCase(), true) + "\n");
                         else if (userInput.equalsIgnoreCase("3"))
                             System.out.println(csvParser.getStatsForSpecificDates(startLocalDate, endLocalDate, currency.toUpperCase(), false) + "\n");
+                        else if (userInput.equalsIgnoreCase("5"))
+                            System.out.println(csvParser.getStatsForSpecificDates(startLocalDate, endLocalDate, currency.toUpperCase(), RangeStatistic.LOWEST) + "\n");
                     }
                     catch (Exception e) {
                         //e.printStackTrace();
@@ -135,5 +183,70 @@ public class Main {
 
 
         } while (!userInput.equalsIgnoreCase("Q"));
+
+        if (rateMetrics != null)
+            System.out.println(rateMetrics.dump());
+    }
+
+    private static void serve(CsvParser csvParser, int port) {
+        try {
+            RateServer rateServer = new RateServer(csvParser, port);
+            Runtime.getRuntime().addShutdownHook(new Thread(rateServer::stop));
+            rateServer.start();
+            System.out.println("Serving the rates on port " + rateServer.getPort());
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    // the file is looked up on disk first and in the resources folder second
+    private static void useCurrencyLinks(CsvParser csvParser, String fileName) {
+        try {
+            Path path = Paths.get(fileName);
+            csvParser.setCurrencyLinks(Files.exists(path) ? CurrencyLinks.load(path) : CurrencyLinks.resource(fileName));
+        } catch (IOException e) {
+            System.out.println("Unable to load the currency links: " + e.getMessage() + "\n");
+        }
+    }
+
+    private static void loadWithSnapshot(CsvParser csvParser, String fileName, Path snapshot) {
+        long checksum;
+        try {
+            checksum = sourceFingerprint(fileName);
+        } catch (IOException e) {
+            csvParser.parseCsv(fileName);
+            return;
+        }
+
+        // whatever is wrong with the snapshot the csv file is parsed and the snapshot rewritten, the start never fails on it
+        try {
+            csvParser.loadSnapshot(snapshot, checksum);
+            return;
+        } catch (IOException | RuntimeException e) {
+            System.out.println("Rebuilding snapshot: " + e.getMessage() + "\n");
+        }
+
+        csvParser.parseCsv(fileName);
+        try {
+            csvParser.writeSnapshot(snapshot, checksum);
+        } catch (IOException e) {
+            System.out.println("Unable to write the snapshot: " + e.getMessage() + "\n");
+        }
+    }
+
+    // the size and modification time of the bundled csv file tell whether the snapshot is stale without reading the file,
+    // only a resource that does not report them is read for its checksum
+    private static long sourceFingerprint(String fileName) throws IOException {
+        URL resource = Main.class.getClassLoader().getResource(fileName);
+        if (resource == null)
+            throw new IOException("Resource not found: " + fileName);
+        URLConnection connection = resource.openConnection();
+        try (InputStream inputStream = connection.getInputStream()) {
+            long size = connection.getContentLengthLong();
+            long lastModified = connection.getLastModified();
+            if (size >= 0 && lastModified > 0)
+                return RateSnapshotFile.fingerprint(size, lastModified);
+            return RateSnapshotFile.checksum(inputStream);
+        }
     }
 }
@@ -0,0 +1,112 @@
+package com.currency.rates;
+
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+// table of rates served straight from a memory mapped snapshot file, see RateSnapshotFile for the layout
+// the dates and rates are never copied onto the heap, several processes mapping the same file share the page cache
+// only absolute reads are used on the buffers, which makes the store safe to share between threads
+public class MappedRateStore implements RateTable {
+
+    private final String[] currencies;
+    private final Map<String, Integer> currencyIndex;
+    private final String header;
+    private final long sourceChecksum;
+    private final int size;
+    private final IntBuffer dates;
+    private final DoubleBuffer[] rates;
+
+    MappedRateStore(ByteBuffer buffer) {
+        int currencyCount = buffer.getInt(8);
+        this.size = buffer.getInt(12);
+        this.sourceChecksum = buffer.getLong(24);
+        int headerLength = buffer.getInt(40);
+
+        this.currencies = new String[currencyCount];
+        this.currencyIndex = new HashMap<>();
+        byte[] code = new byte[RateSnapshotFile.CURRENCY_CODE_SIZE];
+        for (int c = 0; c < currencyCount; c++) {
+            int length = 0;
+            for (int i = 0; i < code.length; i++) {
+                code[i] = buffer.get(RateSnapshotFile.HEADER_SIZE + c * RateSnapshotFile.CURRENCY_CODE_SIZE + i);
+                if (code[i] != 0)
+                    length = i + 1;
+            }
+            currencies[c] = new String(code, 0, length, StandardCharsets.US_ASCII);
+            currencyIndex.put(currencies[c], c);
+        }
+
+        int headerOffset = RateSnapshotFile.HEADER_SIZE + currencyCount * RateSnapshotFile.CURRENCY_CODE_SIZE;
+        byte[] headerBytes = new byte[headerLength];
+        for (int i = 0; i < headerLength; i++)
+            headerBytes[i] = buffer.get(headerOffset + i);
+        this.header = new String(headerBytes, StandardCharsets.UTF_8);
+
+        int datesOffset = RateSnapshotFile.align(headerOffset + headerLength);
+        int columnsOffset = RateSnapshotFile.align(datesOffset + size * 4);
+        this.dates = slice(buffer, datesOffset, size * 4).asIntBuffer();
+        this.rates = new DoubleBuffer[currencyCount];
+        for (int c = 0; c < currencyCount; c++)
+            rates[c] = slice(buffer, columnsOffset + c * size * 8, size * 8).asDoubleBuffer();
+    }
+
+    private static ByteBuffer slice(ByteBuffer buffer, int offset, int length) {
+        ByteBuffer view = buffer.duplicate();
+        ((Buffer) view).position(offset).limit(offset + length);
+        return view.slice().order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    // the first line of the csv file the snapshot was converted from
+    public String getHeader() {
+        return header;
+    }
+
+    public long getSourceChecksum() {
+        return sourceChecksum;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public int currencyCount() {
+        return currencies.length;
+    }
+
+    @Override
+    public String getCurrency(int column) {
+        return currencies[column];
+    }
+
+    @Override
+    public int indexOfCurrency(String currency) {
+        Integer column = currency == null ? null : currencyIndex.get(currency);
+        return column == null ? -1 : column;
+    }
+
+    @Override
+    public int getDate(int row) {
+        return dates.get(row);
+    }
+
+    @Override
+    public double getRate(int column, int row) {
+        return rates[column].get(row);
+    }
+
+    // bulk copy through a private duplicate, the shared buffer's position is never touched
+    @Override
+    public void copyRates(int column, int fromRow, int toRow, double[] destination) {
+        DoubleBuffer view = rates[column].duplicate();
+        ((Buffer) view).position(fromRow);
+        view.get(destination, 0, toRow - fromRow);
+    }
+}
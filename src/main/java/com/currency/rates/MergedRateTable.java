@@ -0,0 +1,302 @@
+package com.currency.rates;
+
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+// one logical table of rates over several sources with different currencies and date spans
+// the dates are the union of the dates of all sources and the currencies the union of their currencies, in the order
+// the sources were registered in; where sources overlap, the source registered later wins on every date it holds an
+// applicable rate for
+//
+// the columns are only materialized the first time a currency is read and at most maxResidentColumns of them are kept,
+// the least recently used one is dropped to make room for another, so the memory held stays proportional to the
+// currencies in use rather than to the union of all files; a dropped column is simply loaded again when needed
+//
+// the data derived from a column, i.e its range index, is dropped together with it through the registered
+// ColumnEvictionListeners; reading a whole row, i.e to render the rates of a date, neither loads nor evicts any
+// column: the resident columns are read directly and every source holding the date reads that single row
+public class MergedRateTable implements RateTable {
+
+    private final List<RateSource> sources;
+    private final String[] currencies;
+    private final Map<String, Integer> currencyIndex;
+    private final int[] dates;
+    // for every source, the merged row of each of its rows
+    private final int[][] rowMaps;
+    // for every currency, the sources holding it and the column of the currency within each of them
+    private final int[][] currencySources;
+    private final int[][] currencySourceColumns;
+
+    private final int maxResidentColumns;
+    private final AtomicReferenceArray<double[]> columns;
+    // recency hints, updated without synchronization like the clock of CrossRateCache
+    private final long[] lastUse;
+    private long clock;
+    private int residentColumns;
+    private final LongAdder loads = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder rowReads = new LongAdder();
+    private final List<WeakReference<ColumnEvictionListener>> listeners = new CopyOnWriteArrayList<>();
+
+    public MergedRateTable(List<RateSource> sources, int maxResidentColumns) {
+        if (maxResidentColumns < 1)
+            throw new IllegalArgumentException("At least one column has to be resident");
+        this.sources = new ArrayList<>(sources);
+        this.maxResidentColumns = maxResidentColumns;
+
+        Map<String, List<int[]>> holders = new LinkedHashMap<>();
+        int[] allDates = new int[0];
+        int[][] sourceDates = new int[this.sources.size()][];
+        for (int s = 0; s < sourceDates.length; s++) {
+            RateSource source = this.sources.get(s);
+            String[] codes = source.getCurrencies();
+            for (int column = 0; column < codes.length; column++)
+                holders.computeIfAbsent(codes[column].toUpperCase(), code -> new ArrayList<>()).add(new int[]{s, column});
+            sourceDates[s] = source.getDates();
+            allDates = union(allDates, sourceDates[s]);
+        }
+
+        this.dates = allDates;
+        this.rowMaps = new int[sourceDates.length][];
+        for (int s = 0; s < sourceDates.length; s++) {
+            rowMaps[s] = new int[sourceDates[s].length];
+            for (int row = 0; row < sourceDates[s].length; row++)
+                rowMaps[s][row] = Arrays.binarySearch(dates, sourceDates[s][row]);
+        }
+
+        this.currencies = holders.keySet().toArray(new String[0]);
+        this.currencyIndex = new HashMap<>();
+        this.currencySources = new int[currencies.length][];
+        this.currencySourceColumns = new int[currencies.length][];
+        for (int c = 0; c < currencies.length; c++) {
+            currencyIndex.put(currencies[c], c);
+            List<int[]> holder = holders.get(currencies[c]);
+            currencySources[c] = new int[holder.size()];
+            currencySourceColumns[c] = new int[holder.size()];
+            for (int i = 0; i < holder.size(); i++) {
+                currencySources[c][i] = holder.get(i)[0];
+                currencySourceColumns[c][i] = holder.get(i)[1];
+            }
+        }
+
+        this.columns = new AtomicReferenceArray<>(currencies.length);
+        this.lastUse = new long[currencies.length];
+    }
+
+    private static int[] union(int[] a, int[] b) {
+        int[] merged = new int[a.length + b.length];
+        int i = 0, j = 0, size = 0;
+        while (i < a.length || j < b.length) {
+            int next = j == b.length || (i < a.length && a[i] <= b[j]) ? a[i] : b[j];
+            if (i < a.length && a[i] == next)
+                i++;
+            if (j < b.length && b[j] == next)
+                j++;
+            merged[size++] = next;
+        }
+        return Arrays.copyOf(merged, size);
+    }
+
+    private double[] column(int column) {
+        double[] values = columns.get(column);
+        if (values == null)
+            values = load(column);
+        lastUse[column] = ++clock;
+        return values;
+    }
+
+    private synchronized double[] load(int column) {
+        double[] values = columns.get(column);
+        if (values != null)
+            return values;
+
+        while (residentColumns >= maxResidentColumns)
+            evictLeastRecentlyUsed();
+
+        values = new double[dates.length];
+        Arrays.fill(values, Double.NaN);
+        for (int i = 0; i < currencySources[column].length; i++) {
+            int source = currencySources[column][i];
+            double[] sourceRates;
+            try {
+                sourceRates = sources.get(source).loadColumn(currencySourceColumns[column][i]);
+            } catch (IOException e) {
+                throw new RuntimeException("Could not load the rates of " + currencies[column] + " from " + sources.get(source).getName(), e);
+            }
+            int[] rowMap = rowMaps[source];
+            for (int row = 0; row < rowMap.length; row++) {
+                if (!Double.isNaN(sourceRates[row]))
+                    values[rowMap[row]] = sourceRates[row];
+            }
+        }
+
+        columns.set(column, values);
+        residentColumns++;
+        loads.increment();
+        return values;
+    }
+
+    private void evictLeastRecentlyUsed() {
+        int victim = -1;
+        for (int c = 0; c < currencies.length; c++) {
+            if (columns.get(c) != null && (victim < 0 || lastUse[c] < lastUse[victim]))
+                victim = c;
+        }
+        // readers holding on to the array of the victim keep working with it, it is only no longer cached
+        columns.set(victim, null);
+        residentColumns--;
+        evictions.increment();
+
+        for (WeakReference<ColumnEvictionListener> reference : listeners) {
+            ColumnEvictionListener listener = reference.get();
+            if (listener == null)
+                listeners.remove(reference);
+            else
+                listener.columnEvicted(victim);
+        }
+    }
+
+    @Override
+    public void addColumnEvictionListener(ColumnEvictionListener listener) {
+        listeners.add(new WeakReference<>(listener));
+    }
+
+    @Override
+    public boolean loadsColumnsLazily() {
+        return true;
+    }
+
+    @Override
+    public int size() {
+        return dates.length;
+    }
+
+    @Override
+    public int currencyCount() {
+        return currencies.length;
+    }
+
+    @Override
+    public String getCurrency(int column) {
+        return currencies[column];
+    }
+
+    @Override
+    public int indexOfCurrency(String currency) {
+        Integer column = currency == null ? null : currencyIndex.get(currency);
+        return column == null ? -1 : column;
+    }
+
+    @Override
+    public int lowerBound(int epochDay) {
+        int row = Arrays.binarySearch(dates, epochDay);
+        return row < 0 ? -row - 1 : row;
+    }
+
+    @Override
+    public int indexOfDate(int epochDay) {
+        int row = Arrays.binarySearch(dates, epochDay);
+        return row < 0 ? -1 : row;
+    }
+
+    @Override
+    public int getDate(int row) {
+        return dates[row];
+    }
+
+    @Override
+    public double getRate(int column, int row) {
+        return column(column)[row];
+    }
+
+    @Override
+    public void copyRates(int column, int fromRow, int toRow, double[] destination) {
+        System.arraycopy(column(column), fromRow, destination, 0, toRow - fromRow);
+    }
+
+    // the same merge as loading the columns: the sources are applied in the order they were registered in and a later
+    // source only replaces a rate with an applicable one
+    @Override
+    public void copyRow(int row, double[] destination) {
+        boolean[] resident = new boolean[currencies.length];
+        for (int c = 0; c < currencies.length; c++) {
+            double[] values = columns.get(c);
+            resident[c] = values != null;
+            destination[c] = resident[c] ? values[row] : Double.NaN;
+        }
+
+        for (int source = 0; source < sources.size(); source++) {
+            int sourceRow = Arrays.binarySearch(rowMaps[source], row);
+            // the source has no rates on that date
+            if (sourceRow < 0)
+                continue;
+            double[] sourceRates = null;
+            for (int c = 0; c < currencies.length; c++) {
+                if (resident[c])
+                    continue;
+                for (int i = 0; i < currencySources[c].length; i++) {
+                    if (currencySources[c][i] != source)
+                        continue;
+                    // only read when the source holds a currency that is not resident
+                    if (sourceRates == null)
+                        sourceRates = loadRow(source, sourceRow);
+                    double rate = sourceRates[currencySourceColumns[c][i]];
+                    if (!Double.isNaN(rate))
+                        destination[c] = rate;
+                }
+            }
+        }
+    }
+
+    private double[] loadRow(int source, int sourceRow) {
+        rowReads.increment();
+        try {
+            return sources.get(source).loadRow(sourceRow);
+        } catch (IOException e) {
+            throw new RuntimeException("Could not load the rates of " + LocalDate.ofEpochDay(dates[rowMaps[source][sourceRow]]) + " from " + sources.get(source).getName(), e);
+        }
+    }
+
+    public int getMaxResidentColumns() {
+        return maxResidentColumns;
+    }
+
+    public synchronized int getResidentColumnCount() {
+        return residentColumns;
+    }
+
+    public boolean isResident(int column) {
+        return columns.get(column) != null;
+    }
+
+    public long getLoadCount() {
+        return loads.sum();
+    }
+
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    // rows read straight from a source, without loading its columns
+    public long getRowReadCount() {
+        return rowReads.sum();
+    }
+
+    // the header line of a csv file holding all currencies of the merged table
+    public String getHeader() {
+        StringBuilder builder = new StringBuilder("Date,");
+        for (String currency : currencies)
+            builder.append(currency).append(',');
+        return builder.toString();
+    }
+}
@@ -0,0 +1,51 @@
+package com.currency.rates;
+
+// receives the measurements taken by the parser, see RateMetrics for the built in implementation
+// the parser only takes a measurement when the sink is enabled, so DISABLED costs a field read and a branch per call
+public interface MetricsSink {
+
+    enum Operation {
+        RATES_BY_DATE,
+        RANGE_MAX,
+        RANGE_MIN,
+        RANGE_AVERAGE,
+        CONVERT,
+        CONVERT_BATCH,
+        LOAD_CSV,
+        LOAD_SNAPSHOT,
+        APPEND
+    }
+
+    MetricsSink DISABLED = new MetricsSink() {
+        @Override
+        public boolean isEnabled() {
+            return false;
+        }
+
+        @Override
+        public void recordLatency(Operation operation, long nanos) {
+        }
+
+        @Override
+        public void recordError(Operation operation, String cause) {
+        }
+
+        @Override
+        public void recordIngest(long rows, long bytes) {
+        }
+    };
+
+    default boolean isEnabled() {
+        return true;
+    }
+
+    // wall clock duration of a query or a load, failed calls included
+    void recordLatency(Operation operation, long nanos);
+
+    // the cause comes from a fixed set, i.e the name of a ConversionError or of an exception class, never from the text
+    // of a request, so the number of distinct causes stays bounded however many different requests fail
+    void recordError(Operation operation, String cause);
+
+    // rows and bytes of a csv file or snapshot that was just loaded
+    void recordIngest(long rows, long bytes);
+}
@@ -0,0 +1,11 @@
+package com.currency.rates;
+
+// how the parser computes conversions and averages
+public enum NumericMode {
+
+    // double arithmetic, rounded to 4 decimals through the decimal string of the result
+    DOUBLE,
+
+    // integer arithmetic on rates scaled to millionths with an explicit rounding mode, see FixedPointRates
+    FIXED_POINT
+}
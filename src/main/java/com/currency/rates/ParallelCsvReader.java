@@ -0,0 +1,164 @@
+package com.currency.rates;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.zip.GZIPInputStream;
+
+// reads a csv file of rates on several threads
+// the calling thread only reads the input in chunks that end on a line break, while the tokenizing and parsing of each
+// chunk runs on a worker pool into a builder of its own; the chunk builders are merged into the given builder in the
+// order of the file, so the resulting store is exactly the one the sequential RateCsvReader produces
+//
+// at most maxChunksInFlight chunks are read ahead of the merge: once that many are queued the reader waits for the oldest
+// one to be parsed and merges it before reading on, which keeps the memory held by raw chunks bounded however large the
+// file is; gzip compressed input is decompressed on the reading thread
+public final class ParallelCsvReader {
+
+    public static final int DEFAULT_CHUNK_SIZE = 1 << 20;
+
+    private final Executor executor;
+    private final int chunkSize;
+    private final int maxChunksInFlight;
+
+    private ParallelCsvReader(Executor executor, int chunkSize, int maxChunksInFlight) {
+        this.executor = executor;
+        this.chunkSize = chunkSize;
+        this.maxChunksInFlight = maxChunksInFlight;
+    }
+
+    // chunks of 1 MiB on the common fork join pool, with two chunks in flight per worker thread
+    public static void read(InputStream inputStream, RateStore.Builder builder) throws IOException {
+        ForkJoinPool pool = ForkJoinPool.commonPool();
+        read(inputStream, builder, pool, DEFAULT_CHUNK_SIZE, 2 * pool.getParallelism());
+    }
+
+    public static void read(InputStream inputStream, RateStore.Builder builder, Executor executor, int chunkSize, int maxChunksInFlight) throws IOException {
+        if (chunkSize < 1 || maxChunksInFlight < 1)
+            throw new IllegalArgumentException("Chunk size and chunks in flight have to be positive");
+        new ParallelCsvReader(executor, chunkSize, maxChunksInFlight).parse(inputStream, builder);
+    }
+
+    private void parse(InputStream inputStream, RateStore.Builder builder) throws IOException {
+        InputStream input = new BufferedInputStream(inputStream, 2);
+        input.mark(2);
+        byte[] magic = new byte[2];
+        int magicLength = readFully(input, magic, 0, 2);
+        input.reset();
+        if (RateCsvReader.isGzip(magic, magicLength))
+            input = new GZIPInputStream(input, 64 * 1024);
+
+        ArrayDeque<CompletableFuture<RateStore.Builder>> inFlight = new ArrayDeque<>();
+        String header = null;
+        byte[] carry = new byte[0];
+        boolean endOfInput = false;
+
+        try {
+            while (!endOfInput) {
+                byte[] chunk = new byte[carry.length + chunkSize];
+                System.arraycopy(carry, 0, chunk, 0, carry.length);
+                int read = readFully(input, chunk, carry.length, chunkSize);
+                int length = carry.length + Math.max(read, 0);
+                endOfInput = read < chunkSize;
+
+                // everything after the last line break belongs to the next chunk, a chunk without any line break grows
+                int end = length;
+                if (!endOfInput) {
+                    while (end > 0 && chunk[end - 1] != '\n')
+                        end--;
+                }
+                carry = new byte[length - end];
+                System.arraycopy(chunk, end, carry, 0, carry.length);
+                if (end == 0)
+                    continue;
+
+                int start = 0;
+                if (header == null) {
+                    start = headerEnd(chunk, end);
+                    if (start < 0) {
+                        // only blank lines so far, the header is still to come
+                        continue;
+                    }
+                    header = headerLine(chunk, start);
+                    // the builder receives the header exactly like it would from the sequential reader
+                    RateCsvReader.readLines(header, chunk, 0, 0, builder);
+                }
+
+                if (inFlight.size() >= maxChunksInFlight)
+                    builder.addRows(join(inFlight.poll()));
+
+                String chunkHeader = header;
+                int chunkStart = start;
+                int chunkEnd = end;
+                inFlight.add(CompletableFuture.supplyAsync(() -> {
+                    RateStore.Builder rows = new RateStore.Builder();
+                    RateCsvReader.readLines(chunkHeader, chunk, chunkStart, chunkEnd, rows);
+                    return rows;
+                }, executor));
+            }
+
+            while (!inFlight.isEmpty())
+                builder.addRows(join(inFlight.poll()));
+        } finally {
+            // chunks that are still being parsed after a failure are simply dropped
+            for (CompletableFuture<RateStore.Builder> future : inFlight)
+                future.cancel(false);
+        }
+    }
+
+    // the offset right after the first non blank line, which is the header, -1 if there is none within the bytes
+    private static int headerEnd(byte[] bytes, int end) {
+        int lineStart = 0;
+        for (int i = 0; i <= end; i++) {
+            if (i == end || bytes[i] == '\n') {
+                int lineEnd = i > lineStart && bytes[i - 1] == '\r' ? i - 1 : i;
+                if (lineEnd > lineStart)
+                    return Math.min(i + 1, end);
+                lineStart = i + 1;
+            }
+        }
+        return -1;
+    }
+
+    private static String headerLine(byte[] bytes, int headerEnd) {
+        int end = headerEnd;
+        if (end > 0 && bytes[end - 1] == '\n')
+            end--;
+        if (end > 0 && bytes[end - 1] == '\r')
+            end--;
+        int start = end;
+        while (start > 0 && bytes[start - 1] != '\n')
+            start--;
+        return new String(bytes, start, end - start, StandardCharsets.UTF_8);
+    }
+
+    private static RateStore.Builder join(CompletableFuture<RateStore.Builder> future) throws IOException {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException)
+                throw (RuntimeException) e.getCause();
+            if (e.getCause() instanceof Error)
+                throw (Error) e.getCause();
+            throw new IOException(e.getCause());
+        }
+    }
+
+    // reads until the bytes are full or the input ends, returns the number of bytes read or -1 if there were none
+    private static int readFully(InputStream input, byte[] bytes, int offset, int length) throws IOException {
+        int total = 0;
+        while (total < length) {
+            int read = input.read(bytes, offset + total, length - total);
+            if (read < 0)
+                return total == 0 ? -1 : total;
+            total += read;
+        }
+        return total;
+    }
+}
@@ -0,0 +1,148 @@
+package com.currency.rates;
+
+import java.time.LocalDate;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+// computes average, highest, lowest, standard deviation and count of every currency over many date windows at once
+// the work is split into tasks of one currency and a block of windows that run on the common fork-join pool; a task
+// copies the rows its windows cover out of the column once and then scans each window in a single pass
+//
+// the scan keeps four independent lanes of accumulators and replaces the NaN checks by selects, so that the loop has no
+// data dependent branches and the jit can unroll it and keep the lanes in registers; the Vector API would need java 16+
+// so the scalar lanes are all there is for a java 8 build
+public final class RangeAnalytics {
+
+    private RangeAnalytics() {
+    }
+
+    public static StatsMatrix compute(RateTable rateTable, LocalDate[] starts, LocalDate[] ends) {
+        return compute(rateTable, starts, ends, true);
+    }
+
+    public static StatsMatrix compute(RateTable rateTable, LocalDate[] starts, LocalDate[] ends, boolean parallel) {
+        if (starts.length != ends.length)
+            throw new InvalidQueryException("Every window needs a start and an end date");
+
+        int windows = starts.length;
+        int[] fromRows = new int[windows];
+        int[] toRows = new int[windows];
+        for (int w = 0; w < windows; w++) {
+            if (starts[w].isAfter(ends[w]))
+                throw new InvalidQueryException("Invalid date range");
+            fromRows[w] = rateTable.lowerBound((int) starts[w].toEpochDay());
+            toRows[w] = rateTable.upperBound((int) ends[w].toEpochDay());
+        }
+
+        int currencies = rateTable.currencyCount();
+        StatsMatrix statsMatrix = new StatsMatrix(rateTable.getCurrencies(), starts.clone(), ends.clone());
+
+        // enough tasks to keep every core busy even when there are only a few currencies
+        int parallelism = parallel ? ForkJoinPool.getCommonPoolParallelism() : 1;
+        int blocks = currencies == 0 ? 1 : Math.max(1, Math.min(windows, (4 * parallelism + currencies - 1) / currencies));
+        int windowsPerBlock = (windows + blocks - 1) / Math.max(1, blocks);
+
+        IntStream tasks = IntStream.range(0, currencies * blocks);
+        if (parallel)
+            tasks = tasks.parallel();
+        tasks.forEach(task -> {
+            int column = task / blocks;
+            int fromWindow = (task % blocks) * windowsPerBlock;
+            int toWindow = Math.min(windows, fromWindow + windowsPerBlock);
+            computeColumn(rateTable, column, fromWindow, toWindow, fromRows, toRows, statsMatrix);
+        });
+
+        return statsMatrix;
+    }
+
+    private static void computeColumn(RateTable rateTable, int column, int fromWindow, int toWindow, int[] fromRows, int[] toRows, StatsMatrix statsMatrix) {
+        int spanFrom = Integer.MAX_VALUE;
+        int spanTo = 0;
+        for (int w = fromWindow; w < toWindow; w++) {
+            if (fromRows[w] < toRows[w]) {
+                spanFrom = Math.min(spanFrom, fromRows[w]);
+                spanTo = Math.max(spanTo, toRows[w]);
+            }
+        }
+
+        double[] values = new double[Math.max(0, spanTo - spanFrom)];
+        if (values.length > 0)
+            rateTable.copyRates(column, spanFrom, spanTo, values);
+
+        for (int w = fromWindow; w < toWindow; w++) {
+            if (fromRows[w] < toRows[w])
+                scan(values, fromRows[w] - spanFrom, toRows[w] - spanFrom, w, column, statsMatrix);
+            else
+                statsMatrix.set(w, column, 0, Double.NaN, Double.NaN, Double.NaN, Double.NaN);
+        }
+    }
+
+    // one pass over values[from, to), NaN values are skipped
+    static void scan(double[] values, int from, int to, int window, int column, StatsMatrix statsMatrix) {
+        int first = from;
+        while (first < to && Double.isNaN(values[first]))
+            first++;
+        if (first == to) {
+            statsMatrix.set(window, column, 0, Double.NaN, Double.NaN, Double.NaN, Double.NaN);
+            return;
+        }
+
+        // sums are taken relative to the first rate, so that the sum of squares does not cancel out for rates like IDR's
+        double shift = values[first];
+        int count0 = 0, count1 = 0, count2 = 0, count3 = 0;
+        double sum0 = 0, sum1 = 0, sum2 = 0, sum3 = 0;
+        double squares0 = 0, squares1 = 0, squares2 = 0, squares3 = 0;
+        double max0 = shift, max1 = shift, max2 = shift, max3 = shift;
+        double min0 = shift, min1 = shift, min2 = shift, min3 = shift;
+
+        // a comparison with NaN is always false, so NaN never becomes the highest or the lowest rate
+        int i = first;
+        for (; i + 3 < to; i += 4) {
+            double v0 = values[i], v1 = values[i + 1], v2 = values[i + 2], v3 = values[i + 3];
+            double d0 = v0 == v0 ? v0 - shift : 0;
+            double d1 = v1 == v1 ? v1 - shift : 0;
+            double d2 = v2 == v2 ? v2 - shift : 0;
+            double d3 = v3 == v3 ? v3 - shift : 0;
+            count0 += v0 == v0 ? 1 : 0;
+            count1 += v1 == v1 ? 1 : 0;
+            count2 += v2 == v2 ? 1 : 0;
+            count3 += v3 == v3 ? 1 : 0;
+            sum0 += d0;
+            sum1 += d1;
+            sum2 += d2;
+            sum3 += d3;
+            squares0 += d0 * d0;
+            squares1 += d1 * d1;
+            squares2 += d2 * d2;
+            squares3 += d3 * d3;
+            max0 = v0 > max0 ? v0 : max0;
+            max1 = v1 > max1 ? v1 : max1;
+            max2 = v2 > max2 ? v2 : max2;
+            max3 = v3 > max3 ? v3 : max3;
+            min0 = v0 < min0 ? v0 : min0;
+            min1 = v1 < min1 ? v1 : min1;
+            min2 = v2 < min2 ? v2 : min2;
+            min3 = v3 < min3 ? v3 : min3;
+        }
+        for (; i < to; i++) {
+            double v = values[i];
+            double d = v == v ? v - shift : 0;
+            count0 += v == v ? 1 : 0;
+            sum0 += d;
+            squares0 += d * d;
+            max0 = v > max0 ? v : max0;
+            min0 = v < min0 ? v : min0;
+        }
+
+        int count = count0 + count1 + count2 + count3;
+        double sum = (sum0 + sum1) + (sum2 + sum3);
+        double squares = (squares0 + squares1) + (squares2 + squares3);
+        double average = shift + sum / count;
+        double standardDeviation = count < 2 ? Double.NaN : Math.sqrt(Math.max(0, (squares - sum * sum / count) / (count - 1)));
+
+        statsMatrix.set(window, column, count, average,
+                Math.max(Math.max(max0, max1), Math.max(max2, max3)),
+                Math.min(Math.min(min0, min1), Math.min(min2, min3)),
+                standardDeviation);
+    }
+}
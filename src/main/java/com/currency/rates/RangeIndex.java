@@ -0,0 +1,196 @@
+package com.currency.rates;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+// range query index over a table of rates
+// for every currency it keeps prefix sums and prefix counts of the applicable rates, so that the average of any range of rows
+// is a subtraction and a division, and two segment trees that answer the highest and the lowest rate of a range in O(log n)
+// row ranges are half open, [fromRow, toRow), and non-applicable (NaN) rates are ignored by every statistic
+//
+// the index of a currency is only built the first time the currency is queried, so tables whose columns are loaded
+// lazily, see MergedRateTable, only pay for the currencies that are actually in use
+//
+// the arrays are allocated with spare capacity, so that rows appended to the table can be indexed in place by appendRows:
+// the prefix arrays grow by one entry and each tree updates the path from the new leaf to the root; queries only ever
+// read tree nodes that lie completely within their range, so an older index sharing the arrays never sees the new rows
+public class RangeIndex {
+
+    private static final class Column {
+        private final double[] prefixSums;
+        private final int[] prefixCounts;
+        // the leaves live at [capacity, 2 * capacity), unused leaves hold the neutral -/+ infinity
+        private final double[] maxTree;
+        private final double[] minTree;
+
+        private Column(int capacity) {
+            this.prefixSums = new double[capacity + 1];
+            this.prefixCounts = new int[capacity + 1];
+            this.maxTree = new double[2 * capacity];
+            this.minTree = new double[2 * capacity];
+            Arrays.fill(maxTree, Double.NEGATIVE_INFINITY);
+            Arrays.fill(minTree, Double.POSITIVE_INFINITY);
+        }
+    }
+
+    private final RateTable rateTable;
+    private final int size;
+    private final int capacity;
+    private final AtomicReferenceArray<Column> columns;
+    // tables that drop columns again, see MergedRateTable, drop the index of the column with them
+    private final ColumnEvictionListener evictionListener;
+    // number of rows indexed in the shared arrays, by this index or by any index appended to it
+    private final AtomicInteger extent;
+
+    public RangeIndex(RateTable rateTable) {
+        this(rateTable, capacityFor(rateTable.size()), new AtomicReferenceArray<>(rateTable.currencyCount()), new AtomicInteger(rateTable.size()));
+    }
+
+    private RangeIndex(RateTable rateTable, int capacity, AtomicReferenceArray<Column> columns, AtomicInteger extent) {
+        this.rateTable = rateTable;
+        this.size = rateTable.size();
+        this.capacity = capacity;
+        this.columns = columns;
+        this.evictionListener = column -> columns.set(column, null);
+        rateTable.addColumnEvictionListener(evictionListener);
+        this.extent = extent;
+    }
+
+    // the next power of two above the number of rows, so there is always room for at least one more row and the
+    // rebuild when the capacity runs out doubles it, which keeps appending amortized constant per currency
+    static int capacityFor(int rows) {
+        return Integer.highestOneBit(Math.max(4, rows)) << 1;
+    }
+
+    private Column column(int c) {
+        Column column = columns.get(c);
+        if (column == null) {
+            // two threads might both build the same column, either result is equally valid
+            column = buildColumn(c);
+            if (!columns.compareAndSet(c, null, column))
+                column = columns.get(c);
+        }
+        return column;
+    }
+
+    // true once the index of the currency has been built, later queries of it no longer touch the table
+    public boolean isBuilt(int c) {
+        return columns.get(c) != null;
+    }
+
+    private Column buildColumn(int c) {
+        Column column = new Column(capacity);
+        double[] rates = new double[size];
+        rateTable.copyRates(c, 0, size, rates);
+
+        for (int row = 0; row < size; row++) {
+            double rate = rates[row];
+            boolean applicable = !Double.isNaN(rate);
+            column.prefixSums[row + 1] = column.prefixSums[row] + (applicable ? rate : 0);
+            column.prefixCounts[row + 1] = column.prefixCounts[row] + (applicable ? 1 : 0);
+            column.maxTree[capacity + row] = applicable ? rate : Double.NEGATIVE_INFINITY;
+            column.minTree[capacity + row] = applicable ? rate : Double.POSITIVE_INFINITY;
+        }
+        for (int node = capacity - 1; node > 0; node--) {
+            column.maxTree[node] = Math.max(column.maxTree[2 * node], column.maxTree[2 * node + 1]);
+            column.minTree[node] = Math.min(column.minTree[2 * node], column.minTree[2 * node + 1]);
+        }
+
+        return column;
+    }
+
+    // index of the given table, which must hold the rows and currencies of the table this index was built for unchanged
+    // (the same lineage) plus rows appended after them; each appended row costs O(log n) per indexed currency, while
+    // currencies that were never queried stay unbuilt; other currencies or a full capacity start from scratch
+    public RangeIndex appendRows(RateTable rateTable) {
+        int newSize = rateTable.size();
+        int currencies = columns.length();
+        if (newSize < size || rateTable.currencyCount() != currencies || newSize > capacity
+                || !extent.compareAndSet(size, newSize))
+            return new RangeIndex(rateTable);
+
+        // the new index gets its own set of columns, so a column this index builds later on is never shared with it
+        AtomicReferenceArray<Column> newColumns = new AtomicReferenceArray<>(currencies);
+        for (int c = 0; c < currencies; c++) {
+            Column column = columns.get(c);
+            if (column == null)
+                continue;
+
+            for (int row = size; row < newSize; row++) {
+                double rate = rateTable.getRate(c, row);
+                boolean applicable = !Double.isNaN(rate);
+                column.prefixSums[row + 1] = column.prefixSums[row] + (applicable ? rate : 0);
+                column.prefixCounts[row + 1] = column.prefixCounts[row] + (applicable ? 1 : 0);
+                int node = capacity + row;
+                column.maxTree[node] = applicable ? rate : Double.NEGATIVE_INFINITY;
+                column.minTree[node] = applicable ? rate : Double.POSITIVE_INFINITY;
+                for (node >>= 1; node > 0; node >>= 1) {
+                    column.maxTree[node] = Math.max(column.maxTree[2 * node], column.maxTree[2 * node + 1]);
+                    column.minTree[node] = Math.min(column.minTree[2 * node], column.minTree[2 * node + 1]);
+                }
+            }
+            newColumns.set(c, column);
+        }
+
+        return new RangeIndex(rateTable, capacity, newColumns, extent);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    // number of applicable rates within the range
+    public int count(int column, int fromRow, int toRow) {
+        checkRange(fromRow, toRow);
+        int[] prefixCounts = column(column).prefixCounts;
+        return prefixCounts[toRow] - prefixCounts[fromRow];
+    }
+
+    public double sum(int column, int fromRow, int toRow) {
+        checkRange(fromRow, toRow);
+        double[] prefixSums = column(column).prefixSums;
+        return prefixSums[toRow] - prefixSums[fromRow];
+    }
+
+    // NaN when there is no applicable rate within the range
+    public double average(int column, int fromRow, int toRow) {
+        int count = count(column, fromRow, toRow);
+        return count == 0 ? Double.NaN : sum(column, fromRow, toRow) / count;
+    }
+
+    // NaN when there is no applicable rate within the range
+    public double max(int column, int fromRow, int toRow) {
+        checkRange(fromRow, toRow);
+        double[] tree = column(column).maxTree;
+        double highest = Double.NEGATIVE_INFINITY;
+        for (int left = fromRow + capacity, right = toRow + capacity; left < right; left >>= 1, right >>= 1) {
+            if ((left & 1) == 1)
+                highest = Math.max(highest, tree[left++]);
+            if ((right & 1) == 1)
+                highest = Math.max(highest, tree[--right]);
+        }
+
+        return highest == Double.NEGATIVE_INFINITY ? Double.NaN : highest;
+    }
+
+    // NaN when there is no applicable rate within the range
+    public double min(int column, int fromRow, int toRow) {
+        checkRange(fromRow, toRow);
+        double[] tree = column(column).minTree;
+        double lowest = Double.POSITIVE_INFINITY;
+        for (int left = fromRow + capacity, right = toRow + capacity; left < right; left >>= 1, right >>= 1) {
+            if ((left & 1) == 1)
+                lowest = Math.min(lowest, tree[left++]);
+            if ((right & 1) == 1)
+                lowest = Math.min(lowest, tree[--right]);
+        }
+
+        return lowest == Double.POSITIVE_INFINITY ? Double.NaN : lowest;
+    }
+
+    private void checkRange(int fromRow, int toRow) {
+        if (fromRow < 0 || toRow > size || fromRow > toRow)
+            throw new IndexOutOfBoundsException("Invalid row range [" + fromRow + ", " + toRow + ") for " + size + " rows");
+    }
+}
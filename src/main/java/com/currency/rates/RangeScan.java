@@ -0,0 +1,144 @@
+package com.currency.rates;
+
+import java.time.LocalDate;
+
+// a single pass over the stored rates of one currency between two dates
+// the bounds are turned into rows with two binary searches, so the work is proportional to the trading days within the
+// range rather than to the calendar days, and it is a plain loop that is safe for ranges of any length; the rates are
+// copied out of the table in small chunks, which keeps compressed and memory mapped tables off the per row path
+//
+// several accumulators can be filled in the same pass, i.e the average, the highest and the lowest rate at once; an
+// accumulator that returns false is no longer fed and the scan ends as soon as none of them wants more rates
+public final class RangeScan {
+
+    private static final int CHUNK_SIZE = 256;
+
+    private RangeScan() {
+    }
+
+    // scans the rates of the column from start to end, both included, and returns the number of rows that were read
+    public static int scan(RateTable rateTable, int column, LocalDate start, LocalDate end, RateAccumulator... accumulators) {
+        if (start.isAfter(end))
+            throw new InvalidQueryException("Invalid date range");
+        return scan(rateTable, column, rateTable.lowerBound((int) start.toEpochDay()), rateTable.upperBound((int) end.toEpochDay()), accumulators);
+    }
+
+    // scans the rows [fromRow, toRow) of the column, NaN rates are skipped
+    public static int scan(RateTable rateTable, int column, int fromRow, int toRow, RateAccumulator... accumulators) {
+        int active = accumulators.length;
+        boolean[] stopped = new boolean[accumulators.length];
+        double[] rates = new double[Math.max(0, Math.min(CHUNK_SIZE, toRow - fromRow))];
+
+        int row = fromRow;
+        while (row < toRow && active > 0) {
+            int chunkStart = row;
+            int chunkEnd = Math.min(toRow, chunkStart + rates.length);
+            rateTable.copyRates(column, chunkStart, chunkEnd, rates);
+            for (; row < chunkEnd && active > 0; row++) {
+                double rate = rates[row - chunkStart];
+                if (Double.isNaN(rate))
+                    continue;
+                int epochDay = rateTable.getDate(row);
+                for (int i = 0; i < accumulators.length; i++) {
+                    if (!stopped[i] && !accumulators[i].add(epochDay, rate)) {
+                        stopped[i] = true;
+                        active--;
+                    }
+                }
+            }
+        }
+        return row - fromRow;
+    }
+
+    // count, sum and average of the rates
+    public static final class Sum implements RateAccumulator {
+        private int count;
+        private double sum;
+
+        @Override
+        public boolean add(int epochDay, double rate) {
+            count++;
+            sum += rate;
+            return true;
+        }
+
+        @Override
+        public void reset() {
+            count = 0;
+            sum = 0;
+        }
+
+        public int getCount() {
+            return count;
+        }
+
+        public double getSum() {
+            return sum;
+        }
+
+        // NaN when there was no rate
+        public double getAverage() {
+            return count == 0 ? Double.NaN : sum / count;
+        }
+    }
+
+    // the highest rate and the first date it was reached on
+    public static final class Max implements RateAccumulator {
+        private double max = Double.NaN;
+        private int epochDay;
+
+        @Override
+        public boolean add(int epochDay, double rate) {
+            if (!(rate <= max)) {
+                max = rate;
+                this.epochDay = epochDay;
+            }
+            return true;
+        }
+
+        @Override
+        public void reset() {
+            max = Double.NaN;
+            epochDay = 0;
+        }
+
+        // NaN when there was no rate
+        public double getMax() {
+            return max;
+        }
+
+        public LocalDate getDate() {
+            return Double.isNaN(max) ? null : LocalDate.ofEpochDay(epochDay);
+        }
+    }
+
+    // the lowest rate and the first date it was reached on
+    public static final class Min implements RateAccumulator {
+        private double min = Double.NaN;
+        private int epochDay;
+
+        @Override
+        public boolean add(int epochDay, double rate) {
+            if (!(rate >= min)) {
+                min = rate;
+                this.epochDay = epochDay;
+            }
+            return true;
+        }
+
+        @Override
+        public void reset() {
+            min = Double.NaN;
+            epochDay = 0;
+        }
+
+        // NaN when there was no rate
+        public double getMin() {
+            return min;
+        }
+
+        public LocalDate getDate() {
+            return Double.isNaN(min) ? null : LocalDate.ofEpochDay(epochDay);
+        }
+    }
+}
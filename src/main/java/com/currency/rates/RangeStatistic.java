@@ -0,0 +1,8 @@
+package com.currency.rates;
+
+// the statistics that can be retrieved for a currency within a region of dates
+public enum RangeStatistic {
+    HIGHEST,
+    LOWEST,
+    AVERAGE
+}
@@ -0,0 +1,12 @@
+package com.currency.rates;
+
+// receives the applicable rates of a range one by one, see RangeScan
+// an accumulator keeps its state between scans, so the same instance can collect several ranges or be reset and reused
+public interface RateAccumulator {
+
+    // called for every applicable rate in ascending date order; returning false stops feeding this accumulator
+    boolean add(int epochDay, double rate);
+
+    // forgets everything accumulated so far
+    void reset();
+}
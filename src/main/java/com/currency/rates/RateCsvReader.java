@@ -0,0 +1,327 @@
+package com.currency.rates;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.zip.GZIPInputStream;
+
+// streaming reader for csv files in the format of the ecb's eurofxref-hist.csv
+// the bytes are tokenized straight from a reusable buffer, dates and decimals are parsed by hand, so apart from the header
+// no strings or arrays get created per line or per cell; gzip compressed input is detected by its magic number
+public final class RateCsvReader {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    // powers of ten that are exactly representable as doubles
+    private static final double[] POWERS_OF_TEN = new double[23];
+
+    static {
+        POWERS_OF_TEN[0] = 1;
+        for (int i = 1; i < POWERS_OF_TEN.length; i++)
+            POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+    }
+
+    // anything bytes can be pulled from, returns -1 at the end of the input
+    private interface Source {
+        int read(byte[] buffer, int offset, int length) throws IOException;
+    }
+
+    private final RateRowVisitor visitor;
+    private byte[] buffer = new byte[BUFFER_SIZE];
+    private boolean headerRead;
+    private int dateField;
+    private int[] fieldToColumn;
+    private double[] rates;
+    private long rows;
+
+    private RateCsvReader(RateRowVisitor visitor) {
+        this.visitor = visitor;
+    }
+
+    public static void read(Path path, RateRowVisitor visitor) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            read(channel, visitor);
+        }
+    }
+
+    public static void read(InputStream inputStream, RateRowVisitor visitor) throws IOException {
+        new RateCsvReader(visitor).parse(inputStream::read);
+    }
+
+    public static void read(ReadableByteChannel channel, RateRowVisitor visitor) throws IOException {
+        new RateCsvReader(visitor).parse((buffer, offset, length) -> channel.read(ByteBuffer.wrap(buffer, offset, length)));
+    }
+
+    // parses the lines of bytes[start, end) as rows of a file with the given header line, the header is handed to the
+    // visitor first; used by ParallelCsvReader to parse the chunks of a file independently of each other
+    static void readLines(String header, byte[] bytes, int start, int end, RateRowVisitor visitor) {
+        RateCsvReader reader = new RateCsvReader(visitor);
+        reader.header(header);
+        reader.buffer = bytes;
+
+        int lineStart = start;
+        for (int i = start; i < end; i++) {
+            if (bytes[i] == '\n') {
+                reader.line(lineStart, i);
+                lineStart = i + 1;
+            }
+        }
+        if (lineStart < end)
+            reader.line(lineStart, end);
+    }
+
+    // gzip streams start with 0x1f 0x8b
+    static boolean isGzip(byte[] bytes, int length) {
+        return length >= 2 && bytes[0] == (byte) 0x1f && bytes[1] == (byte) 0x8b;
+    }
+
+    private void parse(Source source) throws IOException {
+        // a read may return fewer bytes than asked for, down to a single one, so reading goes on until both bytes of the
+        // gzip magic number are there or the input ends
+        int limit = 0;
+        boolean endOfInput = false;
+        while (limit < 2 && !endOfInput) {
+            int read = fill(source, limit);
+            if (read < 0)
+                endOfInput = true;
+            else
+                limit += read;
+        }
+
+        // the bytes that were already consumed to detect gzip are put in front of the rest of the input
+        if (isGzip(buffer, limit)) {
+            InputStream compressed = new SequenceInputStream(new ByteArrayInputStream(Arrays.copyOf(buffer, limit)), asInputStream(source));
+            GZIPInputStream decompressed = new GZIPInputStream(compressed, BUFFER_SIZE);
+            source = decompressed::read;
+            limit = Math.max(fill(source, 0), 0);
+            endOfInput = limit == 0;
+        }
+
+        int start = 0;
+        int scan = 0;
+
+        while (true) {
+            while (scan < limit && buffer[scan] != '\n')
+                scan++;
+
+            if (scan < limit) {
+                line(start, scan);
+                start = ++scan;
+            } else if (endOfInput) {
+                if (start < limit)
+                    line(start, limit);
+                break;
+            } else {
+                // the line continues beyond the buffer, the partial line is moved to the front before reading more
+                int remaining = limit - start;
+                if (start == 0 && limit == buffer.length)
+                    buffer = Arrays.copyOf(buffer, buffer.length * 2);
+                else
+                    System.arraycopy(buffer, start, buffer, 0, remaining);
+                start = 0;
+                scan = remaining;
+                limit = remaining;
+                int read = fill(source, remaining);
+                if (read < 0)
+                    endOfInput = true;
+                else
+                    limit += read;
+            }
+        }
+    }
+
+    // reads from the source into the buffer starting at the offset, returns the number of bytes read or -1 at the end of the input
+    // sources are expected to block, a read of 0 bytes is simply retried
+    private int fill(Source source, int offset) throws IOException {
+        int read;
+        do {
+            read = source.read(buffer, offset, buffer.length - offset);
+        } while (read == 0);
+
+        return read;
+    }
+
+    private void line(int start, int end) {
+        if (end > start && buffer[end - 1] == '\r')
+            end--;
+        if (end == start)
+            return;
+
+        if (!headerRead) {
+            header(new String(buffer, start, end - start, StandardCharsets.UTF_8));
+            return;
+        }
+
+        Arrays.fill(rates, Double.NaN);
+        int epochDay = 0;
+        boolean dateFound = false;
+        int field = 0;
+        int fieldStart = start;
+        for (int i = start; i <= end; i++) {
+            if (i == end || buffer[i] == ',') {
+                if (field == dateField) {
+                    epochDay = parseDate(buffer, fieldStart, i);
+                    dateFound = true;
+                } else if (field < fieldToColumn.length && fieldToColumn[field] >= 0) {
+                    rates[fieldToColumn[field]] = parseRate(buffer, fieldStart, i);
+                }
+                field++;
+                fieldStart = i + 1;
+            }
+        }
+
+        if (!dateFound)
+            throw new IllegalArgumentException("Missing date on line " + (rows + 2));
+        rows++;
+        visitor.row(epochDay, rates);
+    }
+
+    private void header(String header) {
+        // the file might have been saved with a byte order mark
+        if (header.startsWith("\uFEFF"))
+            header = header.substring(1);
+
+        String[] tokens = header.split(",");
+        dateField = 0;
+        for (int i = 0; i < tokens.length; i++) {
+            if (tokens[i].trim().equalsIgnoreCase("Date")) {
+                dateField = i;
+                break;
+            }
+        }
+
+        fieldToColumn = new int[tokens.length];
+        int columns = 0;
+        for (int i = 0; i < tokens.length; i++)
+            fieldToColumn[i] = (i == dateField || tokens[i].trim().isEmpty()) ? -1 : columns++;
+
+        String[] currencies = new String[columns];
+        for (int i = 0; i < tokens.length; i++) {
+            if (fieldToColumn[i] >= 0)
+                currencies[fieldToColumn[i]] = tokens[i].trim().toUpperCase();
+        }
+
+        rates = new double[columns];
+        headerRead = true;
+        visitor.header(header, currencies);
+    }
+
+    // parses dates in the yyyy-MM-dd format without creating a LocalDate, anything else is left to LocalDate.parse
+    static int parseDate(byte[] bytes, int start, int end) {
+        if (end - start == 10 && bytes[start + 4] == '-' && bytes[start + 7] == '-') {
+            int year = digits(bytes, start, start + 4);
+            int month = digits(bytes, start + 5, start + 7);
+            int day = digits(bytes, start + 8, start + 10);
+            if (year >= 0 && month >= 1 && month <= 12 && day >= 1 && day <= lengthOfMonth(year, month))
+                return epochDay(year, month, day);
+        }
+
+        return (int) LocalDate.parse(new String(bytes, start, end - start, StandardCharsets.US_ASCII)).toEpochDay();
+    }
+
+    // parses a plain decimal like 1.1876 or 17671.49 into the same double Double.parseDouble would produce
+    // the digits are accumulated into a long and divided by a power of ten, which is exact as long as both fit in 53 bits
+    static double parseRate(byte[] bytes, int start, int end) {
+        while (start < end && bytes[start] == ' ')
+            start++;
+        while (end > start && bytes[end - 1] == ' ')
+            end--;
+
+        if (start == end)
+            return Double.NaN;
+        if (end - start == 3 && (bytes[start] | 0x20) == 'n' && bytes[start + 1] == '/' && (bytes[start + 2] | 0x20) == 'a')
+            return Double.NaN;
+
+        boolean negative = bytes[start] == '-';
+        int i = negative || bytes[start] == '+' ? start + 1 : start;
+        long mantissa = 0;
+        boolean anyDigit = false;
+        int digits = 0;
+        int decimals = -1;
+        for (; i < end; i++) {
+            byte b = bytes[i];
+            if (b >= '0' && b <= '9') {
+                mantissa = mantissa * 10 + (b - '0');
+                anyDigit = true;
+                if (mantissa != 0)
+                    digits++;
+                if (decimals >= 0)
+                    decimals++;
+            } else if (b == '.' && decimals < 0) {
+                decimals = 0;
+            } else {
+                break;
+            }
+        }
+
+        // exponents, very long numbers or anything unexpected take the slow path
+        if (i < end || !anyDigit || digits > 15 || decimals >= POWERS_OF_TEN.length)
+            return Double.parseDouble(new String(bytes, start, end - start, StandardCharsets.US_ASCII));
+
+        double value = decimals > 0 ? mantissa / POWERS_OF_TEN[decimals] : mantissa;
+        return negative ? -value : value;
+    }
+
+    private static int digits(byte[] bytes, int start, int end) {
+        int value = 0;
+        for (int i = start; i < end; i++) {
+            int digit = bytes[i] - '0';
+            if (digit < 0 || digit > 9)
+                return -1;
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+
+    private static int lengthOfMonth(int year, int month) {
+        switch (month) {
+            case 2:
+                return ((year & 3) == 0 && (year % 100 != 0 || year % 400 == 0)) ? 29 : 28;
+            case 4:
+            case 6:
+            case 9:
+            case 11:
+                return 30;
+            default:
+                return 31;
+        }
+    }
+
+    // days since 1970-01-01 for a date of the proleptic gregorian calendar, the same value LocalDate.toEpochDay returns
+    static int epochDay(int year, int month, int day) {
+        int y = month <= 2 ? year - 1 : year;
+        int era = (y >= 0 ? y : y - 399) / 400;
+        int yearOfEra = y - era * 400;
+        int dayOfYear = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+        int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097 + dayOfEra - 719468;
+    }
+
+    private static InputStream asInputStream(Source source) {
+        return new InputStream() {
+            @Override
+            public int read() throws IOException {
+                byte[] single = new byte[1];
+                int read;
+                do {
+                    read = source.read(single, 0, 1);
+                } while (read == 0);
+                return read < 0 ? -1 : single[0] & 0xff;
+            }
+
+            @Override
+            public int read(byte[] buffer, int offset, int length) throws IOException {
+                return length == 0 ? 0 : source.read(buffer, offset, length);
+            }
+        };
+    }
+}
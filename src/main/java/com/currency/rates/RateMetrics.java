@@ -0,0 +1,177 @@
+package com.currency.rates;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.ToLongFunction;
+
+// the built in metrics sink: a latency histogram per operation, error counts by cause and the rows and bytes ingested,
+// together with the size of the loaded rates and the statistics of the cross rate and stats caches of the parser it is attached to
+// everything can be read as a text dump or through jmx, where it is registered as com.currency.rates:type=RateMetrics
+public class RateMetrics implements MetricsSink, RateMetricsMXBean {
+
+    public static final String OBJECT_NAME = "com.currency.rates:type=RateMetrics";
+
+    private final CsvParser csvParser;
+    private final LatencyHistogram[] histograms;
+    private final Map<String, LongAdder> errors = new ConcurrentHashMap<>();
+    private final LongAdder rows = new LongAdder();
+    private final LongAdder bytes = new LongAdder();
+
+    private RateMetrics(CsvParser csvParser) {
+        this.csvParser = csvParser;
+        this.histograms = new LatencyHistogram[Operation.values().length];
+        for (int i = 0; i < histograms.length; i++)
+            histograms[i] = new LatencyHistogram();
+    }
+
+    // creates the metrics and makes them the sink of the parser
+    public static RateMetrics enable(CsvParser csvParser) {
+        RateMetrics rateMetrics = new RateMetrics(csvParser);
+        csvParser.setMetricsSink(rateMetrics);
+        return rateMetrics;
+    }
+
+    public void registerMBean() {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, new ObjectName(OBJECT_NAME));
+        } catch (JMException e) {
+            throw new RuntimeException("Could not register the metrics with jmx: " + e.getMessage(), e);
+        }
+    }
+
+    public void unregisterMBean() {
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(new ObjectName(OBJECT_NAME));
+        } catch (JMException e) {
+            throw new RuntimeException("Could not unregister the metrics from jmx: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public void recordLatency(Operation operation, long nanos) {
+        histograms[operation.ordinal()].record(nanos);
+    }
+
+    @Override
+    public void recordError(Operation operation, String cause) {
+        errors.computeIfAbsent(operation + ": " + cause, key -> new LongAdder()).increment();
+    }
+
+    @Override
+    public void recordIngest(long rows, long bytes) {
+        this.rows.add(rows);
+        this.bytes.add(bytes);
+    }
+
+    public LatencyHistogram getHistogram(Operation operation) {
+        return histograms[operation.ordinal()];
+    }
+
+    private Map<String, Long> perOperation(ToLongFunction<LatencyHistogram> value) {
+        Map<String, Long> map = new TreeMap<>();
+        for (Operation operation : Operation.values())
+            map.put(operation.name(), value.applyAsLong(histograms[operation.ordinal()]));
+        return map;
+    }
+
+    @Override
+    public Map<String, Long> getCallCounts() {
+        return perOperation(LatencyHistogram::getCount);
+    }
+
+    @Override
+    public Map<String, Long> getMedianNanos() {
+        return perOperation(histogram -> histogram.getPercentile(50));
+    }
+
+    @Override
+    public Map<String, Long> getP99Nanos() {
+        return perOperation(histogram -> histogram.getPercentile(99));
+    }
+
+    @Override
+    public Map<String, Long> getMaxNanos() {
+        return perOperation(LatencyHistogram::getMax);
+    }
+
+    @Override
+    public Map<String, Long> getErrorCounts() {
+        Map<String, Long> map = new TreeMap<>();
+        for (Map.Entry<String, LongAdder> entry : errors.entrySet())
+            map.put(entry.getKey(), entry.getValue().sum());
+        return map;
+    }
+
+    @Override
+    public long getRowsIngested() {
+        return rows.sum();
+    }
+
+    @Override
+    public long getBytesIngested() {
+        return bytes.sum();
+    }
+
+    @Override
+    public int getLoadedRows() {
+        return csvParser.getRateTable().size();
+    }
+
+    @Override
+    public int getLoadedCurrencies() {
+        return csvParser.getRateTable().currencyCount();
+    }
+
+    @Override
+    public double getCrossRateCacheHitRate() {
+        return csvParser.getCrossRateCache().getHitRate();
+    }
+
+    @Override
+    public double getStatsCacheSavedRate() {
+        return csvParser.getStatsCache().getSavedRate();
+    }
+
+    @Override
+    public double getStatsCoalescingRatio() {
+        return csvParser.getStatsCache().getCoalescingRatio();
+    }
+
+    // one line per operation that has been called, then the errors, the ingest counters and the caches
+    @Override
+    public String dump() {
+        StringBuilder builder = new StringBuilder();
+        builder.append(String.format("%-14s %10s %10s %10s %10s %10s %12s%n", "operation", "count", "mean us", "p50 us", "p99 us", "p99.9 us", "max us"));
+        for (Operation operation : Operation.values()) {
+            LatencyHistogram histogram = histograms[operation.ordinal()];
+            if (histogram.getCount() == 0)
+                continue;
+            builder.append(String.format("%-14s %10d %10.1f %10.1f %10.1f %10.1f %12.1f%n", operation, histogram.getCount(),
+                    histogram.getMean() / 1000, histogram.getPercentile(50) / 1000.0, histogram.getPercentile(99) / 1000.0,
+                    histogram.getPercentile(99.9) / 1000.0, histogram.getMax() / 1000.0));
+        }
+        for (Map.Entry<String, Long> entry : getErrorCounts().entrySet())
+            builder.append("error ").append(entry.getKey()).append(" = ").append(entry.getValue()).append('\n');
+        builder.append("ingested rows = ").append(getRowsIngested()).append(", bytes = ").append(getBytesIngested()).append('\n');
+        builder.append("loaded rows = ").append(getLoadedRows()).append(", currencies = ").append(getLoadedCurrencies()).append('\n');
+        builder.append(csvParser.getCrossRateCache()).append('\n');
+        builder.append(csvParser.getStatsCache()).append('\n');
+
+        return builder.toString();
+    }
+
+    // clears the histograms, errors and ingest counters, the cache statistics belong to the cache and are kept
+    @Override
+    public void reset() {
+        for (LatencyHistogram histogram : histograms)
+            histogram.reset();
+        errors.clear();
+        rows.reset();
+        bytes.reset();
+    }
+}
@@ -0,0 +1,38 @@
+package com.currency.rates;
+
+import java.util.Map;
+
+// jmx view of RateMetrics, the maps are keyed by operation name and every duration is in nanoseconds
+public interface RateMetricsMXBean {
+
+    Map<String, Long> getCallCounts();
+
+    Map<String, Long> getMedianNanos();
+
+    Map<String, Long> getP99Nanos();
+
+    Map<String, Long> getMaxNanos();
+
+    // keyed by "operation: cause"
+    Map<String, Long> getErrorCounts();
+
+    long getRowsIngested();
+
+    long getBytesIngested();
+
+    int getLoadedRows();
+
+    int getLoadedCurrencies();
+
+    double getCrossRateCacheHitRate();
+
+    // share of the range statistics answered from the stats cache or by an identical query in flight
+    double getStatsCacheSavedRate();
+
+    // share of the range statistics missing the cache that waited for an identical query instead of computing it
+    double getStatsCoalescingRatio();
+
+    String dump();
+
+    void reset();
+}
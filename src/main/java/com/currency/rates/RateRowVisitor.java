@@ -0,0 +1,13 @@
+package com.currency.rates;
+
+// callback used by the csv reader to hand over the contents of a file as it is being read
+// the header arrives first, then one call per line of rates in the order they appear in the file
+public interface RateRowVisitor {
+
+    // header is the first line of the file as it is and currencies the upper case codes of its rate columns
+    void header(String header, String[] currencies);
+
+    // the rates array holds one rate per currency of the header, NaN where the rate is not applicable
+    // the same array is reused for every row, so implementations have to copy whatever they want to keep
+    void row(int epochDay, double[] rates);
+}
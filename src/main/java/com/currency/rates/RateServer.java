@@ -0,0 +1,272 @@
+package com.currency.rates;
+
+import com.currency.rates.MetricsSink.Operation;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.lang.reflect.Method;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// embedded http front end offering the operations of the interactive menu, built on the jdk's own http server
+//
+//   GET /rates?date=2020-09-14                                  the csv header and the rates of the date, as text/csv
+//   GET /stats/max?currency=USD&start=2020-09-07&end=2020-09-14 the highest rate of the range, as json
+//   GET /stats/avg?...  GET /stats/min?...                      the average and the lowest rate of the range
+//   GET /convert?date=2020-09-11&from=GBP&to=USD&amount=10      the converted amount, as json
+//   GET /metrics                                                the text dump of RateMetrics, when they are enabled
+//
+// /rates and /convert take an optional policy=previous|next|nearest that falls back to another date when the requested
+// one has no rates, see DatePolicy; the csv line starts with the date used and the json reports it as rateDate
+//
+// responses have a fixed length so connections are kept alive, invalid requests are answered with 400 and a json error,
+// any other failure with 500
+// handlers run on virtual threads when the jvm offers them and on a fixed pool of platform threads otherwise
+public class RateServer {
+
+    private final CsvParser csvParser;
+    private final HttpServer server;
+    private final ExecutorService executor;
+
+    public RateServer(CsvParser csvParser, int port) throws IOException {
+        this.csvParser = csvParser;
+        this.server = HttpServer.create(new InetSocketAddress(port), 0);
+        this.executor = newExecutor();
+
+        server.createContext("/rates", handler(Operation.RATES_BY_DATE, this::rates));
+        server.createContext("/stats/max", handler(Operation.RANGE_MAX, parameters -> stats(parameters, RangeStatistic.HIGHEST)));
+        server.createContext("/stats/min", handler(Operation.RANGE_MIN, parameters -> stats(parameters, RangeStatistic.LOWEST)));
+        server.createContext("/stats/avg", handler(Operation.RANGE_AVERAGE, parameters -> stats(parameters, RangeStatistic.AVERAGE)));
+        server.createContext("/convert", handler(Operation.CONVERT, this::convert));
+        server.createContext("/metrics", handler(null, this::metrics));
+        server.setExecutor(executor);
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    public void stop() {
+        server.stop(0);
+        executor.shutdown();
+        try {
+            executor.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // the actual port, useful when the server was created with port 0
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    private Response rates(Map<String, String> parameters) {
+        requireRates();
+        LocalDate date = LocalDate.parse(required(parameters, "date"));
+        // goes through the parser so the request is measured like any other query of the rates of a date
+        return new Response(200, "text/csv", csvParser.retrieveRatesWithHeader(date, policy(parameters)));
+    }
+
+    private Response stats(Map<String, String> parameters, RangeStatistic statistic) {
+        requireRates();
+        String currency = required(parameters, "currency").toUpperCase();
+        LocalDate start = LocalDate.parse(required(parameters, "start"));
+        LocalDate end = LocalDate.parse(required(parameters, "end"));
+        Double result = csvParser.getStatsForSpecificDates(start, end, currency, statistic);
+
+        return json("{\"currency\":\"" + escape(currency) + "\",\"start\":\"" + start + "\",\"end\":\"" + end
+                + "\",\"" + statistic.name().toLowerCase() + "\":" + result + "}");
+    }
+
+    private Response convert(Map<String, String> parameters) {
+        requireRates();
+        LocalDate date = LocalDate.parse(required(parameters, "date"));
+        String source = required(parameters, "from").toUpperCase();
+        String target = required(parameters, "to").toUpperCase();
+        double amount = Double.parseDouble(required(parameters, "amount"));
+        String json = "{\"date\":\"" + date + "\",\"from\":\"" + escape(source) + "\",\"to\":\"" + escape(target)
+                + "\",\"amount\":" + amount;
+
+        if (!parameters.containsKey("policy"))
+            return json(json + ",\"result\":" + csvParser.exchange(date, source, target, amount) + "}");
+
+        Conversion conversion = csvParser.exchange(date, source, target, amount, policy(parameters));
+        return json(json + ",\"rateDate\":\"" + conversion.getDate() + "\",\"result\":" + conversion.getResult() + "}");
+    }
+
+    // without rates every currency and date would look invalid, which is the server's problem and not the request's
+    private void requireRates() {
+        if (csvParser.getHeader() == null)
+            throw new IllegalStateException("No rates have been loaded");
+    }
+
+    private Response metrics(Map<String, String> parameters) {
+        MetricsSink metricsSink = csvParser.getMetricsSink();
+        if (!(metricsSink instanceof RateMetrics))
+            return error(404, "Metrics are not enabled");
+        return new Response(200, "text/plain", ((RateMetrics) metricsSink).dump());
+    }
+
+    // a parameter of the request itself is invalid, as opposed to the query the parser was asked
+    private static final class InvalidParameterException extends InvalidQueryException {
+        private static final long serialVersionUID = 1L;
+
+        private InvalidParameterException(String message) {
+            super(message);
+        }
+    }
+
+    private interface Endpoint {
+        Response handle(Map<String, String> parameters);
+    }
+
+    private static final class Response {
+        private final int status;
+        private final String contentType;
+        private final byte[] body;
+
+        private Response(int status, String contentType, String body) {
+            this(status, contentType, body.getBytes(StandardCharsets.UTF_8));
+        }
+
+        private Response(int status, String contentType, byte[] body) {
+            this.status = status;
+            this.contentType = contentType;
+            this.body = body;
+        }
+    }
+
+    // a parameter that is missing or cannot be parsed never reaches the parser, so the handler counts it for the operation
+    // itself, under the exception class like the parser does and without the text of the request
+    private HttpHandler handler(Operation operation, Endpoint endpoint) {
+        return exchange -> {
+            Response response;
+            try {
+                if (!exchange.getRequestMethod().equalsIgnoreCase("GET"))
+                    response = error(405, "Only GET requests are supported");
+                else
+                    response = endpoint.handle(parameters(exchange.getRequestURI().getRawQuery()));
+            } catch (DateTimeParseException e) {
+                recordError(operation, e);
+                response = error(400, "Invalid date");
+            } catch (NumberFormatException e) {
+                recordError(operation, e);
+                response = error(400, "Invalid amount");
+            } catch (InvalidParameterException e) {
+                recordError(operation, e);
+                response = error(400, e.getMessage());
+            } catch (InvalidQueryException e) {
+                response = error(400, e.getMessage());
+            } catch (RuntimeException e) {
+                // not the fault of the request, i.e no rates loaded or a bug, so it is neither blamed on the client
+                // nor are its details handed out
+                response = error(500, "Internal server error");
+            }
+            send(exchange, response);
+        };
+    }
+
+    private void recordError(Operation operation, RuntimeException e) {
+        MetricsSink metricsSink = csvParser.getMetricsSink();
+        if (operation != null && metricsSink.isEnabled())
+            metricsSink.recordError(operation, CsvParser.causeOf(e));
+    }
+
+    private static void send(HttpExchange exchange, Response response) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", response.contentType + "; charset=utf-8");
+        exchange.sendResponseHeaders(response.status, response.body.length);
+        try (OutputStream outputStream = exchange.getResponseBody()) {
+            outputStream.write(response.body);
+        }
+    }
+
+    private static Response json(String body) {
+        return new Response(200, "application/json", body);
+    }
+
+    private static Response error(int status, String message) {
+        return new Response(status, "application/json", "{\"error\":\"" + escape(message) + "\"}");
+    }
+
+    private static String required(Map<String, String> parameters, String name) {
+        String value = parameters.get(name);
+        if (value == null || value.isEmpty())
+            throw new InvalidParameterException("Missing parameter: " + name);
+        return value;
+    }
+
+    private static DatePolicy policy(Map<String, String> parameters) {
+        String policy = parameters.get("policy");
+        if (policy == null)
+            return DatePolicy.EXACT;
+        for (DatePolicy datePolicy : DatePolicy.values()) {
+            if (datePolicy.name().equalsIgnoreCase(policy))
+                return datePolicy;
+        }
+        throw new InvalidParameterException("Invalid policy: " + policy);
+    }
+
+    static Map<String, String> parameters(String query) {
+        Map<String, String> parameters = new HashMap<>();
+        if (query == null)
+            return parameters;
+
+        try {
+            for (String pair : query.split("&")) {
+                int separator = pair.indexOf('=');
+                if (separator > 0)
+                    parameters.put(URLDecoder.decode(pair.substring(0, separator), "UTF-8"), URLDecoder.decode(pair.substring(separator + 1), "UTF-8"));
+            }
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+
+        return parameters;
+    }
+
+    static String escape(String value) {
+        if (value == null)
+            return "";
+
+        StringBuilder builder = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\')
+                builder.append('\\').append(c);
+            else if (c < 0x20)
+                builder.append(String.format("\\u%04x", (int) c));
+            else
+                builder.append(c);
+        }
+        return builder.toString();
+    }
+
+    // virtual threads are only available from java 21 on, so they are looked up reflectively
+    private static ExecutorService newExecutor() {
+        try {
+            Method method = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) method.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            AtomicInteger threads = new AtomicInteger();
+            return Executors.newFixedThreadPool(Math.max(4, Runtime.getRuntime().availableProcessors() * 2), runnable -> {
+                Thread thread = new Thread(runnable, "rate-server-" + threads.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package com.currency.rates;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+// immutable bundle of everything a query needs: the rates, the range index built on top of them and the csv header
+// a snapshot never changes once it has been created, so any number of threads can read it without locking
+// new rates are published by creating a new snapshot, i.e through withRates, and swapping the reference to it
+public final class RateSnapshot {
+
+    private static final RateSnapshot EMPTY = new RateSnapshot(RateStore.empty(), null);
+
+    private final RateTable rateTable;
+    private final RangeIndex rangeIndex;
+    private final RenderedRows renderedRows;
+    private final String header;
+    private final String[] headerTokens;
+    // the nested map view is only built when someone asks for it, it is shared by every reader so it is read only
+    private volatile Map<String, Map<LocalDate, String>> supportedCurrencies;
+    // so are the fixed point rates, which are only used in NumericMode.FIXED_POINT
+    private volatile FixedPointRates fixedPointRates;
+    // and the skip arrays, which are only used by lookups falling back to another date
+    private volatile ValidRows validRows;
+
+    public RateSnapshot(RateTable rateTable, String header) {
+        this(rateTable, header, null);
+    }
+
+    RateSnapshot(RateTable rateTable, String header, Map<String, Map<LocalDate, String>> supportedCurrencies) {
+        this(rateTable, new RangeIndex(rateTable), new RenderedRows(rateTable), header, supportedCurrencies);
+    }
+
+    private RateSnapshot(RateTable rateTable, RangeIndex rangeIndex, RenderedRows renderedRows, String header, Map<String, Map<LocalDate, String>> supportedCurrencies) {
+        this.rateTable = rateTable;
+        this.rangeIndex = rangeIndex;
+        this.renderedRows = renderedRows;
+        this.header = header;
+        this.headerTokens = header == null ? new String[0] : header.split(",");
+        // a map handed in by a caller is copied, later changes to it must not show through the snapshot
+        this.supportedCurrencies = supportedCurrencies == null ? null : readOnly(supportedCurrencies, true);
+    }
+
+    public static RateSnapshot empty() {
+        return EMPTY;
+    }
+
+    public RateTable getRateTable() {
+        return rateTable;
+    }
+
+    public RangeIndex getRangeIndex() {
+        return rangeIndex;
+    }
+
+    public RenderedRows getRenderedRows() {
+        return renderedRows;
+    }
+
+    public String getHeader() {
+        return header;
+    }
+
+    public String[] getHeaderTokens() {
+        return headerTokens.clone();
+    }
+
+    public Map<String, Map<LocalDate, String>> getSupportedCurrencies() {
+        Map<String, Map<LocalDate, String>> map = supportedCurrencies;
+        // two threads might both build the map, either result is equally valid
+        if (map == null) {
+            map = readOnly(rateTable.toMap(), false);
+            supportedCurrencies = map;
+        }
+        return map;
+    }
+
+    private static Map<String, Map<LocalDate, String>> readOnly(Map<String, Map<LocalDate, String>> map, boolean copy) {
+        Map<String, Map<LocalDate, String>> readOnly = new HashMap<>();
+        for (Map.Entry<String, Map<LocalDate, String>> entry : map.entrySet())
+            readOnly.put(entry.getKey(), Collections.unmodifiableMap(copy ? new HashMap<>(entry.getValue()) : entry.getValue()));
+        return Collections.unmodifiableMap(readOnly);
+    }
+
+    public FixedPointRates getFixedPointRates() {
+        FixedPointRates rates = fixedPointRates;
+        // the columns themselves are built on first use, so a duplicate instance costs next to nothing
+        if (rates == null) {
+            rates = new FixedPointRates(rateTable);
+            fixedPointRates = rates;
+        }
+        return rates;
+    }
+
+    public ValidRows getValidRows() {
+        ValidRows rows = validRows;
+        if (rows == null) {
+            rows = new ValidRows(rateTable);
+            validRows = rows;
+        }
+        return rows;
+    }
+
+    // copy-on-write: returns a new snapshot that also holds the given rates, this snapshot stays untouched
+    // the rates follow the order of the currencies, a date that is already present gets its rates replaced
+    public RateSnapshot withRates(LocalDate date, double[] rates) {
+        if (rates.length != rateTable.currencyCount())
+            throw new IllegalArgumentException("The number of rates does not match the number of supported currencies");
+
+        RateStore rateStore = heapStore();
+        return derive(rateStore, rateStore.withRow((int) date.toEpochDay(), rates), header);
+    }
+
+    // merges all rows of the given table, i.e a daily csv file, whose columns are matched to the ones of this snapshot
+    // by currency code; currencies that are not known yet become new columns that are not applicable on earlier dates,
+    // known currencies missing from the rows are not applicable on the new dates, existing dates get replaced
+    public RateSnapshot withRows(RateTable rows) {
+        RateStore original = heapStore();
+        RateStore rateStore = original;
+        String newHeader = header == null ? "Date," : header;
+        for (int column = 0; column < rows.currencyCount(); column++) {
+            String currency = rows.getCurrency(column);
+            if (rateStore.indexOfCurrency(currency) < 0) {
+                rateStore = rateStore.withCurrency(currency);
+                newHeader = (newHeader.endsWith(",") ? newHeader : newHeader + ",") + currency + ",";
+            }
+        }
+
+        int[] columns = new int[rows.currencyCount()];
+        for (int column = 0; column < columns.length; column++)
+            columns[column] = rateStore.indexOfCurrency(rows.getCurrency(column));
+
+        double[] rowRates = new double[rateStore.currencyCount()];
+        for (int row = 0; row < rows.size(); row++) {
+            Arrays.fill(rowRates, Double.NaN);
+            for (int column = 0; column < columns.length; column++)
+                rowRates[columns[column]] = rows.getRate(column, row);
+            rateStore = rateStore.withRow(rows.getDate(row), rowRates);
+        }
+
+        return derive(original, rateStore, newHeader);
+    }
+
+    private RateStore heapStore() {
+        return rateTable instanceof RateStore ? (RateStore) rateTable : RateStore.copyOf(rateTable);
+    }
+
+    // rows that were only appended to the same lineage extend the index, the rendered lines, the skip arrays and the
+    // fixed point rates in place, any other change, i.e a replaced row or a new currency, rebuilds them
+    private RateSnapshot derive(RateStore original, RateStore updated, String newHeader) {
+        if (updated.getLineage() != original.getLineage() || updated.currencyCount() != rateTable.currencyCount())
+            return new RateSnapshot(updated, newHeader);
+
+        RangeIndex newRangeIndex = rateTable == original ? rangeIndex.appendRows(updated) : new RangeIndex(updated);
+        RateSnapshot derived = new RateSnapshot(updated, newRangeIndex, renderedRows.appendRows(updated), newHeader, null);
+        // the skip arrays and fixed point rates are only carried over once built, otherwise they stay lazy
+        if (rateTable == original) {
+            ValidRows rows = validRows;
+            if (rows != null)
+                derived.validRows = rows.appendRows(updated);
+            FixedPointRates rates = fixedPointRates;
+            if (rates != null)
+                derived.fixedPointRates = rates.appendRows(updated);
+        }
+        return derived;
+    }
+}
@@ -0,0 +1,207 @@
+package com.currency.rates;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+// compact binary snapshot of a table of rates that can be memory mapped instead of parsing the csv file on every start
+//
+// layout, all numbers little endian:
+//   0  magic "FXRS"            4  format version        8  number of currencies   12 number of dates
+//   16 first date (epoch day)  20 last date (epoch day) 24 checksum or fingerprint of the source csv
+//   32 crc32 of the dates and rates                     40 length of the csv header line
+//   44 crc32 of the first 44 bytes, the currency codes and the csv header line
+//   48 currency codes, 8 ascii bytes each, then the csv header line, padded to 8 bytes
+//   then the dates as ints, padded to 8 bytes, then one column of doubles per currency
+//
+// opening a snapshot only checks the layout against the size of the file and the checksum of everything up to the
+// dates, which is a few hundred bytes; the checksum of the dates and rates is only computed by verify, so a start does
+// not read the whole mapping, the pages are left to be loaded when they are queried
+public final class RateSnapshotFile {
+
+    static final int MAGIC = 0x53525846;
+    static final int VERSION = 2;
+    static final int HEADER_SIZE = 48;
+    static final int CURRENCY_CODE_SIZE = 8;
+
+    private RateSnapshotFile() {
+    }
+
+    // converts a csv file into a snapshot, the fingerprint of the csv is kept so that a snapshot of an older file can be
+    // told apart, see fingerprint
+    public static void convert(Path csv, Path snapshot) throws IOException {
+        long fingerprint = fingerprint(csv);
+        RateStore.Builder builder = new RateStore.Builder();
+        RateCsvReader.read(csv, builder);
+        if (builder.getHeader() == null)
+            throw new IOException("No header found in " + csv);
+
+        write(builder.build(), builder.getHeader(), fingerprint, snapshot);
+    }
+
+    public static void write(RateTable rateTable, String header, long sourceChecksum, Path snapshot) throws IOException {
+        int currencies = rateTable.currencyCount();
+        int rows = rateTable.size();
+        byte[] headerBytes = header.getBytes(StandardCharsets.UTF_8);
+
+        long fileSize = fileSize(currencies, rows, headerBytes.length);
+        if (fileSize > Integer.MAX_VALUE)
+            throw new IOException("Too many rates for a single snapshot");
+        int datesOffset = align(HEADER_SIZE + currencies * CURRENCY_CODE_SIZE + headerBytes.length);
+        int columnsOffset = align(datesOffset + rows * 4);
+
+        ByteBuffer buffer = ByteBuffer.allocate((int) fileSize).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(0, MAGIC);
+        buffer.putInt(4, VERSION);
+        buffer.putInt(8, currencies);
+        buffer.putInt(12, rows);
+        buffer.putInt(16, rows == 0 ? 0 : rateTable.getDate(0));
+        buffer.putInt(20, rows == 0 ? 0 : rateTable.getDate(rows - 1));
+        buffer.putLong(24, sourceChecksum);
+        buffer.putInt(40, headerBytes.length);
+
+        for (int c = 0; c < currencies; c++) {
+            byte[] code = rateTable.getCurrency(c).getBytes(StandardCharsets.US_ASCII);
+            if (code.length > CURRENCY_CODE_SIZE)
+                throw new IOException("Currency code too long: " + rateTable.getCurrency(c));
+            for (int i = 0; i < code.length; i++)
+                buffer.put(HEADER_SIZE + c * CURRENCY_CODE_SIZE + i, code[i]);
+        }
+        for (int i = 0; i < headerBytes.length; i++)
+            buffer.put(HEADER_SIZE + currencies * CURRENCY_CODE_SIZE + i, headerBytes[i]);
+
+        for (int row = 0; row < rows; row++)
+            buffer.putInt(datesOffset + row * 4, rateTable.getDate(row));
+        for (int c = 0; c < currencies; c++) {
+            int offset = columnsOffset + c * rows * 8;
+            for (int row = 0; row < rows; row++)
+                buffer.putDouble(offset + row * 8, rateTable.getRate(c, row));
+        }
+
+        buffer.putLong(32, dataChecksum(buffer, datesOffset));
+        buffer.putInt(44, (int) headerChecksum(buffer, datesOffset));
+
+        // the snapshot is written next to its final location and then moved, so readers never map a half written file
+        Path temporary = snapshot.resolveSibling(snapshot.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buffer.hasRemaining())
+                channel.write(buffer);
+        }
+        Files.move(temporary, snapshot, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // maps the snapshot read only, an unknown format version, a truncated file or a corrupted header is rejected
+    public static MappedRateStore open(Path snapshot) throws IOException {
+        return new MappedRateStore(map(snapshot));
+    }
+
+    // same as open, but also checks the dates and rates against their checksum, which reads the whole file
+    public static MappedRateStore verify(Path snapshot) throws IOException {
+        ByteBuffer buffer = map(snapshot);
+        if (buffer.getLong(32) != dataChecksum(buffer, datesOffset(buffer)))
+            throw new IOException("Corrupted snapshot: " + snapshot);
+        return new MappedRateStore(buffer);
+    }
+
+    private static ByteBuffer map(Path snapshot) throws IOException {
+        try (FileChannel channel = FileChannel.open(snapshot, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_SIZE || size > Integer.MAX_VALUE)
+                throw new IOException("Not a rate snapshot: " + snapshot);
+
+            // the mapping stays valid after the channel has been closed
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size).order(ByteOrder.LITTLE_ENDIAN);
+            if (buffer.getInt(0) != MAGIC)
+                throw new IOException("Not a rate snapshot: " + snapshot);
+            if (buffer.getInt(4) != VERSION)
+                throw new IOException("Unsupported snapshot version " + buffer.getInt(4) + ": " + snapshot);
+
+            // the counts are checked against the size of the file before any offset is derived from them, so a
+            // corrupted header fails here rather than with an exception from the buffers further down
+            int currencies = buffer.getInt(8);
+            int rows = buffer.getInt(12);
+            int headerLength = buffer.getInt(40);
+            if (currencies < 0 || rows < 0 || headerLength < 0 || currencies > size / CURRENCY_CODE_SIZE
+                    || rows > size / 4 || headerLength > size || fileSize(currencies, rows, headerLength) != size)
+                throw new IOException("Corrupted snapshot, the counts do not match the size of the file: " + snapshot);
+            int datesOffset = datesOffset(buffer);
+            if ((buffer.getInt(44) & 0xFFFFFFFFL) != headerChecksum(buffer, datesOffset))
+                throw new IOException("Corrupted snapshot header: " + snapshot);
+            if (rows > 0 && (buffer.getInt(datesOffset) != buffer.getInt(16) || buffer.getInt(datesOffset + (rows - 1) * 4) != buffer.getInt(20)))
+                throw new IOException("Corrupted snapshot, the dates do not match the header: " + snapshot);
+            return buffer;
+        }
+    }
+
+    // same as open, but a snapshot that was not converted from a csv file with the given checksum is rejected as stale
+    public static MappedRateStore open(Path snapshot, long expectedSourceChecksum) throws IOException {
+        MappedRateStore rateStore = open(snapshot);
+        if (rateStore.getSourceChecksum() != expectedSourceChecksum)
+            throw new IOException("Stale snapshot: " + snapshot);
+        return rateStore;
+    }
+
+    // size and modification time of a csv file, a cheaper way than its checksum to tell whether it changed
+    public static long fingerprint(Path csv) throws IOException {
+        return fingerprint(Files.size(csv), Files.getLastModifiedTime(csv).toMillis());
+    }
+
+    public static long fingerprint(long size, long lastModified) {
+        return lastModified * 0x9E3779B97F4A7C15L ^ size;
+    }
+
+    // crc32 of a csv file's contents, the stream is read to its end but not closed
+    public static long checksum(InputStream inputStream) throws IOException {
+        CRC32 crc = new CRC32();
+        byte[] buffer = new byte[64 * 1024];
+        int read;
+        while ((read = inputStream.read(buffer)) > 0)
+            crc.update(buffer, 0, read);
+        return crc.getValue();
+    }
+
+    static int align(int offset) {
+        return (offset + 7) & ~7;
+    }
+
+    // computed in longs, so counts read from a corrupted file cannot overflow
+    private static long fileSize(long currencies, long rows, long headerLength) {
+        long datesOffset = (HEADER_SIZE + currencies * CURRENCY_CODE_SIZE + headerLength + 7) & ~7L;
+        long columnsOffset = (datesOffset + rows * 4 + 7) & ~7L;
+        return columnsOffset + currencies * rows * 8;
+    }
+
+    private static int datesOffset(ByteBuffer buffer) {
+        return align(HEADER_SIZE + buffer.getInt(8) * CURRENCY_CODE_SIZE + buffer.getInt(40));
+    }
+
+    private static long headerChecksum(ByteBuffer buffer, int datesOffset) {
+        CRC32 crc = new CRC32();
+        crc.update(range(buffer, 0, 44));
+        crc.update(range(buffer, HEADER_SIZE, datesOffset));
+        return crc.getValue();
+    }
+
+    private static long dataChecksum(ByteBuffer buffer, int datesOffset) {
+        CRC32 crc = new CRC32();
+        crc.update(range(buffer, datesOffset, buffer.capacity()));
+        return crc.getValue();
+    }
+
+    private static ByteBuffer range(ByteBuffer buffer, int from, int to) {
+        ByteBuffer range = buffer.duplicate();
+        // cast for java 8, where Buffer.position does not return a ByteBuffer
+        ((Buffer) range).position(from).limit(to);
+        return range;
+    }
+}
@@ -0,0 +1,86 @@
+package com.currency.rates;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+// one file of rates that takes part in a MergedRateTable
+// a source describes its currencies and dates up front, while the rates of a currency are only read when asked for
+public interface RateSource {
+
+    // used in error messages, i.e the file name
+    String getName();
+
+    // upper case codes, in the order of the columns of the source
+    String[] getCurrencies();
+
+    // the dates of the source as ascending and unique epoch days
+    int[] getDates();
+
+    // the rates of one column, one per date of getDates and NaN where they are not applicable
+    double[] loadColumn(int column) throws IOException;
+
+    // the rates of every column on one date, given by its index within getDates, NaN where they are not applicable
+    double[] loadRow(int row) throws IOException;
+
+    // a csv file on disk, plain or gzip compressed, see CsvRateSource
+    static RateSource csv(Path path) throws IOException {
+        return new CsvRateSource(path.getFileName().toString(), () -> Files.newInputStream(path));
+    }
+
+    // a csv file from the classpath, like the ones in maven's resources folder
+    static RateSource resource(String name) throws IOException {
+        ClassLoader classLoader = RateSource.class.getClassLoader();
+        return new CsvRateSource(name, () -> {
+            InputStream inputStream = classLoader.getResourceAsStream(name);
+            if (inputStream == null)
+                throw new IOException("Resource not found: " + name);
+            return inputStream;
+        });
+    }
+
+    // a binary snapshot, the columns are copied out of the mapped file when they are loaded
+    static RateSource snapshot(Path path) throws IOException {
+        return of(path.getFileName().toString(), RateSnapshotFile.open(path));
+    }
+
+    // any table of rates, i.e one that has already been loaded
+    static RateSource of(String name, RateTable rateTable) {
+        int[] dates = new int[rateTable.size()];
+        for (int row = 0; row < dates.length; row++)
+            dates[row] = rateTable.getDate(row);
+        String[] currencies = rateTable.getCurrencies();
+
+        return new RateSource() {
+            @Override
+            public String getName() {
+                return name;
+            }
+
+            @Override
+            public String[] getCurrencies() {
+                return currencies.clone();
+            }
+
+            @Override
+            public int[] getDates() {
+                return dates.clone();
+            }
+
+            @Override
+            public double[] loadColumn(int column) {
+                double[] rates = new double[dates.length];
+                rateTable.copyRates(column, 0, dates.length, rates);
+                return rates;
+            }
+
+            @Override
+            public double[] loadRow(int row) {
+                double[] rates = new double[currencies.length];
+                rateTable.copyRow(row, rates);
+                return rates;
+            }
+        };
+    }
+}
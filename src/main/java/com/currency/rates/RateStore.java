@@ -0,0 +1,442 @@
+package com.currency.rates;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// columnar, primitive storage of the exchange rates on the heap
+// the dates of the csv file are kept as a sorted array of epoch days and every currency gets its own column of doubles,
+// where row i of a column holds the rate of that currency for dates[i]; "N/A" (or an empty cell) is stored as NaN
+//
+// rows appended after the last date are written into spare capacity of the arrays, which the new store then shares
+// with the one it was appended to; the older store never reads past its own size, so it stays unchanged, and the
+// shared extent makes sure that only one store can ever claim a given row of the shared arrays
+public class RateStore implements RateTable {
+
+    public static final String NOT_APPLICABLE = "N/A";
+
+    private final String[] currencies;
+    private final Map<String, Integer> currencyIndex;
+    private final int[] dates;
+    private final double[][] rates;
+    private final int size;
+    // number of rows written to the shared arrays so far, by this store or by any store appended to it
+    private final AtomicInteger extent;
+    // changes whenever a row is replaced or inserted, or a currency gets added, see RateTable.getLineage
+    private final Object lineage;
+
+    // the arrays are taken over as they are, callers must not modify them afterwards
+    public RateStore(String[] currencies, int[] dates, double[][] rates) {
+        if (currencies.length != rates.length)
+            throw new IllegalArgumentException("Every currency requires exactly one column of rates");
+        for (double[] column : rates) {
+            if (column.length != dates.length)
+                throw new IllegalArgumentException("Every column of rates must have one entry per date");
+        }
+        for (int i = 1; i < dates.length; i++) {
+            if (dates[i - 1] >= dates[i])
+                throw new IllegalArgumentException("Dates must be unique and in ascending order");
+        }
+
+        this.currencies = currencies;
+        this.dates = dates;
+        this.rates = rates;
+        this.size = dates.length;
+        this.extent = new AtomicInteger(size);
+        this.lineage = new Object();
+        this.currencyIndex = new HashMap<>();
+        for (int i = 0; i < currencies.length; i++)
+            currencyIndex.put(currencies[i], i);
+    }
+
+    private RateStore(String[] currencies, Map<String, Integer> currencyIndex, int[] dates, double[][] rates, int size, AtomicInteger extent, Object lineage) {
+        this.currencies = currencies;
+        this.currencyIndex = currencyIndex;
+        this.dates = dates;
+        this.rates = rates;
+        this.size = size;
+        this.extent = extent;
+        this.lineage = lineage;
+    }
+
+    public static RateStore empty() {
+        return new RateStore(new String[0], new int[0], new double[0][]);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public int currencyCount() {
+        return currencies.length;
+    }
+
+    @Override
+    public String getCurrency(int column) {
+        return currencies[column];
+    }
+
+    @Override
+    public String[] getCurrencies() {
+        return currencies.clone();
+    }
+
+    @Override
+    public int indexOfCurrency(String currency) {
+        Integer column = currency == null ? null : currencyIndex.get(currency);
+        return column == null ? -1 : column;
+    }
+
+    // the interface's binary searches are replaced by the ones of the jdk, which work on the array directly
+    @Override
+    public int indexOfDate(int epochDay) {
+        int row = Arrays.binarySearch(dates, 0, size, epochDay);
+        return row < 0 ? -1 : row;
+    }
+
+    @Override
+    public int lowerBound(int epochDay) {
+        int row = Arrays.binarySearch(dates, 0, size, epochDay);
+        return row < 0 ? -row - 1 : row;
+    }
+
+    @Override
+    public int upperBound(int epochDay) {
+        int row = Arrays.binarySearch(dates, 0, size, epochDay);
+        return row < 0 ? -row - 1 : row + 1;
+    }
+
+    @Override
+    public int getDate(int row) {
+        return dates[row];
+    }
+
+    @Override
+    public double getRate(int column, int row) {
+        return rates[column][row];
+    }
+
+    @Override
+    public Object getLineage() {
+        return lineage;
+    }
+
+    @Override
+    public void copyRates(int column, int fromRow, int toRow, double[] destination) {
+        System.arraycopy(rates[column], fromRow, destination, 0, toRow - fromRow);
+    }
+
+    // heap copy of any table of rates, i.e one that is served from a memory mapped snapshot
+    public static RateStore copyOf(RateTable rateTable) {
+        int[] dates = new int[rateTable.size()];
+        for (int row = 0; row < dates.length; row++)
+            dates[row] = rateTable.getDate(row);
+
+        double[][] rates = new double[rateTable.currencyCount()][dates.length];
+        for (int c = 0; c < rates.length; c++) {
+            for (int row = 0; row < dates.length; row++)
+                rates[c][row] = rateTable.getRate(c, row);
+        }
+
+        return new RateStore(rateTable.getCurrencies(), dates, rates);
+    }
+
+    // returns a store that also holds the given row, this store is left untouched
+    // the row replaces an existing one with the same date, otherwise it gets inserted at its position in the date order
+    // a row after the last date is appended in amortized O(currencies), anything else copies the whole store
+    public RateStore withRow(int epochDay, double[] rowRates) {
+        int row = lowerBound(epochDay);
+        if (row == size)
+            return withAppendedRow(epochDay, rowRates);
+
+        boolean replace = dates[row] == epochDay;
+        int newSize = replace ? size : size + 1;
+
+        int[] newDates = new int[newSize];
+        System.arraycopy(dates, 0, newDates, 0, row);
+        newDates[row] = epochDay;
+        int tail = size - (replace ? row + 1 : row);
+        System.arraycopy(dates, size - tail, newDates, newSize - tail, tail);
+
+        double[][] newRates = new double[currencies.length][];
+        for (int c = 0; c < currencies.length; c++) {
+            double[] column = new double[newSize];
+            System.arraycopy(rates[c], 0, column, 0, row);
+            column[row] = c < rowRates.length ? rowRates[c] : Double.NaN;
+            System.arraycopy(rates[c], size - tail, column, newSize - tail, tail);
+            newRates[c] = column;
+        }
+
+        return new RateStore(currencies, newDates, newRates);
+    }
+
+    private RateStore withAppendedRow(int epochDay, double[] rowRates) {
+        int[] newDates = dates;
+        double[][] newRates = rates;
+        AtomicInteger newExtent = extent;
+        Object newLineage = lineage;
+
+        // the row can only be claimed once, a second store appended to this one gets its own copy and lineage
+        boolean claimed = extent.compareAndSet(size, size + 1);
+        // the arrays are copied with twice the capacity when they are full, which keeps appending amortized constant
+        if (!claimed || size == dates.length) {
+            int capacity = Math.max(16, size * 2);
+            newDates = Arrays.copyOf(dates, capacity);
+            newRates = new double[currencies.length][];
+            for (int c = 0; c < currencies.length; c++)
+                newRates[c] = Arrays.copyOf(rates[c], capacity);
+            newExtent = new AtomicInteger(size + 1);
+            if (!claimed)
+                newLineage = new Object();
+        }
+
+        newDates[size] = epochDay;
+        for (int c = 0; c < currencies.length; c++)
+            newRates[c][size] = c < rowRates.length ? rowRates[c] : Double.NaN;
+
+        return new RateStore(currencies, currencyIndex, newDates, newRates, size + 1, newExtent, newLineage);
+    }
+
+    // returns a store with an additional currency whose rates are not applicable on any of the existing dates
+    // the columns of the other currencies are shared, a currency that is already present returns this store
+    public RateStore withCurrency(String currency) {
+        String code = currency.toUpperCase();
+        if (currencyIndex.containsKey(code))
+            return this;
+
+        String[] newCurrencies = Arrays.copyOf(currencies, currencies.length + 1);
+        newCurrencies[currencies.length] = code;
+        Map<String, Integer> newCurrencyIndex = new HashMap<>(currencyIndex);
+        newCurrencyIndex.put(code, currencies.length);
+        double[][] newRates = Arrays.copyOf(rates, rates.length + 1);
+        double[] column = new double[dates.length];
+        Arrays.fill(column, Double.NaN);
+        newRates[rates.length] = column;
+
+        // the extent stays shared, so this store and the new one can never both write the next row of the shared columns
+        return new RateStore(newCurrencies, newCurrencyIndex, dates, newRates, size, extent, new Object());
+    }
+
+    // the inverse of toMap, the order of the currencies follows the given one and any remaining currency is appended
+    public static RateStore fromMap(Map<String, Map<LocalDate, String>> map, String... preferredOrder) {
+        Map<String, Map<LocalDate, String>> ordered = new LinkedHashMap<>();
+        for (String currency : preferredOrder) {
+            String code = currency.toUpperCase();
+            if (map.containsKey(code))
+                ordered.put(code, map.get(code));
+        }
+        for (Map.Entry<String, Map<LocalDate, String>> entry : map.entrySet()) {
+            if (!ordered.containsKey(entry.getKey().toUpperCase()))
+                ordered.put(entry.getKey().toUpperCase(), entry.getValue());
+        }
+
+        TreeSet<LocalDate> allDates = new TreeSet<>();
+        for (Map<LocalDate, String> currencyRates : ordered.values()) {
+            if (currencyRates != null)
+                allDates.addAll(currencyRates.keySet());
+        }
+
+        int[] dates = new int[allDates.size()];
+        int row = 0;
+        for (LocalDate date : allDates)
+            dates[row++] = (int) date.toEpochDay();
+
+        String[] currencies = ordered.keySet().toArray(new String[0]);
+        double[][] rates = new double[currencies.length][];
+        for (int c = 0; c < currencies.length; c++) {
+            Map<LocalDate, String> currencyRates = ordered.get(currencies[c]);
+            double[] column = new double[dates.length];
+            for (int r = 0; r < dates.length; r++)
+                column[r] = currencyRates == null ? Double.NaN : parseRate(currencyRates.get(LocalDate.ofEpochDay(dates[r])));
+            rates[c] = column;
+        }
+
+        return new RateStore(currencies, dates, rates);
+    }
+
+    // "N/A", empty or missing rates are represented as NaN
+    public static double parseRate(String rate) {
+        if (rate == null || rate.isEmpty() || rate.equalsIgnoreCase(NOT_APPLICABLE))
+            return Double.NaN;
+        return Double.parseDouble(rate);
+    }
+
+    // turns a rate back into the text it was parsed from, i.e 160 instead of 160.0 and 0.92408 instead of 0.9240800000000001
+    // the csv file uses at most 6 decimal points, so the shortest scale that reproduces the exact same double is picked
+    public static String formatRate(double rate) {
+        if (Double.isNaN(rate))
+            return NOT_APPLICABLE;
+        if (Double.isInfinite(rate) || Math.abs(rate) >= 1e12)
+            return Double.toString(rate);
+
+        long scale = 1;
+        for (int decimals = 0; decimals <= 9; decimals++, scale *= 10) {
+            long scaled = Math.round(rate * scale);
+            if ((double) scaled / scale == rate)
+                return toDecimalString(scaled, decimals);
+        }
+
+        return Double.toString(rate);
+    }
+
+    private static String toDecimalString(long scaled, int decimals) {
+        if (decimals == 0)
+            return Long.toString(scaled);
+
+        StringBuilder builder = new StringBuilder(Long.toString(Math.abs(scaled)));
+        while (builder.length() <= decimals)
+            builder.insert(0, '0');
+        builder.insert(builder.length() - decimals, '.');
+        if (scaled < 0)
+            builder.insert(0, '-');
+
+        return builder.toString();
+    }
+
+    // accumulates the rows of a csv file and turns them into a store, rows may arrive in any order
+    // when a date appears more than once the row that was added last wins, the same way a map put would behave
+    // the builder can be handed to the csv reader directly, in which case the currencies come from the file's header
+    public static class Builder implements RateRowVisitor {
+
+        private String header;
+        private String[] currencies;
+        private int[] dates;
+        private double[][] rates;
+        private int size;
+
+        public Builder() {
+            this(new String[0]);
+        }
+
+        public Builder(String[] currencies) {
+            start(currencies);
+        }
+
+        private void start(String[] currencies) {
+            this.currencies = currencies.clone();
+            for (int i = 0; i < this.currencies.length; i++)
+                this.currencies[i] = this.currencies[i].toUpperCase();
+            this.dates = new int[256];
+            this.rates = new double[currencies.length][256];
+            this.size = 0;
+        }
+
+        @Override
+        public void header(String header, String[] currencies) {
+            this.header = header;
+            start(currencies);
+        }
+
+        @Override
+        public void row(int epochDay, double[] rates) {
+            addRow(epochDay, rates);
+        }
+
+        // the header line handed over by the csv reader, null if the rows were added manually
+        public String getHeader() {
+            return header;
+        }
+
+        public int currencyCount() {
+            return currencies.length;
+        }
+
+        // the given array holds one rate per currency and gets copied, so it can be reused by the caller
+        // missing trailing values are treated as not applicable
+        public Builder addRow(int epochDay, double[] rowRates) {
+            ensureCapacity(size + 1);
+
+            dates[size] = epochDay;
+            for (int c = 0; c < rates.length; c++)
+                rates[c][size] = c < rowRates.length ? rowRates[c] : Double.NaN;
+            size++;
+
+            return this;
+        }
+
+        // appends all rows of another builder over the same currencies, exactly as if they had been added one by one
+        // used to merge the chunks of a file that were parsed in parallel, see ParallelCsvReader
+        public Builder addRows(Builder rows) {
+            if (rows.currencies.length != currencies.length)
+                throw new IllegalArgumentException("Rows can only be merged between builders of the same currencies");
+
+            ensureCapacity(size + rows.size);
+            System.arraycopy(rows.dates, 0, dates, size, rows.size);
+            for (int c = 0; c < rates.length; c++)
+                System.arraycopy(rows.rates[c], 0, rates[c], size, rows.size);
+            size += rows.size;
+
+            return this;
+        }
+
+        private void ensureCapacity(int rows) {
+            if (rows <= dates.length)
+                return;
+
+            int capacity = Math.max(dates.length * 2, rows);
+            dates = Arrays.copyOf(dates, capacity);
+            for (int c = 0; c < rates.length; c++)
+                rates[c] = Arrays.copyOf(rates[c], capacity);
+        }
+
+        public RateStore build() {
+            // ecb files are ordered from the newest to the oldest date, so reversing covers the common case cheaply
+            Integer[] order = new Integer[size];
+            for (int i = 0; i < size; i++)
+                order[i] = i;
+            if (isDescending()) {
+                for (int i = 0; i < size; i++)
+                    order[i] = size - 1 - i;
+            } else if (!isAscending()) {
+                // stable sort, so duplicates keep the order they were added in
+                Arrays.sort(order, (a, b) -> Integer.compare(dates[a], dates[b]));
+            }
+
+            int unique = 0;
+            int[] sortedDates = new int[size];
+            int[] sourceRows = new int[size];
+            for (int i = 0; i < size; i++) {
+                int row = order[i];
+                if (unique > 0 && sortedDates[unique - 1] == dates[row]) {
+                    sourceRows[unique - 1] = row;
+                } else {
+                    sortedDates[unique] = dates[row];
+                    sourceRows[unique] = row;
+                    unique++;
+                }
+            }
+
+            double[][] columns = new double[currencies.length][unique];
+            for (int c = 0; c < currencies.length; c++) {
+                double[] source = rates[c];
+                double[] column = columns[c];
+                for (int r = 0; r < unique; r++)
+                    column[r] = source[sourceRows[r]];
+            }
+
+            return new RateStore(currencies.clone(), Arrays.copyOf(sortedDates, unique), columns);
+        }
+
+        private boolean isAscending() {
+            for (int i = 1; i < size; i++) {
+                if (dates[i - 1] > dates[i])
+                    return false;
+            }
+            return true;
+        }
+
+        private boolean isDescending() {
+            for (int i = 1; i < size; i++) {
+                if (dates[i - 1] <= dates[i])
+                    return false;
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package com.currency.rates;
+
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.Map;
+
+// read access to a table of exchange rates, one row per date in ascending order and one column per currency
+// non-applicable rates are reported as NaN, the table might live on the heap or in a memory mapped file
+public interface RateTable {
+
+    // number of dates (rows) held in the table
+    int size();
+
+    int currencyCount();
+
+    String getCurrency(int column);
+
+    // returns the column of the given currency code or -1 if the currency is not supported
+    int indexOfCurrency(String currency);
+
+    int getDate(int row);
+
+    double getRate(int column, int row);
+
+    default String[] getCurrencies() {
+        String[] currencies = new String[currencyCount()];
+        for (int i = 0; i < currencies.length; i++)
+            currencies[i] = getCurrency(i);
+        return currencies;
+    }
+
+    // first row whose date is on or after the given epoch day, size() if there is none
+    default int lowerBound(int epochDay) {
+        int low = 0;
+        int high = size();
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (getDate(middle) < epochDay)
+                low = middle + 1;
+            else
+                high = middle;
+        }
+        return low;
+    }
+
+    // first row whose date is after the given epoch day, size() if there is none
+    default int upperBound(int epochDay) {
+        int row = lowerBound(epochDay);
+        return row < size() && getDate(row) == epochDay ? row + 1 : row;
+    }
+
+    // returns the row of the given epoch day or -1 if there is no entry for that day, i.e during a weekend
+    default int indexOfDate(int epochDay) {
+        int row = lowerBound(epochDay);
+        return row < size() && getDate(row) == epochDay ? row : -1;
+    }
+
+    default int indexOfDate(LocalDate date) {
+        return indexOfDate((int) date.toEpochDay());
+    }
+
+    default LocalDate getLocalDate(int row) {
+        return LocalDate.ofEpochDay(getDate(row));
+    }
+
+    // true when reading a column can be expensive, i.e it has to be loaded from a file first, see MergedRateTable
+    // callers then avoid touching more columns than the ones they actually need
+    default boolean loadsColumnsLazily() {
+        return false;
+    }
+
+    // tables that drop lazily loaded columns again call the listener for every dropped column; they only keep a weak
+    // reference to it, so the listener has to be kept alive by whoever registered it
+    default void addColumnEvictionListener(ColumnEvictionListener listener) {
+    }
+
+    // tables that return the same lineage hold the same dates and rates at every row and column they both have, which
+    // is the case for a heap store and the stores appended to it; caches use it to keep their entries across appends
+    default Object getLineage() {
+        return this;
+    }
+
+    // copies the rates of a column for the rows [fromRow, toRow) into the destination, starting at its first element
+    default void copyRates(int column, int fromRow, int toRow, double[] destination) {
+        for (int row = fromRow; row < toRow; row++)
+            destination[row - fromRow] = getRate(column, row);
+    }
+
+    // copies the rates of every currency on the given row into the destination, in the order of the columns
+    // tables loading their columns lazily read the row without loading every column
+    default void copyRow(int row, double[] destination) {
+        for (int column = 0; column < currencyCount(); column++)
+            destination[column] = getRate(column, row);
+    }
+
+    // NaN when either the currency, the date or the rate itself is not available
+    default double getRate(String currency, LocalDate date) {
+        int column = indexOfCurrency(currency);
+        int row = indexOfDate(date);
+        if (column < 0 || row < 0)
+            return Double.NaN;
+        return getRate(column, row);
+    }
+
+    // builds the nested map representation the parser used to expose, every rate gets formatted back to its csv text
+    default Map<String, Map<LocalDate, String>> toMap() {
+        Map<String, Map<LocalDate, String>> map = new HashMap<>();
+        for (int column = 0; column < currencyCount(); column++) {
+            Map<LocalDate, String> currencyRates = new HashMap<>();
+            for (int row = 0; row < size(); row++)
+                currencyRates.put(getLocalDate(row), RateStore.formatRate(getRate(column, row)));
+            map.put(getCurrency(column), currencyRates);
+        }
+
+        return map;
+    }
+}
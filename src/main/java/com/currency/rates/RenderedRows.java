@@ -0,0 +1,83 @@
+package com.currency.rates;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+// the csv lines of a table of rates, i.e "2020-09-14,1.1876,125.82,...,", rendered once per row and then reused
+// a line is rendered the first time its date is requested and kept for as long as the table is in use, so serving
+// the rates of a date becomes an index lookup plus a copy of the cached bytes; the text is the one of the original
+// file, since formatRate reproduces every rate exactly as it was written
+//
+// the lines are kept in chunks of 1024 rows, which a table with appended rows shares with the table it grew from
+public class RenderedRows {
+
+    private static final int CHUNK_BITS = 10;
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+
+    private final RateTable rateTable;
+    private final AtomicReferenceArray<byte[]>[] chunks;
+
+    public RenderedRows(RateTable rateTable) {
+        this(rateTable, newChunks(0, rateTable.size()));
+    }
+
+    private RenderedRows(RateTable rateTable, AtomicReferenceArray<byte[]>[] chunks) {
+        this.rateTable = rateTable;
+        this.chunks = chunks;
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static AtomicReferenceArray<byte[]>[] newChunks(int existing, int rows) {
+        AtomicReferenceArray<byte[]>[] chunks = new AtomicReferenceArray[(rows + CHUNK_SIZE - 1) >>> CHUNK_BITS];
+        for (int i = existing; i < chunks.length; i++)
+            chunks[i] = new AtomicReferenceArray<>(CHUNK_SIZE);
+        return chunks;
+    }
+
+    // lines of the given table, which must hold the rows of this one unchanged (the same lineage and currencies) plus
+    // rows appended after them; the lines rendered so far are kept, anything else starts with an empty cache
+    public RenderedRows appendRows(RateTable rateTable) {
+        if (rateTable.getLineage() != this.rateTable.getLineage() || rateTable.currencyCount() != this.rateTable.currencyCount()
+                || rateTable.size() < this.rateTable.size())
+            return new RenderedRows(rateTable);
+
+        AtomicReferenceArray<byte[]>[] newChunks = newChunks(chunks.length, rateTable.size());
+        System.arraycopy(chunks, 0, newChunks, 0, Math.min(chunks.length, newChunks.length));
+        return new RenderedRows(rateTable, newChunks);
+    }
+
+    // read only view of the cached bytes of the line, without the line terminator
+    public ByteBuffer line(int row) {
+        return ByteBuffer.wrap(bytes(row)).asReadOnlyBuffer();
+    }
+
+    public String lineString(int row) {
+        return new String(bytes(row), StandardCharsets.US_ASCII);
+    }
+
+    private byte[] bytes(int row) {
+        if (row < 0 || row >= rateTable.size())
+            throw new IndexOutOfBoundsException("Row " + row + " out of " + rateTable.size());
+
+        AtomicReferenceArray<byte[]> chunk = chunks[row >>> CHUNK_BITS];
+        int slot = row & (CHUNK_SIZE - 1);
+        byte[] line = chunk.get(slot);
+        // two threads might both render the same line, either result is equally valid
+        if (line == null) {
+            line = render(rateTable, row).getBytes(StandardCharsets.US_ASCII);
+            chunk.set(slot, line);
+        }
+        return line;
+    }
+
+    static String render(RateTable rateTable, int row) {
+        StringBuilder builder = new StringBuilder(16 + rateTable.currencyCount() * 10);
+        builder.append(rateTable.getLocalDate(row)).append(',');
+        double[] rates = new double[rateTable.currencyCount()];
+        rateTable.copyRow(row, rates);
+        for (double rate : rates)
+            builder.append(RateStore.formatRate(rate)).append(',');
+        return builder.toString();
+    }
+}
@@ -0,0 +1,132 @@
+package com.currency.rates;
+
+// incremental statistics over the last n applicable rates of a currency, fed one rate at a time in date order
+// every update is O(1) amortized: the average is a running sum, the highest and lowest rates come from monotonic
+// deques and the volatility, the sample standard deviation of the last n daily log returns, from welford updates
+// that add the newest return and remove the one that left the window
+public class RollingWindow {
+
+    private final int size;
+
+    // the last size rates, oldest at rates[added % size]
+    private final double[] rates;
+    private long added;
+    private double sum;
+    private double lastRate = Double.NaN;
+    private double logReturn = Double.NaN;
+
+    // the last size log returns, with their welford mean and sum of squared deviations
+    private final double[] returns;
+    private long returnsAdded;
+    private double returnsMean;
+    private double returnsSquares;
+
+    // ring buffers holding the sequence numbers of the rates that can still become the highest or lowest of the window
+    private final long[] maxDeque;
+    private final long[] minDeque;
+    private int maxHead, maxLength;
+    private int minHead, minLength;
+
+    public RollingWindow(int size) {
+        if (size < 1)
+            throw new InvalidQueryException("Invalid window size");
+        this.size = size;
+        this.rates = new double[size];
+        this.returns = new double[size];
+        this.maxDeque = new long[size];
+        this.minDeque = new long[size];
+    }
+
+    // non-applicable (NaN) rates are ignored, the window only ever holds applicable ones
+    public void add(double rate) {
+        if (Double.isNaN(rate))
+            return;
+
+        long sequence = added;
+        int slot = (int) (sequence % size);
+        if (sequence >= size)
+            sum -= rates[slot];
+        rates[slot] = rate;
+        sum += rate;
+        added++;
+
+        // the front of a deque leaves once it is older than the window, the back gives way to a better newcomer
+        if (maxLength > 0 && maxDeque[maxHead] <= sequence - size) {
+            maxHead = (maxHead + 1) % size;
+            maxLength--;
+        }
+        while (maxLength > 0 && rates[(int) (maxDeque[(maxHead + maxLength - 1) % size] % size)] <= rate)
+            maxLength--;
+        maxDeque[(maxHead + maxLength++) % size] = sequence;
+
+        if (minLength > 0 && minDeque[minHead] <= sequence - size) {
+            minHead = (minHead + 1) % size;
+            minLength--;
+        }
+        while (minLength > 0 && rates[(int) (minDeque[(minHead + minLength - 1) % size] % size)] >= rate)
+            minLength--;
+        minDeque[(minHead + minLength++) % size] = sequence;
+
+        if (!Double.isNaN(lastRate)) {
+            logReturn = Math.log(rate / lastRate);
+            addReturn(logReturn);
+        }
+        lastRate = rate;
+    }
+
+    private void addReturn(double value) {
+        int slot = (int) (returnsAdded % size);
+        if (returnsAdded >= size) {
+            // welford removal of the return that leaves the window
+            double removed = returns[slot];
+            long count = size - 1;
+            double delta = removed - returnsMean;
+            returnsMean = count == 0 ? 0 : returnsMean - delta / count;
+            returnsSquares -= delta * (removed - returnsMean);
+        }
+        returns[slot] = value;
+        returnsAdded++;
+
+        long count = Math.min(returnsAdded, size);
+        double delta = value - returnsMean;
+        returnsMean += delta / count;
+        returnsSquares += delta * (value - returnsMean);
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    // number of rates currently in the window, at most the size of the window
+    public int count() {
+        return (int) Math.min(added, size);
+    }
+
+    public boolean isFull() {
+        return added >= size;
+    }
+
+    // the statistics cover whatever the window holds so far, NaN while it is empty
+    public double getAverage() {
+        return added == 0 ? Double.NaN : sum / count();
+    }
+
+    public double getHighest() {
+        return maxLength == 0 ? Double.NaN : rates[(int) (maxDeque[maxHead] % size)];
+    }
+
+    public double getLowest() {
+        return minLength == 0 ? Double.NaN : rates[(int) (minDeque[minHead] % size)];
+    }
+
+    // natural logarithm of the latest rate over the previous one, NaN until two rates have been added
+    public double getLogReturn() {
+        return logReturn;
+    }
+
+    // sample standard deviation of the log returns in the window, NaN until there are two of them
+    public double getVolatility() {
+        long count = Math.min(returnsAdded, size);
+        return count < 2 ? Double.NaN : Math.sqrt(Math.max(0, returnsSquares / (count - 1)));
+    }
+}
@@ -0,0 +1,268 @@
+package com.currency.rates;
+
+import java.lang.ref.WeakReference;
+import java.math.RoundingMode;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+// results of range statistics, shared between the callers that ask the same question
+// a query is keyed by the rows its dates resolve to rather than by the dates themselves, so ranges that only differ by
+// weekends or by dates outside the table share one entry; the numeric mode is part of the key of an average only
+//
+// like CrossRateCache the results live in a 4-way set associative array of immutable entries with an approximate
+// least recently used replacement, so a hit is a few field comparisons without locking or allocating; entries hold a
+// weak reference to the lineage of the table they were computed on, which keeps them valid across appended rows
+// without keeping an old table alive, while a result of any other table is simply a miss
+//
+// identical queries that arrive while the first one is still being computed only wait for its result when the caller
+// marks the computation as expensive, i.e a compressed table or a column whose index is not built yet; the cheap ones
+// are answered by the range index faster than they could be coalesced; failures are never kept
+public class StatsCache {
+
+    private static final int WAYS = 4;
+
+    private static final class Entry {
+        private final WeakReference<Object> lineage;
+        private final int column;
+        private final int fromRow;
+        private final int toRow;
+        private final RangeStatistic statistic;
+        private final NumericMode numericMode;
+        private final RoundingMode roundingMode;
+        private final double result;
+        private long lastAccess;
+
+        private Entry(Object lineage, int column, int fromRow, int toRow, RangeStatistic statistic, NumericMode numericMode,
+                      RoundingMode roundingMode, double result, long lastAccess) {
+            this.lineage = new WeakReference<>(lineage);
+            this.column = column;
+            this.fromRow = fromRow;
+            this.toRow = toRow;
+            this.statistic = statistic;
+            this.numericMode = numericMode;
+            this.roundingMode = roundingMode;
+            this.result = result;
+            this.lastAccess = lastAccess;
+        }
+
+        private boolean matches(Object lineage, int column, int fromRow, int toRow, RangeStatistic statistic,
+                                NumericMode numericMode, RoundingMode roundingMode) {
+            return this.column == column && this.fromRow == fromRow && this.toRow == toRow && this.statistic == statistic
+                    && this.numericMode == numericMode && this.roundingMode == roundingMode && this.lineage.get() == lineage;
+        }
+    }
+
+    // only allocated for the expensive queries that are coalesced
+    private static final class Key {
+        private final Object lineage;
+        private final int column;
+        private final int fromRow;
+        private final int toRow;
+        private final RangeStatistic statistic;
+        private final NumericMode numericMode;
+        private final RoundingMode roundingMode;
+
+        private Key(Object lineage, int column, int fromRow, int toRow, RangeStatistic statistic, NumericMode numericMode, RoundingMode roundingMode) {
+            this.lineage = lineage;
+            this.column = column;
+            this.fromRow = fromRow;
+            this.toRow = toRow;
+            this.statistic = statistic;
+            this.numericMode = numericMode;
+            this.roundingMode = roundingMode;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o)
+                return true;
+            if (!(o instanceof Key))
+                return false;
+            Key key = (Key) o;
+            return lineage == key.lineage && column == key.column && fromRow == key.fromRow && toRow == key.toRow
+                    && statistic == key.statistic && numericMode == key.numericMode && roundingMode == key.roundingMode;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash(lineage, column, fromRow, toRow, statistic);
+        }
+    }
+
+    private final Entry[] entries;
+    private final int setMask;
+    private final ConcurrentMap<Key, CompletableFuture<Double>> inFlight = new ConcurrentHashMap<>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder computed = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    // recency hint, updated without synchronization, a lost update only makes the eviction order slightly less exact
+    private long clock;
+
+    // the capacity, rounded up to a power of two of at least 4, is the number of results that are kept at most
+    public StatsCache(int maxEntries) {
+        if (maxEntries < 0)
+            throw new IllegalArgumentException("The cache size cannot be negative");
+        int sets = Integer.highestOneBit(Math.max(1, (maxEntries + WAYS - 1) / WAYS));
+        if (sets * WAYS < maxEntries)
+            sets <<= 1;
+        this.entries = new Entry[sets * WAYS];
+        this.setMask = sets - 1;
+    }
+
+    public int capacity() {
+        return entries.length;
+    }
+
+    private static int hash(Object lineage, int column, int fromRow, int toRow, RangeStatistic statistic) {
+        int hash = System.identityHashCode(lineage);
+        hash = 31 * hash + column;
+        hash = 31 * hash + fromRow;
+        hash = 31 * hash + toRow;
+        hash = 31 * hash + statistic.ordinal();
+        return hash ^ (hash >>> 16);
+    }
+
+    // the result of the statistic over the rows [fromRow, toRow) of the column, computed by the supplier unless it is
+    // cached; an expensive computation is also shared with the callers asking the same question while it is running
+    public double get(RateTable rateTable, int column, int fromRow, int toRow, RangeStatistic statistic,
+                      NumericMode numericMode, RoundingMode roundingMode, boolean expensive, Supplier<Double> computation) {
+        // every empty range has the same result, the mode only matters for averages and the rounding for fixed point ones
+        if (fromRow >= toRow) {
+            fromRow = 0;
+            toRow = 0;
+        }
+        if (statistic != RangeStatistic.AVERAGE)
+            numericMode = null;
+        if (numericMode != NumericMode.FIXED_POINT)
+            roundingMode = null;
+
+        Object lineage = rateTable.getLineage();
+        int set = (hash(lineage, column, fromRow, toRow, statistic) & setMask) * WAYS;
+        for (int way = set; way < set + WAYS; way++) {
+            Entry entry = entries[way];
+            if (entry != null && entry.matches(lineage, column, fromRow, toRow, statistic, numericMode, roundingMode)) {
+                entry.lastAccess = ++clock;
+                hits.increment();
+                return entry.result;
+            }
+        }
+
+        if (!expensive) {
+            computed.increment();
+            double result = computation.get();
+            put(set, new Entry(lineage, column, fromRow, toRow, statistic, numericMode, roundingMode, result, ++clock));
+            return result;
+        }
+
+        Key key = new Key(lineage, column, fromRow, toRow, statistic, numericMode, roundingMode);
+        CompletableFuture<Double> future = new CompletableFuture<>();
+        CompletableFuture<Double> running = inFlight.putIfAbsent(key, future);
+        if (running != null) {
+            coalesced.increment();
+            return await(running);
+        }
+
+        computed.increment();
+        try {
+            double result = computation.get();
+            put(set, new Entry(lineage, column, fromRow, toRow, statistic, numericMode, roundingMode, result, ++clock));
+            future.complete(result);
+            return result;
+        } catch (RuntimeException e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            // the result is cached before the query stops being in flight, so a caller always finds one or the other
+            inFlight.remove(key, future);
+        }
+    }
+
+    // an empty slot or one whose table is gone is used first, otherwise the least recently used one of the set
+    private void put(int set, Entry entry) {
+        int victim = set;
+        long oldest = Long.MAX_VALUE;
+        for (int way = set; way < set + WAYS; way++) {
+            Entry current = entries[way];
+            if (current == null || current.lineage.get() == null) {
+                victim = way;
+                oldest = Long.MIN_VALUE;
+                break;
+            }
+            if (current.lastAccess < oldest) {
+                oldest = current.lastAccess;
+                victim = way;
+            }
+        }
+        if (oldest != Long.MIN_VALUE)
+            evictions.increment();
+        entries[victim] = entry;
+    }
+
+    private static double await(CompletableFuture<Double> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException)
+                throw (RuntimeException) e.getCause();
+            throw e;
+        }
+    }
+
+    // drops every result, i.e after a new file has been loaded, the statistics are kept
+    public void clear() {
+        for (int i = 0; i < entries.length; i++)
+            entries[i] = null;
+    }
+
+    // the number of results currently held
+    public int size() {
+        int size = 0;
+        for (Entry entry : entries) {
+            if (entry != null && entry.lineage.get() != null)
+                size++;
+        }
+        return size;
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    // queries that waited for an identical expensive query in flight instead of computing the result themselves
+    public long getCoalescedCount() {
+        return coalesced.sum();
+    }
+
+    public long getComputeCount() {
+        return computed.sum();
+    }
+
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    // share of the queries that did not compute their result, either cached or coalesced
+    public double getSavedRate() {
+        long saved = hits.sum() + coalesced.sum();
+        long total = saved + computed.sum();
+        return total == 0 ? 0 : (double) saved / total;
+    }
+
+    // share of the queries that missed the cache and were coalesced with an identical one in flight
+    public double getCoalescingRatio() {
+        long coalescedCount = coalesced.sum();
+        long total = coalescedCount + computed.sum();
+        return total == 0 ? 0 : (double) coalescedCount / total;
+    }
+
+    @Override
+    public String toString() {
+        return "StatsCache{capacity=" + capacity() + ", hits=" + getHitCount() + ", coalesced=" + getCoalescedCount()
+                + ", computed=" + getComputeCount() + ", evictions=" + getEvictionCount() + "}";
+    }
+}
@@ -0,0 +1,99 @@
+package com.currency.rates;
+
+import java.time.LocalDate;
+
+// statistics of every currency over every window of a RangeAnalytics run, window w and column c live at w * currencies + c
+// a window without any applicable rate of a currency has a count of 0 and NaN for every other statistic
+public class StatsMatrix {
+
+    private final String[] currencies;
+    private final LocalDate[] starts;
+    private final LocalDate[] ends;
+    private final int[] counts;
+    private final double[] averages;
+    private final double[] highest;
+    private final double[] lowest;
+    private final double[] standardDeviations;
+
+    StatsMatrix(String[] currencies, LocalDate[] starts, LocalDate[] ends) {
+        this.currencies = currencies;
+        this.starts = starts;
+        this.ends = ends;
+        int cells = starts.length * currencies.length;
+        this.counts = new int[cells];
+        this.averages = new double[cells];
+        this.highest = new double[cells];
+        this.lowest = new double[cells];
+        this.standardDeviations = new double[cells];
+    }
+
+    void set(int window, int column, int count, double average, double high, double low, double standardDeviation) {
+        int cell = window * currencies.length + column;
+        counts[cell] = count;
+        averages[cell] = average;
+        highest[cell] = high;
+        lowest[cell] = low;
+        standardDeviations[cell] = standardDeviation;
+    }
+
+    public int windowCount() {
+        return starts.length;
+    }
+
+    public LocalDate getStart(int window) {
+        return starts[window];
+    }
+
+    public LocalDate getEnd(int window) {
+        return ends[window];
+    }
+
+    public int currencyCount() {
+        return currencies.length;
+    }
+
+    public String getCurrency(int column) {
+        return currencies[column];
+    }
+
+    public int indexOfCurrency(String currency) {
+        for (int column = 0; column < currencies.length; column++) {
+            if (currencies[column].equals(currency))
+                return column;
+        }
+        return -1;
+    }
+
+    // number of applicable rates of the currency within the window
+    public int getCount(int window, int column) {
+        return counts[window * currencies.length + column];
+    }
+
+    public double getAverage(int window, int column) {
+        return averages[window * currencies.length + column];
+    }
+
+    public double getHighest(int window, int column) {
+        return highest[window * currencies.length + column];
+    }
+
+    public double getLowest(int window, int column) {
+        return lowest[window * currencies.length + column];
+    }
+
+    // sample standard deviation, NaN unless the window holds at least two applicable rates
+    public double getStandardDeviation(int window, int column) {
+        return standardDeviations[window * currencies.length + column];
+    }
+
+    public double get(RangeStatistic statistic, int window, int column) {
+        switch (statistic) {
+            case HIGHEST:
+                return getHighest(window, column);
+            case LOWEST:
+                return getLowest(window, column);
+            default:
+                return getAverage(window, column);
+        }
+    }
+}
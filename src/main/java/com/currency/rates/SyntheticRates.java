@@ -0,0 +1,279 @@
+package com.currency.rates;
+
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.util.Random;
+import java.util.zip.GZIPOutputStream;
+
+// generates rates in the ecb's format with a random walk per currency, so the parser can be tried against far larger
+// histories than the bundled one; the same settings and seed always produce the same rates
+//
+// every business day the rate of a currency moves by a normally distributed step of the given volatility and is then
+// published with about five significant digits like the ecb's, i.e 1.1854, 124.51 or 15467; the given share of the
+// rates is not applicable; the rates can be written as a csv file or straight into a binary snapshot, see RateSnapshotFile
+//
+//   java -cp rates.jar com.currency.rates.SyntheticRates <file> [--currencies n] [--years n] [--na share]
+//                                                               [--volatility v] [--seed n] [--binary]
+public class SyntheticRates {
+
+    public static final LocalDate DEFAULT_LAST_DATE = LocalDate.of(2020, 9, 14);
+
+    // keeps a long walk with a high volatility from rounding down to a rate of 0
+    private static final double LOWEST_RATE = 1e-4;
+
+    private final int currencies;
+    private final int years;
+    private final long seed;
+    private double notApplicableShare = 0.02;
+    private double volatility = 0.005;
+    private LocalDate lastDate = DEFAULT_LAST_DATE;
+
+    public SyntheticRates(int currencies, int years, long seed) {
+        if (currencies < 1 || years < 1)
+            throw new IllegalArgumentException("At least one currency and one year are required");
+        this.currencies = currencies;
+        this.years = years;
+        this.seed = seed;
+    }
+
+    // the generator the benchmarks used to hard code, currencies over years with 2% of the rates not applicable
+    static byte[] csv(int currencies, int years, long seed) {
+        return new SyntheticRates(currencies, years, seed).csv();
+    }
+
+    public int getCurrencies() {
+        return currencies;
+    }
+
+    public int getYears() {
+        return years;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    public double getNotApplicableShare() {
+        return notApplicableShare;
+    }
+
+    // between 0, every rate is applicable, and 1, none is
+    public void setNotApplicableShare(double notApplicableShare) {
+        if (!(notApplicableShare >= 0 && notApplicableShare <= 1))
+            throw new IllegalArgumentException("Invalid share of not applicable rates: " + notApplicableShare);
+        this.notApplicableShare = notApplicableShare;
+    }
+
+    public double getVolatility() {
+        return volatility;
+    }
+
+    // standard deviation of the relative daily move of a rate, i.e 0.005 for half a percent
+    public void setVolatility(double volatility) {
+        if (!(volatility >= 0 && volatility < 1))
+            throw new IllegalArgumentException("Invalid volatility: " + volatility);
+        this.volatility = volatility;
+    }
+
+    public LocalDate getLastDate() {
+        return lastDate;
+    }
+
+    public void setLastDate(LocalDate lastDate) {
+        this.lastDate = lastDate;
+    }
+
+    // AAA, AAB, ... so that any number of currencies gets a unique three letter code
+    static String currencyCode(int index) {
+        char[] code = new char[3];
+        for (int i = 2; i >= 0; i--) {
+            code[i] = (char) ('A' + index % 26);
+            index /= 26;
+        }
+        return new String(code);
+    }
+
+    public String header() {
+        StringBuilder builder = new StringBuilder("Date,");
+        for (int c = 0; c < currencies; c++)
+            builder.append(currencyCode(c)).append(',');
+        return builder.toString();
+    }
+
+    // hands the header and then the rows to the visitor, newest date first the same way the ecb publishes its history
+    public void generate(RateRowVisitor visitor) {
+        String[] codes = new String[currencies];
+        for (int c = 0; c < currencies; c++)
+            codes[c] = currencyCode(c);
+        visitor.header(header(), codes);
+
+        Random random = new Random(seed);
+        double[] walk = new double[currencies];
+        for (int c = 0; c < currencies; c++)
+            walk[c] = 0.5 + random.nextDouble() * 200;
+
+        double[] rates = new double[currencies];
+        LocalDate first = lastDate.minusYears(years);
+        for (LocalDate date = lastDate; !date.isBefore(first); date = date.minusDays(1)) {
+            if (date.getDayOfWeek() == DayOfWeek.SATURDAY || date.getDayOfWeek() == DayOfWeek.SUNDAY)
+                continue;
+
+            for (int c = 0; c < currencies; c++) {
+                walk[c] = Math.max(LOWEST_RATE, walk[c] * (1 + random.nextGaussian() * volatility));
+                rates[c] = random.nextDouble() < notApplicableShare ? Double.NaN : publish(walk[c]);
+            }
+            visitor.row((int) date.toEpochDay(), rates);
+        }
+    }
+
+    // five significant digits, but never more than the 6 decimals a csv rate may have
+    private static double publish(double rate) {
+        int decimals = Math.max(0, Math.min(6, 4 - (int) Math.floor(Math.log10(rate))));
+        double scale = Math.pow(10, decimals);
+        return Math.round(rate * scale) / scale;
+    }
+
+    // the rates as the store the parser would build from the csv file
+    public RateStore build() {
+        RateStore.Builder builder = new RateStore.Builder();
+        generate(builder);
+        return builder.build();
+    }
+
+    public byte[] csv() {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        try {
+            writeCsv(outputStream);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return outputStream.toByteArray();
+    }
+
+    // the rows are written as they are generated, so files of any size only take the memory of a single row
+    public void writeCsv(OutputStream outputStream) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.US_ASCII), 64 * 1024);
+        try {
+            generate(new RateRowVisitor() {
+                @Override
+                public void header(String header, String[] currencies) {
+                    write(header);
+                }
+
+                @Override
+                public void row(int epochDay, double[] rates) {
+                    StringBuilder line = new StringBuilder(16 + rates.length * 8);
+                    line.append(LocalDate.ofEpochDay(epochDay)).append(',');
+                    for (double rate : rates)
+                        line.append(RateStore.formatRate(rate)).append(',');
+                    write(line.toString());
+                }
+
+                private void write(String line) {
+                    try {
+                        writer.write(line);
+                        writer.write('\n');
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        writer.flush();
+    }
+
+    // a file ending in .gz gets gzip compressed
+    public void writeCsv(Path path) throws IOException {
+        try (OutputStream outputStream = Files.newOutputStream(path)) {
+            if (path.getFileName().toString().endsWith(".gz")) {
+                GZIPOutputStream gzipOutputStream = new GZIPOutputStream(outputStream, 64 * 1024);
+                writeCsv(gzipOutputStream);
+                gzipOutputStream.finish();
+            } else {
+                writeCsv(outputStream);
+            }
+        }
+    }
+
+    // there is no csv file behind a generated snapshot, so its source checksum is 0
+    public void writeSnapshot(Path path) throws IOException {
+        RateSnapshotFile.write(build(), header(), 0, path);
+    }
+
+    // the generator of the --currencies, --years, --na, --volatility and --seed options, null when none of them is given
+    static SyntheticRates fromArguments(String[] args) {
+        int currencies = 32;
+        int years = 22;
+        long seed = 42;
+        Double notApplicableShare = null;
+        Double volatility = null;
+        boolean given = false;
+        for (int i = 0; i < args.length - 1; i++) {
+            switch (args[i]) {
+                case "--currencies":
+                    currencies = Integer.parseInt(args[++i]);
+                    break;
+                case "--years":
+                    years = Integer.parseInt(args[++i]);
+                    break;
+                case "--seed":
+                    seed = Long.parseLong(args[++i]);
+                    break;
+                case "--na":
+                    notApplicableShare = Double.parseDouble(args[++i]);
+                    break;
+                case "--volatility":
+                    volatility = Double.parseDouble(args[++i]);
+                    break;
+                default:
+                    continue;
+            }
+            given = true;
+        }
+        if (!given)
+            return null;
+
+        SyntheticRates syntheticRates = new SyntheticRates(currencies, years, seed);
+        if (notApplicableShare != null)
+            syntheticRates.setNotApplicableShare(notApplicableShare);
+        if (volatility != null)
+            syntheticRates.setVolatility(volatility);
+        return syntheticRates;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0 || args[0].startsWith("--")) {
+            System.out.println("Usage: SyntheticRates <file> [--currencies n] [--years n] [--na share] [--volatility v] [--seed n] [--binary]");
+            return;
+        }
+
+        SyntheticRates syntheticRates = fromArguments(args);
+        if (syntheticRates == null)
+            syntheticRates = new SyntheticRates(32, 22, 42);
+        Path path = Paths.get(args[0]);
+        boolean binary = false;
+        for (String arg : args)
+            binary |= arg.equals("--binary");
+
+        long started = System.nanoTime();
+        if (binary)
+            syntheticRates.writeSnapshot(path);
+        else
+            syntheticRates.writeCsv(path);
+        System.out.printf("%d currencies over %d years written to %s in %d ms, %d bytes%n", syntheticRates.getCurrencies(),
+                syntheticRates.getYears(), path, (System.nanoTime() - started) / 1_000_000, Files.size(path));
+    }
+}
@@ -0,0 +1,121 @@
+package com.currency.rates;
+
+import java.time.LocalDate;
+
+// whole series of rolling statistics of one currency, one entry per date with an applicable rate, built in one pass
+// entry i holds the rate of that date, the daily log return against the previous applicable rate and the moving
+// average, highest, lowest and volatility of the window of the last n rates that ends on that date
+//
+// the window is warmed up with the rates before the requested start, so the first entries are already complete
+// whenever there is enough history; otherwise the statistics cover the rates seen so far
+public class TimeSeries {
+
+    private final String currency;
+    private final int window;
+    private final int[] epochDays;
+    private final double[] rates;
+    private final double[] logReturns;
+    private final double[] movingAverages;
+    private final double[] highest;
+    private final double[] lowest;
+    private final double[] volatilities;
+
+    private TimeSeries(String currency, int window, int size) {
+        this.currency = currency;
+        this.window = window;
+        this.epochDays = new int[size];
+        this.rates = new double[size];
+        this.logReturns = new double[size];
+        this.movingAverages = new double[size];
+        this.highest = new double[size];
+        this.lowest = new double[size];
+        this.volatilities = new double[size];
+    }
+
+    // the series of the rows [fromRow, toRow) of a column, O(rows + window)
+    public static TimeSeries compute(RateTable rateTable, int column, int fromRow, int toRow, int window) {
+        RollingWindow rollingWindow = new RollingWindow(window);
+
+        // walk back far enough for a full window of log returns, which takes one rate more than the window itself
+        int warmUpRow = fromRow;
+        for (int found = 0; warmUpRow > 0 && found <= window; ) {
+            warmUpRow--;
+            if (!Double.isNaN(rateTable.getRate(column, warmUpRow)))
+                found++;
+        }
+        for (int row = warmUpRow; row < fromRow; row++)
+            rollingWindow.add(rateTable.getRate(column, row));
+
+        int size = 0;
+        for (int row = fromRow; row < toRow; row++) {
+            if (!Double.isNaN(rateTable.getRate(column, row)))
+                size++;
+        }
+
+        TimeSeries timeSeries = new TimeSeries(rateTable.getCurrency(column), window, size);
+        int i = 0;
+        for (int row = fromRow; row < toRow; row++) {
+            double rate = rateTable.getRate(column, row);
+            if (Double.isNaN(rate))
+                continue;
+
+            rollingWindow.add(rate);
+            timeSeries.epochDays[i] = rateTable.getDate(row);
+            timeSeries.rates[i] = rate;
+            timeSeries.logReturns[i] = rollingWindow.getLogReturn();
+            timeSeries.movingAverages[i] = rollingWindow.getAverage();
+            timeSeries.highest[i] = rollingWindow.getHighest();
+            timeSeries.lowest[i] = rollingWindow.getLowest();
+            timeSeries.volatilities[i] = rollingWindow.getVolatility();
+            i++;
+        }
+
+        return timeSeries;
+    }
+
+    public String getCurrency() {
+        return currency;
+    }
+
+    public int getWindow() {
+        return window;
+    }
+
+    public int size() {
+        return epochDays.length;
+    }
+
+    public int getEpochDay(int i) {
+        return epochDays[i];
+    }
+
+    public LocalDate getDate(int i) {
+        return LocalDate.ofEpochDay(epochDays[i]);
+    }
+
+    public double getRate(int i) {
+        return rates[i];
+    }
+
+    // NaN for the very first rate of the currency
+    public double getLogReturn(int i) {
+        return logReturns[i];
+    }
+
+    public double getMovingAverage(int i) {
+        return movingAverages[i];
+    }
+
+    public double getHighest(int i) {
+        return highest[i];
+    }
+
+    public double getLowest(int i) {
+        return lowest[i];
+    }
+
+    // sample standard deviation of the daily log returns within the window, not annualized
+    public double getVolatility(int i) {
+        return volatilities[i];
+    }
+}
@@ -0,0 +1,183 @@
+package com.currency.rates;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+// skip arrays over the applicable rates of every currency of a table
+// for every row they hold the closest row at or before and at or after it where the currency has a rate, so stepping
+// over a weekend, a holiday or a currency specific N/A gap, i.e a currency that was dropped or not published yet, is a
+// single array read instead of a walk over the rows
+//
+// the arrays of a currency are only built the first time it is looked up; like the range index they are allocated with
+// spare capacity, so rows appended to the table extend them in place, see appendRows: previous only grows past the rows
+// older instances read, and next entries only change from -1 to a row past them, which older instances treat as -1
+public class ValidRows {
+
+    private static final class Column {
+        // previous[row] is the last row <= row with a rate, -1 if there is none
+        private final int[] previous;
+        // next[row] is the first row >= row with a rate, -1 if there is none
+        private final int[] next;
+
+        private Column(int[] previous, int[] next) {
+            this.previous = previous;
+            this.next = next;
+        }
+    }
+
+    private final RateTable rateTable;
+    private final int size;
+    private final int capacity;
+    private final AtomicReferenceArray<Column> columns;
+    // tables that drop columns again, see MergedRateTable, drop the skip arrays of the column with them
+    private final ColumnEvictionListener evictionListener;
+    // number of rows covered by the shared arrays, by this instance or by any instance appended to it
+    private final AtomicInteger extent;
+
+    public ValidRows(RateTable rateTable) {
+        this(rateTable, RangeIndex.capacityFor(rateTable.size()), new AtomicReferenceArray<>(rateTable.currencyCount()), new AtomicInteger(rateTable.size()));
+    }
+
+    private ValidRows(RateTable rateTable, int capacity, AtomicReferenceArray<Column> columns, AtomicInteger extent) {
+        this.rateTable = rateTable;
+        this.size = rateTable.size();
+        this.capacity = capacity;
+        this.columns = columns;
+        this.evictionListener = column -> columns.set(column, null);
+        rateTable.addColumnEvictionListener(evictionListener);
+        this.extent = extent;
+    }
+
+    private Column column(int c) {
+        Column column = columns.get(c);
+        if (column == null) {
+            // two threads might both build the same column, either result is equally valid
+            column = buildColumn(c);
+            if (!columns.compareAndSet(c, null, column))
+                column = columns.get(c);
+        }
+        return column;
+    }
+
+    private Column buildColumn(int c) {
+        double[] rates = new double[size];
+        rateTable.copyRates(c, 0, size, rates);
+
+        int[] previous = new int[capacity];
+        int[] next = new int[capacity];
+        int last = -1;
+        for (int row = 0; row < size; row++) {
+            if (!Double.isNaN(rates[row]))
+                last = row;
+            previous[row] = last;
+        }
+        last = -1;
+        for (int row = size - 1; row >= 0; row--) {
+            if (!Double.isNaN(rates[row]))
+                last = row;
+            next[row] = last;
+        }
+
+        return new Column(previous, next);
+    }
+
+    // skip arrays of the given table, which must hold the rows and currencies of the table these were built for
+    // unchanged (the same lineage) plus rows appended after them; every appended row costs one entry per built currency,
+    // plus the trailing rows without a rate once the currency has one again; otherwise the arrays start from scratch
+    public ValidRows appendRows(RateTable rateTable) {
+        int newSize = rateTable.size();
+        int currencies = columns.length();
+        if (newSize < size || rateTable.currencyCount() != currencies || newSize > capacity
+                || !extent.compareAndSet(size, newSize))
+            return new ValidRows(rateTable);
+
+        AtomicReferenceArray<Column> newColumns = new AtomicReferenceArray<>(currencies);
+        for (int c = 0; c < currencies; c++) {
+            Column column = columns.get(c);
+            if (column == null)
+                continue;
+
+            int last = size == 0 ? -1 : column.previous[size - 1];
+            for (int row = size; row < newSize; row++) {
+                if (!Double.isNaN(rateTable.getRate(c, row))) {
+                    for (int gap = last + 1; gap <= row; gap++)
+                        column.next[gap] = row;
+                    last = row;
+                }
+                column.previous[row] = last;
+            }
+            for (int row = Math.max(last + 1, size); row < newSize; row++)
+                column.next[row] = -1;
+            newColumns.set(c, column);
+        }
+
+        return new ValidRows(rateTable, capacity, newColumns, extent);
+    }
+
+    // the last row at or before the given one where the currency has a rate, -1 if there is none
+    public int previous(int column, int row) {
+        if (row < 0 || size == 0)
+            return -1;
+        return column(column).previous[Math.min(row, size - 1)];
+    }
+
+    // the first row at or after the given one where the currency has a rate, -1 if there is none
+    public int next(int column, int row) {
+        if (row >= size)
+            return -1;
+        int next = column(column).next[Math.max(row, 0)];
+        // a row appended after this instance was created
+        return next >= size ? -1 : next;
+    }
+
+    // the last row at or before the given one where both currencies have a rate, -1 if there is none
+    // the two arrays are followed in turns until they agree, every step skips a gap of one of the currencies
+    public int previous(int column, int otherColumn, int row) {
+        if (row < 0 || size == 0)
+            return -1;
+        Column a = column(column);
+        Column b = column(otherColumn);
+        row = Math.min(row, size - 1);
+        while (row >= 0) {
+            int candidate = b.previous[row];
+            if (candidate < 0)
+                return -1;
+            row = a.previous[candidate];
+            if (row == candidate)
+                return row;
+        }
+        return -1;
+    }
+
+    // the first row at or after the given one where both currencies have a rate, -1 if there is none
+    public int next(int column, int otherColumn, int row) {
+        Column a = column(column);
+        Column b = column(otherColumn);
+        row = Math.max(row, 0);
+        while (row >= 0 && row < size) {
+            int candidate = b.next[row];
+            if (candidate < 0 || candidate >= size)
+                return -1;
+            row = a.next[candidate];
+            if (row == candidate)
+                return row;
+        }
+        return -1;
+    }
+
+    // the row the policy picks for the epoch day among the rows where both currencies have a rate, -1 if there is none
+    public int resolve(DatePolicy policy, int epochDay, int column, int otherColumn) {
+        int next = rateTable.lowerBound(epochDay);
+        boolean exact = next < size && rateTable.getDate(next) == epochDay;
+        switch (policy) {
+            case EXACT:
+                return exact && previous(column, otherColumn, next) == next ? next : -1;
+            case PREVIOUS:
+                return previous(column, otherColumn, exact ? next : next - 1);
+            case NEXT:
+                return next(column, otherColumn, next);
+            default:
+                return DatePolicy.closer(rateTable, epochDay, previous(column, otherColumn, exact ? next : next - 1), next(column, otherColumn, next));
+        }
+    }
+}
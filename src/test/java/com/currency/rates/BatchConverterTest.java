@@ -0,0 +1,85 @@
+package com.currency.rates;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BatchConverterTest {
+
+    private static CsvParser csvParser;
+
+    @BeforeAll
+    static void setUp() {
+        csvParser = new CsvParser();
+        csvParser.parseCsv("eurofxref-hist.csv");
+    }
+
+    @DisplayName("Batch results match the single conversions")
+    @Test
+    void matchSingleConversions() {
+        String[] currencies = {"USD", "GBP", "JPY", "CHF", "SEK"};
+        LocalDate firstDate = LocalDate.parse("2020-08-03");
+        Random random = new Random(7);
+        ConversionBatch batch = new ConversionBatch(4);
+        for (int i = 0; i < 500; i++) {
+            // only weekdays of a single month, so every conversion is valid
+            LocalDate date = firstDate.plusDays(random.nextInt(5) + 7 * random.nextInt(4));
+            batch.add(date, currencies[random.nextInt(currencies.length)], currencies[random.nextInt(currencies.length)],
+                    1 + random.nextInt(100000) / 100.0);
+        }
+
+        double[] results = new double[batch.size()];
+        ConversionError[] errors = new ConversionError[batch.size()];
+        assertEquals(0, csvParser.convertCurrencies(batch, results, errors));
+
+        for (int i = 0; i < batch.size(); i++) {
+            assertNull(errors[i]);
+            Double expected = csvParser.convertCurrencies(LocalDate.ofEpochDay(batch.getEpochDay(i)),
+                    batch.getSourceCurrency(i), batch.getTargetCurrency(i), batch.getAmount(i));
+            assertEquals(expected, results[i], 0.00005);
+        }
+    }
+
+    @DisplayName("Failed conversions are reported per item")
+    @Test
+    void reportErrorsPerItem() {
+        LocalDate friday = LocalDate.parse("2020-09-11");
+        ConversionBatch batch = ConversionBatch.of(
+                new LocalDate[]{friday, friday, friday, friday, LocalDate.parse("2020-09-12"), friday, friday},
+                new String[]{"GBP", "GBP", "USB", "GBP", "GBP", "CYP", "GBP"},
+                new String[]{"USD", "USD", "USD", "USB", "USD", "USD", "CYP"},
+                new double[]{10.0, -10.0, 10.0, 10.0, 10.0, 10.0, 10.0});
+
+        double[] results = new double[batch.size()];
+        ConversionError[] errors = new ConversionError[batch.size()];
+
+        assertEquals(6, csvParser.convertCurrencies(batch, results, errors));
+        assertNull(errors[0]);
+        assertEquals(12.8279, results[0], 0.00005);
+        assertArrayEquals(new ConversionError[]{null, ConversionError.INVALID_AMOUNT, ConversionError.INVALID_SOURCE_CURRENCY,
+                ConversionError.INVALID_TARGET_CURRENCY, ConversionError.SOURCE_RATE_NOT_APPLICABLE,
+                ConversionError.SOURCE_RATE_NOT_APPLICABLE, ConversionError.TARGET_RATE_NOT_APPLICABLE}, errors);
+        assertTrue(Double.isNaN(results[1]));
+    }
+
+    @DisplayName("A batch can be cleared and reused")
+    @Test
+    void reuseBatch() {
+        ConversionBatch batch = new ConversionBatch();
+        batch.add(LocalDate.parse("2020-09-11"), "GBP", "USD", 10.0);
+        batch.clear();
+        batch.add(LocalDate.parse("2020-09-11"), "USD", "USD", 5.0);
+
+        double[] results = new double[1];
+        ConversionError[] errors = new ConversionError[1];
+
+        assertEquals(0, csvParser.convertCurrencies(batch, results, errors));
+        assertEquals(5.0, results[0], 1e-12);
+        assertThrows(RuntimeException.class, () -> csvParser.convertCurrencies(batch, new double[0], errors));
+    }
+}
@@ -0,0 +1,145 @@
+package com.currency.rates;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CompressedRateStoreTest {
+
+    private static RateTable rateStore;
+    private static CompressedRateStore compressed;
+
+    @BeforeAll
+    static void setUp() {
+        CsvParser csvParser = new CsvParser();
+        csvParser.parseCsv("eurofxref-hist.csv");
+        rateStore = csvParser.getRateTable();
+        compressed = CompressedRateStore.copyOf(rateStore);
+    }
+
+    private static void assertSameRates(RateTable expected, RateTable actual) {
+        assertEquals(expected.size(), actual.size());
+        assertArrayEquals(expected.getCurrencies(), actual.getCurrencies());
+        double[] expectedRates = new double[expected.size()];
+        double[] actualRates = new double[actual.size()];
+        for (int column = 0; column < expected.currencyCount(); column++) {
+            expected.copyRates(column, 0, expected.size(), expectedRates);
+            actual.copyRates(column, 0, actual.size(), actualRates);
+            for (int row = 0; row < expectedRates.length; row++)
+                assertEquals(Double.doubleToRawLongBits(expectedRates[row]) | (Double.isNaN(expectedRates[row]) ? -1 : 0),
+                        Double.doubleToRawLongBits(actualRates[row]) | (Double.isNaN(actualRates[row]) ? -1 : 0));
+        }
+        for (int row = 0; row < expected.size(); row += 37) {
+            assertEquals(expected.getDate(row), actual.getDate(row));
+            assertEquals(expected.getRate(expected.currencyCount() - 1, row), actual.getRate(actual.currencyCount() - 1, row));
+        }
+    }
+
+    @DisplayName("The compressed store holds exactly the same rates in a fraction of the memory")
+    @Test
+    void roundTrip() {
+        assertSameRates(rateStore, compressed);
+        assertEquals(rateStore.indexOfDate(LocalDate.parse("2020-09-11")), compressed.indexOfDate(LocalDate.parse("2020-09-11")));
+        assertEquals(-1, compressed.indexOfCurrency("XXX"));
+
+        long plainBytes = 8L * rateStore.size() * rateStore.currencyCount();
+        assertTrue(compressed.getEncodedBytes() * 3 < plainBytes, compressed.getEncodedBytes() + " of " + plainBytes);
+    }
+
+    @DisplayName("Rates that are not short decimals fall back to xor encoding")
+    @Test
+    void xorEncoding() {
+        Random random = new Random(42);
+        int size = 1000;
+        int[] dates = new int[size];
+        double[][] rates = new double[2][size];
+        for (int row = 0; row < size; row++) {
+            dates[row] = row * 2;
+            rates[0][row] = row % 300 < 100 ? Double.NaN : Math.PI * (1 + random.nextGaussian() * 1e-3);
+            rates[1][row] = row % 7 == 0 ? -0.0 : 1e12 + row;
+        }
+        RateStore store = new RateStore(new String[]{"PI", "BIG"}, dates, rates);
+
+        assertSameRates(store, CompressedRateStore.copyOf(store));
+    }
+
+    @DisplayName("Range statistics from the block summaries match the range index")
+    @Test
+    void matchRangeIndex() {
+        RangeIndex rangeIndex = new RangeIndex(rateStore);
+        Random random = new Random(42);
+        for (int i = 0; i < 2000; i++) {
+            int column = random.nextInt(rateStore.currencyCount());
+            int fromRow = random.nextInt(rateStore.size());
+            int toRow = fromRow + random.nextInt(rateStore.size() - fromRow + 1);
+
+            assertEquals(rangeIndex.count(column, fromRow, toRow), compressed.count(column, fromRow, toRow));
+            assertEquals(rangeIndex.max(column, fromRow, toRow), compressed.max(column, fromRow, toRow));
+            assertEquals(rangeIndex.min(column, fromRow, toRow), compressed.min(column, fromRow, toRow));
+            double average = rangeIndex.average(column, fromRow, toRow);
+            if (Double.isNaN(average))
+                assertTrue(Double.isNaN(compressed.average(column, fromRow, toRow)));
+            else
+                assertEquals(average, compressed.average(column, fromRow, toRow), Math.abs(average) * 1e-9);
+        }
+    }
+
+    @DisplayName("Fixed point averages from the block summaries match the scaled columns")
+    @Test
+    void matchFixedPointRates() {
+        FixedPointRates fixedPointRates = new FixedPointRates(rateStore);
+        Random random = new Random(42);
+        for (int i = 0; i < 2000; i++) {
+            int column = random.nextInt(rateStore.currencyCount());
+            int fromRow = random.nextInt(rateStore.size());
+            int toRow = fromRow + random.nextInt(rateStore.size() - fromRow + 1);
+            for (RoundingMode roundingMode : new RoundingMode[]{RoundingMode.HALF_UP, RoundingMode.HALF_EVEN, RoundingMode.DOWN})
+                assertEquals(fixedPointRates.average(column, fromRow, toRow, roundingMode), compressed.fixedPointAverage(column, fromRow, toRow, roundingMode));
+        }
+    }
+
+    @DisplayName("A compressed parser answers fixed point averages without scaling the whole column")
+    @Test
+    void compressedFixedPointAverage() {
+        CsvParser plain = new CsvParser();
+        plain.parseCsv("eurofxref-hist.csv");
+        plain.setNumericMode(NumericMode.FIXED_POINT, RoundingMode.HALF_EVEN);
+        CsvParser csvParser = new CsvParser();
+        csvParser.parseCsv("eurofxref-hist.csv");
+        csvParser.setNumericMode(NumericMode.FIXED_POINT, RoundingMode.HALF_EVEN);
+        csvParser.compressRates();
+
+        LocalDate start = LocalDate.parse("2000-09-07");
+        LocalDate end = LocalDate.parse("2020-09-14");
+        assertEquals(plain.getStatsForSpecificDates(start, end, "USD", RangeStatistic.AVERAGE),
+                csvParser.getStatsForSpecificDates(start, end, "USD", RangeStatistic.AVERAGE));
+        assertFalse(csvParser.getSnapshot().getFixedPointRates().isBuilt(csvParser.getRateTable().indexOfCurrency("USD")));
+    }
+
+    @DisplayName("A parser serving compressed rates answers like one serving the plain store")
+    @Test
+    void compressedParser() {
+        CsvParser plain = new CsvParser();
+        plain.parseCsv("eurofxref-hist.csv");
+        CsvParser csvParser = new CsvParser();
+        csvParser.parseCsv("eurofxref-hist.csv");
+        csvParser.compressRates();
+        assertTrue(csvParser.getRateTable() instanceof CompressedRateStore);
+
+        LocalDate start = LocalDate.parse("2000-09-07");
+        LocalDate end = LocalDate.parse("2020-09-14");
+        for (RangeStatistic statistic : RangeStatistic.values())
+            assertEquals(plain.getStatsForSpecificDates(start, end, "USD", statistic), csvParser.getStatsForSpecificDates(start, end, "USD", statistic));
+        assertEquals(plain.retrieveRatesForSpecificDate(end), csvParser.retrieveRatesForSpecificDate(end));
+        assertEquals(plain.exchange(end, "GBP", "JPY", 10), csvParser.exchange(end, "GBP", "JPY", 10));
+
+        csvParser.appendRates(LocalDate.parse("2020-09-15"), new double[csvParser.getRateTable().currencyCount()]);
+        assertEquals(plain.getRateTable().size() + 1, csvParser.getRateTable().size());
+    }
+}
@@ -0,0 +1,74 @@
+package com.currency.rates;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CrossRateCacheTest {
+
+    private static RateTable rateTable;
+
+    @BeforeAll
+    static void setUp() {
+        CsvParser csvParser = new CsvParser();
+        csvParser.parseCsv("eurofxref-hist.csv");
+        rateTable = csvParser.getRateTable();
+    }
+
+    @DisplayName("The matrix holds the inverse of the source rate times the target rate")
+    @Test
+    void computeMatrix() {
+        int row = rateTable.indexOfDate(LocalDate.parse("2020-09-11"));
+        int gbp = rateTable.indexOfCurrency("GBP");
+        int usd = rateTable.indexOfCurrency("USD");
+        int cyp = rateTable.indexOfCurrency("CYP");
+        int n = rateTable.currencyCount();
+
+        double[] matrix = new CrossRateCache(8).matrix(rateTable, row);
+
+        assertEquals(1 / rateTable.getRate(gbp, row) * rateTable.getRate(usd, row), matrix[gbp * n + usd]);
+        assertEquals(1.0, matrix[usd * n + usd]);
+        assertTrue(Double.isNaN(matrix[gbp * n + cyp]));
+        assertTrue(Double.isNaN(matrix[cyp * n + usd]));
+    }
+
+    @DisplayName("Hot dates are served from the cache and the capacity is never exceeded")
+    @Test
+    void hitsMissesAndEvictions() {
+        CrossRateCache cache = new CrossRateCache(8);
+        int lastRow = rateTable.size() - 1;
+
+        double[] first = cache.matrix(rateTable, lastRow);
+        assertSame(first, cache.matrix(rateTable, lastRow));
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+
+        for (int row = lastRow - 1; row >= lastRow - 100; row--)
+            cache.matrix(rateTable, row);
+
+        assertEquals(8, cache.capacity());
+        assertEquals(101, cache.getMissCount());
+        assertEquals(101 - 8, cache.getEvictionCount());
+    }
+
+    @DisplayName("Matrices of a previous table are never served")
+    @Test
+    void invalidateOnNewRates() {
+        CsvParser csvParser = new CsvParser();
+        csvParser.parseCsv("rates2.csv");
+        LocalDate date = LocalDate.parse("2020-09-14");
+
+        assertEquals(1.1876, csvParser.convertCurrencies(date, "BGN", "USD", 1.9558));
+        csvParser.appendRates(date, new double[]{1.2, 125.82, 1.9558, Double.NaN});
+        assertEquals(1.2, csvParser.convertCurrencies(date, "BGN", "USD", 1.9558));
+
+        csvParser.parseCsv("rates2.csv");
+        assertEquals(1.1876, csvParser.convertCurrencies(date, "BGN", "USD", 1.9558));
+        assertEquals(0, csvParser.getCrossRateCache().getHitCount());
+        assertEquals(3, csvParser.getCrossRateCache().getMissCount());
+    }
+}
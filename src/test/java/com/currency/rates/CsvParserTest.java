@@ -99,8 +99,27 @@ class CsvParserTest {
         LocalDate start = LocalDate.parse("2010-09-07");
         LocalDate end = LocalDate.parse("2020-09-14");
 
-        // value matching the average appearing on Excel's status bar when these cells were selected
-        assertEquals(1.1213, csvParser.getStatsForSpecificDates(start, end, currency, false));
+        // the average of all 2,565 USD rates of the period, the chunked walk used to only average the last 660 days and report 1.1213
+        assertEquals(1.2173, csvParser.getStatsForSpecificDates(start, end, currency, false));
+    }
+
+    @DisplayName("The average does not depend on the decimal separator of the default locale")
+    @Test
+    void getAverageRateWithCommaLocale() {
+        String currency = "USD";
+        LocalDate start = LocalDate.parse("2015-09-07");
+        LocalDate end = LocalDate.parse("2015-09-14");
+        double expected = csvParser.getStatsForSpecificDates(start, end, currency, false);
+
+        Locale defaultLocale = Locale.getDefault();
+        Locale.setDefault(Locale.GERMANY);
+        try {
+            CsvParser parser = new CsvParser();
+            parser.parseCsv("eurofxref-hist.csv");
+            assertEquals(expected, parser.getStatsForSpecificDates(start, end, currency, false));
+        } finally {
+            Locale.setDefault(defaultLocale);
+        }
     }
 
     @DisplayName("Get the highest rate in the last 20 years")
@@ -125,6 +144,40 @@ class CsvParserTest {
         assertEquals(1.1876, csvParser.getStatsForSpecificDates(start, end, currency, true));
     }
 
+    @DisplayName("Get the lowest rate in the last 20 years")
+    @Test
+    void getLowestTwentyYearRate() {
+        LocalDate start = LocalDate.parse("2000-09-07");
+        LocalDate end = LocalDate.parse("2020-09-14");
+        String currency = "USD";
+
+        assertEquals(0.8252, csvParser.getStatsForSpecificDates(start, end, currency, RangeStatistic.LOWEST));
+    }
+
+    @DisplayName("A range without any business day reports 0")
+    @Test
+    void getStatsForWeekend() {
+        LocalDate start = LocalDate.parse("2020-09-12");
+        LocalDate end = LocalDate.parse("2020-09-13");
+        String currency = "USD";
+
+        assertEquals(0.0, csvParser.getStatsForSpecificDates(start, end, currency, true));
+        assertEquals(0.0, csvParser.getStatsForSpecificDates(start, end, currency, false));
+    }
+
+    @DisplayName("Throw a Runtime Exception for an Invalid Date Range")
+    @Test
+    void getStatsForInvalidDateRange() {
+        LocalDate start = LocalDate.parse("2020-09-14");
+        LocalDate end = LocalDate.parse("2020-09-07");
+        String currency = "USD";
+
+        String expectedExceptionMessage = "Invalid date range";
+        Exception exception = assertThrows(RuntimeException.class, () -> csvParser.getStatsForSpecificDates(start, end, currency, false));
+
+        assertEquals(expectedExceptionMessage, exception.getMessage());
+    }
+
     @DisplayName("Throw a Runtime Exception for an Invalid Currency")
     @Test
     void getHighestRateForInvalidCurrency() {
@@ -0,0 +1,160 @@
+package com.currency.rates;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CurrencyGraphTest {
+
+    private static CsvParser csvParser;
+    private static CsvParser linkedParser;
+
+    @BeforeAll
+    static void setUp() throws IOException {
+        csvParser = new CsvParser();
+        csvParser.parseCsv("eurofxref-hist.csv");
+        linkedParser = new CsvParser();
+        linkedParser.parseCsv("eurofxref-hist.csv");
+        linkedParser.setCurrencyLinks(CurrencyLinks.resource("currency-links.txt"));
+    }
+
+    private static double round(double value) {
+        return Double.parseDouble(String.format("%.4f", value));
+    }
+
+    @DisplayName("Legacy currencies are converted through their fixed euro rate once the file has no rate for them")
+    @Test
+    void legacyCurrencies() {
+        LocalDate date = LocalDate.parse("2020-09-11");
+        assertEquals(round(1 / 0.585274 * 1.1854 * 10), linkedParser.exchange(date, "CYP", "USD", 10));
+        assertEquals(round(1 / 1.1854 * 15.6466 * 10), linkedParser.exchange(date, "USD", "EEK", 10));
+        assertEquals(11.854, linkedParser.exchange(date, "EUR", "USD", 10));
+
+        // while the file still has a rate it wins over the link
+        LocalDate lastCypDate = LocalDate.parse("2007-12-31");
+        assertEquals(csvParser.exchange(lastCypDate, "CYP", "USD", 10), linkedParser.exchange(lastCypDate, "CYP", "USD", 10));
+        assertEquals(csvParser.exchange(date, "GBP", "USD", 10), linkedParser.exchange(date, "GBP", "USD", 10));
+
+        RuntimeException exception = assertThrows(RuntimeException.class, () -> csvParser.exchange(date, "CYP", "USD", 10));
+        assertEquals(ConversionError.SOURCE_RATE_NOT_APPLICABLE.getMessage(), exception.getMessage());
+    }
+
+    @DisplayName("The euro links of the legacy currencies only apply from the day the country adopted the euro")
+    @Test
+    void legacyCurrencyAdoption() throws IOException {
+        Map<String, CurrencyLinks.Link> euroLinks = new HashMap<>();
+        for (CurrencyLinks.Link link : CurrencyLinks.resource("currency-links.txt").getLinks()) {
+            if (link.base.equals("EUR"))
+                euroLinks.put(link.currency, link);
+        }
+        assertEquals(7, euroLinks.size());
+        for (CurrencyLinks.Link link : euroLinks.values())
+            assertNotEquals(Integer.MIN_VALUE, link.since, link.currency);
+
+        CurrencyLinks.Link cyp = euroLinks.get("CYP");
+        assertFalse(cyp.isActive((int) LocalDate.parse("2007-12-31").toEpochDay()));
+        assertTrue(cyp.isActive((int) LocalDate.parse("2008-01-01").toEpochDay()));
+        assertEquals(LocalDate.parse("2007-01-01"), LocalDate.ofEpochDay(euroLinks.get("SIT").since));
+        assertEquals(LocalDate.parse("2015-01-01"), LocalDate.ofEpochDay(euroLinks.get("LTL").since));
+    }
+
+    @DisplayName("Every entry point converts through the links in the parser's numeric mode")
+    @Test
+    void entryPointsAgree() throws IOException {
+        CsvParser fixedPointParser = new CsvParser();
+        fixedPointParser.parseCsv("eurofxref-hist.csv");
+        fixedPointParser.setCurrencyLinks(CurrencyLinks.resource("currency-links.txt"));
+        fixedPointParser.setNumericMode(NumericMode.FIXED_POINT, RoundingMode.DOWN);
+        CsvParser plainFixedPointParser = new CsvParser();
+        plainFixedPointParser.parseCsv("eurofxref-hist.csv");
+        plainFixedPointParser.setNumericMode(NumericMode.FIXED_POINT, RoundingMode.DOWN);
+
+        LocalDate date = LocalDate.parse("2020-09-11");
+        String[][] pairs = {{"GBP", "USD"}, {"CYP", "USD"}, {"USD", "EEK"}, {"TRL", "TRY"}, {"CYP", "EEK"}};
+        ConversionBatch batch = new ConversionBatch();
+        for (String[] pair : pairs)
+            batch.add(date, pair[0], pair[1], 10);
+        double[] results = new double[pairs.length];
+        ConversionError[] errors = new ConversionError[pairs.length];
+        assertEquals(0, linkedParser.convertCurrencies(batch, results, errors));
+
+        for (int i = 0; i < pairs.length; i++) {
+            String source = pairs[i][0];
+            String target = pairs[i][1];
+            double result = linkedParser.exchange(date, source, target, 10);
+            assertEquals(result, linkedParser.exchange(date, source, target, 10, DatePolicy.EXACT).getResult());
+            // the batch does not round its results
+            assertEquals(result, results[i], 0.00005);
+
+            long fixedPoint = fixedPointParser.exchangeFixedPoint(date, source, target, 10 * FixedPoint.AMOUNT_SCALE);
+            assertEquals(FixedPoint.toDouble(fixedPoint, FixedPoint.AMOUNT_SCALE), fixedPointParser.exchange(date, source, target, 10));
+            // rounded down instead of half up, so up to one ten thousandth apart
+            assertEquals(result, FixedPoint.toDouble(fixedPoint, FixedPoint.AMOUNT_SCALE), 0.00015);
+        }
+
+        // a pair with rates of its own converts the same with or without links, in either mode
+        assertEquals(csvParser.exchange(date, "GBP", "USD", 10), linkedParser.exchange(date, "GBP", "USD", 10));
+        assertEquals(plainFixedPointParser.exchangeFixedPoint(date, "GBP", "USD", 3), fixedPointParser.exchangeFixedPoint(date, "GBP", "USD", 3));
+        // rounding down through a link never exceeds the exact result
+        assertTrue(fixedPointParser.exchange(date, "CYP", "USD", 10) <= 1 / 0.585274 * 1.1854 * 10);
+
+        RuntimeException exception = assertThrows(RuntimeException.class,
+                () -> fixedPointParser.exchangeFixedPoint(LocalDate.parse("2004-12-31"), "TRL", "TRY", 10));
+        assertEquals(ConversionError.TARGET_RATE_NOT_APPLICABLE.getMessage(), exception.getMessage());
+    }
+
+    @DisplayName("Successors are only linked from the date they exist on")
+    @Test
+    void successors() {
+        assertEquals(1.0, linkedParser.exchange(LocalDate.parse("2020-09-11"), "TRL", "TRY", 1000000));
+        RuntimeException exception = assertThrows(RuntimeException.class,
+                () -> linkedParser.exchange(LocalDate.parse("2004-12-31"), "TRL", "TRY", 1000000));
+        assertEquals(ConversionError.TARGET_RATE_NOT_APPLICABLE.getMessage(), exception.getMessage());
+        exception = assertThrows(RuntimeException.class, () -> linkedParser.exchange(LocalDate.parse("2020-09-11"), "XXX", "TRY", 1));
+        assertEquals(ConversionError.INVALID_SOURCE_CURRENCY.getMessage(), exception.getMessage());
+
+        Conversion conversion = linkedParser.exchange(LocalDate.parse("2020-09-13"), "CYP", "USD", 10, DatePolicy.PREVIOUS);
+        assertEquals(LocalDate.parse("2020-09-11"), conversion.getDate());
+    }
+
+    @DisplayName("The path with the fewest links wins and resolved dates are cached")
+    @Test
+    void shortestPathAndCache() {
+        RateTable rateTable = new RateStore(new String[]{"USD"}, new int[]{10, 11}, new double[][]{{2, Double.NaN}});
+        CurrencyGraph graph = new CurrencyGraph(rateTable, CurrencyLinks.parse("AAA = 2 EUR\nBBB = 3 AAA\nBBB = 10 EUR\nHKD = 8 USD\n"));
+
+        int bbb = graph.indexOfCurrency("BBB");
+        int hkd = graph.indexOfCurrency("HKD");
+        assertEquals(10, graph.getRate(bbb, 0));
+        assertEquals(16, graph.getRate(hkd, 0));
+        assertTrue(Double.isNaN(graph.getRate(hkd, 1)));
+        assertEquals(5, graph.crossRate(graph.indexOfCurrency("AAA"), bbb, 1));
+        assertEquals(-1, graph.indexOfCurrency("GBP"));
+
+        long misses = graph.getMissCount();
+        graph.crossRate(bbb, hkd, 0);
+        graph.crossRate(hkd, bbb, 0);
+        assertEquals(misses, graph.getMissCount());
+        assertTrue(graph.getHitCount() >= 2);
+    }
+
+    @DisplayName("Malformed links are rejected with the line they are on")
+    @Test
+    void invalidLinks() {
+        assertEquals(2, CurrencyLinks.parse("# comment\n\nCYP=0.585274 EUR\nTRL = 1000000 TRY since 2005-01-01 until 2030-01-01\n").size());
+        assertEquals("Invalid currency link on line 1: CYP 0.585274 EUR",
+                assertThrows(RuntimeException.class, () -> CurrencyLinks.parse("CYP 0.585274 EUR")).getMessage());
+        assertEquals("Invalid factor on line 2: -1",
+                assertThrows(RuntimeException.class, () -> CurrencyLinks.parse("\nCYP = -1 EUR")).getMessage());
+        assertEquals("Invalid date on line 1: 2005-13-01",
+                assertThrows(RuntimeException.class, () -> CurrencyLinks.parse("TRL = 1000000 TRY since 2005-13-01")).getMessage());
+    }
+}
@@ -0,0 +1,170 @@
+package com.currency.rates;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DatePolicyTest {
+
+    private static CsvParser csvParser;
+    private static RateTable rateTable;
+
+    @BeforeAll
+    static void setUp() {
+        csvParser = new CsvParser();
+        csvParser.parseCsv("eurofxref-hist.csv");
+        rateTable = csvParser.getRateTable();
+    }
+
+    private static LocalDate resolve(DatePolicy policy, String date) {
+        int row = policy.resolve(rateTable, (int) LocalDate.parse(date).toEpochDay());
+        return row < 0 ? null : rateTable.getLocalDate(row);
+    }
+
+    @DisplayName("A weekend falls back to the friday, the monday or the closer of the two")
+    @Test
+    void resolveDates() {
+        assertNull(resolve(DatePolicy.EXACT, "2020-09-12"));
+        assertEquals(LocalDate.parse("2020-09-11"), resolve(DatePolicy.PREVIOUS, "2020-09-12"));
+        assertEquals(LocalDate.parse("2020-09-14"), resolve(DatePolicy.NEXT, "2020-09-12"));
+        assertEquals(LocalDate.parse("2020-09-11"), resolve(DatePolicy.NEAREST, "2020-09-12"));
+        assertEquals(LocalDate.parse("2020-09-14"), resolve(DatePolicy.NEAREST, "2020-09-13"));
+        assertEquals(LocalDate.parse("2020-09-11"), resolve(DatePolicy.NEXT, "2020-09-11"));
+
+        assertNull(resolve(DatePolicy.PREVIOUS, "1999-01-01"));
+        assertEquals(LocalDate.parse("1999-01-04"), resolve(DatePolicy.NEAREST, "1999-01-01"));
+        assertNull(resolve(DatePolicy.NEXT, "2020-09-15"));
+        assertEquals(LocalDate.parse("2020-09-14"), resolve(DatePolicy.NEAREST, "2030-01-01"));
+    }
+
+    @DisplayName("The skip arrays match a walk over the rows of both currencies")
+    @Test
+    void skipArraysMatchWalk() {
+        ValidRows validRows = csvParser.getSnapshot().getValidRows();
+        Random random = new Random(42);
+        for (int i = 0; i < 2000; i++) {
+            int column = random.nextInt(rateTable.currencyCount());
+            int otherColumn = random.nextInt(rateTable.currencyCount());
+            int row = random.nextInt(rateTable.size());
+
+            int previous = row;
+            while (previous >= 0 && (Double.isNaN(rateTable.getRate(column, previous)) || Double.isNaN(rateTable.getRate(otherColumn, previous))))
+                previous--;
+            int next = row;
+            while (next < rateTable.size() && (Double.isNaN(rateTable.getRate(column, next)) || Double.isNaN(rateTable.getRate(otherColumn, next))))
+                next++;
+
+            assertEquals(previous, validRows.previous(column, otherColumn, row));
+            assertEquals(next == rateTable.size() ? -1 : next, validRows.next(column, otherColumn, row));
+        }
+    }
+
+    @DisplayName("Conversions step over weekends and currency gaps and report the date that was used")
+    @Test
+    void convertWithPolicy() {
+        Conversion conversion = csvParser.exchange(LocalDate.parse("2020-09-13"), "GBP", "USD", 10, DatePolicy.PREVIOUS);
+        assertEquals(LocalDate.parse("2020-09-11"), conversion.getDate());
+        assertEquals(12.8279, conversion.getResult());
+        assertFalse(conversion.isExactDate());
+
+        conversion = csvParser.exchange(LocalDate.parse("2020-09-11"), "CYP", "USD", 10, DatePolicy.PREVIOUS);
+        assertEquals(LocalDate.parse("2007-12-31"), conversion.getDate());
+        assertEquals(csvParser.exchange(LocalDate.parse("2007-12-31"), "CYP", "USD", 10), conversion.getResult());
+
+        RuntimeException exception = assertThrows(RuntimeException.class,
+                () -> csvParser.exchange(LocalDate.parse("2020-09-11"), "TRL", "TRY", 10, DatePolicy.NEAREST));
+        assertEquals(ConversionError.TARGET_RATE_NOT_APPLICABLE.getMessage(), exception.getMessage());
+        exception = assertThrows(RuntimeException.class,
+                () -> csvParser.exchange(LocalDate.parse("2020-09-11"), "CYP", "USD", 10, DatePolicy.NEXT));
+        assertEquals(ConversionError.SOURCE_RATE_NOT_APPLICABLE.getMessage(), exception.getMessage());
+    }
+
+    @DisplayName("The rates of a date can be looked up with a policy")
+    @Test
+    void ratesWithPolicy() {
+        assertEquals(csvParser.retrieveRatesForSpecificDate(LocalDate.parse("2020-09-14")),
+                csvParser.retrieveRatesForSpecificDate(LocalDate.parse("2020-09-13"), DatePolicy.NEAREST));
+
+        DailyRates dailyRates = new DailyRates();
+        assertTrue(csvParser.retrieveRatesForSpecificDate(LocalDate.parse("2020-09-12"), DatePolicy.PREVIOUS, dailyRates));
+        assertEquals(LocalDate.parse("2020-09-11"), dailyRates.getDate());
+        assertFalse(csvParser.retrieveRatesForSpecificDate(LocalDate.parse("2020-09-12"), DatePolicy.EXACT, dailyRates));
+    }
+
+    @DisplayName("A table without rows has no valid rows for any policy until rows get appended")
+    @Test
+    void emptyTable() {
+        RateStore store = new RateStore(new String[]{"USD", "GBP"}, new int[0], new double[2][0]);
+        ValidRows validRows = new ValidRows(store);
+        assertEquals(-1, validRows.previous(0, 5));
+        assertEquals(-1, validRows.next(0, 0));
+        assertEquals(-1, validRows.previous(0, 1, 5));
+        assertEquals(-1, validRows.next(0, 1, 0));
+        for (DatePolicy policy : DatePolicy.values())
+            assertEquals(-1, validRows.resolve(policy, 18516, 0, 1));
+
+        store = store.withRow(18516, new double[]{1.18, 0.92});
+        ValidRows appended = validRows.appendRows(store);
+        assertEquals(0, appended.previous(0, 5));
+        assertEquals(0, appended.previous(0, 1, 5));
+        assertEquals(0, appended.next(0, 1, 0));
+        assertEquals(-1, validRows.previous(0, 5));
+    }
+
+    @DisplayName("Skip arrays extended with appended rows match ones built from scratch and the older ones stay unchanged")
+    @Test
+    void appendRows() {
+        Random random = new Random(11);
+        RateStore store = RateStore.copyOf(rateTable);
+        ValidRows initial = new ValidRows(store);
+        int initialSize = store.size();
+        // builds the arrays of every currency, cyp has not had a rate since 2008
+        int[][] expectedNext = new int[store.currencyCount()][initialSize];
+        for (int c = 0; c < store.currencyCount(); c++) {
+            for (int row = 0; row < initialSize; row++)
+                expectedNext[c][row] = initial.next(c, row);
+        }
+
+        ValidRows appended = initial;
+        double[] rates = new double[store.currencyCount()];
+        for (int day = 1; day <= 500; day++) {
+            for (int c = 0; c < rates.length; c++)
+                rates[c] = random.nextInt(4) == 0 ? Double.NaN : 1 + c;
+            store = store.withRow(store.getDate(store.size() - 1) + 1, rates);
+            appended = appended.appendRows(store);
+        }
+
+        ValidRows rebuilt = new ValidRows(store);
+        for (int c = 0; c < store.currencyCount(); c++) {
+            for (int row = 0; row < store.size(); row++) {
+                assertEquals(rebuilt.previous(c, row), appended.previous(c, row));
+                assertEquals(rebuilt.next(c, row), appended.next(c, row));
+            }
+            for (int row = 0; row < initialSize; row++)
+                assertEquals(expectedNext[c][row], initial.next(c, row));
+        }
+        int cyp = store.indexOfCurrency("CYP");
+        int usd = store.indexOfCurrency("USD");
+        assertEquals(rebuilt.next(cyp, usd, 0), appended.next(cyp, usd, 0));
+        assertEquals(-1, initial.next(cyp, usd, initialSize - 1));
+        assertEquals(rebuilt.next(cyp, usd, initialSize - 1), appended.next(cyp, usd, initialSize - 1));
+
+        // a snapshot with appended rows carries its built skip arrays over
+        CsvParser appendingParser = new CsvParser();
+        appendingParser.parseCsv("eurofxref-hist.csv");
+        ValidRows before = appendingParser.getSnapshot().getValidRows();
+        before.next(cyp, 0);
+        Arrays.fill(rates, 1);
+        appendingParser.appendRates(LocalDate.parse("2020-09-15"), rates);
+        ValidRows after = appendingParser.getSnapshot().getValidRows();
+        assertEquals(initialSize, after.next(cyp, initialSize - 1));
+        assertEquals(initialSize, after.previous(cyp, initialSize));
+        assertEquals(-1, before.next(cyp, initialSize - 1));
+    }
+}
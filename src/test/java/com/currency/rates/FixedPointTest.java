@@ -0,0 +1,138 @@
+package com.currency.rates;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FixedPointTest {
+
+    private static CsvParser csvParser;
+    private static CsvParser fixedPointParser;
+
+    @BeforeAll
+    static void setUp() {
+        csvParser = new CsvParser();
+        csvParser.parseCsv("eurofxref-hist.csv");
+        fixedPointParser = new CsvParser();
+        fixedPointParser.parseCsv("eurofxref-hist.csv");
+        fixedPointParser.setNumericMode(NumericMode.FIXED_POINT, RoundingMode.HALF_UP);
+    }
+
+    @DisplayName("Multiply divide matches BigDecimal for every rounding mode, also beyond 64 bit products")
+    @Test
+    void multiplyDivideMatchesBigDecimal() {
+        RoundingMode[] roundingModes = {RoundingMode.UP, RoundingMode.DOWN, RoundingMode.CEILING, RoundingMode.FLOOR,
+                RoundingMode.HALF_UP, RoundingMode.HALF_DOWN, RoundingMode.HALF_EVEN};
+        Random random = new Random(42);
+        for (int i = 0; i < 20000; i++) {
+            long a = i % 2 == 0 ? random.nextInt() : random.nextLong() >> random.nextInt(40);
+            long b = random.nextLong() >> random.nextInt(64);
+            long c = random.nextLong() >> random.nextInt(64);
+            if (c == 0)
+                continue;
+            RoundingMode roundingMode = roundingModes[i % roundingModes.length];
+
+            BigInteger expected = new BigDecimal(BigInteger.valueOf(a).multiply(BigInteger.valueOf(b)))
+                    .divide(new BigDecimal(c), 0, roundingMode).toBigIntegerExact();
+            if (expected.bitLength() <= 63 && expected.longValue() != Long.MIN_VALUE)
+                assertEquals(expected.longValue(), FixedPoint.multiplyDivide(a, b, c, roundingMode), a + " * " + b + " / " + c + " " + roundingMode);
+            else
+                assertThrows(ArithmeticException.class, () -> FixedPoint.multiplyDivide(a, b, c, roundingMode));
+        }
+    }
+
+    @DisplayName("Ties are rounded according to the rounding mode")
+    @Test
+    void ties() {
+        assertEquals(2, FixedPoint.divide(5, 2, RoundingMode.HALF_EVEN));
+        assertEquals(3, FixedPoint.divide(5, 2, RoundingMode.HALF_UP));
+        assertEquals(-3, FixedPoint.divide(-5, 2, RoundingMode.HALF_UP));
+        assertEquals(-2, FixedPoint.divide(-5, 2, RoundingMode.CEILING));
+        assertThrows(ArithmeticException.class, () -> FixedPoint.divide(5, 2, RoundingMode.UNNECESSARY));
+        assertEquals(1187600, FixedPoint.toFixed(1.1876, FixedPoint.RATE_SCALE));
+        assertEquals(17772610000L, FixedPoint.toFixed(17772.61, FixedPoint.RATE_SCALE));
+    }
+
+    @DisplayName("Conversions and averages in fixed point match the double mode")
+    @Test
+    void matchDoubleMode() {
+        LocalDate date = LocalDate.parse("2020-09-11");
+        assertEquals(12.8279, fixedPointParser.exchange(date, "GBP", "USD", 10));
+        assertEquals(128279, fixedPointParser.exchangeFixedPoint(date, "GBP", "USD", 100000));
+        assertEquals(csvParser.exchange(date, "JPY", "ZAR", 12345.67), fixedPointParser.exchange(date, "JPY", "ZAR", 12345.67));
+
+        LocalDate start = LocalDate.parse("2020-09-07");
+        LocalDate end = LocalDate.parse("2020-09-14");
+        assertEquals(1.1827, fixedPointParser.getStatsForSpecificDates(start, end, "USD", RangeStatistic.AVERAGE));
+        assertEquals(csvParser.getStatsForSpecificDates(LocalDate.parse("1999-01-04"), end, "GBP", RangeStatistic.AVERAGE),
+                fixedPointParser.getStatsForSpecificDates(LocalDate.parse("1999-01-04"), end, "GBP", RangeStatistic.AVERAGE));
+        assertEquals(0.0, fixedPointParser.getStatsForSpecificDates(LocalDate.parse("2020-09-12"), LocalDate.parse("2020-09-13"), "USD", RangeStatistic.AVERAGE));
+    }
+
+    @DisplayName("Fixed point conversions report the same errors as the double mode")
+    @Test
+    void errors() {
+        LocalDate date = LocalDate.parse("2020-09-11");
+        RuntimeException exception = assertThrows(RuntimeException.class, () -> fixedPointParser.exchangeFixedPoint(date, "CYP", "USD", 10));
+        assertEquals(ConversionError.SOURCE_RATE_NOT_APPLICABLE.getMessage(), exception.getMessage());
+        exception = assertThrows(RuntimeException.class, () -> fixedPointParser.exchange(date, "USD", "XXX", 10));
+        assertEquals(ConversionError.INVALID_TARGET_CURRENCY.getMessage(), exception.getMessage());
+        exception = assertThrows(RuntimeException.class, () -> fixedPointParser.exchangeFixedPoint(date, "USD", "GBP", 0));
+        assertEquals(ConversionError.INVALID_AMOUNT.getMessage(), exception.getMessage());
+    }
+
+    @DisplayName("Fixed point rates extended with appended rows match ones built from scratch")
+    @Test
+    void appendRows() {
+        Random random = new Random(5);
+        RateStore store = RateStore.copyOf(csvParser.getRateTable());
+        FixedPointRates initial = new FixedPointRates(store);
+        int initialSize = store.size();
+        int usd = store.indexOfCurrency("USD");
+        long average = initial.average(usd, 0, initialSize, RoundingMode.HALF_UP);
+
+        FixedPointRates appended = initial;
+        double[] rates = new double[store.currencyCount()];
+        for (int day = 1; day <= 500; day++) {
+            for (int c = 0; c < rates.length; c++)
+                rates[c] = random.nextInt(10) == 0 ? Double.NaN : Math.round(random.nextDouble() * 1e6) / 1e4;
+            store = store.withRow(store.getDate(store.size() - 1) + 1, rates);
+            appended = appended.appendRows(store);
+        }
+
+        FixedPointRates rebuilt = new FixedPointRates(store);
+        for (int i = 0; i < 2000; i++) {
+            int column = random.nextInt(store.currencyCount());
+            int fromRow = random.nextInt(store.size());
+            int toRow = fromRow + random.nextInt(store.size() - fromRow + 1);
+            assertEquals(rebuilt.getRate(column, fromRow), appended.getRate(column, fromRow));
+            assertEquals(rebuilt.count(column, fromRow, toRow), appended.count(column, fromRow, toRow));
+            assertEquals(rebuilt.average(column, fromRow, toRow, RoundingMode.HALF_EVEN), appended.average(column, fromRow, toRow, RoundingMode.HALF_EVEN));
+        }
+
+        // the instance the rows were appended to still only covers its own rows
+        assertEquals(average, initial.average(usd, 0, initialSize, RoundingMode.HALF_UP));
+        assertThrows(IndexOutOfBoundsException.class, () -> initial.average(usd, 0, initialSize + 1, RoundingMode.HALF_UP));
+        assertThrows(IndexOutOfBoundsException.class, () -> initial.getRate(usd, initialSize));
+
+        // a snapshot with appended rows carries its fixed point rates over
+        CsvParser appendingParser = new CsvParser();
+        appendingParser.parseCsv("eurofxref-hist.csv");
+        appendingParser.setNumericMode(NumericMode.FIXED_POINT, RoundingMode.HALF_UP);
+        LocalDate end = LocalDate.parse("2020-09-14");
+        appendingParser.getStatsForSpecificDates(end, end, "USD", RangeStatistic.AVERAGE);
+        Arrays.fill(rates, 2);
+        appendingParser.appendRates(LocalDate.parse("2020-09-15"), rates);
+        assertTrue(appendingParser.getSnapshot().getFixedPointRates().isBuilt(usd));
+        assertEquals(2.0, appendingParser.getStatsForSpecificDates(LocalDate.parse("2020-09-15"), LocalDate.parse("2020-09-15"), "USD", RangeStatistic.AVERAGE));
+    }
+}
@@ -0,0 +1,51 @@
+package com.currency.rates;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LoadTestTest {
+
+    @DisplayName("Every thread runs its share of the query mix and the report adds them up")
+    @Test
+    void queryMix() throws IOException {
+        CsvParser csvParser = new CsvParser();
+        csvParser.parseCsv(new ByteArrayInputStream(new SyntheticRates(30, 5, 42).csv()));
+
+        LoadTest.Report report = new LoadTest(csvParser, 4, 1, 2, 1, 42).run(500);
+        assertEquals(4, report.getThreads());
+        assertEquals(2000, report.getTotalCount());
+        assertEquals(2000, report.getCount(LoadTest.Query.RATES_BY_DATE) + report.getCount(LoadTest.Query.RANGE_STATS)
+                + report.getCount(LoadTest.Query.CONVERT));
+        assertEquals(1000, report.getCount(LoadTest.Query.RANGE_STATS), 100);
+        // calendar dates include weekends, which have no rates
+        assertTrue(report.getErrors(LoadTest.Query.RATES_BY_DATE) > 0);
+        assertTrue(report.getErrors(LoadTest.Query.RATES_BY_DATE) < report.getCount(LoadTest.Query.RATES_BY_DATE));
+        assertTrue(report.getThroughput() > 0);
+        assertTrue(report.getHistogram(LoadTest.Query.CONVERT).getPercentile(99) > 0);
+        assertTrue(report.toString().contains("RANGE_STATS"));
+
+        LoadTest.Report onlyConversions = new LoadTest(csvParser, 1, 0, 0, 1, 42).run(100);
+        assertEquals(100, onlyConversions.getCount(LoadTest.Query.CONVERT));
+        assertFalse(onlyConversions.toString().contains("RANGE_STATS"));
+
+        assertThrows(IllegalArgumentException.class, () -> new LoadTest(csvParser, 1, 0, 0, 0, 42));
+        assertThrows(IllegalArgumentException.class, () -> new LoadTest(csvParser, 0, 1, 1, 1, 42));
+    }
+
+    @DisplayName("A timed run stops once the time is up")
+    @Test
+    void timed() {
+        CsvParser csvParser = new CsvParser();
+        csvParser.parseCsv("eurofxref-hist.csv");
+
+        LoadTest.Report report = new LoadTest(csvParser, 2, 1, 1, 1, 7).runFor(200);
+        assertTrue(report.getTotalCount() > 0);
+        assertTrue(report.getElapsedNanos() >= 200_000_000L);
+        assertTrue(report.getElapsedNanos() < 10_000_000_000L);
+    }
+}
@@ -0,0 +1,141 @@
+package com.currency.rates;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MergedRateTableTest {
+
+    private static final double NA = Double.NaN;
+
+    private static RateSource source(String name, String[] currencies, int[] dates, double[][] rates) {
+        return RateSource.of(name, new RateStore(currencies, dates, rates));
+    }
+
+    @DisplayName("Dates and currencies are the union of the sources and later sources win unless their rate is N/A")
+    @Test
+    void mergeSources() {
+        RateSource history = source("history", new String[]{"USD", "JPY"}, new int[]{10, 11, 12},
+                new double[][]{{1.1, 1.2, 1.3}, {120, 121, 122}});
+        RateSource update = source("update", new String[]{"GBP", "USD"}, new int[]{12, 13},
+                new double[][]{{0.9, 0.91}, {NA, 1.4}});
+
+        MergedRateTable merged = new MergedRateTable(Arrays.asList(history, update), 8);
+
+        assertArrayEquals(new String[]{"USD", "JPY", "GBP"}, merged.getCurrencies());
+        assertEquals(4, merged.size());
+        assertEquals(13, merged.getDate(3));
+        assertEquals(-1, merged.indexOfDate(14));
+        assertEquals("Date,USD,JPY,GBP,", merged.getHeader());
+
+        int usd = merged.indexOfCurrency("USD");
+        assertEquals(1.3, merged.getRate(usd, 2));
+        assertEquals(1.4, merged.getRate(usd, 3));
+        assertTrue(Double.isNaN(merged.getRate(merged.indexOfCurrency("JPY"), 3)));
+        assertTrue(Double.isNaN(merged.getRate(merged.indexOfCurrency("GBP"), 0)));
+        assertEquals(0.91, merged.getRate(merged.indexOfCurrency("GBP"), 3));
+    }
+
+    @DisplayName("Columns are only read from the files when queried and the least recently used one is evicted")
+    @Test
+    void lazyLoadingAndEviction() throws IOException {
+        MergedRateTable merged = new MergedRateTable(Arrays.asList(RateSource.resource("rates.csv"), RateSource.resource("rates2.csv")), 2);
+
+        assertEquals(41, merged.currencyCount());
+        assertEquals(6, merged.size());
+        assertEquals(0, merged.getLoadCount());
+
+        int usd = merged.indexOfCurrency("USD");
+        int jpy = merged.indexOfCurrency("JPY");
+        int gbp = merged.indexOfCurrency("GBP");
+        int eighth = merged.indexOfDate(LocalDate.parse("2020-09-08"));
+        assertEquals(1.1785, merged.getRate(usd, eighth));
+        assertEquals(1.1785, merged.getRate(usd, eighth));
+        assertEquals(1, merged.getLoadCount());
+        assertEquals(0.90453, merged.getRate(gbp, eighth));
+        assertTrue(Double.isNaN(merged.getRate(merged.indexOfCurrency("CYP"), eighth)));
+        assertEquals(0.9219, merged.getRate(gbp, merged.size() - 1));
+
+        merged.getRate(usd, 0);
+        merged.getRate(jpy, 0);
+        assertEquals(5, merged.getLoadCount());
+        assertEquals(3, merged.getEvictionCount());
+        assertEquals(2, merged.getResidentColumnCount());
+        assertTrue(merged.isResident(usd));
+        assertFalse(merged.isResident(gbp));
+    }
+
+    @DisplayName("A single merged source answers queries exactly like the parsed file")
+    @Test
+    void matchParsedFile() throws IOException {
+        CsvParser csvParser = new CsvParser();
+        csvParser.parseCsv("eurofxref-hist.csv");
+        RateTable parsed = csvParser.getRateTable();
+
+        CsvParser mergedParser = new CsvParser();
+        mergedParser.useSources(4, RateSource.resource("eurofxref-hist.csv"));
+        RateTable merged = mergedParser.getRateTable();
+        assertEquals(parsed.size(), merged.size());
+        assertEquals(parsed.currencyCount(), merged.currencyCount());
+
+        RangeIndex parsedIndex = new RangeIndex(parsed);
+        RangeIndex mergedIndex = new RangeIndex(merged);
+        for (String currency : new String[]{"USD", "GBP", "CYP", "ZAR", "TRL"}) {
+            int column = merged.indexOfCurrency(currency);
+            assertEquals(parsedIndex.max(column, 0, parsed.size()), mergedIndex.max(column, 0, merged.size()));
+            assertEquals(parsedIndex.min(column, 100, 4000), mergedIndex.min(column, 100, 4000));
+            assertEquals(parsedIndex.average(column, 0, parsed.size()), mergedIndex.average(column, 0, merged.size()));
+        }
+        assertTrue(((MergedRateTable) merged).getResidentColumnCount() <= 4);
+
+        LocalDate date = LocalDate.parse("2020-09-11");
+        assertEquals(csvParser.exchange(date, "GBP", "USD", 10), mergedParser.exchange(date, "GBP", "USD", 10));
+        assertEquals(csvParser.getStatsForSpecificDates(LocalDate.parse("2000-09-07"), LocalDate.parse("2020-09-14"), "USD", RangeStatistic.HIGHEST),
+                mergedParser.getStatsForSpecificDates(LocalDate.parse("2000-09-07"), LocalDate.parse("2020-09-14"), "USD", RangeStatistic.HIGHEST));
+    }
+
+    @DisplayName("Rows are read without loading the columns and evicted columns drop their derived data")
+    @Test
+    void rowsWithFewResidentColumns() throws IOException {
+        CsvParser csvParser = new CsvParser();
+        csvParser.parseCsv("eurofxref-hist.csv");
+        CsvParser mergedParser = new CsvParser();
+        mergedParser.useSources(2, RateSource.resource("rates.csv"), RateSource.resource("eurofxref-hist.csv"));
+        MergedRateTable merged = (MergedRateTable) mergedParser.getRateTable();
+        assertTrue(merged.getMaxResidentColumns() < merged.currencyCount());
+
+        // a rendered row and a filled row read the row of every source holding the date, not every column
+        LocalDate date = LocalDate.parse("2020-09-08");
+        assertEquals(csvParser.retrieveRatesForSpecificDate(date), mergedParser.retrieveRatesForSpecificDate(date));
+        DailyRates parsedRates = new DailyRates();
+        DailyRates mergedRates = new DailyRates();
+        LocalDate older = LocalDate.parse("2005-03-01");
+        assertTrue(csvParser.retrieveRatesForSpecificDate(older, parsedRates));
+        assertTrue(mergedParser.retrieveRatesForSpecificDate(older, mergedRates));
+        assertEquals(parsedRates.validCount(), mergedRates.validCount());
+        for (int column = 0; column < merged.currencyCount(); column++)
+            assertEquals(parsedRates.getRate(column), mergedRates.getRate(column));
+        assertEquals(0, merged.getLoadCount());
+        assertEquals(3, merged.getRowReadCount());
+
+        // a resident column is read directly, so the row only comes from the sources for the others
+        int usd = merged.indexOfCurrency("USD");
+        merged.getRate(usd, 0);
+        assertEquals(1, merged.getLoadCount());
+        mergedParser.retrieveRatesForSpecificDate(older, mergedRates);
+        assertEquals(4, merged.getRowReadCount());
+
+        RangeIndex rangeIndex = new RangeIndex(merged);
+        rangeIndex.max(usd, 0, merged.size());
+        assertTrue(rangeIndex.isBuilt(usd));
+        merged.getRate(merged.indexOfCurrency("GBP"), 0);
+        merged.getRate(merged.indexOfCurrency("JPY"), 0);
+        assertFalse(merged.isResident(usd));
+        assertFalse(rangeIndex.isBuilt(usd));
+    }
+}
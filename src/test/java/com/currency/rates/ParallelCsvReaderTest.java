@@ -0,0 +1,134 @@
+package com.currency.rates;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ParallelCsvReaderTest {
+
+    private static ExecutorService executor;
+    private static byte[] csv;
+
+    @BeforeAll
+    static void setUp() throws IOException {
+        executor = Executors.newFixedThreadPool(4);
+        try (InputStream inputStream = ParallelCsvReaderTest.class.getClassLoader().getResourceAsStream("eurofxref-hist.csv")) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = inputStream.read(buffer)) > 0)
+                bytes.write(buffer, 0, read);
+            csv = bytes.toByteArray();
+        }
+    }
+
+    @AfterAll
+    static void tearDown() {
+        executor.shutdown();
+    }
+
+    private static RateStore.Builder sequential(byte[] bytes) throws IOException {
+        RateStore.Builder builder = new RateStore.Builder();
+        RateCsvReader.read(new ByteArrayInputStream(bytes), builder);
+        return builder;
+    }
+
+    private static RateStore.Builder parallel(byte[] bytes, int chunkSize, int maxChunksInFlight) throws IOException {
+        RateStore.Builder builder = new RateStore.Builder();
+        ParallelCsvReader.read(new ByteArrayInputStream(bytes), builder, executor, chunkSize, maxChunksInFlight);
+        return builder;
+    }
+
+    private static void assertSameStore(RateStore.Builder expected, RateStore.Builder actual) {
+        assertEquals(expected.getHeader(), actual.getHeader());
+        RateStore expectedStore = expected.build();
+        RateStore actualStore = actual.build();
+        assertArrayEquals(expectedStore.getCurrencies(), actualStore.getCurrencies());
+        assertEquals(expectedStore.size(), actualStore.size());
+        double[] expectedRates = new double[expectedStore.size()];
+        double[] actualRates = new double[actualStore.size()];
+        for (int row = 0; row < expectedStore.size(); row++)
+            assertEquals(expectedStore.getDate(row), actualStore.getDate(row));
+        for (int column = 0; column < expectedStore.currencyCount(); column++) {
+            expectedStore.copyRates(column, 0, expectedStore.size(), expectedRates);
+            actualStore.copyRates(column, 0, actualStore.size(), actualRates);
+            assertArrayEquals(expectedRates, actualRates);
+        }
+    }
+
+    @DisplayName("Any chunk size gives exactly the store of the sequential reader")
+    @Test
+    void matchSequential() throws IOException {
+        RateStore.Builder expected = sequential(csv);
+        for (int chunkSize : new int[]{1, 97, 4096, ParallelCsvReader.DEFAULT_CHUNK_SIZE})
+            assertSameStore(expected, parallel(csv, chunkSize, 3));
+    }
+
+    @DisplayName("Gzip input, blank lines, carriage returns, a byte order mark and duplicate dates are handled like the sequential reader")
+    @Test
+    void edgeCases() throws IOException {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+            gzip.write(csv);
+        }
+        assertSameStore(sequential(csv), parallel(compressed.toByteArray(), 8192, 2));
+
+        byte[] tricky = ("\r\n\n﻿Date,USD,JPY,\r\n2020-09-14,1.1876,N/A,\r\n\r\n2020-09-11,1.1854,125.82,\n"
+                + "2020-09-14,1.2,126,\n2020-09-10,1.1849,125.76").getBytes(StandardCharsets.UTF_8);
+        for (int chunkSize = 1; chunkSize < tricky.length + 2; chunkSize++)
+            assertSameStore(sequential(tricky), parallel(tricky, chunkSize, 2));
+
+        assertNull(parallel(new byte[0], 16, 2).getHeader());
+    }
+
+    @DisplayName("No more chunks than allowed are read ahead of the merge")
+    @Test
+    void backPressure() throws IOException {
+        AtomicInteger unmerged = new AtomicInteger();
+        AtomicInteger maxUnmerged = new AtomicInteger();
+        RateStore.Builder builder = new RateStore.Builder() {
+            @Override
+            public RateStore.Builder addRows(RateStore.Builder rows) {
+                unmerged.decrementAndGet();
+                return super.addRows(rows);
+            }
+        };
+        ParallelCsvReader.read(new ByteArrayInputStream(csv), builder, task -> {
+            maxUnmerged.accumulateAndGet(unmerged.incrementAndGet(), Math::max);
+            executor.execute(task);
+        }, 1024, 3);
+
+        assertEquals(5555, builder.build().size());
+        assertEquals(0, unmerged.get());
+        assertEquals(3, maxUnmerged.get());
+    }
+
+    @DisplayName("Errors of a chunk surface on the reading thread and the parser serves the same rates")
+    @Test
+    void errorsAndParser() throws IOException {
+        byte[] broken = "Date,USD,\n2020-09-14,1.1,\n,1.2,\n".getBytes(StandardCharsets.UTF_8);
+        assertThrows(RuntimeException.class, () -> parallel(broken, 4, 2));
+
+        CsvParser csvParser = new CsvParser();
+        csvParser.parseCsvInParallel(new ByteArrayInputStream(csv));
+        CsvParser sequentialParser = new CsvParser();
+        sequentialParser.parseCsv(new ByteArrayInputStream(csv));
+        assertEquals(sequentialParser.getHeader(), csvParser.getHeader());
+        assertEquals(sequentialParser.retrieveRatesForSpecificDate(LocalDate.parse("2020-09-14")),
+                csvParser.retrieveRatesForSpecificDate(LocalDate.parse("2020-09-14")));
+    }
+}
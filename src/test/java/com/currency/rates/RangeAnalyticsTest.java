@@ -0,0 +1,84 @@
+package com.currency.rates;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RangeAnalyticsTest {
+
+    private static CsvParser csvParser;
+    private static RateTable rateTable;
+
+    @BeforeAll
+    static void setUp() {
+        csvParser = new CsvParser();
+        csvParser.parseCsv("eurofxref-hist.csv");
+        rateTable = csvParser.getRateTable();
+    }
+
+    @DisplayName("The matrix matches the range index for every currency and window")
+    @Test
+    void matchesRangeIndex() {
+        LocalDate[] starts = {LocalDate.parse("2020-09-07"), LocalDate.parse("2010-09-07"), LocalDate.parse("1999-01-01"), LocalDate.parse("2020-09-12")};
+        LocalDate[] ends = {LocalDate.parse("2020-09-14"), LocalDate.parse("2020-09-14"), LocalDate.parse("2020-09-14"), LocalDate.parse("2020-09-13")};
+        RangeIndex rangeIndex = csvParser.getSnapshot().getRangeIndex();
+
+        for (boolean parallel : new boolean[]{false, true}) {
+            StatsMatrix statsMatrix = RangeAnalytics.compute(rateTable, starts, ends, parallel);
+            assertEquals(4, statsMatrix.windowCount());
+
+            for (int w = 0; w < starts.length; w++) {
+                int fromRow = rateTable.lowerBound((int) starts[w].toEpochDay());
+                int toRow = rateTable.upperBound((int) ends[w].toEpochDay());
+                for (int c = 0; c < rateTable.currencyCount(); c++) {
+                    assertEquals(rangeIndex.count(c, fromRow, toRow), statsMatrix.getCount(w, c));
+                    assertEquals(rangeIndex.max(c, fromRow, toRow), statsMatrix.getHighest(w, c));
+                    assertEquals(rangeIndex.min(c, fromRow, toRow), statsMatrix.getLowest(w, c));
+                    assertEquals(rangeIndex.average(c, fromRow, toRow), statsMatrix.getAverage(w, c), 1e-6);
+                }
+            }
+        }
+    }
+
+    @DisplayName("Averages and extremes agree with the single currency statistics")
+    @Test
+    void matchesParser() {
+        LocalDate[] starts = {LocalDate.parse("2000-09-07")};
+        LocalDate[] ends = {LocalDate.parse("2020-09-14")};
+        StatsMatrix statsMatrix = csvParser.getStatsMatrix(starts, ends);
+        int usd = statsMatrix.indexOfCurrency("USD");
+
+        assertEquals(1.599, statsMatrix.get(RangeStatistic.HIGHEST, 0, usd));
+        assertEquals(0.8252, statsMatrix.get(RangeStatistic.LOWEST, 0, usd));
+        assertEquals(csvParser.getStatsForSpecificDates(starts[0], ends[0], "USD", false),
+                Double.parseDouble(String.format("%.4f", statsMatrix.getAverage(0, usd))));
+        // the weekend window and the retired CYP have no applicable rates
+        assertEquals(0, csvParser.getStatsMatrix(new LocalDate[]{LocalDate.parse("2020-09-12")}, new LocalDate[]{LocalDate.parse("2020-09-13")}).getCount(0, usd));
+        assertTrue(Double.isNaN(csvParser.getStatsMatrix(new LocalDate[]{LocalDate.parse("2020-09-07")}, new LocalDate[]{LocalDate.parse("2020-09-14")}).getAverage(0, statsMatrix.indexOfCurrency("CYP"))));
+    }
+
+    @DisplayName("The standard deviation is the sample one and stays accurate for large rates")
+    @Test
+    void standardDeviation() {
+        RateStore rateStore = new RateStore(new String[]{"AAA", "IDR"}, new int[]{0, 1, 2, 3, 4, 5},
+                new double[][]{{2, 4, 4, 4, Double.NaN, 5}, {17671.49, 17671.51, 17671.49, 17671.51, 17671.49, 17671.51}});
+        StatsMatrix statsMatrix = RangeAnalytics.compute(rateStore, new LocalDate[]{LocalDate.ofEpochDay(0)}, new LocalDate[]{LocalDate.ofEpochDay(5)});
+
+        assertEquals(5, statsMatrix.getCount(0, 0));
+        assertEquals(3.8, statsMatrix.getAverage(0, 0), 1e-12);
+        assertEquals(Math.sqrt(4.8 / 4), statsMatrix.getStandardDeviation(0, 0), 1e-12);
+        assertEquals(Math.sqrt(6 * 0.0001 / 5), statsMatrix.getStandardDeviation(0, 1), 1e-9);
+    }
+
+    @DisplayName("A window whose start is after its end is rejected")
+    @Test
+    void invalidRange() {
+        Exception exception = assertThrows(RuntimeException.class,
+                () -> csvParser.getStatsMatrix(new LocalDate[]{LocalDate.parse("2020-09-14")}, new LocalDate[]{LocalDate.parse("2020-09-07")}));
+        assertEquals("Invalid date range", exception.getMessage());
+    }
+}
@@ -0,0 +1,109 @@
+package com.currency.rates;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RangeIndexTest {
+
+    private static RateTable rateStore;
+    private static RangeIndex rangeIndex;
+
+    @BeforeAll
+    static void setUp() {
+        CsvParser csvParser = new CsvParser();
+        csvParser.parseCsv("eurofxref-hist.csv");
+        rateStore = csvParser.getRateTable();
+        rangeIndex = new RangeIndex(rateStore);
+    }
+
+    @DisplayName("Random ranges match a plain scan of the rates")
+    @Test
+    void matchPlainScan() {
+        Random random = new Random(42);
+        for (int i = 0; i < 2000; i++) {
+            int column = random.nextInt(rateStore.currencyCount());
+            int fromRow = random.nextInt(rateStore.size());
+            int toRow = fromRow + random.nextInt(rateStore.size() - fromRow + 1);
+
+            double sum = 0;
+            int count = 0;
+            double highest = Double.NaN;
+            double lowest = Double.NaN;
+            for (int row = fromRow; row < toRow; row++) {
+                double rate = rateStore.getRate(column, row);
+                if (Double.isNaN(rate))
+                    continue;
+                sum += rate;
+                count++;
+                highest = Double.isNaN(highest) ? rate : Math.max(highest, rate);
+                lowest = Double.isNaN(lowest) ? rate : Math.min(lowest, rate);
+            }
+
+            assertEquals(count, rangeIndex.count(column, fromRow, toRow));
+            assertEquals(highest, rangeIndex.max(column, fromRow, toRow));
+            assertEquals(lowest, rangeIndex.min(column, fromRow, toRow));
+            if (count == 0)
+                assertTrue(Double.isNaN(rangeIndex.average(column, fromRow, toRow)));
+            else
+                assertEquals(sum / count, rangeIndex.average(column, fromRow, toRow), Math.abs(sum / count) * 1e-9);
+        }
+    }
+
+    @DisplayName("Currencies with non-applicable rates only report NaN")
+    @Test
+    void notApplicableRange() {
+        int column = rateStore.indexOfCurrency("CYP");
+        int lastRow = rateStore.size();
+
+        assertEquals(0, rangeIndex.count(column, lastRow - 10, lastRow));
+        assertTrue(Double.isNaN(rangeIndex.max(column, lastRow - 10, lastRow)));
+        assertTrue(Double.isNaN(rangeIndex.average(column, lastRow - 10, lastRow)));
+    }
+
+    @DisplayName("Rows outside of the index are rejected")
+    @Test
+    void invalidRange() {
+        assertThrows(IndexOutOfBoundsException.class, () -> rangeIndex.max(0, 10, 5));
+        assertThrows(IndexOutOfBoundsException.class, () -> rangeIndex.average(0, 0, rateStore.size() + 1));
+    }
+
+    @DisplayName("An index extended with appended rows matches one built from scratch")
+    @Test
+    void appendRows() {
+        Random random = new Random(7);
+        RateStore store = RateStore.copyOf(rateStore);
+        RangeIndex appended = new RangeIndex(store);
+        RangeIndex initial = appended;
+        int initialSize = store.size();
+
+        double[] row = new double[store.currencyCount()];
+        for (int day = 1; day <= 3000; day++) {
+            for (int c = 0; c < row.length; c++)
+                row[c] = random.nextInt(10) == 0 ? Double.NaN : random.nextDouble() * 10;
+            store = store.withRow(store.getDate(store.size() - 1) + 1, row);
+            appended = appended.appendRows(store);
+        }
+
+        RangeIndex rebuilt = new RangeIndex(store);
+        assertEquals(rebuilt.size(), appended.size());
+        for (int i = 0; i < 2000; i++) {
+            int column = random.nextInt(store.currencyCount());
+            int fromRow = random.nextInt(store.size());
+            int toRow = fromRow + random.nextInt(store.size() - fromRow + 1);
+            assertEquals(rebuilt.count(column, fromRow, toRow), appended.count(column, fromRow, toRow));
+            assertEquals(rebuilt.max(column, fromRow, toRow), appended.max(column, fromRow, toRow));
+            assertEquals(rebuilt.min(column, fromRow, toRow), appended.min(column, fromRow, toRow));
+            assertEquals(rebuilt.average(column, fromRow, toRow), appended.average(column, fromRow, toRow), 1e-9);
+        }
+
+        // the index the rows were appended to still only covers its own rows
+        assertEquals(initialSize, initial.size());
+        assertEquals(rangeIndex.max(0, 0, initialSize), initial.max(0, 0, initialSize));
+        assertThrows(IndexOutOfBoundsException.class, () -> initial.max(0, 0, initialSize + 1));
+    }
+}
@@ -0,0 +1,114 @@
+package com.currency.rates;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RangeScanTest {
+
+    private static CsvParser csvParser;
+    private static RateTable rateStore;
+
+    @BeforeAll
+    static void setUp() {
+        csvParser = new CsvParser();
+        csvParser.parseCsv("eurofxref-hist.csv");
+        rateStore = csvParser.getRateTable();
+    }
+
+    @DisplayName("One pass fills several reusable accumulators that match the range index")
+    @Test
+    void matchRangeIndex() {
+        RangeIndex rangeIndex = new RangeIndex(rateStore);
+        RangeScan.Sum sum = new RangeScan.Sum();
+        RangeScan.Max max = new RangeScan.Max();
+        RangeScan.Min min = new RangeScan.Min();
+        Random random = new Random(42);
+        for (int i = 0; i < 500; i++) {
+            int column = random.nextInt(rateStore.currencyCount());
+            int fromRow = random.nextInt(rateStore.size());
+            int toRow = fromRow + random.nextInt(rateStore.size() - fromRow + 1);
+
+            sum.reset();
+            max.reset();
+            min.reset();
+            assertEquals(toRow - fromRow, RangeScan.scan(rateStore, column, fromRow, toRow, sum, max, min));
+
+            assertEquals(rangeIndex.count(column, fromRow, toRow), sum.getCount());
+            assertEquals(rangeIndex.max(column, fromRow, toRow), max.getMax());
+            assertEquals(rangeIndex.min(column, fromRow, toRow), min.getMin());
+            double average = rangeIndex.average(column, fromRow, toRow);
+            if (Double.isNaN(average))
+                assertTrue(Double.isNaN(sum.getAverage()));
+            else
+                assertEquals(average, sum.getAverage(), Math.abs(average) * 1e-9);
+        }
+    }
+
+    @DisplayName("The whole history is scanned without recursion and only touches trading days")
+    @Test
+    void wholeHistory() {
+        RangeScan.Max max = new RangeScan.Max();
+        LocalDate start = LocalDate.parse("1990-01-01");
+        LocalDate end = LocalDate.parse("2030-12-31");
+        assertEquals(rateStore.size(), csvParser.scanRates(start, end, "USD", max));
+        assertEquals(csvParser.getStatsForSpecificDates(start, end, "USD", RangeStatistic.HIGHEST), max.getMax());
+        assertNotNull(max.getDate());
+
+        // a weekend has no stored rows at all
+        RangeScan.Sum sum = new RangeScan.Sum();
+        assertEquals(0, csvParser.scanRates(LocalDate.parse("2020-09-12"), LocalDate.parse("2020-09-13"), "USD", sum));
+        assertEquals(0, sum.getCount());
+        assertTrue(Double.isNaN(sum.getAverage()));
+
+        assertEquals("Invalid date range", assertThrows(RuntimeException.class,
+                () -> csvParser.scanRates(end, start, "USD", max)).getMessage());
+        assertEquals("No rates found, invalid currency provided", assertThrows(RuntimeException.class,
+                () -> csvParser.scanRates(start, end, "XXX", max)).getMessage());
+    }
+
+    @DisplayName("The scan ends once every accumulator stopped")
+    @Test
+    void earlyExit() {
+        // the first date one euro was worth more than 1.5 dollars
+        int[] found = {-1};
+        RateAccumulator firstAbove = new RateAccumulator() {
+            @Override
+            public boolean add(int epochDay, double rate) {
+                if (rate > 1.5) {
+                    found[0] = epochDay;
+                    return false;
+                }
+                return true;
+            }
+
+            @Override
+            public void reset() {
+                found[0] = -1;
+            }
+        };
+
+        int column = rateStore.indexOfCurrency("USD");
+        int rows = RangeScan.scan(rateStore, column, 0, rateStore.size(), firstAbove);
+        assertTrue(rows < rateStore.size());
+        assertEquals(rateStore.getDate(rows - 1), found[0]);
+        assertTrue(rateStore.getRate(column, rows - 1) > 1.5);
+        for (int row = 0; row < rows - 1; row++)
+            assertFalse(rateStore.getRate(column, row) > 1.5);
+
+        // an accumulator that still wants rates keeps the scan going to the end
+        RangeScan.Sum sum = new RangeScan.Sum();
+        firstAbove.reset();
+        assertEquals(rateStore.size(), RangeScan.scan(rateStore, column, 0, rateStore.size(), firstAbove, sum));
+        assertEquals(rateStore.size(), sum.getCount());
+        assertTrue(found[0] >= 0);
+
+        // compressed tables are read chunk by chunk as well
+        assertEquals(rows, RangeScan.scan(CompressedRateStore.copyOf(rateStore), column, 0, rateStore.size(), firstAbove));
+    }
+}
@@ -0,0 +1,168 @@
+package com.currency.rates;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RateCsvReaderTest {
+
+    private static byte[] resource(String name) throws IOException {
+        try (InputStream inputStream = RateCsvReaderTest.class.getClassLoader().getResourceAsStream(name)) {
+            ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = inputStream.read(buffer)) > 0)
+                outputStream.write(buffer, 0, read);
+            return outputStream.toByteArray();
+        }
+    }
+
+    private static byte[] gzip(byte[] bytes) throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        try (OutputStream gzip = new GZIPOutputStream(outputStream)) {
+            gzip.write(bytes);
+        }
+        return outputStream.toByteArray();
+    }
+
+    private static void assertSameRates(RateStore expected, RateStore actual) {
+        assertArrayEquals(expected.getCurrencies(), actual.getCurrencies());
+        assertEquals(expected.size(), actual.size());
+        for (int row = 0; row < expected.size(); row++) {
+            assertEquals(expected.getDate(row), actual.getDate(row));
+            for (int column = 0; column < expected.currencyCount(); column++)
+                assertEquals(expected.getRate(column, row), actual.getRate(column, row));
+        }
+    }
+
+    @DisplayName("Hand parsed decimals are identical to Double.parseDouble")
+    @Test
+    void parseDecimals() throws IOException {
+        String[] lines = new String(resource("eurofxref-hist.csv"), StandardCharsets.US_ASCII).split("\n");
+        for (int i = 1; i < lines.length; i++) {
+            String[] tokens = lines[i].split(",");
+            for (int t = 1; t < tokens.length; t++) {
+                byte[] bytes = tokens[t].getBytes(StandardCharsets.US_ASCII);
+                assertEquals(RateStore.parseRate(tokens[t]), RateCsvReader.parseRate(bytes, 0, bytes.length), tokens[t]);
+            }
+        }
+
+        byte[] bytes = "-0.5,1e-3, 2 ,n/a,".getBytes(StandardCharsets.US_ASCII);
+        assertEquals(-0.5, RateCsvReader.parseRate(bytes, 0, 4));
+        assertEquals(0.001, RateCsvReader.parseRate(bytes, 5, 9));
+        assertEquals(2.0, RateCsvReader.parseRate(bytes, 10, 13));
+        assertTrue(Double.isNaN(RateCsvReader.parseRate(bytes, 14, 17)));
+        assertTrue(Double.isNaN(RateCsvReader.parseRate(bytes, 18, 18)));
+    }
+
+    @DisplayName("Hand parsed dates are identical to LocalDate's epoch days")
+    @Test
+    void parseDates() {
+        for (LocalDate date = LocalDate.parse("1899-12-25"); date.getYear() < 2101; date = date.plusDays(1)) {
+            byte[] bytes = date.toString().getBytes(StandardCharsets.US_ASCII);
+            assertEquals(date.toEpochDay(), RateCsvReader.parseDate(bytes, 0, bytes.length));
+        }
+    }
+
+    @DisplayName("Plain, gzip, channel and file input all produce the same rates")
+    @Test
+    void readAllSources(@TempDir Path directory) throws IOException {
+        byte[] csv = resource("eurofxref-hist.csv");
+        RateStore.Builder fromStream = new RateStore.Builder();
+        RateCsvReader.read(new ByteArrayInputStream(csv), fromStream);
+        RateStore expected = fromStream.build();
+
+        RateStore.Builder fromGzip = new RateStore.Builder();
+        RateCsvReader.read(new ByteArrayInputStream(gzip(csv)), fromGzip);
+        assertSameRates(expected, fromGzip.build());
+
+        RateStore.Builder fromChannel = new RateStore.Builder();
+        RateCsvReader.read(Channels.newChannel(new ByteArrayInputStream(csv)), fromChannel);
+        assertSameRates(expected, fromChannel.build());
+
+        Path file = directory.resolve("eurofxref-hist.csv.gz");
+        Files.write(file, gzip(csv));
+        RateStore.Builder fromFile = new RateStore.Builder();
+        RateCsvReader.read(file, fromFile);
+        assertSameRates(expected, fromFile.build());
+
+        assertEquals(5555, expected.size());
+        assertEquals(1.1876, expected.getRate("USD", LocalDate.parse("2020-09-14")));
+    }
+
+    // hands out a single byte per read, like a slow network stream might
+    private static InputStream oneByteAtATime(byte[] bytes) {
+        return new FilterInputStream(new ByteArrayInputStream(bytes)) {
+            @Override
+            public int read(byte[] buffer, int offset, int length) throws IOException {
+                return super.read(buffer, offset, Math.min(length, 1));
+            }
+        };
+    }
+
+    @DisplayName("Gzip input is detected even when the stream hands out one byte at a time")
+    @Test
+    void shortReads() throws IOException {
+        byte[] csv = resource("rates.csv");
+        RateStore.Builder fromStream = new RateStore.Builder();
+        RateCsvReader.read(new ByteArrayInputStream(csv), fromStream);
+        RateStore expected = fromStream.build();
+
+        RateStore.Builder fromGzip = new RateStore.Builder();
+        RateCsvReader.read(oneByteAtATime(gzip(csv)), fromGzip);
+        assertSameRates(expected, fromGzip.build());
+
+        RateStore.Builder fromPlain = new RateStore.Builder();
+        RateCsvReader.read(oneByteAtATime(csv), fromPlain);
+        assertSameRates(expected, fromPlain.build());
+
+        // input shorter than the magic number is simply not compressed
+        RateStore.Builder fromSingleByte = new RateStore.Builder();
+        RateCsvReader.read(oneByteAtATime(new byte[]{'\n'}), fromSingleByte);
+        assertEquals(0, fromSingleByte.build().size());
+    }
+
+    @DisplayName("Rows can be consumed as a stream without building a store")
+    @Test
+    void visitRows() throws IOException {
+        String csv = "\uFEFFDate,USD,cyp,\r\n2020-09-14,1.1876,N/A,\r\n\r\n2020-09-11,1.1854\r\n";
+        String[][] header = new String[1][];
+        double[] total = new double[1];
+        int[] rows = new int[1];
+
+        RateCsvReader.read(new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)), new RateRowVisitor() {
+            @Override
+            public void header(String line, String[] currencies) {
+                header[0] = currencies;
+                assertEquals("Date,USD,cyp,", line);
+            }
+
+            @Override
+            public void row(int epochDay, double[] rates) {
+                rows[0]++;
+                total[0] += rates[0];
+                // the missing trailing cell is reported as not applicable
+                assertTrue(Double.isNaN(rates[1]));
+            }
+        });
+
+        assertArrayEquals(new String[]{"USD", "CYP"}, header[0]);
+        assertEquals(2, rows[0]);
+        assertEquals(1.1876 + 1.1854, total[0]);
+    }
+}
@@ -0,0 +1,105 @@
+package com.currency.rates;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import javax.management.ObjectName;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RateMetricsTest {
+
+    @DisplayName("Queries, loads and errors are recorded per operation")
+    @Test
+    void recordsOperations() throws IOException {
+        CsvParser csvParser = new CsvParser();
+        RateMetrics rateMetrics = RateMetrics.enable(csvParser);
+
+        byte[] csv = "Date,USD,GBP,\n2020-09-14,1.1876,0.9219,\n2020-09-11,1.1817,0.9212,\n".getBytes(StandardCharsets.US_ASCII);
+        csvParser.parseCsv(new ByteArrayInputStream(csv));
+        csvParser.retrieveRatesForSpecificDate(LocalDate.parse("2020-09-14"));
+        assertThrows(RuntimeException.class, () -> csvParser.retrieveRatesForSpecificDate(LocalDate.parse("2020-09-13")));
+        csvParser.getStatsForSpecificDates(LocalDate.parse("2020-09-11"), LocalDate.parse("2020-09-14"), "USD", true);
+        csvParser.getStatsForSpecificDates(LocalDate.parse("2020-09-11"), LocalDate.parse("2020-09-14"), "USD", false);
+        csvParser.exchange(LocalDate.parse("2020-09-14"), "GBP", "USD", 10);
+        assertThrows(RuntimeException.class, () -> csvParser.exchange(LocalDate.parse("2020-09-14"), "GBP", "USD", -10));
+
+        assertEquals(1, rateMetrics.getCallCounts().get("LOAD_CSV").longValue());
+        assertEquals(2, rateMetrics.getCallCounts().get("RATES_BY_DATE").longValue());
+        assertEquals(1, rateMetrics.getCallCounts().get("RANGE_MAX").longValue());
+        assertEquals(1, rateMetrics.getCallCounts().get("RANGE_AVERAGE").longValue());
+        assertEquals(2, rateMetrics.getCallCounts().get("CONVERT").longValue());
+        assertEquals(0, rateMetrics.getCallCounts().get("RANGE_MIN").longValue());
+        assertEquals(1, rateMetrics.getErrorCounts().get("RATES_BY_DATE: InvalidQueryException").longValue());
+        assertEquals(1, rateMetrics.getErrorCounts().get("CONVERT: INVALID_AMOUNT").longValue());
+        assertEquals(2, rateMetrics.getRowsIngested());
+        assertEquals(csv.length, rateMetrics.getBytesIngested());
+        assertEquals(2, rateMetrics.getLoadedRows());
+        assertTrue(rateMetrics.getMaxNanos().get("LOAD_CSV") > 0);
+
+        String dump = rateMetrics.dump();
+        assertTrue(dump.contains("RATES_BY_DATE"));
+        assertFalse(dump.contains("RANGE_MIN"));
+        assertTrue(dump.contains("ingested rows = 2, bytes = " + csv.length));
+
+        rateMetrics.reset();
+        assertEquals(0, rateMetrics.getCallCounts().get("CONVERT").longValue());
+        assertTrue(rateMetrics.getErrorCounts().isEmpty());
+    }
+
+    @DisplayName("Nothing is recorded once the sink is disabled again")
+    @Test
+    void disabled() {
+        CsvParser csvParser = new CsvParser();
+        RateMetrics rateMetrics = RateMetrics.enable(csvParser);
+        csvParser.setMetricsSink(null);
+
+        csvParser.parseCsv("eurofxref-hist.csv");
+        csvParser.retrieveRatesForSpecificDate(LocalDate.parse("2020-09-14"));
+
+        assertSame(MetricsSink.DISABLED, csvParser.getMetricsSink());
+        assertEquals(0, rateMetrics.getCallCounts().get("RATES_BY_DATE").longValue());
+        assertEquals(0, rateMetrics.getRowsIngested());
+    }
+
+    @DisplayName("Percentiles stay within the relative error of the histogram")
+    @Test
+    void histogram() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long value = 1; value <= 100_000; value++)
+            histogram.record(value * 1000);
+
+        assertEquals(100_000, histogram.getCount());
+        assertEquals(100_000_000, histogram.getMax());
+        assertEquals(50_000_000, histogram.getPercentile(50), 50_000_000 / 32.0);
+        assertEquals(99_000_000, histogram.getPercentile(99), 99_000_000 / 32.0);
+        assertEquals(100_000_000, histogram.getPercentile(100));
+        assertEquals(50_000_500, histogram.getMean(), 1e-6);
+
+        for (long value : new long[]{0, 1, 31, 32, 33, 1000, 123_456_789, Long.MAX_VALUE}) {
+            int bucket = LatencyHistogram.bucketOf(value);
+            assertTrue(LatencyHistogram.lowestValueOf(bucket) <= value);
+            assertTrue(bucket + 1 == 59 * 32 || LatencyHistogram.lowestValueOf(bucket + 1) > value);
+        }
+    }
+
+    @DisplayName("The metrics can be registered with jmx")
+    @Test
+    void jmx() throws Exception {
+        CsvParser csvParser = new CsvParser();
+        csvParser.parseCsv("eurofxref-hist.csv");
+        RateMetrics rateMetrics = RateMetrics.enable(csvParser);
+        rateMetrics.registerMBean();
+        try {
+            Object rows = ManagementFactory.getPlatformMBeanServer().getAttribute(new ObjectName(RateMetrics.OBJECT_NAME), "LoadedRows");
+            assertEquals(csvParser.getRateTable().size(), rows);
+        } finally {
+            rateMetrics.unregisterMBean();
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package com.currency.rates;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RateServerTest {
+
+    private static CsvParser csvParser;
+    private static RateServer rateServer;
+
+    @BeforeAll
+    static void setUp() throws IOException {
+        csvParser = new CsvParser();
+        csvParser.parseCsv("eurofxref-hist.csv");
+        rateServer = new RateServer(csvParser, 0);
+        rateServer.start();
+    }
+
+    @AfterAll
+    static void tearDown() {
+        rateServer.stop();
+    }
+
+    private static String[] get(String path) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL("http://localhost:" + rateServer.getPort() + path).openConnection();
+        int status = connection.getResponseCode();
+        InputStream inputStream = status < 400 ? connection.getInputStream() : connection.getErrorStream();
+
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int read;
+        while ((read = inputStream.read(buffer)) > 0)
+            body.write(buffer, 0, read);
+        inputStream.close();
+
+        return new String[]{String.valueOf(status), connection.getContentType(), new String(body.toByteArray(), StandardCharsets.UTF_8)};
+    }
+
+    @DisplayName("The rates of a date are returned as the csv header followed by the row")
+    @Test
+    void ratesForDate() throws IOException {
+        String[] response = get("/rates?date=2020-09-14");
+
+        assertEquals("200", response[0]);
+        assertTrue(response[1].startsWith("text/csv"));
+        assertEquals(csvParser.getHeader() + "\n" + csvParser.retrieveRatesForSpecificDate(LocalDate.parse("2020-09-14")) + "\n", response[2]);
+    }
+
+    @DisplayName("The range statistics match the ones of the parser")
+    @Test
+    void stats() throws IOException {
+        assertEquals("{\"currency\":\"USD\",\"start\":\"2000-09-07\",\"end\":\"2020-09-14\",\"highest\":1.599}",
+                get("/stats/max?currency=USD&start=2000-09-07&end=2020-09-14")[2]);
+        assertEquals("{\"currency\":\"USD\",\"start\":\"2020-09-07\",\"end\":\"2020-09-14\",\"average\":1.1827}",
+                get("/stats/avg?currency=usd&start=2020-09-07&end=2020-09-14")[2]);
+        assertEquals("{\"currency\":\"USD\",\"start\":\"2000-09-07\",\"end\":\"2020-09-14\",\"lowest\":0.8252}",
+                get("/stats/min?currency=USD&start=2000-09-07&end=2020-09-14")[2]);
+    }
+
+    @DisplayName("Convert from 10 GBP to USD")
+    @Test
+    void convert() throws IOException {
+        String[] response = get("/convert?date=2020-09-11&from=GBP&to=USD&amount=10");
+
+        assertEquals("200", response[0]);
+        assertTrue(response[1].startsWith("application/json"));
+        assertEquals("{\"date\":\"2020-09-11\",\"from\":\"GBP\",\"to\":\"USD\",\"amount\":10.0,\"result\":12.8279}", response[2]);
+    }
+
+    @DisplayName("A policy falls back to another date and the date used is reported")
+    @Test
+    void policy() throws IOException {
+        assertEquals("{\"date\":\"2020-09-13\",\"from\":\"GBP\",\"to\":\"USD\",\"amount\":10.0,\"rateDate\":\"2020-09-11\",\"result\":12.8279}",
+                get("/convert?date=2020-09-13&from=GBP&to=USD&amount=10&policy=previous")[2]);
+        assertTrue(get("/rates?date=2020-09-13&policy=nearest")[2].contains("\n2020-09-14,"));
+        assertEquals("{\"error\":\"Invalid policy: closest\"}", get("/rates?date=2020-09-13&policy=closest")[2]);
+    }
+
+    @DisplayName("Invalid requests are answered with 400 and the error message")
+    @Test
+    void invalidRequests() throws IOException {
+        String[] response = get("/convert?date=2020-09-11&from=GBP&to=USD&amount=-10");
+        assertEquals("400", response[0]);
+        assertEquals("{\"error\":\"Invalid amount provided, aborting conversion\"}", response[2]);
+
+        assertEquals("{\"error\":\"Invalid date\"}", get("/rates?date=2020-13-01")[2]);
+        assertEquals("{\"error\":\"There are no valid rates for the given date\"}", get("/rates?date=2020-09-13")[2]);
+        assertEquals("{\"error\":\"Missing parameter: currency\"}", get("/stats/max?start=2020-09-07&end=2020-09-14")[2]);
+        assertEquals("{\"error\":\"Invalid date range\"}", get("/stats/avg?currency=USD&start=2020-09-14&end=2020-09-07")[2]);
+    }
+
+    @DisplayName("Failures that are not caused by the request are answered with 500")
+    @Test
+    void serverErrors() throws IOException {
+        RateServer emptyServer = new RateServer(new CsvParser(), 0);
+        emptyServer.start();
+        try {
+            for (String path : new String[]{"/rates?date=2020-09-14", "/stats/max?currency=USD&start=2020-09-07&end=2020-09-14",
+                    "/convert?date=2020-09-11&from=GBP&to=USD&amount=10"}) {
+                HttpURLConnection connection = (HttpURLConnection) new URL("http://localhost:" + emptyServer.getPort() + path).openConnection();
+                assertEquals(500, connection.getResponseCode(), path);
+                connection.getErrorStream().close();
+            }
+        } finally {
+            emptyServer.stop();
+        }
+    }
+
+    @DisplayName("The rates of a date are measured like the other queries of the parser")
+    @Test
+    void ratesAreMeasured() throws IOException {
+        CsvParser measuredParser = new CsvParser();
+        measuredParser.parseCsv("eurofxref-hist.csv");
+        RateMetrics rateMetrics = RateMetrics.enable(measuredParser);
+        RateServer measuredServer = new RateServer(measuredParser, 0);
+        measuredServer.start();
+        try {
+            for (String path : new String[]{"/rates?date=2020-09-14", "/rates?date=2020-09-13&policy=previous", "/rates?date=2020-09-13",
+                    "/rates?date=2020-09-13&policy=closest", "/rates?date=2020-09-13&policy=whatever", "/rates?date=2020-09-13&policy=%22x%22"}) {
+                HttpURLConnection connection = (HttpURLConnection) new URL("http://localhost:" + measuredServer.getPort() + path).openConnection();
+                InputStream inputStream = connection.getResponseCode() < 400 ? connection.getInputStream() : connection.getErrorStream();
+                inputStream.close();
+            }
+        } finally {
+            measuredServer.stop();
+        }
+
+        assertEquals(3, rateMetrics.getCallCounts().get("RATES_BY_DATE"));
+        assertEquals(1, rateMetrics.getErrorCounts().get("RATES_BY_DATE: InvalidQueryException"));
+        // every invalid policy is counted on the same cause, the text of the request never becomes part of the metrics
+        assertEquals(3, rateMetrics.getErrorCounts().get("RATES_BY_DATE: InvalidParameterException"));
+        assertEquals(2, rateMetrics.getErrorCounts().size());
+    }
+
+    @DisplayName("Query parameters are url decoded and strings are escaped for json")
+    @Test
+    void parametersAndEscaping() {
+        assertEquals("a b", RateServer.parameters("x=a+b&y").get("x"));
+        assertEquals("2020-09-14", RateServer.parameters("date=2020%2D09%2D14").get("date"));
+        assertEquals("say \\\"hi\\\"\\\\\\u000a", RateServer.escape("say \"hi\"\\\n"));
+    }
+}
@@ -0,0 +1,130 @@
+package com.currency.rates;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RateSnapshotFileTest {
+
+    private static CsvParser csvParser;
+    private static long checksum;
+
+    @BeforeAll
+    static void setUp() throws IOException {
+        csvParser = new CsvParser();
+        csvParser.parseCsv("eurofxref-hist.csv");
+        try (InputStream inputStream = RateSnapshotFileTest.class.getClassLoader().getResourceAsStream("eurofxref-hist.csv")) {
+            checksum = RateSnapshotFile.checksum(inputStream);
+        }
+    }
+
+    @DisplayName("A mapped snapshot holds exactly the rates of the csv file")
+    @Test
+    void writeAndMap(@TempDir Path directory) throws IOException {
+        Path snapshot = directory.resolve("rates.snapshot");
+        csvParser.writeSnapshot(snapshot, checksum);
+
+        MappedRateStore mapped = RateSnapshotFile.open(snapshot, checksum);
+        RateTable expected = csvParser.getRateTable();
+
+        assertEquals(csvParser.getHeader(), mapped.getHeader());
+        assertArrayEquals(expected.getCurrencies(), mapped.getCurrencies());
+        assertEquals(expected.size(), mapped.size());
+        for (int row = 0; row < expected.size(); row++) {
+            assertEquals(expected.getDate(row), mapped.getDate(row));
+            for (int column = 0; column < expected.currencyCount(); column++)
+                assertEquals(expected.getRate(column, row), mapped.getRate(column, row));
+        }
+    }
+
+    @DisplayName("Queries served from a snapshot match the ones served from the csv file")
+    @Test
+    void queryFromSnapshot(@TempDir Path directory) throws IOException {
+        Path snapshot = directory.resolve("rates.snapshot");
+        csvParser.writeSnapshot(snapshot, checksum);
+
+        CsvParser mappedParser = new CsvParser();
+        mappedParser.loadSnapshot(snapshot);
+        LocalDate start = LocalDate.parse("2000-09-07");
+        LocalDate end = LocalDate.parse("2020-09-14");
+
+        assertEquals(csvParser.getHeader(), mappedParser.getHeader());
+        assertEquals(csvParser.retrieveRatesForSpecificDate(end), mappedParser.retrieveRatesForSpecificDate(end));
+        assertEquals(1.599, mappedParser.getStatsForSpecificDates(start, end, "USD", true));
+        assertEquals(12.8279, mappedParser.convertCurrencies(LocalDate.parse("2020-09-11"), "GBP", "USD", 10.0));
+    }
+
+    @DisplayName("Stale, corrupted or foreign files are rejected")
+    @Test
+    void rejectInvalidSnapshots(@TempDir Path directory) throws IOException {
+        Path snapshot = directory.resolve("rates.snapshot");
+        csvParser.writeSnapshot(snapshot, checksum);
+
+        assertThrows(IOException.class, () -> RateSnapshotFile.open(snapshot, checksum + 1));
+
+        // a flipped rate is only noticed when the rates are verified, opening does not read them
+        byte[] bytes = Files.readAllBytes(snapshot);
+        bytes[bytes.length - 1] ^= 1;
+        Files.write(snapshot, bytes);
+        RateSnapshotFile.open(snapshot);
+        assertThrows(IOException.class, () -> RateSnapshotFile.verify(snapshot));
+        bytes[bytes.length - 1] ^= 1;
+        Files.write(snapshot, bytes);
+        assertEquals(csvParser.getRateTable().size(), RateSnapshotFile.verify(snapshot).size());
+
+        // the header is covered by its own checksum, e.g the first date or a currency code
+        for (int offset : new int[]{16, 32, RateSnapshotFile.HEADER_SIZE + 2}) {
+            byte[] corrupted = bytes.clone();
+            corrupted[offset] ^= 1;
+            Files.write(snapshot, corrupted);
+            assertThrows(IOException.class, () -> RateSnapshotFile.open(snapshot));
+        }
+
+        // counts that do not match the size of the file are rejected before anything is read with them
+        for (int offset : new int[]{8, 12, 40}) {
+            byte[] corrupted = bytes.clone();
+            corrupted[offset + 3] = (byte) 0x7F;
+            Files.write(snapshot, corrupted);
+            assertThrows(IOException.class, () -> RateSnapshotFile.open(snapshot));
+            corrupted[offset + 3] = (byte) 0x80;
+            Files.write(snapshot, corrupted);
+            assertThrows(IOException.class, () -> RateSnapshotFile.open(snapshot));
+        }
+        Files.write(snapshot, Arrays.copyOf(bytes, bytes.length - 8));
+        assertThrows(IOException.class, () -> RateSnapshotFile.open(snapshot));
+
+        Path csv = directory.resolve("rates.csv");
+        Files.write(csv, "Date,USD,\n2020-09-14,1.1876,\n".getBytes());
+        assertThrows(IOException.class, () -> RateSnapshotFile.open(csv));
+    }
+
+    @DisplayName("A csv file on disk can be converted directly")
+    @Test
+    void convertCsv(@TempDir Path directory) throws IOException {
+        Path csv = directory.resolve("rates.csv");
+        Path snapshot = directory.resolve("rates.snapshot");
+        Files.write(csv, "Date,USD,CYP,\n2020-09-14,1.1876,N/A,\n2020-09-11,1.1854,N/A,\n".getBytes());
+
+        RateSnapshotFile.convert(csv, snapshot);
+        MappedRateStore mapped = RateSnapshotFile.open(snapshot, RateSnapshotFile.fingerprint(csv));
+
+        assertEquals(2, mapped.size());
+        assertEquals(1.1854, mapped.getRate("USD", LocalDate.parse("2020-09-11")));
+        assertTrue(Double.isNaN(mapped.getRate("CYP", LocalDate.parse("2020-09-11"))));
+        assertEquals(1, mapped.lowerBound((int) LocalDate.parse("2020-09-12").toEpochDay()));
+
+        // a rewritten csv file has another fingerprint, without being read
+        Files.write(csv, "Date,USD,\n2020-09-14,1.1876,\n".getBytes());
+        assertThrows(IOException.class, () -> RateSnapshotFile.open(snapshot, RateSnapshotFile.fingerprint(csv)));
+    }
+}
@@ -0,0 +1,160 @@
+package com.currency.rates;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RateSnapshotTest {
+
+    private static double[] rates(int currencies, double rate) {
+        double[] rates = new double[currencies];
+        Arrays.fill(rates, rate);
+        return rates;
+    }
+
+    @DisplayName("Appending rates leaves the previous snapshot untouched")
+    @Test
+    void copyOnWrite() {
+        CsvParser csvParser = new CsvParser();
+        csvParser.parseCsv("rates2.csv");
+        RateSnapshot before = csvParser.getSnapshot();
+
+        csvParser.appendRates(LocalDate.parse("2020-09-15"), new double[]{1.19, 126.0, 1.9558, Double.NaN});
+        csvParser.appendRates(LocalDate.parse("2020-09-12"), new double[]{1.0, 1.0, 1.0, 1.0});
+        csvParser.appendRates(LocalDate.parse("2020-09-12"), new double[]{1.5, 1.0, 1.0, 1.0});
+        RateSnapshot after = csvParser.getSnapshot();
+
+        assertEquals(6, before.getRateTable().size());
+        assertEquals(8, after.getRateTable().size());
+        assertEquals(before.getHeader(), after.getHeader());
+        assertEquals("2020-09-15,1.19,126,1.9558,N/A,", csvParser.retrieveRatesForSpecificDate(LocalDate.parse("2020-09-15")));
+        assertEquals(1.5, after.getRateTable().getRate("USD", LocalDate.parse("2020-09-12")));
+        assertEquals(1.5, csvParser.getStatsForSpecificDates(LocalDate.parse("2020-09-07"), LocalDate.parse("2020-09-15"), "USD", true));
+        assertThrows(IllegalArgumentException.class, () -> before.withRates(LocalDate.parse("2020-09-16"), new double[]{1.0}));
+    }
+
+    @DisplayName("Rates that do not match the currencies are rejected and nothing gets published")
+    @Test
+    void wrongRateCount() {
+        CsvParser csvParser = new CsvParser();
+        csvParser.parseCsv("rates2.csv");
+        RateSnapshot before = csvParser.getSnapshot();
+
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+                () -> csvParser.appendRates(LocalDate.parse("2020-09-15"), rates(5, 1.0)));
+        assertEquals("The number of rates does not match the number of supported currencies", e.getMessage());
+        assertSame(before, csvParser.getSnapshot());
+        assertEquals(6, csvParser.getRateTable().size());
+    }
+
+    @DisplayName("Readers always see a consistent snapshot while rates are being appended")
+    @Test
+    void concurrentReadsDuringAppends() throws Exception {
+        CsvParser csvParser = new CsvParser();
+        csvParser.parseCsv("eurofxref-hist.csv");
+        int initialSize = csvParser.getRateTable().size();
+        int currencies = csvParser.getRateTable().currencyCount();
+        LocalDate lastDate = csvParser.getRateTable().getLocalDate(initialSize - 1);
+        AtomicBoolean done = new AtomicBoolean();
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        List<Future<Integer>> readers = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            readers.add(executor.submit(() -> {
+                int checks = 0;
+                while (!done.get() || checks == 0) {
+                    RateSnapshot snapshot = csvParser.getSnapshot();
+                    RateTable rateTable = snapshot.getRateTable();
+                    int appended = rateTable.size() - initialSize;
+                    if (appended > 0) {
+                        // every appended day k carries the rate k for every currency
+                        int lastRow = rateTable.size() - 1;
+                        assertEquals(appended, rateTable.getRate(0, lastRow));
+                        assertEquals(appended, snapshot.getRangeIndex().max(currencies - 1, initialSize, rateTable.size()));
+                    }
+                    checks++;
+                }
+                return checks;
+            }));
+        }
+
+        for (int day = 1; day <= 200; day++)
+            csvParser.appendRates(lastDate.plusDays(day), rates(currencies, day));
+        done.set(true);
+
+        for (Future<Integer> reader : readers)
+            assertTrue(reader.get() > 0);
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+        assertEquals(initialSize + 200, csvParser.getRateTable().size());
+    }
+
+    @DisplayName("A daily csv file is merged by currency code, adding and dropping currencies")
+    @Test
+    void appendCsv() throws Exception {
+        CsvParser csvParser = new CsvParser();
+        csvParser.parseCsv("rates2.csv");
+        String daily = "Date,JPY,USD,CHF,\n2020-09-16,126.1,1.19,1.08,\n2020-09-15,126.0,1.18,1.07,\n";
+        csvParser.appendCsv(new ByteArrayInputStream(daily.getBytes(StandardCharsets.US_ASCII)));
+
+        assertEquals("Date,USD,JPY,BGN,CYP,CHF,", csvParser.getHeader());
+        assertEquals(8, csvParser.getRateTable().size());
+        assertEquals("2020-09-15,1.18,126,N/A,N/A,1.07,", csvParser.retrieveRatesForSpecificDate(LocalDate.parse("2020-09-15")));
+        assertEquals("2020-09-14,1.1876,125.82,1.9558,N/A,N/A,", csvParser.retrieveRatesForSpecificDate(LocalDate.parse("2020-09-14")));
+        assertEquals(1.19, csvParser.getStatsForSpecificDates(LocalDate.parse("2020-09-07"), LocalDate.parse("2020-09-16"), "USD", true));
+        assertEquals(1.075, csvParser.getStatsForSpecificDates(LocalDate.parse("2020-09-07"), LocalDate.parse("2020-09-16"), "CHF", false));
+
+        // a plain append keeps the lineage and extends the index and the rendered lines in place
+        RateSnapshot before = csvParser.getSnapshot();
+        csvParser.appendCsv(new ByteArrayInputStream("Date,USD,\n2020-09-17,1.2,\n".getBytes(StandardCharsets.US_ASCII)));
+        assertSame(before.getRateTable().getLineage(), csvParser.getRateTable().getLineage());
+        assertEquals(9, csvParser.getSnapshot().getRangeIndex().size());
+        assertEquals("2020-09-17,1.2,N/A,N/A,N/A,N/A,", csvParser.retrieveRatesForSpecificDate(LocalDate.parse("2020-09-17")));
+
+        // the cross rates of the earlier dates stay cached across appends
+        csvParser.parseCsv("rates2.csv");
+        csvParser.appendRates(LocalDate.parse("2020-09-15"), new double[]{1.18, 126.0, 1.9558, Double.NaN});
+        csvParser.convertCurrencies(LocalDate.parse("2020-09-14"), "USD", "JPY", 10.0);
+        long missesBefore = csvParser.getCrossRateCache().getMissCount();
+        csvParser.appendRates(LocalDate.parse("2020-09-16"), new double[]{1.19, 126.1, 1.9558, Double.NaN});
+        csvParser.convertCurrencies(LocalDate.parse("2020-09-14"), "USD", "JPY", 10.0);
+        assertEquals(missesBefore, csvParser.getCrossRateCache().getMissCount());
+    }
+
+    @DisplayName("The map view of the rates is read only and does not follow the map it was set from")
+    @Test
+    void readOnlyMap() {
+        CsvParser csvParser = new CsvParser();
+        csvParser.parseCsv("eurofxref-hist.csv");
+        Map<String, Map<LocalDate, String>> supportedCurrencies = csvParser.getSupportedCurrencies();
+        LocalDate date = LocalDate.parse("2020-09-14");
+        assertThrows(UnsupportedOperationException.class, () -> supportedCurrencies.remove("USD"));
+        assertThrows(UnsupportedOperationException.class, () -> supportedCurrencies.get("USD").put(date, "1"));
+        assertSame(supportedCurrencies, csvParser.getSupportedCurrencies());
+
+        Map<String, Map<LocalDate, String>> map = new HashMap<>();
+        for (Map.Entry<String, Map<LocalDate, String>> entry : supportedCurrencies.entrySet())
+            map.put(entry.getKey(), new HashMap<>(entry.getValue()));
+        csvParser.setSupportedCurrencies(map);
+        map.get("USD").put(date, "2");
+        map.remove("JPY");
+        assertEquals("1.1876", csvParser.getSupportedCurrencies().get("USD").get(date));
+        assertEquals(41, csvParser.getSupportedCurrencies().size());
+        assertThrows(UnsupportedOperationException.class, () -> csvParser.getSupportedCurrencies().get("USD").clear());
+    }
+}
@@ -0,0 +1,136 @@
+package com.currency.rates;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RateStoreTest {
+
+    private static RateTable rateStore;
+
+    @BeforeAll
+    static void setUp() {
+        CsvParser csvParser = new CsvParser();
+        csvParser.parseCsv("eurofxref-hist.csv");
+        rateStore = csvParser.getRateTable();
+    }
+
+    @DisplayName("Every currency of the header gets a column and every line of the file a row")
+    @Test
+    void checkDimensions() {
+        assertEquals(41, rateStore.currencyCount());
+        assertEquals(5555, rateStore.size());
+        assertEquals("USD", rateStore.getCurrency(0));
+        assertEquals("ZAR", rateStore.getCurrency(40));
+    }
+
+    @DisplayName("Dates are kept in ascending order even though the file lists the newest first")
+    @Test
+    void checkDateOrder() {
+        assertEquals(LocalDate.parse("1999-01-04"), rateStore.getLocalDate(0));
+        assertEquals(LocalDate.parse("2020-09-14"), rateStore.getLocalDate(rateStore.size() - 1));
+    }
+
+    @DisplayName("Lookups by date and currency")
+    @Test
+    void getRates() {
+        assertEquals(1.1876, rateStore.getRate("USD", LocalDate.parse("2020-09-14")));
+        // N/A as well as weekends and unknown currencies are reported as NaN
+        assertTrue(Double.isNaN(rateStore.getRate("CYP", LocalDate.parse("2020-09-14"))));
+        assertTrue(Double.isNaN(rateStore.getRate("USD", LocalDate.parse("2020-09-13"))));
+        assertTrue(Double.isNaN(rateStore.getRate("USB", LocalDate.parse("2020-09-14"))));
+    }
+
+    @DisplayName("Range bounds of a weekend point to the surrounding business days")
+    @Test
+    void checkBounds() {
+        int saturday = (int) LocalDate.parse("2020-09-12").toEpochDay();
+        int friday = rateStore.indexOfDate(LocalDate.parse("2020-09-11"));
+
+        assertEquals(-1, rateStore.indexOfDate(saturday));
+        assertEquals(friday + 1, rateStore.lowerBound(saturday));
+        assertEquals(friday + 1, rateStore.upperBound(saturday));
+        assertEquals(friday, rateStore.lowerBound(rateStore.getDate(friday)));
+        assertEquals(friday + 1, rateStore.upperBound(rateStore.getDate(friday)));
+    }
+
+    @DisplayName("Formatted rates match the text of the csv file")
+    @Test
+    void formatRatesLikeTheFile() throws Exception {
+        assertEquals("160", RateStore.formatRate(160.0));
+        assertEquals("0.92408", RateStore.formatRate(0.92408));
+        assertEquals("1912400", RateStore.formatRate(1912400.0));
+        assertEquals("N/A", RateStore.formatRate(Double.NaN));
+
+        // every single cell of the file has to survive the round trip through a double
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                RateStoreTest.class.getClassLoader().getResourceAsStream("eurofxref-hist.csv")))) {
+            reader.readLine();
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] tokens = line.split(",");
+                for (int i = 1; i < tokens.length; i++)
+                    assertEquals(tokens[i], RateStore.formatRate(RateStore.parseRate(tokens[i])));
+            }
+        }
+    }
+
+    @DisplayName("A store built from the nested map matches the original one")
+    @Test
+    void convertFromMap() {
+        Map<String, Map<LocalDate, String>> map = new HashMap<>();
+        Map<LocalDate, String> usd = new HashMap<>();
+        usd.put(LocalDate.parse("2020-09-14"), "1.1876");
+        usd.put(LocalDate.parse("2020-09-11"), "N/A");
+        map.put("usd", usd);
+
+        RateStore store = RateStore.fromMap(map);
+
+        assertEquals(1, store.currencyCount());
+        assertEquals(2, store.size());
+        assertEquals(1.1876, store.getRate("USD", LocalDate.parse("2020-09-14")));
+        assertTrue(Double.isNaN(store.getRate("USD", LocalDate.parse("2020-09-11"))));
+        assertEquals(usd, store.toMap().get("USD"));
+    }
+
+    @DisplayName("Appended rows share the arrays without changing the store they were appended to")
+    @Test
+    void appendRows() {
+        RateStore base = new RateStore(new String[]{"USD", "GBP"}, new int[]{1, 2}, new double[][]{{1.1, 1.2}, {0.9, Double.NaN}});
+        RateStore first = base.withRow(3, new double[]{1.3, 0.8});
+        RateStore second = first.withRow(4, new double[]{1.4, 0.7});
+        // a second store appended to the same one must not overwrite the row that was claimed first
+        RateStore sibling = first.withRow(4, new double[]{2.4, 1.7});
+
+        assertEquals(2, base.size());
+        assertEquals(-1, base.indexOfDate(3));
+        assertEquals(3, first.size());
+        assertEquals(1.3, first.getRate(0, 2));
+        assertEquals(1.4, second.getRate(0, 3));
+        assertEquals(2.4, sibling.getRate(0, 3));
+        assertSame(base.getLineage(), second.getLineage());
+        assertNotSame(second.getLineage(), sibling.getLineage());
+
+        // replacing a row or adding a currency starts a new lineage
+        RateStore replaced = second.withRow(3, new double[]{1.35, 0.8});
+        assertEquals(1.35, replaced.getRate(0, 2));
+        assertEquals(1.3, second.getRate(0, 2));
+        assertNotSame(second.getLineage(), replaced.getLineage());
+
+        RateStore withChf = second.withCurrency("chf");
+        assertEquals(3, withChf.currencyCount());
+        assertEquals(2, withChf.indexOfCurrency("CHF"));
+        assertTrue(Double.isNaN(withChf.getRate(2, 3)));
+        assertEquals(1.4, withChf.getRate(0, 3));
+        assertNotSame(second.getLineage(), withChf.getLineage());
+        assertSame(withChf, withChf.withCurrency("CHF"));
+    }
+}
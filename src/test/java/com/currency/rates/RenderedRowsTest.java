@@ -0,0 +1,80 @@
+package com.currency.rates;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RenderedRowsTest {
+
+    private static CsvParser csvParser;
+
+    @BeforeAll
+    static void setUp() {
+        csvParser = new CsvParser();
+        csvParser.parseCsv("eurofxref-hist.csv");
+    }
+
+    @DisplayName("Every rendered line is identical to the line of the original file")
+    @Test
+    void linesMatchTheFile() throws IOException {
+        RateTable rateTable = csvParser.getRateTable();
+        RenderedRows renderedRows = csvParser.getSnapshot().getRenderedRows();
+
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(getClass().getClassLoader().getResourceAsStream("eurofxref-hist.csv"), StandardCharsets.US_ASCII))) {
+            reader.readLine();
+            String line;
+            int lines = 0;
+            while ((line = reader.readLine()) != null) {
+                int row = rateTable.indexOfDate(LocalDate.parse(line.substring(0, 10)));
+                assertEquals(line, renderedRows.lineString(row));
+                lines++;
+            }
+            assertEquals(rateTable.size(), lines);
+        }
+    }
+
+    @DisplayName("The line bytes are cached and handed out read only")
+    @Test
+    void lineBytes() {
+        LocalDate date = LocalDate.parse("2020-09-14");
+        ByteBuffer first = csvParser.retrieveRateLineForSpecificDate(date);
+        ByteBuffer second = csvParser.retrieveRateLineForSpecificDate(date);
+
+        assertTrue(first.isReadOnly());
+        assertEquals(first, second);
+        assertEquals(csvParser.retrieveRatesForSpecificDate(date), StandardCharsets.US_ASCII.decode(first).toString());
+        assertThrows(RuntimeException.class, () -> csvParser.retrieveRateLineForSpecificDate(LocalDate.parse("2020-09-13")));
+    }
+
+    @DisplayName("The daily view holds the rates and tells the valid ones apart")
+    @Test
+    void dailyRates() {
+        RateTable rateTable = csvParser.getRateTable();
+        DailyRates dailyRates = new DailyRates();
+
+        assertTrue(csvParser.retrieveRatesForSpecificDate(LocalDate.parse("2020-09-14"), dailyRates));
+        assertEquals(LocalDate.parse("2020-09-14"), dailyRates.getDate());
+        assertEquals(rateTable.currencyCount(), dailyRates.currencyCount());
+        assertEquals(1.1876, dailyRates.getRate(rateTable.indexOfCurrency("USD")));
+        assertTrue(dailyRates.isValid(rateTable.indexOfCurrency("USD")));
+        assertFalse(dailyRates.isValid(rateTable.indexOfCurrency("CYP")));
+        assertTrue(Double.isNaN(dailyRates.getRate(rateTable.indexOfCurrency("CYP"))));
+        assertEquals(32, dailyRates.validCount());
+
+        // the same view gets reused, a miss leaves it untouched
+        assertTrue(csvParser.retrieveRatesForSpecificDate(LocalDate.parse("1999-01-04"), dailyRates));
+        assertTrue(dailyRates.isValid(rateTable.indexOfCurrency("CYP")));
+        assertFalse(csvParser.retrieveRatesForSpecificDate(LocalDate.parse("2020-09-13"), dailyRates));
+        assertEquals(LocalDate.parse("1999-01-04"), dailyRates.getDate());
+        assertThrows(IndexOutOfBoundsException.class, () -> dailyRates.getRate(rateTable.currencyCount()));
+    }
+}
@@ -0,0 +1,194 @@
+package com.currency.rates;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StatsCacheTest {
+
+    private static final RateTable TABLE = new RateStore(new String[]{"USD"}, new int[]{10, 11, 12}, new double[][]{{1, 2, 3}});
+
+    @DisplayName("Identical expensive queries in flight share a single computation")
+    @Test
+    void coalesceInFlight() throws Exception {
+        StatsCache statsCache = new StatsCache(16);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger computations = new AtomicInteger();
+        int callers = 8;
+
+        ExecutorService executor = Executors.newFixedThreadPool(callers);
+        try {
+            List<Future<Double>> results = new ArrayList<>();
+            for (int i = 0; i < callers; i++) {
+                results.add(executor.submit(() -> statsCache.get(TABLE, 0, 0, 3, RangeStatistic.HIGHEST, NumericMode.DOUBLE, RoundingMode.HALF_UP, true, () -> {
+                    computations.incrementAndGet();
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        throw new RuntimeException(e);
+                    }
+                    return 3.0;
+                })));
+            }
+            // the first caller blocks in its computation until every other one is waiting for it
+            while (statsCache.getCoalescedCount() < callers - 1)
+                Thread.sleep(1);
+            release.countDown();
+
+            for (Future<Double> result : results)
+                assertEquals(3.0, result.get());
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(1, computations.get());
+        assertEquals(1, statsCache.getComputeCount());
+        assertEquals(callers - 1, statsCache.getCoalescedCount());
+        assertEquals((callers - 1) / (double) callers, statsCache.getCoalescingRatio());
+
+        // once completed the result is served from the cache
+        assertEquals(3.0, statsCache.get(TABLE, 0, 0, 3, RangeStatistic.HIGHEST, NumericMode.DOUBLE, RoundingMode.HALF_UP, false, () -> fail("cached")));
+        assertEquals(1, statsCache.getHitCount());
+    }
+
+    @DisplayName("Results are kept in a bounded least recently used cache, failures are never kept")
+    @Test
+    void boundedAndFailures() {
+        // a single set of 4 ways
+        StatsCache statsCache = new StatsCache(4);
+        assertEquals(4, statsCache.capacity());
+        for (int toRow = 1; toRow <= 3; toRow++)
+            statsCache.get(TABLE, 0, 0, toRow, RangeStatistic.AVERAGE, NumericMode.DOUBLE, RoundingMode.HALF_UP, false, () -> 1.0);
+        statsCache.get(TABLE, 0, 1, 3, RangeStatistic.AVERAGE, NumericMode.DOUBLE, RoundingMode.HALF_UP, false, () -> 2.5);
+        statsCache.get(TABLE, 0, 0, 1, RangeStatistic.AVERAGE, NumericMode.DOUBLE, RoundingMode.HALF_UP, false, () -> fail("cached"));
+        statsCache.get(TABLE, 0, 2, 3, RangeStatistic.AVERAGE, NumericMode.DOUBLE, RoundingMode.HALF_UP, false, () -> 3.0);
+        assertEquals(4, statsCache.size());
+        assertEquals(1, statsCache.getEvictionCount());
+        // [0, 2) was the least recently used
+        assertEquals(4.0, statsCache.get(TABLE, 0, 0, 2, RangeStatistic.AVERAGE, NumericMode.DOUBLE, RoundingMode.HALF_UP, false, () -> 4.0));
+        assertEquals(0, statsCache.getCoalescedCount());
+
+        // the rounding mode only matters for fixed point averages, every empty range is the same query
+        StatsCache other = new StatsCache(16);
+        other.get(TABLE, 0, 0, 3, RangeStatistic.AVERAGE, NumericMode.DOUBLE, RoundingMode.HALF_UP, false, () -> 2.0);
+        assertEquals(2.0, other.get(TABLE, 0, 0, 3, RangeStatistic.AVERAGE, NumericMode.DOUBLE, RoundingMode.DOWN, false, () -> fail("cached")));
+        other.get(TABLE, 0, 2, 2, RangeStatistic.LOWEST, NumericMode.DOUBLE, RoundingMode.HALF_UP, false, () -> 0.0);
+        assertEquals(0.0, other.get(TABLE, 0, 3, 3, RangeStatistic.LOWEST, NumericMode.FIXED_POINT, RoundingMode.UP, false, () -> fail("cached")));
+        // the same rows of an unrelated table are another query
+        RateTable table = new RateStore(new String[]{"USD"}, new int[]{10, 11, 12}, new double[][]{{1, 2, 3}});
+        assertEquals(5.0, other.get(table, 0, 0, 3, RangeStatistic.AVERAGE, NumericMode.DOUBLE, RoundingMode.HALF_UP, false, () -> 5.0));
+
+        RuntimeException exception = assertThrows(RuntimeException.class,
+                () -> other.get(TABLE, 0, 1, 3, RangeStatistic.HIGHEST, NumericMode.DOUBLE, RoundingMode.HALF_UP, true, () -> {
+                    throw new RuntimeException("failed");
+                }));
+        assertEquals("failed", exception.getMessage());
+        assertEquals(3.0, other.get(TABLE, 0, 1, 3, RangeStatistic.HIGHEST, NumericMode.DOUBLE, RoundingMode.HALF_UP, true, () -> 3.0));
+    }
+
+    @DisplayName("Many threads hitting the cache at once all get the right results")
+    @Test
+    void concurrentHits() throws Exception {
+        CsvParser csvParser = new CsvParser();
+        csvParser.parseCsv("eurofxref-hist.csv");
+        RateTable rateTable = csvParser.getRateTable();
+        RangeIndex rangeIndex = new RangeIndex(rateTable);
+
+        // a few popular queries, the way dashboards ask them
+        int queries = 32;
+        LocalDate[] starts = new LocalDate[queries];
+        LocalDate[] ends = new LocalDate[queries];
+        String[] currencies = new String[queries];
+        double[] expected = new double[queries];
+        Random random = new Random(42);
+        for (int q = 0; q < queries; q++) {
+            int fromRow = random.nextInt(rateTable.size());
+            int toRow = fromRow + random.nextInt(rateTable.size() - fromRow);
+            starts[q] = rateTable.getLocalDate(fromRow);
+            ends[q] = rateTable.getLocalDate(toRow);
+            int column = random.nextInt(rateTable.currencyCount());
+            currencies[q] = rateTable.getCurrency(column);
+            double max = rangeIndex.max(column, fromRow, toRow + 1);
+            expected[q] = Double.isNaN(max) ? 0.0 : max;
+        }
+
+        int threads = 8;
+        int rounds = 2000;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> results = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                int offset = t;
+                results.add(executor.submit(() -> {
+                    for (int i = 0; i < rounds; i++) {
+                        int q = (i + offset) % queries;
+                        assertEquals(expected[q], csvParser.getStatsForSpecificDates(starts[q], ends[q], currencies[q], RangeStatistic.HIGHEST));
+                    }
+                }));
+            }
+            for (Future<?> result : results)
+                result.get();
+        } finally {
+            executor.shutdownNow();
+        }
+
+        StatsCache statsCache = csvParser.getStatsCache();
+        assertEquals(threads * rounds, statsCache.getHitCount() + statsCache.getCoalescedCount() + statsCache.getComputeCount());
+        // apart from the first round every query is a hit
+        assertTrue(statsCache.getComputeCount() <= threads * queries, statsCache.toString());
+        assertTrue(statsCache.getSavedRate() > 0.9, statsCache.toString());
+    }
+
+    @DisplayName("The parser keeps results across appends and drops them when a new file is loaded")
+    @Test
+    void parserInvalidation() {
+        CsvParser csvParser = new CsvParser();
+        csvParser.parseCsv("eurofxref-hist.csv");
+        StatsCache statsCache = csvParser.getStatsCache();
+
+        LocalDate start = LocalDate.parse("2019-09-11");
+        LocalDate end = LocalDate.parse("2020-09-11");
+        Double average = csvParser.getStatsForSpecificDates(start, end, "USD", RangeStatistic.AVERAGE);
+        assertEquals(1, statsCache.getComputeCount());
+        // the 13th is a sunday, so the range covers the same rows
+        assertEquals(average, csvParser.getStatsForSpecificDates(start, LocalDate.parse("2020-09-13"), "USD", RangeStatistic.AVERAGE));
+        assertEquals(1, statsCache.getHitCount());
+
+        // another numeric mode is another query
+        csvParser.setNumericMode(NumericMode.FIXED_POINT, RoundingMode.HALF_UP);
+        assertEquals(average, csvParser.getStatsForSpecificDates(start, end, "USD", RangeStatistic.AVERAGE));
+        assertEquals(2, statsCache.getComputeCount());
+        csvParser.setNumericMode(NumericMode.DOUBLE, RoundingMode.HALF_UP);
+
+        // the appended rows do not change the rows the cached ranges cover
+        double[] rates = new double[csvParser.getRateTable().currencyCount()];
+        Arrays.fill(rates, 1000);
+        csvParser.appendRates(LocalDate.parse("2020-09-15"), rates);
+        assertEquals(average, csvParser.getStatsForSpecificDates(start, end, "USD", RangeStatistic.AVERAGE));
+        assertEquals(2, statsCache.getHitCount());
+        assertEquals(1000.0, csvParser.getStatsForSpecificDates(LocalDate.parse("2020-09-10"), LocalDate.parse("2020-09-15"), "USD", RangeStatistic.HIGHEST));
+        assertNotEquals(average, csvParser.getStatsForSpecificDates(start, LocalDate.parse("2020-09-15"), "USD", RangeStatistic.AVERAGE));
+
+        // a corrected row starts a new lineage
+        rates[csvParser.getRateTable().indexOfCurrency("USD")] = 2000;
+        csvParser.appendRates(LocalDate.parse("2020-09-15"), rates);
+        assertEquals(2000.0, csvParser.getStatsForSpecificDates(LocalDate.parse("2020-09-10"), LocalDate.parse("2020-09-15"), "USD", RangeStatistic.HIGHEST));
+
+        csvParser.parseCsv("eurofxref-hist.csv");
+        assertEquals(0, statsCache.size());
+        assertThrows(RuntimeException.class, () -> csvParser.getStatsForSpecificDates(end, start, "USD", RangeStatistic.HIGHEST));
+    }
+}
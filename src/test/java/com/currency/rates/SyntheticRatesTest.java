@@ -0,0 +1,98 @@
+package com.currency.rates;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SyntheticRatesTest {
+
+    private static void assertSameRates(RateTable expected, RateTable actual) {
+        assertEquals(expected.size(), actual.size());
+        assertArrayEquals(expected.getCurrencies(), actual.getCurrencies());
+        for (int row = 0; row < expected.size(); row++) {
+            assertEquals(expected.getDate(row), actual.getDate(row));
+            for (int column = 0; column < expected.currencyCount(); column++)
+                assertEquals(expected.getRate(column, row), actual.getRate(column, row));
+        }
+    }
+
+    @DisplayName("The same settings and seed produce the same csv file, which parses into the generated rates")
+    @Test
+    void reproducibleCsv() throws IOException {
+        SyntheticRates syntheticRates = new SyntheticRates(40, 3, 7);
+        byte[] csv = syntheticRates.csv();
+        assertArrayEquals(csv, new SyntheticRates(40, 3, 7).csv());
+        assertFalse(Arrays.equals(csv, new SyntheticRates(40, 3, 8).csv()));
+
+        CsvParser csvParser = new CsvParser();
+        csvParser.parseCsv(new ByteArrayInputStream(csv));
+        RateTable rateTable = csvParser.getRateTable();
+        assertSameRates(syntheticRates.build(), rateTable);
+        assertEquals(syntheticRates.header(), csvParser.getHeader());
+
+        assertEquals("AAA", rateTable.getCurrency(0));
+        assertEquals("AAN", rateTable.getCurrency(13));
+        assertEquals(SyntheticRates.DEFAULT_LAST_DATE, rateTable.getLocalDate(rateTable.size() - 1));
+        for (int row = 0; row < rateTable.size(); row++) {
+            DayOfWeek day = rateTable.getLocalDate(row).getDayOfWeek();
+            assertTrue(day != DayOfWeek.SATURDAY && day != DayOfWeek.SUNDAY);
+        }
+        // three years of business days
+        assertEquals(3 * 261, rateTable.size(), 3);
+    }
+
+    @DisplayName("The share of not applicable rates and the volatility follow the settings")
+    @Test
+    void densityAndVolatility() {
+        SyntheticRates syntheticRates = new SyntheticRates(20, 10, 42);
+        syntheticRates.setNotApplicableShare(0.25);
+        syntheticRates.setVolatility(0);
+        syntheticRates.setLastDate(LocalDate.parse("2030-01-01"));
+        RateStore rateStore = syntheticRates.build();
+
+        RangeIndex rangeIndex = new RangeIndex(rateStore);
+        long applicable = 0;
+        for (int column = 0; column < rateStore.currencyCount(); column++) {
+            applicable += rangeIndex.count(column, 0, rateStore.size());
+            // without volatility every published rate of a currency is the same
+            assertEquals(rangeIndex.max(column, 0, rateStore.size()), rangeIndex.min(column, 0, rateStore.size()));
+        }
+        double share = 1 - (double) applicable / (rateStore.size() * rateStore.currencyCount());
+        assertEquals(0.25, share, 0.01);
+        assertEquals(LocalDate.parse("2030-01-01"), rateStore.getLocalDate(rateStore.size() - 1));
+
+        assertThrows(IllegalArgumentException.class, () -> syntheticRates.setNotApplicableShare(1.5));
+        assertThrows(IllegalArgumentException.class, () -> syntheticRates.setVolatility(-0.1));
+        assertThrows(IllegalArgumentException.class, () -> new SyntheticRates(0, 1, 42));
+    }
+
+    @DisplayName("Generated rates can be written as a gzip csv file or a binary snapshot")
+    @Test
+    void files(@TempDir Path directory) throws IOException {
+        SyntheticRates syntheticRates = SyntheticRates.fromArguments(new String[]{"--currencies", "12", "--years", "2", "--na", "0.1", "--seed", "3"});
+        assertNotNull(syntheticRates);
+        assertNull(SyntheticRates.fromArguments(new String[]{"--threads", "4"}));
+        RateStore expected = syntheticRates.build();
+
+        Path csv = directory.resolve("rates.csv.gz");
+        syntheticRates.writeCsv(csv);
+        CsvParser csvParser = new CsvParser();
+        csvParser.parseCsv(csv);
+        assertSameRates(expected, csvParser.getRateTable());
+
+        Path snapshot = directory.resolve("rates.snapshot");
+        syntheticRates.writeSnapshot(snapshot);
+        csvParser.loadSnapshot(snapshot);
+        assertSameRates(expected, csvParser.getRateTable());
+        assertEquals(syntheticRates.header(), csvParser.getHeader());
+    }
+}
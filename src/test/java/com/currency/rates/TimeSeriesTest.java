@@ -0,0 +1,107 @@
+package com.currency.rates;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TimeSeriesTest {
+
+    private static CsvParser csvParser;
+
+    @BeforeAll
+    static void setUp() {
+        csvParser = new CsvParser();
+        csvParser.parseCsv("eurofxref-hist.csv");
+    }
+
+    @DisplayName("The 20 year 30 day series matches a brute force computation of every window")
+    @Test
+    void matchesBruteForce() {
+        LocalDate start = LocalDate.parse("2000-09-07");
+        LocalDate end = LocalDate.parse("2020-09-14");
+        TimeSeries timeSeries = csvParser.getTimeSeries(start, end, "USD", 30);
+
+        RateTable rateTable = csvParser.getRateTable();
+        int usd = rateTable.indexOfCurrency("USD");
+        List<Double> history = new ArrayList<>();
+        for (int row = 0; row < rateTable.size(); row++) {
+            if (rateTable.getDate(row) < start.toEpochDay())
+                history.add(rateTable.getRate(usd, row));
+        }
+
+        assertEquals(rateTable.upperBound((int) end.toEpochDay()) - rateTable.lowerBound((int) start.toEpochDay()), timeSeries.size());
+        assertEquals(start, timeSeries.getDate(0));
+        assertEquals(end, timeSeries.getDate(timeSeries.size() - 1));
+
+        for (int i = 0; i < timeSeries.size(); i++) {
+            history.add(timeSeries.getRate(i));
+            List<Double> window = history.subList(history.size() - 30, history.size());
+
+            double sum = 0;
+            double max = Double.NEGATIVE_INFINITY;
+            double min = Double.POSITIVE_INFINITY;
+            for (double rate : window) {
+                sum += rate;
+                max = Math.max(max, rate);
+                min = Math.min(min, rate);
+            }
+            assertEquals(sum / 30, timeSeries.getMovingAverage(i), 1e-12);
+            assertEquals(max, timeSeries.getHighest(i));
+            assertEquals(min, timeSeries.getLowest(i));
+
+            double[] returns = new double[30];
+            double mean = 0;
+            for (int r = 0; r < 30; r++) {
+                returns[r] = Math.log(history.get(history.size() - 30 + r) / history.get(history.size() - 31 + r));
+                mean += returns[r] / 30;
+            }
+            double squares = 0;
+            for (double value : returns)
+                squares += (value - mean) * (value - mean);
+            assertEquals(returns[29], timeSeries.getLogReturn(i), 1e-15);
+            assertEquals(Math.sqrt(squares / 29), timeSeries.getVolatility(i), 1e-12);
+        }
+    }
+
+    @DisplayName("A window skips non-applicable rates and covers what it holds until it is full")
+    @Test
+    void rollingWindow() {
+        RollingWindow rollingWindow = new RollingWindow(3);
+        assertTrue(Double.isNaN(rollingWindow.getAverage()));
+
+        rollingWindow.add(2);
+        assertTrue(Double.isNaN(rollingWindow.getLogReturn()));
+        rollingWindow.add(Double.NaN);
+        rollingWindow.add(4);
+        assertEquals(2, rollingWindow.count());
+        assertEquals(3, rollingWindow.getAverage());
+        assertEquals(Math.log(2), rollingWindow.getLogReturn(), 1e-15);
+        assertTrue(Double.isNaN(rollingWindow.getVolatility()));
+
+        rollingWindow.add(1);
+        rollingWindow.add(3);
+        assertTrue(rollingWindow.isFull());
+        assertEquals(4, rollingWindow.getHighest());
+        assertEquals(1, rollingWindow.getLowest());
+        rollingWindow.add(2);
+        assertEquals(3, rollingWindow.getHighest());
+        assertEquals(2, rollingWindow.getAverage());
+    }
+
+    @DisplayName("Invalid currencies, ranges and windows are rejected")
+    @Test
+    void invalidArguments() {
+        LocalDate start = LocalDate.parse("2020-09-07");
+        LocalDate end = LocalDate.parse("2020-09-14");
+
+        assertEquals("No rates found, invalid currency provided", assertThrows(RuntimeException.class, () -> csvParser.getTimeSeries(start, end, "USB", 5)).getMessage());
+        assertEquals("Invalid date range", assertThrows(RuntimeException.class, () -> csvParser.getTimeSeries(end, start, "USD", 5)).getMessage());
+        assertEquals("Invalid window size", assertThrows(RuntimeException.class, () -> csvParser.getTimeSeries(start, end, "USD", 0)).getMessage());
+    }
+}